@@ -13,10 +13,12 @@ import rescuecore2.messages.control.KSCommands;
 import rescuecore2.misc.geometry.GeometryTools2D;
 import rescuecore2.misc.geometry.Line2D;
 import rescuecore2.misc.geometry.Point2D;
+import rescuecore2.misc.geometry.Polygon2D;
 import rescuecore2.standard.components.StandardSimulator;
 import rescuecore2.standard.entities.*;
 import rescuecore2.standard.messages.AKClear;
 import rescuecore2.standard.messages.AKClearArea;
+import rescuecore2.standard.messages.StandardMessageURN;
 import rescuecore2.worldmodel.ChangeSet;
 import rescuecore2.worldmodel.EntityID;
 
@@ -44,6 +46,24 @@ public class ClearSimulator extends StandardSimulator {
   }
 
 
+  @Override
+  protected int[] getSubscribedEntityURNs() {
+    // Clearing agents may stand in buildings as well as on roads
+    return new int[] { StandardEntityURN.ROAD.getURNId(), StandardEntityURN.HYDRANT.getURNId(),
+        StandardEntityURN.BLOCKADE.getURNId(), StandardEntityURN.BUILDING.getURNId(),
+        StandardEntityURN.REFUGE.getURNId(), StandardEntityURN.GAS_STATION.getURNId(),
+        StandardEntityURN.FIRE_STATION.getURNId(), StandardEntityURN.AMBULANCE_CENTRE.getURNId(),
+        StandardEntityURN.POLICE_OFFICE.getURNId(), StandardEntityURN.POLICE_FORCE.getURNId(),
+        StandardEntityURN.RESCUE_ROBOT.getURNId() };
+  }
+
+
+  @Override
+  protected int[] getSubscribedCommandURNs() {
+    return new int[] { StandardMessageURN.AK_CLEAR.getURNId(), StandardMessageURN.AK_CLEAR_AREA.getURNId() };
+  }
+
+
   @Override
   protected void postConnect() {
     this.repairRate = config.getIntValue(REPAIR_RATE_KEY);
@@ -136,18 +156,19 @@ public class ClearSimulator extends StandardSimulator {
 
     int length = this.repairDistance;
 
-    Map<Blockade, java.awt.geom.Area> blockades = new HashMap<>();
+    Map<Blockade, Polygon2D> blockades = new HashMap<>();
     for (StandardEntity entity : model.getObjectsInRange(agent.getX(),
         agent.getY(), length)) {
       if ((entity instanceof Area area) && (area.isBlockadesDefined())) {
         for (EntityID blockadeID : area.getBlockades()) {
           Blockade blockade = (Blockade) model.getEntity(blockadeID);
           if (blockade != null) {
-            if (blockade.getShape() == null) {
-              Logger.debug("Blockade Shape is null");
+            if (!blockade.isApexesDefined()) {
+              Logger.debug("Blockade apexes are undefined");
+              continue;
             }
             blockades.put(blockade,
-                new java.awt.geom.Area(blockade.getShape()));
+                Polygon2D.fromApexes(blockade.getApexes()));
           }
         }
       }
@@ -159,12 +180,12 @@ public class ClearSimulator extends StandardSimulator {
     while (true) {
       counter++;
       length = (min + max) / 2;
-      java.awt.geom.Area area = Geometry.getClearArea(agent, targetX, targetY,
+      Polygon2D area = Geometry.getClearArea(agent, targetX, targetY,
           length, this.repairRadius);
 
       double firstSurface = Geometry.surface(area);
-      for (java.awt.geom.Area blockade : blockades.values())
-        area.subtract(blockade);
+      for (Polygon2D blockade : blockades.values())
+        area = area.subtract(blockade);
       double surface = Geometry.surface(area);
       double clearedSurface = firstSurface - surface;
 
@@ -177,14 +198,14 @@ public class ClearSimulator extends StandardSimulator {
       }
     }
 
-    java.awt.geom.Area area = Geometry.getClearArea(agent, targetX, targetY,
+    Polygon2D area = Geometry.getClearArea(agent, targetX, targetY,
         length, this.repairRadius);
-    for (Map.Entry<Blockade, java.awt.geom.Area> entry : blockades.entrySet()) {
+    for (Map.Entry<Blockade, Polygon2D> entry : blockades.entrySet()) {
       Blockade blockade = entry.getKey();
-      java.awt.geom.Area blockadeArea = entry.getValue();
+      Polygon2D blockadeArea = entry.getValue();
       Road road = (Road) model.getEntity(blockade.getPosition());
       double firstSurface = Geometry.surface(blockadeArea);
-      blockadeArea.subtract(area);
+      blockadeArea = blockadeArea.subtract(area);
       double surface = Geometry.surface(blockadeArea);
       if (surface < firstSurface) {
         changes.addChange(blockade, blockade.getApexesProperty());
@@ -0,0 +1,157 @@
+package collapse;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import rescuecore2.misc.geometry.Line2D;
+import rescuecore2.misc.geometry.Point2D;
+import rescuecore2.misc.geometry.Polygon2D;
+import rescuecore2.misc.geometry.Vector2D;
+import rescuecore2.standard.entities.Building;
+import rescuecore2.standard.entities.Edge;
+import rescuecore2.standard.entities.Road;
+import rescuecore2.standard.entities.StandardEntity;
+import rescuecore2.standard.entities.StandardWorldModel;
+
+/**
+ * The shapes used to place blockages around a collapsed building. Road shapes
+ * never change, so the polygon for each road is built once and kept.
+ */
+final class BlockadeGeometry {
+	// Largest distance between a corner circle and the polygon used for it.
+	// java.awt.geom.Area flattened its curves to about this accuracy.
+	private static final double APEX_FLATNESS = 50;
+
+	private final StandardWorldModel model;
+	private final Map<Road, Polygon2D> roadShapes;
+
+	/**
+	 * Construct a BlockadeGeometry.
+	 *
+	 * @param model
+	 *            The world model holding the roads.
+	 */
+	BlockadeGeometry(StandardWorldModel model) {
+		this.model = model;
+		roadShapes = new HashMap<Road, Polygon2D>();
+	}
+
+	/**
+	 * Compute the area covered by the walls of a building when they fall
+	 * outwards.
+	 *
+	 * @param b
+	 *            The building.
+	 * @param d
+	 *            The distance the walls fall.
+	 * @return The area covered by the walls.
+	 */
+	Polygon2D expandBuilding(Building b, double d) {
+		List<Polygon2D> wallAreas = new ArrayList<Polygon2D>();
+		// Project each wall out and build a list of wall areas
+		for (Edge edge : b.getEdges()) {
+			projectWall(edge, wallAreas, d);
+		}
+		return Polygon2D.union(wallAreas);
+	}
+
+	/**
+	 * Find the parts of the roads covered by an area that are not already
+	 * blocked.
+	 *
+	 * @param buildingArea
+	 *            The area to place blockages in.
+	 * @param existing
+	 *            The areas already blocked. The new blockages are added to
+	 *            this list.
+	 * @return The new blockages for each road.
+	 */
+	Map<Road, Collection<Polygon2D>> createRoadBlockades(
+			Polygon2D buildingArea, List<Polygon2D> existing) {
+		Map<Road, Collection<Polygon2D>> result = new HashMap<Road, Collection<Polygon2D>>();
+		if (buildingArea.isEmpty()) {
+			return result;
+		}
+		Collection<StandardEntity> roads = model.getObjectsInRectangle(
+				(int) Math.floor(buildingArea.getMinX()),
+				(int) Math.floor(buildingArea.getMinY()),
+				(int) Math.ceil(buildingArea.getMaxX()),
+				(int) Math.ceil(buildingArea.getMaxY()));
+		for (StandardEntity e : roads) {
+			if (!(e instanceof Road)) {
+				continue;
+			}
+			Road r = (Road) e;
+			Polygon2D intersection = getRoadShape(r).intersect(buildingArea);
+			// Existing areas whose bounds miss the intersection cost nothing
+			for (Polygon2D next : existing) {
+				if (intersection.isEmpty()) {
+					break;
+				}
+				intersection = intersection.subtract(next);
+			}
+			if (intersection.isEmpty()) {
+				continue;
+			}
+			existing.add(intersection);
+			result.put(r, intersection.getParts());
+		}
+		return result;
+	}
+
+	/**
+	 * Get the shape of a road.
+	 *
+	 * @param road
+	 *            The road.
+	 * @return The shape of the road.
+	 */
+	Polygon2D getRoadShape(Road road) {
+		Polygon2D result = roadShapes.get(road);
+		if (result == null) {
+			result = Polygon2D.fromApexes(road.getApexList());
+			roadShapes.put(road, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Forget the shape of a road that has been removed.
+	 *
+	 * @param road
+	 *            The road.
+	 */
+	void roadRemoved(Road road) {
+		roadShapes.remove(road);
+	}
+
+	private void projectWall(Edge edge, Collection<Polygon2D> areaList,
+			double d) {
+		Line2D wallLine = new Line2D(edge.getStartX(), edge.getStartY(),
+				edge.getEndX() - edge.getStartX(), edge.getEndY()
+						- edge.getStartY());
+		Vector2D wallDirection = wallLine.getDirection();
+		Vector2D offset = wallDirection.getNormal().normalised().scale(-d);
+
+		Point2D right = wallLine.getOrigin();
+		Point2D left = wallLine.getEndPoint();
+
+		Point2D first = left.plus(offset.scale(-1));
+		Point2D second = right.plus(offset.scale(-1));
+		Point2D third = right.plus(offset);
+		Point2D fourth = left.plus(offset);
+
+		areaList.add(Polygon2D.fromCoordinates(new double[] { first.getX(),
+				first.getY(), second.getX(), second.getY(), third.getX(),
+				third.getY(), fourth.getX(), fourth.getY() }));
+		// Also add circles at each corner
+		double radius = offset.getLength();
+		areaList.add(Polygon2D.circle(right.getX(), right.getY(), radius,
+				APEX_FLATNESS));
+		areaList.add(Polygon2D.circle(left.getX(), left.getY(), radius,
+				APEX_FLATNESS));
+	}
+}
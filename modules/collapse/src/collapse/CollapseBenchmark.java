@@ -0,0 +1,247 @@
+package collapse;
+
+import gis2.GMLWorldModelCreator;
+
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import kernel.KernelException;
+import rescuecore2.config.Config;
+import rescuecore2.config.ConfigException;
+import rescuecore2.misc.geometry.Line2D;
+import rescuecore2.misc.geometry.Point2D;
+import rescuecore2.misc.geometry.Polygon2D;
+import rescuecore2.misc.geometry.Vector2D;
+import rescuecore2.standard.entities.Building;
+import rescuecore2.standard.entities.Edge;
+import rescuecore2.standard.entities.Road;
+import rescuecore2.standard.entities.StandardEntity;
+import rescuecore2.standard.entities.StandardWorldModel;
+
+/**
+ * Timing test for the blockage geometry of the collapse simulator. This loads
+ * one of the bundled maps, collapses every building by the same distance and
+ * finds the blockages on the surrounding roads, once with the old
+ * java.awt.geom.Area code and once with {@link BlockadeGeometry}. The total
+ * blocked area is compared to check that both give the same blockages.
+ */
+public final class CollapseBenchmark {
+	private static final String DEFAULT_MAP = "maps/test/map";
+	private static final double DEFAULT_DISTANCE = 2000;
+	private static final int DEFAULT_REPEATS = 3;
+	private static final double AWT_FLATNESS = 100;
+
+	private CollapseBenchmark() {
+	}
+
+	/**
+	 * Run the timing test.
+	 *
+	 * @param args
+	 *            Command line arguments: [-m map directory] [-d collapse
+	 *            distance] [-r repeats]
+	 * @throws KernelException
+	 *             If the map cannot be read.
+	 * @throws ConfigException
+	 *             If the configuration next to the map cannot be read.
+	 */
+	public static void main(String[] args) throws KernelException,
+			ConfigException {
+		String map = DEFAULT_MAP;
+		double d = DEFAULT_DISTANCE;
+		int repeats = DEFAULT_REPEATS;
+		// CHECKSTYLE:OFF:ModifiedControlVariable
+		for (int i = 0; i < args.length; ++i) {
+			if ("-m".equalsIgnoreCase(args[i])) {
+				map = args[++i];
+			} else if ("-d".equalsIgnoreCase(args[i])) {
+				d = Double.parseDouble(args[++i]);
+			} else if ("-r".equalsIgnoreCase(args[i])) {
+				repeats = Integer.parseInt(args[++i]);
+			}
+		}
+		// CHECKSTYLE:ON:ModifiedControlVariable
+		// Maps keep their configuration next to the map directory
+		File configDir = new File(new File(map).getAbsoluteFile()
+				.getParentFile(), "config");
+		Config config = configDir.isDirectory() ? new Config(configDir)
+				: new Config();
+		config.setValue("gis.map.dir", map);
+		StandardWorldModel model = (StandardWorldModel) new GMLWorldModelCreator()
+				.buildWorldModel(config);
+		List<Building> buildings = new ArrayList<Building>();
+		for (StandardEntity next : model) {
+			if (next instanceof Building) {
+				buildings.add((Building) next);
+			}
+		}
+		System.out.println(map + ": " + buildings.size()
+				+ " buildings, collapse distance " + d);
+		double awtArea = 0;
+		double polygonArea = 0;
+		int awtCount = 0;
+		int polygonCount = 0;
+		long awtTime = Long.MAX_VALUE;
+		long polygonTime = Long.MAX_VALUE;
+		for (int r = 0; r < repeats; ++r) {
+			long start = System.nanoTime();
+			awtArea = 0;
+			awtCount = 0;
+			for (Building b : buildings) {
+				for (java.awt.geom.Area next : awtBlockades(model, b, d)) {
+					awtArea += area(next);
+					awtCount += fixCount(next);
+				}
+			}
+			awtTime = Math.min(awtTime, System.nanoTime() - start);
+			start = System.nanoTime();
+			// A new geometry each time so road shapes are built inside the timing
+			BlockadeGeometry geometry = new BlockadeGeometry(model);
+			polygonArea = 0;
+			polygonCount = 0;
+			for (Building b : buildings) {
+				Map<Road, Collection<Polygon2D>> blockades = geometry
+						.createRoadBlockades(geometry.expandBuilding(b, d),
+								new ArrayList<Polygon2D>());
+				for (Collection<Polygon2D> parts : blockades.values()) {
+					for (Polygon2D next : parts) {
+						polygonArea += next.getArea();
+						++polygonCount;
+					}
+				}
+			}
+			polygonTime = Math.min(polygonTime, System.nanoTime() - start);
+		}
+		// CHECKSTYLE:OFF:MagicNumber
+		System.out.println("  java.awt.geom.Area: " + (awtTime / 1000000)
+				+ " ms, " + awtCount + " blockades, area " + awtArea);
+		System.out.println("  Polygon2D:          " + (polygonTime / 1000000)
+				+ " ms, " + polygonCount + " blockades, area " + polygonArea);
+		System.out.println("  speedup " + ((double) awtTime / polygonTime)
+				+ ", area difference "
+				+ (100 * Math.abs(awtArea - polygonArea) / Math.max(awtArea, 1))
+				+ "%");
+		// CHECKSTYLE:ON:MagicNumber
+	}
+
+	/**
+	 * The blockages for one building, computed the way the collapse simulator
+	 * did before {@link Polygon2D}.
+	 */
+	private static List<java.awt.geom.Area> awtBlockades(
+			StandardWorldModel model, Building b, double d) {
+		java.awt.geom.Area fullArea = new java.awt.geom.Area();
+		for (Edge edge : b.getEdges()) {
+			Line2D wallLine = new Line2D(edge.getStartX(), edge.getStartY(),
+					edge.getEndX() - edge.getStartX(), edge.getEndY()
+							- edge.getStartY());
+			Vector2D offset = wallLine.getDirection().getNormal().normalised()
+					.scale(-d);
+			Point2D right = wallLine.getOrigin();
+			Point2D left = wallLine.getEndPoint();
+			Point2D first = left.plus(offset.scale(-1));
+			Point2D second = right.plus(offset.scale(-1));
+			Point2D third = right.plus(offset);
+			Point2D fourth = left.plus(offset);
+			Path2D path = new Path2D.Double();
+			path.moveTo(first.getX(), first.getY());
+			path.lineTo(second.getX(), second.getY());
+			path.lineTo(third.getX(), third.getY());
+			path.lineTo(fourth.getX(), fourth.getY());
+			path.closePath();
+			fullArea.add(new java.awt.geom.Area(path));
+			double radius = offset.getLength();
+			fullArea.add(new java.awt.geom.Area(new Ellipse2D.Double(right
+					.getX() - radius, right.getY() - radius, radius * 2,
+					radius * 2)));
+			fullArea.add(new java.awt.geom.Area(new Ellipse2D.Double(left
+					.getX() - radius, left.getY() - radius, radius * 2,
+					radius * 2)));
+		}
+		List<java.awt.geom.Area> result = new ArrayList<java.awt.geom.Area>();
+		java.awt.geom.Area existing = new java.awt.geom.Area();
+		java.awt.Rectangle rectangle = fullArea.getBounds();
+		for (StandardEntity e : model.getObjectsInRectangle(
+				(int) rectangle.getMinX(), (int) rectangle.getMinY(),
+				(int) rectangle.getMaxX(), (int) rectangle.getMaxY())) {
+			if (!(e instanceof Road)) {
+				continue;
+			}
+			Path2D roadPath = new Path2D.Double();
+			Iterator<Edge> it = ((Road) e).getEdges().iterator();
+			Edge edge = it.next();
+			roadPath.moveTo(edge.getStartX(), edge.getStartY());
+			roadPath.lineTo(edge.getEndX(), edge.getEndY());
+			while (it.hasNext()) {
+				edge = it.next();
+				roadPath.lineTo(edge.getEndX(), edge.getEndY());
+			}
+			java.awt.geom.Area intersection = new java.awt.geom.Area(roadPath);
+			intersection.intersect(fullArea);
+			intersection.subtract(existing);
+			if (intersection.isEmpty()) {
+				continue;
+			}
+			existing.add(intersection);
+			result.add(intersection);
+		}
+		return result;
+	}
+
+	/**
+	 * The number of blockades the old code made from an area: one for each
+	 * closed path, holes included.
+	 */
+	private static int fixCount(java.awt.geom.Area area) {
+		int count = 0;
+		double[] d = new double[6];
+		for (PathIterator it = area.getPathIterator(null); !it.isDone(); it
+				.next()) {
+			if (it.currentSegment(d) == PathIterator.SEG_MOVETO) {
+				++count;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * The area of a java.awt.geom.Area with holes taken away.
+	 */
+	private static double area(java.awt.geom.Area area) {
+		double sum = 0;
+		double startX = 0;
+		double startY = 0;
+		double lastX = 0;
+		double lastY = 0;
+		double[] d = new double[6];
+		for (PathIterator it = area.getPathIterator(null, AWT_FLATNESS); !it
+				.isDone(); it.next()) {
+			switch (it.currentSegment(d)) {
+			case PathIterator.SEG_MOVETO:
+				startX = d[0];
+				startY = d[1];
+				lastX = d[0];
+				lastY = d[1];
+				break;
+			case PathIterator.SEG_LINETO:
+				sum += lastX * d[1] - d[0] * lastY;
+				lastX = d[0];
+				lastY = d[1];
+				break;
+			default:
+				sum += lastX * startY - startX * lastY;
+				lastX = startX;
+				lastY = startY;
+				break;
+			}
+		}
+		return Math.abs(sum) / 2;
+	}
+}
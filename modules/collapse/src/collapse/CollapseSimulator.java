@@ -9,9 +9,8 @@ import rescuecore2.worldmodel.EntityID;
 import rescuecore2.worldmodel.WorldModelListener;
 import rescuecore2.worldmodel.WorldModel;
 import rescuecore2.misc.geometry.Point2D;
-import rescuecore2.misc.geometry.Line2D;
-import rescuecore2.misc.geometry.Vector2D;
 import rescuecore2.misc.geometry.GeometryTools2D;
+import rescuecore2.misc.geometry.Polygon2D;
 import rescuecore2.misc.collections.LazyMap;
 import rescuecore2.log.Logger;
 import rescuecore2.GUIComponent;
@@ -22,7 +21,6 @@ import rescuecore2.standard.entities.StandardEntityURN;
 import rescuecore2.standard.entities.StandardEntityConstants;
 import rescuecore2.standard.entities.Building;
 import rescuecore2.standard.entities.Road;
-import rescuecore2.standard.entities.Edge;
 import rescuecore2.standard.entities.Blockade;
 import rescuecore2.standard.entities.StandardWorldModel;
 
@@ -32,18 +30,14 @@ import org.uncommons.maths.number.NumberGenerator;
 import org.uncommons.maths.Maths;
 
 import java.util.Map;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.EnumMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 
-import java.awt.geom.Path2D;
-import java.awt.geom.Ellipse2D;
-import java.awt.geom.PathIterator;
-
 import javax.swing.JComponent;
 
 /**
@@ -125,6 +119,7 @@ public class CollapseSimulator extends StandardSimulator implements
 	private CollapseSimulatorGUI gui;
 	private Collection<Building> buildingCache;
 	private Collection<Road> roadCache;
+	private BlockadeGeometry geometry;
 
 	public CollapseSimulator() {
 	}
@@ -155,6 +150,26 @@ public class CollapseSimulator extends StandardSimulator implements
 		return NAME;
 	}
 
+	@Override
+	protected int[] getSubscribedEntityURNs() {
+		// Collapse reads buildings and places blockades on roads
+		return new int[] { StandardEntityURN.BUILDING.getURNId(),
+				StandardEntityURN.REFUGE.getURNId(),
+				StandardEntityURN.GAS_STATION.getURNId(),
+				StandardEntityURN.FIRE_STATION.getURNId(),
+				StandardEntityURN.AMBULANCE_CENTRE.getURNId(),
+				StandardEntityURN.POLICE_OFFICE.getURNId(),
+				StandardEntityURN.ROAD.getURNId(),
+				StandardEntityURN.HYDRANT.getURNId(),
+				StandardEntityURN.BLOCKADE.getURNId() };
+	}
+
+	@Override
+	protected int[] getSubscribedCommandURNs() {
+		// Agent commands are never used
+		return new int[0];
+	}
+
 	@Override
 	protected void postConnect() {
 		super.postConnect();
@@ -184,6 +199,7 @@ public class CollapseSimulator extends StandardSimulator implements
 				config.getRandom());
 		buildingCache = new HashSet<Building>();
 		roadCache = new HashSet<Road>();
+		geometry = new BlockadeGeometry(model);
 		for (StandardEntity next : model) {
 			if (next instanceof Building) {
 				buildingCache.add((Building) next);
@@ -212,6 +228,7 @@ public class CollapseSimulator extends StandardSimulator implements
 				}
 				if (e instanceof Road) {
 					roadCache.remove((Road) e);
+					geometry.roadRemoved((Road) e);
 				}
 			}
 		});
@@ -226,7 +243,7 @@ public class CollapseSimulator extends StandardSimulator implements
 			gui.timestep(time);
 		}
 		Collection<Building> collapsed = doCollapse(changes, time);
-		Map<Road, Collection<java.awt.geom.Area>> newBlock = doBlock(collapsed,
+		Map<Road, Collection<Polygon2D>> newBlock = doBlock(collapsed,
 				time);
 		// Create blockade objects
 		Map<Road, Collection<Blockade>> blockades = createBlockadeObjects(newBlock);
@@ -285,12 +302,12 @@ public class CollapseSimulator extends StandardSimulator implements
 	static long t2;
 	static long t3;
 
-	private Map<Road, Collection<java.awt.geom.Area>> doBlock(
+	private Map<Road, Collection<Polygon2D>> doBlock(
 			Collection<Building> collapsed, int time) {
-		Map<Road, Collection<java.awt.geom.Area>> result = new LazyMap<Road, Collection<java.awt.geom.Area>>() {
+		Map<Road, Collection<Polygon2D>> result = new LazyMap<Road, Collection<Polygon2D>>() {
 			@Override
-			public Collection<java.awt.geom.Area> createValue() {
-				return new ArrayList<java.awt.geom.Area>();
+			public Collection<Polygon2D> createValue() {
+				return new ArrayList<Polygon2D>();
 			}
 		};
 		if (!block) {
@@ -427,7 +444,7 @@ public class CollapseSimulator extends StandardSimulator implements
 	}
 
 	private Map<Road, Collection<Blockade>> createBlockadeObjects(
-			Map<Road, Collection<java.awt.geom.Area>> blocks) {
+			Map<Road, Collection<Polygon2D>> blocks) {
 		Map<Road, Collection<Blockade>> result = new LazyMap<Road, Collection<Blockade>>() {
 			@Override
 			public Collection<Blockade> createValue() {
@@ -435,7 +452,7 @@ public class CollapseSimulator extends StandardSimulator implements
 			}
 		};
 		int count = 0;
-		for (Collection<java.awt.geom.Area> c : blocks.values()) {
+		for (Collection<Polygon2D> c : blocks.values()) {
 			count += c.size();
 		}
 		try {
@@ -443,10 +460,10 @@ public class CollapseSimulator extends StandardSimulator implements
 				List<EntityID> newIDs = requestNewEntityIDs(count);
 				Iterator<EntityID> it = newIDs.iterator();
 				Logger.debug("Creating new blockade objects");
-				for (Map.Entry<Road, Collection<java.awt.geom.Area>> entry : blocks
+				for (Map.Entry<Road, Collection<Polygon2D>> entry : blocks
 						.entrySet()) {
 					Road r = entry.getKey();
-					for (java.awt.geom.Area area : entry.getValue()) {
+					for (Polygon2D area : entry.getValue()) {
 						EntityID id = it.next();
 						Blockade blockade = makeBlockade(id, area, r.getID());
 						if (blockade != null) {
@@ -462,7 +479,7 @@ public class CollapseSimulator extends StandardSimulator implements
 	}
 
 	private void createBlockages(Building b,
-			Map<Road, Collection<java.awt.geom.Area>> roadBlockages, int time) {
+			Map<Road, Collection<Polygon2D>> roadBlockages, int time) {
 		long t = System.currentTimeMillis();
 		Logger.debug("Creating blockages for " + b);
 		/*
@@ -494,15 +511,7 @@ public class CollapseSimulator extends StandardSimulator implements
 				(float) (d / model().getCSBuiding(b).getTotalCollapse(
 						floorHeight)));
 		// Place some blockages on surrounding roads
-		List<java.awt.geom.Area> wallAreas = new ArrayList<java.awt.geom.Area>();
-		// Project each wall out and build a list of wall areas
-		for (Edge edge : b.getEdges()) {
-			projectWall(edge, wallAreas, d);
-		}
-		java.awt.geom.Area fullArea = new java.awt.geom.Area();
-		for (java.awt.geom.Area wallArea : wallAreas) {
-			fullArea.add(wallArea);
-		}
+		Polygon2D fullArea = geometry.expandBuilding(b, d);
 
 		/*
 		 * new ShapeDebugFrame().show("Collapsed building", new
@@ -511,7 +520,7 @@ public class CollapseSimulator extends StandardSimulator implements
 		 * "Expanded building area (d = " + d + ")", Color.BLACK, false) );
 		 */
 		// Find existing blockade areas
-		java.awt.geom.Area existing = new java.awt.geom.Area();
+		List<Polygon2D> existing = new ArrayList<Polygon2D>();
 		if (policy.equals(CollapsePolicy.MERGE_BLOCKADES)) {
 			for (StandardEntity e : model
 					.getEntitiesOfType(StandardEntityURN.BLOCKADE)) {
@@ -522,161 +531,19 @@ public class CollapseSimulator extends StandardSimulator implements
 		t2 += System.currentTimeMillis() - t;
 		// Intersect wall areas with roads
 		t = System.currentTimeMillis();
-		Map<Road, Collection<java.awt.geom.Area>> blockadesForRoads = createRoadBlockades(
+		Map<Road, Collection<Polygon2D>> blockadesForRoads = geometry.createRoadBlockades(
 				fullArea, existing);
 		t3 += System.currentTimeMillis() - t;
 		// Add to roadBlockages
-		for (Map.Entry<Road, Collection<java.awt.geom.Area>> entry : blockadesForRoads
+		for (Map.Entry<Road, Collection<Polygon2D>> entry : blockadesForRoads
 				.entrySet()) {
 			Road r = entry.getKey();
-			Collection<java.awt.geom.Area> c = entry.getValue();
+			Collection<Polygon2D> c = entry.getValue();
 			roadBlockages.get(r).addAll(c);
 		}
 	}
 
-	private void projectWall(Edge edge,
-			Collection<java.awt.geom.Area> areaList, double d) {
-		Line2D wallLine = new Line2D(edge.getStartX(), edge.getStartY(),
-				edge.getEndX() - edge.getStartX(), edge.getEndY()
-						- edge.getStartY());
-		Vector2D wallDirection = wallLine.getDirection();
-		Vector2D offset = wallDirection.getNormal().normalised().scale(-d);
-		Path2D path = new Path2D.Double();
-                
-		Point2D right = wallLine.getOrigin();
-		Point2D left = wallLine.getEndPoint();
-                
-		Point2D first = left.plus(offset.scale(-1));
-		Point2D second = right.plus(offset.scale(-1));
-		Point2D third = right.plus(offset);
-		Point2D fourth = left.plus(offset);
-                
-		path.moveTo(first.getX(), first.getY());
-		path.lineTo(second.getX(), second.getY());
-		path.lineTo(third.getX(), third.getY());
-		path.lineTo(fourth.getX(), fourth.getY());
-		path.closePath();
-                
-		java.awt.geom.Area wallArea = new java.awt.geom.Area(path);
-		areaList.add(wallArea);
-		// Also add circles at each corner
-		double radius = offset.getLength();
-		Ellipse2D ellipse1 = new Ellipse2D.Double(right.getX() - radius,
-				right.getY() - radius, radius * 2, radius * 2);
-		Ellipse2D ellipse2 = new Ellipse2D.Double(left.getX() - radius,
-				left.getY() - radius, radius * 2, radius * 2);
-		areaList.add(new java.awt.geom.Area(ellipse1));
-		areaList.add(new java.awt.geom.Area(ellipse2));
-		// Logger.info("Edge from " + wallLine + " expanded to " + first + ", "
-		// + second + ", " + third + ", " + fourth);
-		// debug.show("Collapsed building",
-		// new ShapeDebugFrame.AWTShapeInfo(buildingArea,
-		// "Original building area", Color.RED, true),
-		// new ShapeDebugFrame.Line2DShapeInfo(wallLine, "Wall edge",
-		// Color.WHITE, true, true),
-		// new ShapeDebugFrame.AWTShapeInfo(wallArea, "Wall area (d = " + d +
-		// ")", Color.GREEN, false),
-		// new ShapeDebugFrame.AWTShapeInfo(ellipse1, "Ellipse 1", Color.BLUE,
-		// false),
-		// new ShapeDebugFrame.AWTShapeInfo(ellipse2, "Ellipse 2", Color.ORANGE,
-		// false)
-		// );
-	}
-
-	private Map<Road, Collection<java.awt.geom.Area>> createRoadBlockades(
-			java.awt.geom.Area buildingArea, java.awt.geom.Area existing) {
-		Map<Road, Collection<java.awt.geom.Area>> result = new HashMap<Road, Collection<java.awt.geom.Area>>();
-		java.awt.Rectangle rectangle = buildingArea.getBounds();
-		Collection<StandardEntity> roads = model.getObjectsInRectangle(
-				(int) rectangle.getMinX(), (int) rectangle.getMinY(),
-				(int) rectangle.getMaxX(), (int) rectangle.getMaxY());
-		for (StandardEntity e : roads) {
-			if (!(e instanceof Road)) {
-				continue;
-			}
-			Road r = (Road) e;
-			java.awt.geom.Area roadArea = areaToGeomArea(r);
-			java.awt.geom.Area intersection = new java.awt.geom.Area(roadArea);
-			intersection.intersect(buildingArea);
-			intersection.subtract(existing);
-			if (intersection.isEmpty()) {
-				continue;
-			}
-			existing.add(intersection);
-			List<java.awt.geom.Area> blockadeAreas = fix(intersection);
-			result.put(r, blockadeAreas);
-			// debug.show("Road blockage",
-			// new ShapeDebugFrame.AWTShapeInfo(buildingArea, "Building area",
-			// Color.BLACK, false),
-			// new ShapeDebugFrame.AWTShapeInfo(roadArea, "Road area",
-			// Color.BLUE, false),
-			// new ShapeDebugFrame.AWTShapeInfo(intersection, "Intersection",
-			// Color.GREEN, true)
-			// );
-		}
-		return result;
-	}
-
-	private java.awt.geom.Area areaToGeomArea(
-			rescuecore2.standard.entities.Area area) {
-		Path2D result = new Path2D.Double();
-		Iterator<Edge> it = area.getEdges().iterator();
-		Edge e = it.next();
-		result.moveTo(e.getStartX(), e.getStartY());
-		result.lineTo(e.getEndX(), e.getEndY());
-		while (it.hasNext()) {
-			e = it.next();
-			result.lineTo(e.getEndX(), e.getEndY());
-		}
-		return new java.awt.geom.Area(result);
-	}
-
-	private List<java.awt.geom.Area> fix(java.awt.geom.Area area) {
-		List<java.awt.geom.Area> result = new ArrayList<java.awt.geom.Area>();
-		if (area.isSingular()) {
-			result.add(area);
-			return result;
-		}
-		PathIterator it = area.getPathIterator(null);
-		Path2D current = null;
-		// CHECKSTYLE:OFF:MagicNumber
-		double[] d = new double[6];
-		while (!it.isDone()) {
-			switch (it.currentSegment(d)) {
-			case PathIterator.SEG_MOVETO:
-				if (current != null) {
-					result.add(new java.awt.geom.Area(current));
-				}
-				current = new Path2D.Double();
-				current.moveTo(d[0], d[1]);
-				break;
-			case PathIterator.SEG_LINETO:
-				current.lineTo(d[0], d[1]);
-				break;
-			case PathIterator.SEG_QUADTO:
-				current.quadTo(d[0], d[1], d[2], d[3]);
-				break;
-			case PathIterator.SEG_CUBICTO:
-				current.curveTo(d[0], d[1], d[2], d[3], d[4], d[5]);
-				break;
-			case PathIterator.SEG_CLOSE:
-				current.closePath();
-				break;
-			default:
-				throw new RuntimeException(
-						"Unexpected result from PathIterator.currentSegment: "
-								+ it.currentSegment(d));
-			}
-			it.next();
-		}
-		// CHECKSTYLE:ON:MagicNumber
-		if (current != null) {
-			result.add(new java.awt.geom.Area(current));
-		}
-		return result;
-	}
-
-	private Blockade makeBlockade(EntityID id, java.awt.geom.Area area,
+	private Blockade makeBlockade(EntityID id, Polygon2D area,
 			EntityID roadID) {
 		if (area.isEmpty()) {
 			return null;
@@ -700,88 +567,29 @@ public class CollapseSimulator extends StandardSimulator implements
 		return result;
 	}
 
-	private int[] getApexes(java.awt.geom.Area area) {
-		// Logger.debug("getApexes");
-		List<Integer> apexes = new ArrayList<Integer>();
-		// CHECKSTYLE:OFF:MagicNumber
-		PathIterator it = area.getPathIterator(null, 100);
-		double[] d = new double[6];
-		int moveX = 0;
-		int moveY = 0;
-		int lastX = 0;
-		int lastY = 0;
-		boolean finished = false;
-		while (!finished && !it.isDone()) {
-			int x = 0;
-			int y = 0;
-			switch (it.currentSegment(d)) {
-			case PathIterator.SEG_MOVETO:
-				x = (int) d[0];
-				y = (int) d[1];
-				moveX = x;
-				moveY = y;
-				 Logger.debug("Move to " + x + ", " + y);
-				break;
-			case PathIterator.SEG_LINETO:
-				x = (int) d[0];
-				y = (int) d[1];
-				 Logger.debug("Line to " + x + ", " + y);
-				if (x == moveX && y == moveY) {
-					finished = true;
-				}
-				break;
-			case PathIterator.SEG_QUADTO:
-				x = (int) d[2];
-				y = (int) d[3];
-				// Logger.debug("Quad to " + x + ", " + y);
-				if (x == moveX && y == moveY) {
-					finished = true;
-				}
-				break;
-			case PathIterator.SEG_CUBICTO:
-				x = (int) d[4];
-				y = (int) d[5];
-				// Logger.debug("Cubic to " + x + ", " + y);
-				if (x == moveX && y == moveY) {
-					finished = true;
-				}
-				break;
-			case PathIterator.SEG_CLOSE:
-				// Logger.debug("Close");
-				finished = true;
-				break;
-			default:
-				throw new RuntimeException(
-						"Unexpected result from PathIterator.currentSegment: "
-								+ it.currentSegment(d));
-			}
-			// Logger.debug(x + ", " + y);
-			if (!finished && (x != lastX || y != lastY)) {
-				apexes.add(x);
-				apexes.add(y);
+	private int[] getApexes(Polygon2D area) {
+		// Holes are filled in: only the outer ring becomes the blockade
+		double[] ring = area.getRing(0);
+		int[] apexes = new int[ring.length];
+		int count = 0;
+		for (int i = 0; i < ring.length; i += 2) {
+			int x = (int) ring[i];
+			int y = (int) ring[i + 1];
+			if (count > 0 && x == apexes[count - 2] && y == apexes[count - 1]) {
+				continue;
 			}
-			lastX = x;
-			lastY = y;
-			it.next();
+			apexes[count++] = x;
+			apexes[count++] = y;
 		}
-		// CHECKSTYLE:ON:MagicNumber
-		int[] result = new int[apexes.size()];
-		int i = 0;
-		for (Integer next : apexes) {
-			result[i++] = next;
+		if (count > 2 && apexes[0] == apexes[count - 2]
+				&& apexes[1] == apexes[count - 1]) {
+			count -= 2;
 		}
-		return result;
+		return Arrays.copyOf(apexes, count);
 	}
 
-	private java.awt.geom.Area blockadeToArea(Blockade b) {
-		Path2D result = new Path2D.Double();
-		int[] apexes = b.getApexes();
-		result.moveTo(apexes[0], apexes[1]);
-		for (int i = 2; i < apexes.length; i += 2) {
-			result.lineTo(apexes[i], apexes[i + 1]);
-		}
-		result.closePath();
-		return new java.awt.geom.Area(result);
+	private Polygon2D blockadeToArea(Blockade b) {
+		return Polygon2D.fromApexes(b.getApexes());
 	}
 
 	private class CollapseStats {
@@ -76,6 +76,23 @@ public class IgnitionSimulator extends StandardSimulator {
 		}
 	}
 
+    @Override
+    protected int[] getSubscribedEntityURNs() {
+        // Only buildings can ignite
+        return new int[] {StandardEntityURN.BUILDING.getURNId(),
+                          StandardEntityURN.REFUGE.getURNId(),
+                          StandardEntityURN.GAS_STATION.getURNId(),
+                          StandardEntityURN.FIRE_STATION.getURNId(),
+                          StandardEntityURN.AMBULANCE_CENTRE.getURNId(),
+                          StandardEntityURN.POLICE_OFFICE.getURNId()};
+    }
+
+    @Override
+    protected int[] getSubscribedCommandURNs() {
+        // Agent commands are never used
+        return new int[0];
+    }
+
 	@Override
     public String getName() {
         return "Ignition simulator";
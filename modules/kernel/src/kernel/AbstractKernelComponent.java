@@ -1,5 +1,6 @@
 package kernel;
 
+import rescuecore2.messages.EncodedBroadcast;
 import rescuecore2.messages.Message;
 import rescuecore2.messages.control.Shutdown;
 import rescuecore2.connection.Connection;
@@ -62,4 +63,21 @@ public abstract class AbstractKernelComponent implements KernelComponent {
     protected void send(Message message) {
         send(Collections.singleton(message));
     }
+
+    /**
+       Send a message with components that have been encoded once for several components.
+       @param header The components that belong to this component.
+       @param shared The shared components.
+    */
+    protected void sendEncoded(Message header, EncodedBroadcast shared) {
+        if (!connection.isAlive()) {
+            return;
+        }
+        try {
+            connection.sendEncoded(header, shared);
+        }
+        catch (ConnectionException e) {
+            Logger.error("Error sending message", e);
+        }
+    }
 }
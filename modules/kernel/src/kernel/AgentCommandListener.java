@@ -0,0 +1,15 @@
+package kernel;
+
+import rescuecore2.messages.Command;
+
+/**
+   Interface for objects that want to be notified as soon as an agent command arrives.
+ */
+public interface AgentCommandListener {
+    /**
+       Notification that an agent has sent a command. This is called on the thread that received the command, after the command has been stored by the AgentProxy.
+       @param agent The agent that sent the command.
+       @param c The command.
+    */
+    void commandReceived(AgentProxy agent, Command c);
+}
@@ -3,6 +3,8 @@ package kernel;
 import java.util.Collection;
 import java.util.Map;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import rescuecore2.connection.Connection;
 import rescuecore2.connection.ConnectionListener;
@@ -22,6 +24,7 @@ import rescuecore2.registry.Registry;
 public class AgentProxy extends AbstractKernelComponent {
     private final Entity entity;
     private final Map<Integer, Collection<Command>> commands;
+    private final List<AgentCommandListener> commandListeners;
 
     /**
        Construct an agent.
@@ -38,6 +41,7 @@ public class AgentProxy extends AbstractKernelComponent {
                 return new ArrayList<Command>();
             }
         };
+        commandListeners = new CopyOnWriteArrayList<AgentCommandListener>();
         c.addConnectionListener(new AgentConnectionListener());
     }
 
@@ -68,6 +72,22 @@ public class AgentProxy extends AbstractKernelComponent {
         return result;
     }
 
+    /**
+       Add a listener that is notified whenever this agent sends a command.
+       @param l The listener to add.
+     */
+    public void addCommandListener(AgentCommandListener l) {
+        commandListeners.add(l);
+    }
+
+    /**
+       Remove a command listener.
+       @param l The listener to remove.
+     */
+    public void removeCommandListener(AgentCommandListener l) {
+        commandListeners.remove(l);
+    }
+
     /**
        Notify the of a perception update.
        @param time The current timestep.
@@ -96,6 +116,9 @@ public class AgentProxy extends AbstractKernelComponent {
             result.add(c);
             commands.notifyAll();
         }
+        for (AgentCommandListener next : commandListeners) {
+            next.commandReceived(this, c);
+        }
     }
 
     private class AgentConnectionListener implements ConnectionListener {
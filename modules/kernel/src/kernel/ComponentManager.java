@@ -17,7 +17,9 @@ import rescuecore2.connection.Connection;
 import rescuecore2.connection.ConnectionException;
 import rescuecore2.connection.ConnectionListener;
 import rescuecore2.connection.ConnectionManagerListener;
+import rescuecore2.messages.EncodedBroadcast;
 import rescuecore2.messages.Message;
+import rescuecore2.messages.components.SharedEntityList;
 import rescuecore2.messages.control.KSAfterShocksInfo;
 import rescuecore2.messages.control.VKConnect;
 import rescuecore2.registry.Registry;
@@ -30,12 +32,14 @@ import rescuecore2.messages.control.AKConnect;
 import rescuecore2.messages.control.AKAcknowledge;
 import rescuecore2.messages.control.KAConnectError;
 import rescuecore2.messages.control.KAConnectOK;
+import rescuecore2.messages.control.ControlMessageComponentURN;
 import rescuecore2.scenario.Scenario;
 import rescuecore2.scenario.exceptions.UncompatibleScenarioException;
 import rescuecore2.worldmodel.Entity;
 import rescuecore2.worldmodel.EntityID;
 import rescuecore2.worldmodel.WorldModel;
 import rescuecore2.GUIComponent;
+import rescuecore2.Timestep;
 import rescuecore2.log.Logger;
 
 import kernel.ui.ComponentManagerGUI;
@@ -78,6 +82,11 @@ public class ComponentManager implements ConnectionManagerListener,
 	private final Object simLock = new Object();
 	private final Object viewerLock = new Object();
 	private final Object idLock = new Object();
+	private final Object worldLock = new Object();
+
+	// The world sent to simulators and viewers, encoded once and dropped when
+	// a timestep changes the world. Guarded by worldLock.
+	private SharedEntityList sharedWorld;
 
 	private final Scenario scenario;
 
@@ -103,6 +112,14 @@ public class ComponentManager implements ConnectionManagerListener,
 		viewersToAcknowledge = new HashSet<ViewerAck>();
 		nextID = STARTING_ID;
 		gui = new ComponentManagerGUI();
+		kernel.addKernelListener(new KernelListenerAdapter() {
+			@Override
+			public void timestepCompleted(Kernel k, Timestep time) {
+				synchronized (worldLock) {
+					sharedWorld = null;
+				}
+			}
+		});
 	}
 
 	/**
@@ -136,6 +153,38 @@ public class ComponentManager implements ConnectionManagerListener,
 		updateGUIUncontrolledAgents();
 	}
 
+	/**
+	 * Register an agent-controlled entity that should be sent a shared list of
+	 * entities on startup. The shared list is encoded once and reused for every
+	 * agent registered with it.
+	 * 
+	 * @param entity
+	 *            The entity that is agent-controlled.
+	 * @param visibleOnStartup
+	 *            The entities that every agent registered with this list
+	 *            should be sent on startup. The agent will also be sent its own
+	 *            entity, which replaces any entity with the same ID in the
+	 *            shared list.
+	 * @param agentConfig
+	 *            A view of the system configuration that should be shared with
+	 *            the agent.
+	 */
+	public void registerAgentControlledEntity(Entity entity,
+			SharedEntityList visibleOnStartup, Config agentConfig) {
+		Logger.info("Agent controlled entity registered: " + entity);
+		synchronized (agentLock) {
+			Queue<ControlledEntityInfo> q = uncontrolledEntities.get(entity
+					.getURN());
+			if (q == null) {
+				q = new LinkedList<ControlledEntityInfo>();
+				uncontrolledEntities.put(entity.getURN(), q);
+			}
+			q.add(new ControlledEntityInfo(entity, visibleOnStartup,
+					agentConfig));
+		}
+		updateGUIUncontrolledAgents();
+	}
+
 	/**
 	 * Wait for all agents to connect. This method will block until all agent
 	 * entities have controllers.
@@ -262,6 +311,17 @@ public class ComponentManager implements ConnectionManagerListener,
 		}
 	}
 
+	private SharedEntityList getSharedWorld() {
+		synchronized (worldLock) {
+			if (sharedWorld == null) {
+				sharedWorld = new SharedEntityList(world.getAllEntities());
+				Logger.debug("Encoded " + sharedWorld.size()
+						+ " entities for simulators and viewers");
+			}
+			return sharedWorld;
+		}
+	}
+
 	private int getNextSimulatorID() {
 		synchronized (idLock) {
 			return nextID++;
@@ -364,6 +424,7 @@ public class ComponentManager implements ConnectionManagerListener,
 			List<Integer> types = connect.getRequestedEntityTypes();
 			// See if we can find an entity for this agent to control.
 			Message reply = null;
+			EncodedBroadcast encodedWorld = null;
 			Logger.debug("AKConnect received: " + types);
 			synchronized (agentLock) {
 				ControlledEntityInfo result = findEntityToControl(types);
@@ -382,13 +443,41 @@ public class ComponentManager implements ConnectionManagerListener,
 							+ entity.getID() + " (" + connection
 							+ " request ID " + requestID + ") connected");
 					// Send an OK
-					reply = new KAConnectOK(requestID, entity.getID(),
-							result.visibleSet, result.config);
+					if (result.sharedSet == null) {
+						reply = new KAConnectOK(requestID, entity.getID(),
+								result.visibleSet, result.config);
+					} else {
+						// The world is encoded once and sent alongside a
+						// reply that only holds this agent's components
+						SharedEntityList shared = result.sharedSet;
+						String hash = connect.getWorldHash();
+						String worldHash = null;
+						if (hash == null) {
+							// Only this agent's entity needs encoding
+							encodedWorld = shared.toEncodedBroadcast(
+									ControlMessageComponentURN.Entities, entity);
+						} else {
+							worldHash = shared.getHash();
+							if (hash.equals(worldHash)) {
+								Logger.info("Agent '" + connect.getAgentName()
+										+ "' already has the initial world");
+							} else {
+								encodedWorld = shared.toEncodedBroadcast(
+										ControlMessageComponentURN.Entities);
+							}
+						}
+						reply = new KAConnectOK(requestID, entity.getID(),
+								entity, worldHash, hash, result.config);
+					}
 				}
 			}
 			if (reply != null) {
 				try {
-					connection.sendMessage(reply);
+					if (encodedWorld == null) {
+						connection.sendMessage(reply);
+					} else {
+						connection.sendEncoded(reply, encodedWorld);
+					}
 				} catch (ConnectionException e) {
 					Logger.error("Error sending reply", e);
 				}
@@ -420,13 +509,30 @@ public class ComponentManager implements ConnectionManagerListener,
 					+ ") connected");
 			SimulatorProxy sim = new SimulatorProxy(msg.getSimulatorName(),
 					simID, connection);
+			SimulatorSubscription subscription = SimulatorSubscription
+					.fromConnect(msg);
+			if (!subscription.isAll()) {
+				Logger.info("Simulator '" + msg.getSimulatorName()
+						+ "' subscribed to " + subscription);
+			}
+			sim.setSubscription(subscription);
 			synchronized (simLock) {
 				simsToAcknowledge.add(new SimulatorAck(sim, simID, requestID,
 						connection));
 			}
 			// Send an OK
-			sim.send(Collections.singleton(new KSConnectOK(simID, requestID,
-					world.getAllEntities(), config)));
+			SharedEntityList shared = getSharedWorld();
+			String hash = msg.getWorldHash();
+			KSConnectOK reply = new KSConnectOK(simID, requestID, shared, hash,
+					config);
+			if (hash != null && hash.equals(shared.getHash())) {
+				Logger.info("Simulator '" + msg.getSimulatorName()
+						+ "' already has the initial world");
+				sim.send(Collections.singleton(reply));
+			} else {
+				sim.sendEncoded(reply, shared.toEncodedBroadcast(
+						ControlMessageComponentURN.Entities));
+			}
 			sendAdditionalInfoToSim(sim);
 			updateGUISimulatorAck();
 		}
@@ -470,8 +576,11 @@ public class ComponentManager implements ConnectionManagerListener,
 						requestID, connection));
 			}
 			// Send an OK
-			viewer.send(Collections.singleton(new KVConnectOK(viewerID,
-					requestID, world.getAllEntities(), config)));
+			SharedEntityList shared = getSharedWorld();
+			viewer.sendEncoded(
+					new KVConnectOK(viewerID, requestID, shared, config),
+					shared.toEncodedBroadcast(
+							ControlMessageComponentURN.Entities));
 			updateGUIViewerAck();
 		}
 
@@ -558,6 +667,7 @@ public class ComponentManager implements ConnectionManagerListener,
 	private static class ControlledEntityInfo {
 		Entity entity;
 		Collection<? extends Entity> visibleSet;
+		SharedEntityList sharedSet;
 		Config config;
 
 		public ControlledEntityInfo(Entity entity,
@@ -567,6 +677,13 @@ public class ComponentManager implements ConnectionManagerListener,
 			this.config = config;
 		}
 
+		public ControlledEntityInfo(Entity entity,
+				SharedEntityList sharedSet, Config config) {
+			this.entity = entity;
+			this.sharedSet = sharedSet;
+			this.config = config;
+		}
+
 		@Override
 		public String toString() {
 			return entity.toString();
@@ -3,7 +3,7 @@ package kernel;
 import rescuecore2.config.Config;
 import rescuecore2.components.ComponentLauncher;
 import rescuecore2.connection.Connection;
-import rescuecore2.connection.StreamConnection;
+import rescuecore2.connection.LocalConnection;
 import rescuecore2.connection.ConnectionException;
 import rescuecore2.misc.Pair;
 
@@ -25,7 +25,7 @@ public class InlineComponentLauncher extends ComponentLauncher {
 
     @Override
     protected Connection makeConnection() throws ConnectionException {
-        Pair<Connection, Connection> connections = StreamConnection.createConnectionPair();
+        Pair<Connection, Connection> connections = LocalConnection.createConnectionPair();
         connections.first().setRegistry(getDefaultRegistry());
         connections.first().startup();
         manager.newConnection(connections.first());
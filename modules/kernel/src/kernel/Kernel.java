@@ -6,17 +6,25 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import rescuecore2.Constants;
 import rescuecore2.Timestep;
 import rescuecore2.config.Config;
+import rescuecore2.log.AsyncLogWriter;
 import rescuecore2.log.CommandsRecord;
 import rescuecore2.log.ConfigRecord;
 import rescuecore2.log.EndLogRecord;
@@ -30,6 +38,7 @@ import rescuecore2.log.RCRSLogFactory;
 import rescuecore2.log.StartLogRecord;
 import rescuecore2.log.UpdatesRecord;
 import rescuecore2.messages.Command;
+import rescuecore2.messages.EncodedBroadcast;
 import rescuecore2.score.ScoreFunction;
 //import rescuecore2.misc.gui.ChangeSetComponent;
 import rescuecore2.worldmodel.ChangeSet;
@@ -44,6 +53,9 @@ public class Kernel {
 	/** The log context for kernel log messages. */
 	public static final String KERNEL_LOG_CONTEXT = "kernel";
 
+	private static final int DEFAULT_PERCEPTION_THREADS = 1;
+	private static final boolean DEFAULT_LOG_ASYNC = true;
+
 	private final Config config;
 	private final Perception perception;
 	private final CommunicationModel communicationModel;
@@ -65,6 +77,8 @@ public class Kernel {
 	private final ScoreFunction score;
 	private final CommandCollector commandCollector;
 
+	private final ExecutorService perceptionExecutor;
+
 	private boolean isShutdown;
 
 	// private ChangeSetComponent simulatorChanges;
@@ -122,10 +136,20 @@ public class Kernel {
 					Logger.info(
 							"Created log file: " + logFile.getAbsolutePath());
 				}
-				log = RCRSLogFactory.getLogWriter(logFile);
-				log.writeRecord(new StartLogRecord());
-				log.writeRecord(new InitialConditionsRecord(worldModel));
-				log.writeRecord(new ConfigRecord(config));
+				LogWriter writer = RCRSLogFactory.getLogWriter(logFile);
+				// The initial records refer to live objects so write them
+				// before handing the log over to a background thread
+				writer.writeRecord(new StartLogRecord());
+				writer.writeRecord(new InitialConditionsRecord(worldModel));
+				writer.writeRecord(new ConfigRecord(config));
+				if (config.getBooleanValue(KernelConstants.LOG_ASYNC_KEY,
+						DEFAULT_LOG_ASYNC)) {
+					writer = new AsyncLogWriter(writer,
+							config.getIntValue(
+									KernelConstants.LOG_QUEUE_SIZE_KEY,
+									AsyncLogWriter.DEFAULT_CAPACITY));
+				}
+				log = writer;
 			} catch (IOException e) {
 				throw new KernelException("Couldn't open log file for writing",
 						e);
@@ -148,10 +172,21 @@ public class Kernel {
 			termination.initialise(config);
 			commandCollector.initialise(config);
 
+			int perceptionThreads = config.getIntValue(
+					KernelConstants.PERCEPTION_THREADS_KEY,
+					DEFAULT_PERCEPTION_THREADS);
+			if (perceptionThreads < 1) {
+				perceptionThreads = Runtime.getRuntime().availableProcessors();
+			}
+			perceptionExecutor = perceptionThreads > 1
+					? Executors.newFixedThreadPool(perceptionThreads)
+					: null;
+
 			isShutdown = false;
 
 			Logger.info("Kernel initialised");
 			Logger.info("Perception module: " + perception);
+			Logger.info("Perception threads: " + perceptionThreads);
 			Logger.info("Communication module: " + communicationModel);
 			Logger.info("Command filter: " + commandFilter);
 			Logger.info("Score function: " + score);
@@ -389,8 +424,9 @@ public class Kernel {
 				worldModel.merge(changes);
 				long mergeTime = System.currentTimeMillis();
 				Logger.debug("Broadcasting updates");
-				sendUpdatesToSimulators(time, changes);
-				sendToViewers(nextTimestep);
+				List<EncodedBroadcast> broadcasts = new ArrayList<EncodedBroadcast>();
+				sendUpdatesToSimulators(time, changes, broadcasts);
+				sendToViewers(nextTimestep, broadcasts);
 				long broadcastTime = System.currentTimeMillis();
 				Logger.debug("Computing score");
 				double s = score.score(worldModel, nextTimestep);
@@ -410,8 +446,13 @@ public class Kernel {
 						+ (broadcastTime - mergeTime) + "ms");
 				Logger.debug("Score calculation took : "
 						+ (scoreTime - broadcastTime) + "ms");
+				logBroadcastMetrics(broadcasts);
 				Logger.debug("Total time             : " + (scoreTime - start)
 						+ "ms");
+				if (log instanceof AsyncLogWriter) {
+					Logger.debug("Log queue depth        : "
+							+ ((AsyncLogWriter) log).getQueueDepth());
+				}
 				fireTimestepCompleted(nextTimestep);
 				previousTimestep = nextTimestep;
 				Logger.debug("Commands: " + commands);
@@ -468,6 +509,9 @@ public class Kernel {
 			} catch (InterruptedException e) {
 				Logger.warn("Interrupted during shutdown");
 			}
+			if (perceptionExecutor != null) {
+				perceptionExecutor.shutdownNow();
+			}
 			try {
 				log.writeRecord(new EndLogRecord());
 				log.close();
@@ -485,11 +529,15 @@ public class Kernel {
 			throws InterruptedException, KernelException, LogException {
 		perception.setTime(time);
 		communicationModel.process(time, commandsLastTimestep);
-		for (AgentProxy next : agents) {
+		List<AgentProxy> targets = new ArrayList<AgentProxy>(agents);
+		List<ChangeSet> perceived = computePerception(targets);
+		// Log and send in agent order so the output is deterministic
+		for (int i = 0; i < targets.size(); ++i) {
 			if (Thread.interrupted()) {
 				throw new InterruptedException();
 			}
-			ChangeSet visible = perception.getVisibleEntities(next);
+			AgentProxy next = targets.get(i);
+			ChangeSet visible = perceived.get(i);
 			Collection<Command> heard = communicationModel
 					.getHearing(next.getControlledEntity());
 			EntityID id = next.getControlledEntity().getID();
@@ -499,6 +547,49 @@ public class Kernel {
 		}
 	}
 
+	/**
+	 * Work out what each agent can see. If a perception thread pool is
+	 * configured then agents are processed concurrently, otherwise they are
+	 * processed in turn on the kernel thread. The world model is not modified
+	 * while this method runs.
+	 *
+	 * @return The visible entities of each agent, in the same order as the
+	 *         targets list.
+	 */
+	private List<ChangeSet> computePerception(List<AgentProxy> targets)
+			throws InterruptedException, KernelException {
+		List<ChangeSet> result = new ArrayList<ChangeSet>(targets.size());
+		if (perceptionExecutor == null) {
+			for (AgentProxy next : targets) {
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+				result.add(perception.getVisibleEntities(next));
+			}
+			return result;
+		}
+		List<Callable<ChangeSet>> tasks = new ArrayList<Callable<ChangeSet>>(
+				targets.size());
+		for (AgentProxy next : targets) {
+			final AgentProxy proxy = next;
+			tasks.add(new Callable<ChangeSet>() {
+				@Override
+				public ChangeSet call() {
+					return perception.getVisibleEntities(proxy);
+				}
+			});
+		}
+		for (Future<ChangeSet> next : perceptionExecutor.invokeAll(tasks)) {
+			try {
+				result.add(next.get());
+			} catch (ExecutionException e) {
+				throw new KernelException("Error computing perception",
+						e.getCause());
+			}
+		}
+		return result;
+	}
+
 	private Collection<Command> waitForCommands(int timestep)
 			throws InterruptedException {
 		Collection<Command> commands = commandCollector.getAgentCommands(agents,
@@ -515,29 +606,89 @@ public class Kernel {
 	 */
 	private ChangeSet sendCommandsToSimulators(int timestep,
 			Collection<Command> commands) throws InterruptedException {
-		for (SimulatorProxy next : sims) {
+		List<SimulatorProxy> targets = new ArrayList<SimulatorProxy>(sims);
+		final BlockingQueue<SimulatorProxy> arrived = new LinkedBlockingQueue<SimulatorProxy>();
+		Map<SimulatorProxy, CompletableFuture<ChangeSet>> futures = new HashMap<SimulatorProxy, CompletableFuture<ChangeSet>>();
+		for (SimulatorProxy next : targets) {
+			final SimulatorProxy sim = next;
+			CompletableFuture<ChangeSet> future = next.getUpdatesFuture(timestep);
+			futures.put(next, future);
+			future.thenRun(new Runnable() {
+				@Override
+				public void run() {
+					arrived.add(sim);
+				}
+			});
 			next.sendAgentCommands(timestep, commands);
 		}
-		// Wait until all simulators have sent updates
-		ChangeSet result = new ChangeSet();
-		for (SimulatorProxy next : sims) {
-			Logger.debug("Fetching updates from " + next);
-			result.merge(next.getUpdates(timestep));
+		// Merge updates as each simulator finishes
+		SimulatorUpdateMerger merger = new SimulatorUpdateMerger(targets);
+		for (int i = 0; i < targets.size(); ++i) {
+			SimulatorProxy next = arrived.take();
+			Logger.debug("Merging updates from " + next);
+			merger.add(next, futures.get(next).join());
 		}
-		return result;
+		List<SimulatorUpdateMerger.Conflict> conflicts = merger.getConflicts();
+		if (!conflicts.isEmpty()) {
+			Logger.warn("Timestep " + timestep + ": " + conflicts.size()
+					+ " properties were changed by more than one simulator");
+			for (SimulatorUpdateMerger.Conflict next : conflicts) {
+				Logger.debug(next.toString());
+			}
+		}
+		return merger.getResult();
 	}
 
-	private void sendUpdatesToSimulators(int timestep, ChangeSet updates)
-			throws InterruptedException {
+	/**
+	 * Send the merged updates to all simulators. The updates are encoded once
+	 * for each different subscription and the encoded form is shared by all
+	 * simulators with that subscription.
+	 */
+	private void sendUpdatesToSimulators(int timestep, ChangeSet updates,
+			List<EncodedBroadcast> broadcasts) throws InterruptedException {
+		Map<SimulatorSubscription, EncodedBroadcast> encoded = new HashMap<SimulatorSubscription, EncodedBroadcast>();
 		for (SimulatorProxy next : sims) {
-			next.sendUpdate(timestep, updates);
+			SimulatorSubscription subscription = next.getSubscription();
+			EncodedBroadcast update = encoded.get(subscription);
+			if (update == null) {
+				update = SimulatorProxy.encodeUpdate(timestep,
+						subscription.filter(updates));
+				encoded.put(subscription, update);
+				broadcasts.add(update);
+			}
+			next.sendUpdate(timestep, update);
 		}
 	}
 
-	private void sendToViewers(Timestep timestep) {
+	private void sendToViewers(Timestep timestep,
+			List<EncodedBroadcast> broadcasts) {
+		if (viewers.isEmpty()) {
+			return;
+		}
+		EncodedBroadcast encoded = ViewerProxy.encodeTimestep(timestep);
+		broadcasts.add(encoded);
 		for (ViewerProxy next : viewers) {
-			next.sendTimestep(timestep);
+			next.sendTimestep(timestep, encoded);
+		}
+	}
+
+	/**
+	 * Log how long it took to encode this timestep's broadcasts and how big
+	 * they were. The broadcasts are serialized when they are created, so the
+	 * figures are complete even if connections have not written them yet.
+	 */
+	private void logBroadcastMetrics(List<EncodedBroadcast> broadcasts) {
+		long encodeTime = 0;
+		long bytes = 0;
+		for (EncodedBroadcast next : broadcasts) {
+			encodeTime += next.getEncodeTime();
+			bytes += next.getByteCount();
 		}
+		Logger.debug("Broadcast encoding took: "
+				+ (encodeTime / 1000000.0) + "ms");
+		Logger.debug("Broadcast size         : " + bytes + " bytes in "
+				+ broadcasts.size() + " encodings for "
+				+ (sims.size() + viewers.size()) + " recipients");
 	}
 
 	private Set<KernelListener> getListeners() {
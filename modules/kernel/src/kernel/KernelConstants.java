@@ -10,6 +10,9 @@ public final class KernelConstants {
     /** The config key for perception implementations. */
     public static final String PERCEPTION_KEY = "kernel.perception";
 
+    /** The config key for the number of threads used to compute agent perception. Values less than one mean one thread per available processor. */
+    public static final String PERCEPTION_THREADS_KEY = "kernel.perception.threads";
+
     /** The config key for communication model implementations. */
     public static final String COMMUNICATION_MODEL_KEY = "kernel.communication";
 
@@ -28,6 +31,12 @@ public final class KernelConstants {
     /** Whether to run the kernel in inline-only mode. */
     public static final String INLINE_ONLY_KEY = "kernel.inline-only";
 
+    /** The config key for writing the kernel log on a background thread. */
+    public static final String LOG_ASYNC_KEY = "kernel.log.async";
+
+    /** The config key for the maximum number of log records waiting to be written. */
+    public static final String LOG_QUEUE_SIZE_KEY = "kernel.log.queue-size";
+
     /** The config key for ignoring agent commands at the start of the simulation. */
     public static final String IGNORE_AGENT_COMMANDS_KEY = "kernel.agents.ignoreuntil";
 
@@ -0,0 +1,102 @@
+package kernel;
+
+/**
+   A histogram of response latencies in milliseconds. Bucket 0 counts latencies below 1ms, and bucket i counts latencies from 2<sup>i-1</sup>ms up to 2<sup>i</sup>ms. The last bucket also holds every larger latency. This class is thread-safe.
+ */
+public class LatencyHistogram {
+    /** The number of buckets. The last bucket starts at 2<sup>BUCKETS - 2</sup>ms. */
+    public static final int BUCKETS = 18;
+
+    private final long[] counts;
+    private long total;
+    private long sum;
+    private long max;
+
+    /**
+       Construct an empty LatencyHistogram.
+    */
+    public LatencyHistogram() {
+        counts = new long[BUCKETS];
+    }
+
+    /**
+       Record a latency.
+       @param millis The latency in milliseconds.
+    */
+    public synchronized void record(long millis) {
+        long value = Math.max(0, millis);
+        ++counts[bucket(value)];
+        ++total;
+        sum += value;
+        max = Math.max(max, value);
+    }
+
+    /**
+       Get the number of latencies recorded.
+       @return The number of latencies.
+    */
+    public synchronized long getCount() {
+        return total;
+    }
+
+    /**
+       Get the number of latencies in a bucket.
+       @param bucket The bucket index.
+       @return The number of latencies in that bucket.
+    */
+    public synchronized long getBucketCount(int bucket) {
+        return counts[bucket];
+    }
+
+    /**
+       Get the mean latency.
+       @return The mean latency in milliseconds, or zero if nothing has been recorded.
+    */
+    public synchronized double getMean() {
+        return total == 0 ? 0 : (double)sum / total;
+    }
+
+    /**
+       Get the largest latency recorded.
+       @return The largest latency in milliseconds.
+    */
+    public synchronized long getMax() {
+        return max;
+    }
+
+    /**
+       Get the upper bound of the bucket that holds a given fraction of the recorded latencies.
+       @param fraction The fraction, between 0 and 1.
+       @return An upper bound in milliseconds on that percentile, or zero if nothing has been recorded.
+    */
+    public synchronized long getPercentile(double fraction) {
+        long target = (long)Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += counts[i];
+            if (seen >= target && seen > 0) {
+                return i == BUCKETS - 1 ? max : 1L << i;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append(total);
+        result.append(" samples, mean ");
+        result.append(Math.round(getMean()));
+        result.append("ms, p90 <= ");
+        result.append(getPercentile(0.9));
+        result.append("ms, max ");
+        result.append(max);
+        result.append("ms");
+        return result.toString();
+    }
+
+    private static int bucket(long millis) {
+        int result = 64 - Long.numberOfLeadingZeros(millis);
+        return Math.min(result, BUCKETS - 1);
+    }
+}
@@ -7,6 +7,8 @@ import rescuecore2.worldmodel.ChangeSet;
 
 /**
    Implementations of this interface are responsible for determining what entities/properties each agent can see.
+   <p>
+   Thread safety: the kernel may call {@link #getVisibleEntities(AgentProxy)} concurrently from several threads (see {@link KernelConstants#PERCEPTION_THREADS_KEY}). All such calls for a timestep happen after {@link #setTime(int)} has returned and before the world model is next modified, so implementations may treat the world model as a read-only snapshot. Implementations must not modify shared state from {@link #getVisibleEntities(AgentProxy)}; any per-timestep bookkeeping or lazily built indexes should be updated in {@link #setTime(int)} instead, which is always called from the kernel thread.
  */
 public interface Perception {
     /**
@@ -17,14 +19,14 @@ public interface Perception {
     void initialise(Config config, WorldModel<? extends Entity> world);
 
     /**
-       Determine what Entities are visible to a particular agent. The returned Entities should be copies of Entities in the ground-truth WorldModel. Only visible properties should have defined values.
+       Determine what Entities are visible to a particular agent. The returned Entities should be copies of Entities in the ground-truth WorldModel. Only visible properties should have defined values. This method may be called concurrently for different agents.
        @param agent The agent that is perceiving the world.
        @return A collection of entities that the agent can perceive.
      */
     ChangeSet getVisibleEntities(AgentProxy agent);
 
     /**
-       Notify this perception object of the current time.
+       Notify this perception object of the current time. This is called from the kernel thread before any calls to {@link #getVisibleEntities(AgentProxy)} for the timestep.
        @param timestep The current timestep.
     */
     void setTime(int timestep);
@@ -3,10 +3,12 @@ package kernel;
 import rescuecore2.connection.Connection;
 import rescuecore2.connection.ConnectionListener;
 import rescuecore2.messages.Message;
+import rescuecore2.messages.EncodedBroadcast;
 import rescuecore2.messages.Command;
 import rescuecore2.messages.control.SKUpdate;
 import rescuecore2.messages.control.KSUpdate;
 import rescuecore2.messages.control.KSCommands;
+import rescuecore2.messages.control.ControlMessageComponentURN;
 import rescuecore2.messages.control.EntityIDRequest;
 import rescuecore2.messages.control.EntityIDResponse;
 import rescuecore2.worldmodel.ChangeSet;
@@ -18,14 +20,20 @@ import java.util.Map;
 import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 /**
    This class is the kernel interface to a simulator.
  */
 public class SimulatorProxy extends AbstractKernelComponent {
-    private final Map<Integer, ChangeSet> updates;
+    private final Map<Integer, CompletableFuture<ChangeSet>> updates;
+    // Updates for timesteps before this one have been discarded
+    private int firstWantedTime;
     private final int id;
     private EntityIDGenerator idGenerator;
+    private volatile SimulatorSubscription subscription;
 
     /**
        Construct a new simulator.
@@ -36,7 +44,8 @@ public class SimulatorProxy extends AbstractKernelComponent {
     public SimulatorProxy(String name, int id, Connection c) {
         super(name, c);
         this.id = id;
-        updates = new HashMap<Integer, ChangeSet>();
+        updates = new HashMap<Integer, CompletableFuture<ChangeSet>>();
+        subscription = SimulatorSubscription.ALL;
         c.addConnectionListener(new SimulatorConnectionListener());
     }
 
@@ -47,34 +56,85 @@ public class SimulatorProxy extends AbstractKernelComponent {
        @throws InterruptedException If this thread is interrupted while waiting for updates.
     */
     public ChangeSet getUpdates(int time) throws InterruptedException {
-        ChangeSet result = null;
+        try {
+            return getUpdatesFuture(time).get();
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("Updates from " + this + " failed", e.getCause());
+        }
+    }
+
+    /**
+       Get a future that completes when this simulator sends its updates for a timestep. Futures for earlier timesteps are discarded.
+       @param time The timestep to get updates for.
+       @return A future holding the updates from this simulator.
+    */
+    public CompletableFuture<ChangeSet> getUpdatesFuture(int time) {
         synchronized (updates) {
-            while (result == null) {
-                result = updates.get(time);
-                if (result == null) {
-                    updates.wait(1000);
+            for (Iterator<Integer> it = updates.keySet().iterator(); it.hasNext();) {
+                if (it.next() < time) {
+                    it.remove();
                 }
             }
+            firstWantedTime = Math.max(firstWantedTime, time);
+            return getFuture(time);
         }
-        return result;
     }
 
     /**
-       Send an update message to this simulator.
+       Send an update message to this simulator. Changes outside the simulator's subscription are left out.
        @param time The simulation time.
        @param update The updated entities.
     */
     public void sendUpdate(int time, ChangeSet update) {
-        send(new KSUpdate(id, time, update));
+        send(new KSUpdate(id, time, subscription.filter(update)));
+    }
+
+    /**
+       Encode an update once so that it can be sent to several simulators with {@link #sendUpdate(int, EncodedBroadcast)}.
+       @param time The simulation time.
+       @param update The updated entities, already filtered for the subscription of the simulators it will be sent to.
+       @return The encoded update. It has already been serialized, so its encoding metrics are complete.
+    */
+    public static EncodedBroadcast encodeUpdate(int time, ChangeSet update) {
+        EncodedBroadcast result = new EncodedBroadcast(new KSUpdate(0, time, update), ControlMessageComponentURN.Changes);
+        // Serialize now rather than on a connection's write thread so the kernel can report the cost
+        result.getBytes();
+        return result;
+    }
+
+    /**
+       Send an update message that has already been encoded. The update must have been filtered for this simulator's subscription.
+       @param time The simulation time.
+       @param update The encoded update from {@link #encodeUpdate(int, ChangeSet)}.
+    */
+    public void sendUpdate(int time, EncodedBroadcast update) {
+        sendEncoded(new KSUpdate(id, time, new ChangeSet()), update);
     }
 
     /**
-       Send a set of agent commands to this simulator.
+       Send a set of agent commands to this simulator. Commands outside the simulator's subscription are left out.
        @param time The current time.
        @param commands The agent commands to send.
     */
     public void sendAgentCommands(int time, Collection<? extends Command> commands) {
-        send(new KSCommands(id, time, commands));
+        send(new KSCommands(id, time, subscription.filter(commands)));
+    }
+
+    /**
+       Set the entity, property and command types this simulator wants to receive.
+       @param subscription The new subscription.
+    */
+    public void setSubscription(SimulatorSubscription subscription) {
+        this.subscription = subscription;
+    }
+
+    /**
+       Get the entity, property and command types this simulator wants to receive.
+       @return The subscription.
+    */
+    public SimulatorSubscription getSubscription() {
+        return subscription;
     }
 
     @Override
@@ -91,22 +151,32 @@ public class SimulatorProxy extends AbstractKernelComponent {
     }
 
     /**
-       Register an update from the simulator.
+       Register an update from the simulator. Simulators must send exactly one update per timestep. The kernel starts merging an update as soon as it arrives, so a second update for the same timestep, or an update for a timestep the kernel has moved past, cannot be applied and is rejected with an error.
        @param time The timestep of the update.
        @param changes The set of changes.
     */
     protected void updateReceived(int time, ChangeSet changes) {
         synchronized (updates) {
-            ChangeSet c = updates.get(time);
-            if (c == null) {
-                c = new ChangeSet();
-                updates.put(time, c);
+            if (time < firstWantedTime) {
+                Logger.error("Rejected update from " + this + " for timestep " + time + ": the kernel has moved on to timestep " + firstWantedTime + "; " + changes.getChangedEntities().size() + " changed entities were not applied");
+                return;
+            }
+            if (!getFuture(time).complete(changes)) {
+                Logger.error("Rejected duplicate update from " + this + " for timestep " + time + ": only one update per timestep is accepted; " + changes.getChangedEntities().size() + " changed entities were not applied");
             }
-            c.merge(changes);
-            updates.notifyAll();
         }
     }
 
+    // Must be called while holding the updates lock
+    private CompletableFuture<ChangeSet> getFuture(int time) {
+        CompletableFuture<ChangeSet> result = updates.get(time);
+        if (result == null) {
+            result = new CompletableFuture<ChangeSet>();
+            updates.put(time, result);
+        }
+        return result;
+    }
+
     private class SimulatorConnectionListener implements ConnectionListener {
         @Override
         public void messageReceived(Connection connection, Message msg) {
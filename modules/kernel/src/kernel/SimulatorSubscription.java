@@ -0,0 +1,130 @@
+package kernel;
+
+import rescuecore2.messages.Command;
+import rescuecore2.messages.control.SKConnect;
+import rescuecore2.worldmodel.ChangeSet;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.ArrayList;
+import java.util.Set;
+
+/**
+   The entity, property and command types a simulator wants to receive. A null set means the simulator wants everything of that kind.
+ */
+public class SimulatorSubscription {
+    /** A subscription to everything. */
+    public static final SimulatorSubscription ALL = new SimulatorSubscription(null, null, null);
+
+    private final Set<Integer> entityURNs;
+    private final Set<Integer> propertyURNs;
+    private final Set<Integer> commandURNs;
+
+    /**
+       Construct a subscription.
+       @param entityURNs The entity URNs to send, or null for all entities.
+       @param propertyURNs The property URNs to send, or null for all properties.
+       @param commandURNs The command URNs to send, or null for all commands.
+    */
+    public SimulatorSubscription(int[] entityURNs, int[] propertyURNs, int[] commandURNs) {
+        this.entityURNs = toSet(entityURNs);
+        this.propertyURNs = toSet(propertyURNs);
+        this.commandURNs = toSet(commandURNs);
+    }
+
+    /**
+       Read the subscription a simulator sent with its connect message.
+       @param msg The connect message.
+       @return The subscription.
+    */
+    public static SimulatorSubscription fromConnect(SKConnect msg) {
+        int[] entities = msg.getSubscribedEntityURNs();
+        int[] properties = msg.getSubscribedPropertyURNs();
+        int[] commands = msg.getSubscribedCommandURNs();
+        if (entities == null && properties == null && commands == null) {
+            return ALL;
+        }
+        return new SimulatorSubscription(entities, properties, commands);
+    }
+
+    /**
+       Find out if this subscription lets everything through.
+       @return True if nothing is filtered out.
+    */
+    public boolean isAll() {
+        return entityURNs == null && propertyURNs == null && commandURNs == null;
+    }
+
+    /**
+       Remove the changes this simulator is not interested in.
+       @param changes The changes to filter. This is not modified.
+       @return The changes the simulator wants. This may share properties with the original ChangeSet.
+    */
+    public ChangeSet filter(ChangeSet changes) {
+        return changes.filter(entityURNs, propertyURNs);
+    }
+
+    /**
+       Remove the commands this simulator is not interested in.
+       @param commands The commands to filter. This is not modified.
+       @return The commands the simulator wants.
+    */
+    public Collection<? extends Command> filter(Collection<? extends Command> commands) {
+        if (commandURNs == null) {
+            return commands;
+        }
+        if (commandURNs.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Command> result = new ArrayList<Command>();
+        for (Command next : commands) {
+            if (commandURNs.contains(next.getURN())) {
+                result.add(next);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof SimulatorSubscription)) {
+            return false;
+        }
+        SimulatorSubscription other = (SimulatorSubscription)o;
+        return Objects.equals(entityURNs, other.entityURNs) && Objects.equals(propertyURNs, other.propertyURNs) && Objects.equals(commandURNs, other.commandURNs);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(entityURNs, propertyURNs, commandURNs);
+    }
+
+    @Override
+    public String toString() {
+        return "entities: " + describe(entityURNs) + ", properties: " + describe(propertyURNs) + ", commands: " + describe(commandURNs);
+    }
+
+    private static Set<Integer> toSet(int[] urns) {
+        if (urns == null) {
+            return null;
+        }
+        Set<Integer> result = new HashSet<Integer>();
+        for (int next : urns) {
+            result.add(next);
+        }
+        return result;
+    }
+
+    private static String describe(Set<Integer> urns) {
+        if (urns == null) {
+            return "all";
+        }
+        Integer[] sorted = urns.toArray(new Integer[urns.size()]);
+        Arrays.sort(sorted);
+        return Arrays.toString(sorted);
+    }
+}
@@ -0,0 +1,154 @@
+package kernel;
+
+import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.worldmodel.EntityID;
+import rescuecore2.worldmodel.Property;
+import rescuecore2.registry.Registry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+   Merges the updates from several simulators into a single ChangeSet. Updates can be added in any order but are always merged in a fixed simulator order, so the result is the same as merging them one after another in that order. Each simulator's updates are merged as soon as every earlier simulator has been merged, which lets merging overlap with waiting for slower simulators. Every property of an entity that is changed by more than one simulator is recorded as a {@link Conflict}.
+*/
+public class SimulatorUpdateMerger {
+    private final List<SimulatorProxy> order;
+    private final Map<SimulatorProxy, ChangeSet> pending;
+    private final ChangeSet result;
+    private final Map<EntityID, Map<Integer, SimulatorProxy>> owners;
+    private final List<Conflict> conflicts;
+    private int next;
+
+    /**
+       Construct a SimulatorUpdateMerger.
+       @param order The simulators in merge order. Later simulators override earlier ones.
+    */
+    public SimulatorUpdateMerger(Collection<SimulatorProxy> order) {
+        this.order = new ArrayList<SimulatorProxy>(order);
+        pending = new HashMap<SimulatorProxy, ChangeSet>();
+        result = new ChangeSet();
+        owners = new HashMap<EntityID, Map<Integer, SimulatorProxy>>();
+        conflicts = new ArrayList<Conflict>();
+        next = 0;
+    }
+
+    /**
+       Add the updates from a simulator.
+       @param source The simulator that produced the updates.
+       @param changes The updates.
+    */
+    public void add(SimulatorProxy source, ChangeSet changes) {
+        if (!order.contains(source)) {
+            throw new IllegalArgumentException("Unknown simulator: " + source);
+        }
+        pending.put(source, changes);
+        while (next < order.size() && pending.containsKey(order.get(next))) {
+            SimulatorProxy sim = order.get(next++);
+            merge(sim, pending.remove(sim));
+        }
+    }
+
+    /**
+       Find out whether updates from every simulator have been merged.
+       @return True if the result is complete.
+    */
+    public boolean isComplete() {
+        return next == order.size();
+    }
+
+    /**
+       Get the merged updates.
+       @return The merged ChangeSet.
+       @throws IllegalStateException If some simulators have not sent updates yet.
+    */
+    public ChangeSet getResult() {
+        if (!isComplete()) {
+            throw new IllegalStateException("Waiting for updates from " + order.get(next));
+        }
+        return result;
+    }
+
+    /**
+       Get the conflicts found so far.
+       @return An unmodifiable list of conflicts in the order they were found.
+    */
+    public List<Conflict> getConflicts() {
+        return Collections.unmodifiableList(conflicts);
+    }
+
+    private void merge(SimulatorProxy source, ChangeSet changes) {
+        for (EntityID id : changes.getChangedEntities()) {
+            Map<Integer, SimulatorProxy> entityOwners = owners.get(id);
+            if (entityOwners == null) {
+                entityOwners = new HashMap<Integer, SimulatorProxy>();
+                owners.put(id, entityOwners);
+            }
+            for (Property p : changes.getChangedProperties(id)) {
+                SimulatorProxy previous = entityOwners.put(p.getURN(), source);
+                if (previous != null && previous != source) {
+                    conflicts.add(new Conflict(id, p.getURN(), previous, source));
+                }
+            }
+        }
+        result.merge(changes);
+    }
+
+    /**
+       A record of two simulators changing the same property of the same entity in one timestep.
+    */
+    public static final class Conflict {
+        private final EntityID entity;
+        private final int property;
+        private final SimulatorProxy first;
+        private final SimulatorProxy second;
+
+        private Conflict(EntityID entity, int property, SimulatorProxy first, SimulatorProxy second) {
+            this.entity = entity;
+            this.property = property;
+            this.first = first;
+            this.second = second;
+        }
+
+        /**
+           Get the ID of the entity that was changed.
+           @return The entity ID.
+        */
+        public EntityID getEntityID() {
+            return entity;
+        }
+
+        /**
+           Get the URN of the property that was changed.
+           @return The property URN.
+        */
+        public int getPropertyURN() {
+            return property;
+        }
+
+        /**
+           Get the simulator that was merged first.
+           @return The first simulator.
+        */
+        public SimulatorProxy getFirst() {
+            return first;
+        }
+
+        /**
+           Get the simulator that was merged second. Its value overrides the first.
+           @return The second simulator.
+        */
+        public SimulatorProxy getSecond() {
+            return second;
+        }
+
+        @Override
+        public String toString() {
+            return first.getName() + " and " + second.getName() + " both changed "
+                + Registry.getCurrentRegistry().toPrettyName(property) + " of entity " + entity;
+        }
+    }
+}
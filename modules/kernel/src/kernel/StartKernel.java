@@ -280,7 +280,7 @@ public final class StartKernel {
       ConnectionManager connectionManager = new ConnectionManager();
       try {
         connectionManager.listen(config.getIntValue(Constants.KERNEL_PORT_NUMBER_KEY), registry,
-            kernel.componentManager);
+            kernel.componentManager, config.getBooleanValue(Constants.CONNECTION_NIO_KEY, false));
       } catch (IOException e) {
         throw new KernelException("Couldn't open kernel port", e);
       }
@@ -1,9 +1,15 @@
 package kernel;
 
 import rescuecore2.connection.Connection;
+import rescuecore2.messages.Command;
+import rescuecore2.messages.EncodedBroadcast;
+import rescuecore2.messages.control.ControlMessageComponentURN;
 import rescuecore2.messages.control.KVTimestep;
+import rescuecore2.worldmodel.ChangeSet;
 import rescuecore2.Timestep;
 
+import java.util.Collections;
+
 /**
    This class is the kernel interface to a viewer.
  */
@@ -29,6 +35,27 @@ public class ViewerProxy extends AbstractKernelComponent {
         send(new KVTimestep(id, time.getTime(), time.getCommands(), time.getChangeSet()));
     }
 
+    /**
+       Encode a Timestep once so that it can be sent to several viewers with {@link #sendTimestep(Timestep, EncodedBroadcast)}.
+       @param time The Timestep to encode.
+       @return The encoded commands and changes. They have already been serialized, so their encoding metrics are complete.
+    */
+    public static EncodedBroadcast encodeTimestep(Timestep time) {
+        EncodedBroadcast result = new EncodedBroadcast(new KVTimestep(0, time.getTime(), time.getCommands(), time.getChangeSet()), ControlMessageComponentURN.Commands, ControlMessageComponentURN.Changes);
+        // Serialize now rather than on a connection's write thread so the kernel can report the cost
+        result.getBytes();
+        return result;
+    }
+
+    /**
+       Send a Timestep structure that has already been encoded to this viewer.
+       @param time The Timestep to send.
+       @param encoded The encoded Timestep from {@link #encodeTimestep(Timestep)}.
+    */
+    public void sendTimestep(Timestep time, EncodedBroadcast encoded) {
+        sendEncoded(new KVTimestep(id, time.getTime(), Collections.<Command>emptyList(), new ChangeSet()), encoded);
+    }
+
     @Override
     public String toString() {
         return getName() + " (" + id + "): " + getConnection().toString();
@@ -0,0 +1,136 @@
+package firesimulator.simulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+
+import firesimulator.world.AirGrid;
+
+/**
+ * Exchanges heat between neighbouring air cells. Every cell moves towards the
+ * average of its eight neighbours, with cells outside the grid counting as
+ * zero. The new temperatures are written to the grid's second buffer, so the
+ * grid can be split into bands of columns that are updated on different
+ * threads. The arithmetic is done in the same order as the original per-cell
+ * code, so the result is the same whatever the number of threads.
+ */
+class AirDiffusion {
+
+  private static final Logger LOG = Logger.getLogger( AirDiffusion.class );
+
+  private final int           threads;
+
+  private final ExecutorService executor;
+
+
+  /**
+   * Construct an AirDiffusion.
+   *
+   * @param threads
+   *          The number of threads to use. Values less than one mean one
+   *          thread per available processor.
+   */
+  AirDiffusion( int threads ) {
+    if ( threads < 1 ) {
+      threads = Runtime.getRuntime().availableProcessors();
+    }
+    this.threads = threads;
+    this.executor = threads > 1 ? Executors.newFixedThreadPool( threads ) : null;
+  }
+
+
+  /**
+   * Run one step of air to air heat exchange using the current values of the
+   * simulator coefficients.
+   *
+   * @param grid
+   *          The grid to update.
+   */
+  void step( final AirGrid grid ) {
+    int width = grid.getWidth();
+    if ( executor == null || width < 2 ) {
+      update( grid, 0, width );
+    } else {
+      int bands = Math.min( threads, width );
+      List<Callable<Object>> tasks = new ArrayList<Callable<Object>>( bands );
+      for ( int i = 0; i < bands; i++ ) {
+        final int from = (int) ((long) width * i / bands);
+        final int to = (int) ((long) width * (i + 1) / bands);
+        tasks.add( new Callable<Object>() {
+
+          @Override
+          public Object call() {
+            update( grid, from, to );
+            return null;
+          }
+        } );
+      }
+      run( tasks );
+    }
+    grid.swap();
+  }
+
+
+  /**
+   * Stop any worker threads.
+   */
+  void shutdown() {
+    if ( executor != null ) {
+      executor.shutdownNow();
+    }
+  }
+
+
+  private static void update( AirGrid grid, int fromX, int toX ) {
+    double[] in = grid.getCells();
+    double[] out = grid.getNextCells();
+    int stride = grid.getStride();
+    int height = grid.getHeight();
+    double weight = Simulator.WEIGHT_GRID;
+    double weightSum = 8 * Simulator.WEIGHT_GRID;
+    double airToAir = Simulator.AIR_TO_AIR_COEFFICIENT;
+    double timeStep = Simulator.TIME_STEP_LENGTH;
+    double energyLoss = Simulator.ENERGY_LOSS;
+    for ( int x = fromX; x < toX; x++ ) {
+      int start = grid.index( x, 0 );
+      for ( int i = start; i < start + height; i++ ) {
+        int east = i + stride;
+        int west = i - stride;
+        double total = in[east - 1] + in[east] + in[east + 1] + in[i - 1]
+            + in[i + 1] + in[west - 1] + in[west] + in[west + 1];
+        double average = total * weight / weightSum;
+        double change = (average - in[i]) * airToAir * timeStep;
+        double temp = Math.max( 0, (in[i] + change) * energyLoss * timeStep );
+        if ( !(temp > -Double.MAX_VALUE && temp < Double.MAX_VALUE) ) {
+          LOG.warn( "Value is not sensible: " + temp );
+          temp = Double.MAX_VALUE * 0.75;
+        }
+        out[i] = temp;
+      }
+    }
+  }
+
+
+  private void run( List<Callable<Object>> tasks ) {
+    try {
+      for ( Future<Object> next : executor.invokeAll( tasks ) ) {
+        next.get();
+      }
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException( "Interrupted while updating air grid",
+          e );
+    } catch ( ExecutionException e ) {
+      if ( e.getCause() instanceof RuntimeException ) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException( e.getCause() );
+    }
+  }
+}
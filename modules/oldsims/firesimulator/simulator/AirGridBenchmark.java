@@ -0,0 +1,144 @@
+package firesimulator.simulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import firesimulator.world.AirGrid;
+
+/**
+ * Timing test for the air to air heat exchange. Square grids of random
+ * temperatures are updated for a number of steps, first with a copy of the
+ * original per-cell code on a two dimensional array and then with
+ * {@link AirDiffusion}. The final temperatures must be identical.
+ */
+public final class AirGridBenchmark {
+
+  private static final int[]  DEFAULT_SIZES = { 100, 500, 1000, 2000 };
+
+  private static final int    DEFAULT_STEPS = 20;
+
+  private static final double MAX_TEMP      = 1500;
+
+
+  private AirGridBenchmark() {
+  }
+
+
+  /**
+   * Run the timing test.
+   *
+   * @param args
+   *          Command line arguments: [-t threads] [-s steps] [grid sizes...]
+   */
+  public static void main( String[] args ) {
+    int threads = Runtime.getRuntime().availableProcessors();
+    int steps = DEFAULT_STEPS;
+    List<Integer> sizes = new ArrayList<Integer>();
+    // CHECKSTYLE:OFF:ModifiedControlVariable
+    for ( int i = 0; i < args.length; ++i ) {
+      if ( "-t".equalsIgnoreCase( args[i] ) ) {
+        threads = Integer.parseInt( args[++i] );
+      } else if ( "-s".equalsIgnoreCase( args[i] ) ) {
+        steps = Integer.parseInt( args[++i] );
+      } else {
+        sizes.add( Integer.parseInt( args[i] ) );
+      }
+    }
+    // CHECKSTYLE:ON:ModifiedControlVariable
+    if ( sizes.isEmpty() ) {
+      for ( int next : DEFAULT_SIZES ) {
+        sizes.add( next );
+      }
+    }
+    AirDiffusion diffusion = new AirDiffusion( threads );
+    try {
+      for ( int size : sizes ) {
+        run( size, steps, diffusion, threads );
+      }
+    } finally {
+      diffusion.shutdown();
+    }
+  }
+
+
+  private static void run( int size, int steps, AirDiffusion diffusion,
+      int threads ) {
+    double[][] reference = randomGrid( size );
+    AirGrid grid = new AirGrid( size, size );
+    grid.setAll( reference );
+    long start = System.nanoTime();
+    for ( int i = 0; i < steps; i++ ) {
+      reference = referenceStep( reference );
+    }
+    long referenceTime = System.nanoTime() - start;
+    start = System.nanoTime();
+    for ( int i = 0; i < steps; i++ ) {
+      diffusion.step( grid );
+    }
+    long gridTime = System.nanoTime() - start;
+    // CHECKSTYLE:OFF:MagicNumber
+    System.out.println( size + "x" + size + ": original "
+        + (referenceTime / 1000000.0 / steps) + "ms per step, flat grid ("
+        + threads + " thread(s)) " + (gridTime / 1000000.0 / steps)
+        + "ms per step, identical: "
+        + Arrays.deepEquals( reference, grid.toArray() ) );
+    // CHECKSTYLE:ON:MagicNumber
+  }
+
+
+  private static double[][] randomGrid( int size ) {
+    Random random = new Random( size );
+    double[][] result = new double[size][size];
+    for ( int x = 0; x < size; x++ ) {
+      for ( int y = 0; y < size; y++ ) {
+        result[x][y] = random.nextDouble() * MAX_TEMP;
+      }
+    }
+    return result;
+  }
+
+
+  // The original Simulator.updateGrid
+  private static double[][] referenceStep( double[][] airtemp ) {
+    double[][] newairtemp = new double[airtemp.length][airtemp[0].length];
+    for ( int x = 0; x < airtemp.length; x++ ) {
+      for ( int y = 0; y < airtemp[0].length; y++ ) {
+        double average = neighbourCellAverage( airtemp, x, y )
+            / (8 * Simulator.WEIGHT_GRID);
+        double dt = (average - airtemp[x][y]);
+        double change = (dt * Simulator.AIR_TO_AIR_COEFFICIENT
+            * Simulator.TIME_STEP_LENGTH);
+        newairtemp[x][y] = Math.max( 0, (airtemp[x][y] + change)
+            * Simulator.ENERGY_LOSS * Simulator.TIME_STEP_LENGTH );
+        if ( !(newairtemp[x][y] > -Double.MAX_VALUE
+            && newairtemp[x][y] < Double.MAX_VALUE) ) {
+          newairtemp[x][y] = Double.MAX_VALUE * 0.75;
+        }
+      }
+    }
+    return newairtemp;
+  }
+
+
+  private static double neighbourCellAverage( double[][] airtemp, int x,
+      int y ) {
+    double total = getTempAt( airtemp, x + 1, y - 1 );
+    total += getTempAt( airtemp, x + 1, y );
+    total += getTempAt( airtemp, x + 1, y + 1 );
+    total += getTempAt( airtemp, x, y - 1 );
+    total += getTempAt( airtemp, x, y + 1 );
+    total += getTempAt( airtemp, x - 1, y - 1 );
+    total += getTempAt( airtemp, x - 1, y );
+    total += getTempAt( airtemp, x - 1, y + 1 );
+    return total * Simulator.WEIGHT_GRID;
+  }
+
+
+  private static double getTempAt( double[][] airtemp, int x, int y ) {
+    if ( x < 0 || y < 0 || x >= airtemp.length || y >= airtemp[0].length )
+      return 0;
+    return airtemp[x][y];
+  }
+}
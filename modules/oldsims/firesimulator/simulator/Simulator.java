@@ -7,6 +7,7 @@ import java.util.Map;
 import java.util.HashMap;
 import firesimulator.util.Configuration;
 import firesimulator.util.Rnd;
+import firesimulator.world.AirGrid;
 import firesimulator.world.Building;
 import firesimulator.world.FireBrigade;
 import firesimulator.world.World;
@@ -52,6 +53,8 @@ public class Simulator {
 
   private EnergyHistory    energyHistory;
 
+  private AirDiffusion     airDiffusion;
+
 
   public Simulator( World world ) {
     me = this;
@@ -254,65 +257,18 @@ public class Simulator {
 
   private void updateGrid() {
     LOG.debug( "Updating air grid" );
-    double[][] airtemp = world.getAirTemp();
-    double[][] newairtemp = new double[airtemp.length][airtemp[0].length];
-    for ( int x = 0; x < airtemp.length; x++ ) {
-      for ( int y = 0; y < airtemp[0].length; y++ ) {
-        double dt = (averageTemp( x, y ) - airtemp[x][y]);
-        double change = (dt * AIR_TO_AIR_COEFFICIENT * TIME_STEP_LENGTH);
-        newairtemp[x][y] = relTemp( airtemp[x][y] + change );
-        if ( !(newairtemp[x][y] > -Double.MAX_VALUE
-            && newairtemp[x][y] < Double.MAX_VALUE) ) {
-          LOG.warn( "Value is not sensible: " + newairtemp[x][y] );
-          newairtemp[x][y] = Double.MAX_VALUE * 0.75;
-        }
-        if ( newairtemp[x][y] == Double.NEGATIVE_INFINITY
-            || newairtemp[x][y] == Double.POSITIVE_INFINITY ) {
-          LOG.warn( "aha" );
-        }
-      }
-    }
-    world.setAirTemp( newairtemp );
+    airDiffusion.step( world.getAirGrid() );
     // Disable on October 21, 2018 because the wind direction and speed was not
     // correctly implemented.
     // world.setAirTemp( getWindShift().shift( world.getAirTemp(), this ) );
   }
 
 
-  private double relTemp( double deltaT ) {
-    return Math.max( 0, deltaT * ENERGY_LOSS * TIME_STEP_LENGTH );
-  }
-
-
-  private double averageTemp( int x, int y ) {
-    double rv = neighbourCellAverage( x, y ) / weightSummCells( x, y );
-    return rv;
-  }
-
-
-  private double neighbourCellAverage( int x, int y ) {
-    double total = getTempAt( x + 1, y - 1 );
-    total += getTempAt( x + 1, y );
-    total += getTempAt( x + 1, y + 1 );
-    total += getTempAt( x, y - 1 );
-    total += getTempAt( x, y + 1 );
-    total += getTempAt( x - 1, y - 1 );
-    total += getTempAt( x - 1, y );
-    total += getTempAt( x - 1, y + 1 );
-    return total * WEIGHT_GRID;
-  }
-
-
-  private float weightSummCells( int x, int y ) {
-    return 8 * WEIGHT_GRID;
-  }
-
-
   protected double getTempAt( int x, int y ) {
-    if ( x < 0 || y < 0 || x >= world.getAirTemp().length
-        || y >= world.getAirTemp()[0].length )
+    AirGrid grid = world.getAirGrid();
+    if ( x < 0 || y < 0 || x >= grid.getWidth() || y >= grid.getHeight() )
       return 0;
-    return world.getAirTemp()[x][y];
+    return grid.get( x, y );
   }
 
 
@@ -374,6 +330,10 @@ public class Simulator {
       LOG.fatal( "invalid configuration, aborting", e );
       System.exit( -1 );
     }
+    if ( airDiffusion == null ) {
+      airDiffusion = new AirDiffusion(
+          Integer.parseInt( Configuration.getValue( "resq-fire.threads" ) ) );
+    }
 
     world.initialize();
   }
@@ -384,4 +344,15 @@ public class Simulator {
     world.reset();
     informReset();
   }
+
+
+  /**
+   * Stop any worker threads.
+   */
+  public void shutdown() {
+    if ( airDiffusion != null ) {
+      airDiffusion.shutdown();
+      airDiffusion = null;
+    }
+  }
 }
\ No newline at end of file
@@ -125,6 +125,7 @@ public class Configuration {
 		Props.add(new Prop(PREFIX + "ambulance_center_inflammable","ambulancecenter_inflammable",null,null,true,null));
 		Props.add(new Prop(PREFIX + "gamma","gamma",null,null,true,null));
 		Props.add(new Prop(PREFIX + "rays.dir","rays",null,null,true,"rays"));
+		Props.add(new Prop(PREFIX + "threads","threads",null,null,true,"1"));
 		Props.add(new Prop(PREFIX + "burn-rate-average","burn-rate-average",null,null,true,"0.2"));
 		Props.add(new Prop(PREFIX + "burn-rate-variance","burn-rate-variance",null,null,true,"0"));
 	}
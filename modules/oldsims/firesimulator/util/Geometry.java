@@ -4,6 +4,7 @@ import java.awt.Point;
 import java.awt.Polygon;
 import java.awt.Rectangle;
 import java.awt.geom.Point2D;
+import java.util.Random;
 
 import firesimulator.world.StationaryObject;
 
@@ -82,15 +83,26 @@ public class Geometry {
      * @param b The other point defineing the line
      * @return A point between a and b
      */
-	public static Point getRndPoint(Point a, Point b){		
+	public static Point getRndPoint(Point a, Point b){
+		return getRndPoint(a,b,Rnd.getRandom());
+	}
+
+    /**
+     * Returns a random point on a line
+     * @param a One point defineing the line
+     * @param b The other point defineing the line
+     * @param random The random number generator to use
+     * @return A point between a and b
+     */
+	public static Point getRndPoint(Point a, Point b, Random random){
 		float[] mb=Geometry.getAffineFunction((float)a.x,(float)a.y,(float)b.x,(float)b.y);		
 		float dx=(Math.max((float)a.x,(float)b.x)-Math.min((float)a.x,(float)b.x));
-		dx*=Rnd.get01();
+		dx*=random.nextDouble();
 		dx+=Math.min((float)a.x,(float)b.x);		
 		if(mb==null){
             //vertical line
             int p = Math.max(a.y,b.y)-Math.min(a.y,b.y);
-            p = (int) (p*Rnd.get01());
+            p = (int) (p*random.nextDouble());
             p = p + Math.min(a.y,b.y);
             return new Point(a.x,p);
         }
@@ -102,8 +114,12 @@ public class Geometry {
 		return rtv;
 	}
 	
-	public static Point getRndPoint(Point a, double length){		
-		double angel=Rnd.get01()*2d*Math.PI;
+	public static Point getRndPoint(Point a, double length){
+		return getRndPoint(a,length,Rnd.getRandom());
+	}
+
+	public static Point getRndPoint(Point a, double length, Random random){
+		double angel=random.nextDouble()*2d*Math.PI;
 		double x=Math.sin(angel)*length;
 		double y=Math.cos(angel)*length;		
 		return new Point((int)x+a.x,(int)y+a.y);
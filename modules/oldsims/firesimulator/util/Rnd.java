@@ -20,10 +20,15 @@ public class Rnd {
 
 
   public static double get01() {
+    return getRandom().nextDouble();
+  }
+
+
+  public static Random getRandom() {
     if ( rnd == null ) {
       rnd = new Random();
     }
-    return rnd.nextDouble();
+    return rnd;
   }
 
 }
\ No newline at end of file
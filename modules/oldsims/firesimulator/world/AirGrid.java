@@ -0,0 +1,160 @@
+package firesimulator.world;
+
+import java.util.Arrays;
+
+/**
+ * The air temperature grid. Cells are stored column by column in a flat array
+ * with a border of cells that are always zero, so the eight neighbours of any
+ * cell can be read without bounds checks. A second array of the same shape
+ * receives the next step's temperatures; {@link #swap()} makes it current.
+ * Both arrays are reused for the lifetime of the grid.
+ */
+public class AirGrid {
+
+  private final int width;
+  private final int height;
+  private final int stride;
+  private double[] current;
+  private double[] next;
+
+  /**
+   * Construct an AirGrid with every cell at zero.
+   *
+   * @param width  The number of cells in the X direction.
+   * @param height The number of cells in the Y direction.
+   */
+  public AirGrid(int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.stride = height + 2;
+    current = new double[(width + 2) * stride];
+    next = new double[current.length];
+  }
+
+  /**
+   * Get the number of cells in the X direction.
+   *
+   * @return The width of the grid.
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Get the number of cells in the Y direction.
+   *
+   * @return The height of the grid.
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Get the distance in the cell arrays between a cell and the cell with the
+   * next X coordinate.
+   *
+   * @return The stride of the cell arrays.
+   */
+  public int getStride() {
+    return stride;
+  }
+
+  /**
+   * Get the position of a cell in the cell arrays.
+   *
+   * @param x The X coordinate of the cell.
+   * @param y The Y coordinate of the cell.
+   * @return The index of the cell.
+   */
+  public int index(int x, int y) {
+    return (x + 1) * stride + y + 1;
+  }
+
+  /**
+   * Get the temperature of a cell.
+   *
+   * @param x The X coordinate of the cell.
+   * @param y The Y coordinate of the cell.
+   * @return The temperature.
+   */
+  public double get(int x, int y) {
+    return current[index(x, y)];
+  }
+
+  /**
+   * Set the temperature of a cell.
+   *
+   * @param x    The X coordinate of the cell.
+   * @param y    The Y coordinate of the cell.
+   * @param temp The new temperature.
+   */
+  public void set(int x, int y, double temp) {
+    current[index(x, y)] = temp;
+  }
+
+  /**
+   * Get the current temperatures, laid out as described by {@link #index(int, int)}.
+   * The border cells must not be changed.
+   *
+   * @return The current cell array.
+   */
+  public double[] getCells() {
+    return current;
+  }
+
+  /**
+   * Get the array that the next step's temperatures should be written to. Only
+   * the inner cells need to be written.
+   *
+   * @return The next cell array.
+   */
+  public double[] getNextCells() {
+    return next;
+  }
+
+  /**
+   * Make the next step's temperatures current.
+   */
+  public void swap() {
+    double[] temp = current;
+    current = next;
+    next = temp;
+  }
+
+  /**
+   * Set every cell to zero.
+   */
+  public void clear() {
+    Arrays.fill(current, 0);
+    Arrays.fill(next, 0);
+  }
+
+  /**
+   * Copy the current temperatures into a new two dimensional array indexed by
+   * [x][y].
+   *
+   * @return A copy of the grid.
+   */
+  public double[][] toArray() {
+    double[][] result = new double[width][];
+    for (int x = 0; x < width; x++) {
+      result[x] = Arrays.copyOfRange(current, index(x, 0), index(x, 0) + height);
+    }
+    return result;
+  }
+
+  /**
+   * Set the current temperatures from a two dimensional array indexed by
+   * [x][y] with the same size as this grid.
+   *
+   * @param temps The new temperatures.
+   */
+  public void setAll(double[][] temps) {
+    if (temps.length != width || (width > 0 && temps[0].length != height)) {
+      throw new IllegalArgumentException("Expected a " + width + " x " + height + " grid");
+    }
+    for (int x = 0; x < width; x++) {
+      System.arraycopy(temps[x], 0, current, index(x, 0), height);
+    }
+  }
+}
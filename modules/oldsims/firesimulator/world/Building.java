@@ -1,11 +1,14 @@
 package firesimulator.world;
 
 import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Random;
 
 import org.apache.log4j.Logger;
 import org.uncommons.maths.number.NumberGenerator;
@@ -14,6 +17,8 @@ import org.uncommons.maths.random.GaussianGenerator;
 import firesimulator.simulator.Simulator;
 import firesimulator.util.Configuration;
 import firesimulator.util.Geometry;
+import firesimulator.util.Rnd;
+import rescuecore2.misc.geometry.spatialindex.SegmentGrid;
 
 /**
  * @author tn
@@ -55,6 +60,7 @@ public class Building extends StationaryObject {
   public float capacity;
   private double energy;
   static final int FLOOR_HEIGHT = 3;
+  private static final int CELL_BUFFER_SIZE = 48;
   public float cooling = 0;
   public Collection walls;
   public Hashtable connectedBuildings;
@@ -193,13 +199,27 @@ public class Building extends StationaryObject {
   }
 
   public void initWallValues(World world) {
+    initWallValues(world, Rnd.getRandom(), world.getWallIndex().newQuery());
+  }
+
+  /**
+   * Sample the rays emitted by this building's walls. Only this building's own
+   * state is changed, so different buildings can be sampled at the same time
+   * as long as each thread has its own random number generator and query.
+   *
+   * @param world  The world.
+   * @param random The source of random rays.
+   * @param query  A query on {@link World#getWallIndex()} owned by the calling
+   *               thread.
+   */
+  public void initWallValues(World world, Random random, SegmentGrid.Query query) {
     int totalHits = 0;
     int totalRays = 0;
     int selfHits = 0;
     int strange = 0;
     for (Iterator w = walls.iterator(); w.hasNext();) {
       Wall wall = (Wall) w.next();
-      wall.findHits(world);
+      wall.findHits(world, random, query);
       totalHits += wall.hits;
       selfHits += wall.selfHits;
       totalRays += wall.rays;
@@ -338,35 +358,69 @@ public class Building extends StationaryObject {
   }
 
   public void findCells(World w) {
-    LinkedList tmp = new LinkedList();
-    for (int x = 0; x < w.getAirTemp().length; x++)
-      for (int y = 0; y < w.getAirTemp()[0].length; y++) {
-        int xv = x * w.SAMPLE_SIZE + w.getMinX();
-        int yv = y * w.SAMPLE_SIZE + w.getMinY();
-        if (Geometry.boundingTest(polygon, xv, yv, w.SAMPLE_SIZE, w.SAMPLE_SIZE)) {
-          int pc = Geometry.percent((float) xv, (float) yv, (float) w.SAMPLE_SIZE, (float) w.SAMPLE_SIZE, polygon);
+    setCells(w, computeCells(w));
+  }
+
+  /**
+   * Work out which air cells this building covers. Only cells that overlap the
+   * bounding box of the building are tested. Nothing is changed, so this can
+   * run for several buildings at once.
+   *
+   * @param w The world.
+   * @return One row of {x, y, percentage covered} for each covered cell.
+   */
+  public int[][] computeCells(World w) {
+    int size = w.SAMPLE_SIZE;
+    AirGrid grid = w.getAirGrid();
+    Rectangle bounds = polygon.getBounds();
+    // One extra cell on each side in case the bounding box lies on a cell boundary
+    int x1 = Math.max(0, (bounds.x - w.getMinX()) / size - 1);
+    int y1 = Math.max(0, (bounds.y - w.getMinY()) / size - 1);
+    int x2 = Math.min(grid.getWidth() - 1, (bounds.x + bounds.width - w.getMinX()) / size + 1);
+    int y2 = Math.min(grid.getHeight() - 1, (bounds.y + bounds.height - w.getMinY()) / size + 1);
+    int[] found = new int[CELL_BUFFER_SIZE];
+    int count = 0;
+    for (int x = x1; x <= x2; x++)
+      for (int y = y1; y <= y2; y++) {
+        int xv = x * size + w.getMinX();
+        int yv = y * size + w.getMinY();
+        if (polygon.intersects(xv, yv, size, size)) {
+          int pc = Geometry.percent((float) xv, (float) yv, (float) size, (float) size, polygon);
           if (pc > 0) {
-            tmp.add(Integer.valueOf(x));
-            tmp.add(Integer.valueOf(y));
-            tmp.add(Integer.valueOf(pc));
-            Object[] o = new Object[] { this, Float.valueOf(pc) };
-            w.gridToBuilding[x][y].add(o);
+            if (count + 3 > found.length) {
+              found = Arrays.copyOf(found, found.length * 2);
+            }
+            found[count++] = x;
+            found[count++] = y;
+            found[count++] = pc;
           }
         }
       }
-    if (tmp.size() > 0) {
-      cells = new int[tmp.size() / 3][3];
-      Iterator i = tmp.iterator();
+    int[][] result = new int[count / 3][];
+    for (int c = 0; c < result.length; c++) {
+      result[c] = Arrays.copyOfRange(found, c * 3, c * 3 + 3);
+    }
+    return result;
+  }
+
+  /**
+   * Record the air cells found by {@link #computeCells(World)}.
+   *
+   * @param w     The world.
+   * @param found The covered cells.
+   */
+  public void setCells(World w, int[][] found) {
+    if (found.length > 0) {
+      cells = found;
       for (int c = 0; c < cells.length; c++) {
-        cells[c][0] = ((Integer) i.next()).intValue();
-        cells[c][1] = ((Integer) i.next()).intValue();
-        cells[c][2] = ((Integer) i.next()).intValue();
+        Object[] o = new Object[] { this, Float.valueOf(cells[c][2]) };
+        w.gridToBuilding[cells[c][0]][cells[c][1]].add(o);
       }
     } else {
       LOG.warn(getID() + " has no cell");
       LOG.warn("Sample size: " + w.SAMPLE_SIZE);
       LOG.warn("World min X, Y: " + w.getMinX() + ", " + w.getMinY());
-      LOG.warn("Air grid size: " + w.getAirTemp().length + " x " + w.getAirTemp()[0].length);
+      LOG.warn("Air grid size: " + w.getAirGrid().getWidth() + " x " + w.getAirGrid().getHeight());
       LOG.warn("Building polygon: ");
       for (int i = 0; i < apexes.length; i += 2) {
         LOG.warn(apexes[i] + ", " + apexes[i + 1]);
@@ -374,8 +428,8 @@ public class Building extends StationaryObject {
       int expectedCellX = (apexes[0] - w.getMinX()) / w.SAMPLE_SIZE;
       int expectedCellY = (apexes[1] - w.getMinY()) / w.SAMPLE_SIZE;
       LOG.warn("Building should be in cell " + expectedCellX + ", " + expectedCellY);
-      for (int x = 0; x < w.getAirTemp().length; x++) {
-        for (int y = 0; y < w.getAirTemp()[0].length; y++) {
+      for (int x = 0; x < w.getAirGrid().getWidth(); x++) {
+        for (int y = 0; y < w.getAirGrid().getHeight(); y++) {
           int xv = x * w.SAMPLE_SIZE + w.getMinX();
           int yv = y * w.SAMPLE_SIZE + w.getMinY();
           if (Geometry.boundingTest(polygon, xv, yv, w.SAMPLE_SIZE, w.SAMPLE_SIZE)) {
@@ -1,10 +1,15 @@
 package firesimulator.world;
 
 import java.awt.Point;
-import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
 
 import org.apache.log4j.Logger;
 
+import firesimulator.util.Geometry;
+import firesimulator.util.Rnd;
+import rescuecore2.misc.geometry.spatialindex.SegmentGrid;
+
 /**
  * @author tn
  *
@@ -24,6 +29,8 @@ public class Wall {
   public int strange;
   public static float RAY_RATE = 0.01f;
   public double length;
+  /** Position of this wall in {@link World#getWallList()}. */
+  public int index;
   Point a;
   Point b;
 
@@ -45,28 +52,45 @@ public class Wall {
   }
 
   public void findHits(World world) {
+    findHits(world, Rnd.getRandom(), world.getWallIndex().newQuery());
+  }
+
+  /**
+   * Cast this wall's rays and count the walls of other buildings they hit
+   * first.
+   *
+   * @param world  The world.
+   * @param random The source of random ray origins and directions.
+   * @param query  A query on {@link World#getWallIndex()} owned by the calling
+   *               thread.
+   */
+  public void findHits(World world, Random random, SegmentGrid.Query query) {
+    List<Wall> all = world.getWallList();
     selfHits = 0;
     strange = 0;
     for (int emitted = 0; emitted < rays; emitted++) {
       // creating ray
-      Point start = firesimulator.util.Geometry.getRndPoint(a, b);
+      Point start = Geometry.getRndPoint(a, b, random);
       if (start == null) {
         strange++;
         LOG.debug("strange -> " + a.x + "," + a.y + "/" + b.x + "," + b.y);
         continue;
       }
-      Point end = firesimulator.util.Geometry.getRndPoint(start, MAX_SAMPLE_DISTANCE);
-      // intersect
+      Point end = Geometry.getRndPoint(start, MAX_SAMPLE_DISTANCE, random);
+      // intersect with the walls near the ray
+      query.cast(start.x, start.y, end.x, end.y);
       Wall closest = null;
       double minDist = Double.MAX_VALUE;
-      for (Iterator it = world.allWalls.iterator(); it.hasNext();) {
-        Wall other = (Wall) it.next();
+      for (int i = 0; i < query.size(); i++) {
+        Wall other = all.get(query.get(i));
         if (other == this)
           continue;
-        Point cross = firesimulator.util.Geometry.intersect(start, end, other.a, other.b);
+        Point cross = Geometry.intersect(start, end, other.a, other.b);
         if (cross != null) {
-          if (cross.distance(start) < minDist) {
-            minDist = cross.distance(start);
+          double dist = cross.distance(start);
+          // Candidates are not in list order, so break ties the way a scan of the whole list would
+          if (dist < minDist || (dist == minDist && other.index < closest.index)) {
+            minDist = dist;
             closest = other;
           }
         }
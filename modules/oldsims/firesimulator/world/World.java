@@ -1,20 +1,40 @@
 package firesimulator.world;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
 
 import firesimulator.util.Configuration;
+import rescuecore2.misc.geometry.Line2D;
+import rescuecore2.misc.geometry.spatialindex.SegmentGrid;
 
 /**
  * @author tn
@@ -22,6 +42,10 @@ import firesimulator.util.Configuration;
  */
 public class World implements WorldConstants {
   private static final Logger LOG = Logger.getLogger(World.class);
+  private static final int RAYS_MAGIC = 0x52415953;
+  private static final int RAYS_VERSION = 1;
+  private static final int RAYS_HEADER_SIZE = 16;
+  private static final double WALL_INDEX_CELL_SIZE = 20000;
 
   private Hashtable pool;
   private Collection extinguishRequests;
@@ -33,7 +57,7 @@ public class World implements WorldConstants {
   private int maxY;
   private int minX;
   private int minY;
-  private double[][] airTemp;
+  private AirGrid airGrid;
   public ArrayList[][] gridToBuilding;
   public int SAMPLE_SIZE = 5000;
   public float AIR_CAPACITY = 0.2f;
@@ -42,6 +66,8 @@ public class World implements WorldConstants {
   public float maxDist;
   private boolean isInitialized;
   public Collection allWalls;
+  private List<Wall> wallList;
+  private SegmentGrid wallIndex;
   private Long hashValue;
   private static World me;
 
@@ -138,6 +164,8 @@ public class World implements WorldConstants {
     LOG.info("World initialising");
     loadVars();
     allWalls.clear();
+    wallList = null;
+    wallIndex = null;
     clearExtinguishRequests();
     initializeBuildings();
     // initializeRoads();
@@ -169,79 +197,226 @@ public class World implements WorldConstants {
 
   private void initRayValues() {
     long hash = hash();
-    boolean loaded = false;
-    String fname = Configuration.getValue("resq-fire.rays.dir") + "/" + hash + ".rays";
+    File f = new File(Configuration.getValue("resq-fire.rays.dir"), hash + ".rays");
     try {
-      File f = new File(fname);
-      BufferedReader br = new BufferedReader(new FileReader(f));
-      float rayDens = Float.parseFloat(br.readLine());
-      String nl;
-      while (null != (nl = br.readLine())) {
-        int x = Integer.parseInt(nl);
-        int y = Integer.parseInt(br.readLine());
-        int quantity = Integer.parseInt(br.readLine());
+      loadRays(f);
+      LOG.info("loaded radiation sample file \"" + f + "\"");
+      return;
+    } catch (IOException e) {
+      LOG.warn("unable to load radiation sample file \"" + f + "\", sampling: " + e.getMessage());
+    }
+    sampleRays();
+    try {
+      saveRays(f);
+      LOG.info("wrote radiation sample file \"" + f + "\"");
+    } catch (IOException e) {
+      LOG.error("error while writting radiation sample file \"" + f + "\"", e);
+    }
+  }
+
+  /**
+   * Get every wall in the world in a fixed order.
+   *
+   * @return The walls.
+   */
+  public List<Wall> getWallList() {
+    if (wallList == null) {
+      indexWalls();
+    }
+    return wallList;
+  }
+
+  /**
+   * Get a spatial index over {@link #getWallList()} for casting rays.
+   *
+   * @return The wall index.
+   */
+  public SegmentGrid getWallIndex() {
+    if (wallIndex == null) {
+      indexWalls();
+    }
+    return wallIndex;
+  }
+
+  private void indexWalls() {
+    List<Wall> list = new ArrayList<Wall>(allWalls.size());
+    List<Line2D> lines = new ArrayList<Line2D>(allWalls.size());
+    for (Iterator it = allWalls.iterator(); it.hasNext();) {
+      Wall w = (Wall) it.next();
+      w.index = list.size();
+      list.add(w);
+      lines.add(new Line2D(w.x1, w.y1, w.x2 - w.x1, w.y2 - w.y1));
+    }
+    wallIndex = new SegmentGrid(lines, WALL_INDEX_CELL_SIZE);
+    wallList = list;
+  }
+
+  private void sampleRays() {
+    final List<Building> sorted = getSortedBuildings();
+    final List<Wall> walls = getWallList();
+    final SegmentGrid index = getWallIndex();
+    final long seed = Long.parseLong(Configuration.getValue("random.seed"));
+    final AtomicInteger next = new AtomicInteger();
+    final AtomicInteger done = new AtomicInteger();
+    final long t1 = System.currentTimeMillis();
+    int threads = getThreads(sorted.size());
+    LOG.info("sampling " + walls.size() + " walls of " + sorted.size() + " buildings with " + threads + " thread(s)");
+    // Each building has its own random stream, so the result does not depend on the order buildings are sampled in
+    Runnable task = new Runnable() {
+      @Override
+      public void run() {
+        SegmentGrid.Query query = index.newQuery();
+        for (int i = next.getAndIncrement(); i < sorted.size(); i = next.getAndIncrement()) {
+          Building b = sorted.get(i);
+          b.initWallValues(World.this, new Random(raySeed(seed, b.getID())), query);
+          int n = done.incrementAndGet();
+          long dt = System.currentTimeMillis() - t1;
+          dt = dt / n;
+          dt = dt * (sorted.size() - n);
+          long sec = dt / (1000);
+          long min = (sec / 60) % 60;
+          long hour = sec / (60 * 60);
+          sec = sec % 60;
+          LOG.info("building " + b.getID() + " (" + n + " of " + sorted.size() + ") time left: ca. " + hour + ":" + min
+              + ":" + sec);
+        }
+      }
+    };
+    runOnThreads(task, threads);
+  }
+
+  private int getThreads(int jobs) {
+    int threads = Integer.parseInt(Configuration.getValue("resq-fire.threads"));
+    if (threads < 1) {
+      threads = Runtime.getRuntime().availableProcessors();
+    }
+    return Math.max(1, Math.min(threads, jobs));
+  }
+
+  // Run the same task on several threads and wait for all of them to finish
+  private static void runOnThreads(Runnable task, int threads) {
+    if (threads == 1) {
+      task.run();
+      return;
+    }
+    List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(threads);
+    for (int t = 0; t < threads; t++) {
+      tasks.add(Executors.callable(task));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      for (Future<Object> f : executor.invokeAll(tasks)) {
+        f.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while initialising the world", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static long raySeed(long seed, int id) {
+    // Mix the building ID into the seed so that neighbouring IDs get unrelated streams
+    long z = seed + id * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  /*
+   * Sample file layout, big-endian so the file can be read through a mapped
+   * buffer:
+   *   int magic, int version, float ray rate, int building count
+   *   then for each building:
+   *   int building ID, int connection count, (int building ID, float weight)*
+   */
+  private void loadRays(File f) throws IOException {
+    Map<Building, Building[]> connected = new HashMap<Building, Building[]>();
+    Map<Building, float[]> values = new HashMap<Building, float[]>();
+    try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+      MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (in.remaining() < RAYS_HEADER_SIZE || in.getInt() != RAYS_MAGIC || in.getInt() != RAYS_VERSION) {
+        throw new IOException("not a radiation sample file");
+      }
+      float rayRate = in.getFloat();
+      if (rayRate != Wall.RAY_RATE) {
+        throw new IOException("sampled with ray rate " + rayRate + " instead of " + Wall.RAY_RATE);
+      }
+      int count = in.getInt();
+      for (int i = 0; i < count; i++) {
+        Building b = getBuildingForRays(in.getInt());
+        int quantity = in.getInt();
         Building[] bl = new Building[quantity];
         float[] wght = new float[quantity];
         for (int c = 0; c < quantity; c++) {
-          int ox = Integer.parseInt(br.readLine());
-          int oy = Integer.parseInt(br.readLine());
-          bl[c] = (Building) getBuilding(ox, oy);
-          wght[c] = Float.parseFloat(br.readLine());
+          bl[c] = getBuildingForRays(in.getInt());
+          wght[c] = in.getFloat();
         }
-        Building b = getBuilding(x, y);
-        b.connectedBuilding = bl;
-        b.connectedValues = wght;
-      }
-      loaded = true;
-      LOG.info("loaded radiation sample file \"" + fname + "\"");
-    } catch (Exception e) {
-      LOG.warn("unable to load radiation sample file \"" + fname + "\", sampling:");
-      int n = 0;
-      long t1 = System.currentTimeMillis();
-      for (Building b : buildings) {
-        LOG.info("building " + b.getID() + " (" + (n++) + " of " + buildings.size() + ") ");
-        b.initWallValues(this);
-        long dt = System.currentTimeMillis() - t1;
-        dt = dt / n;
-        dt = dt * (buildings.size() - n);
-        long sec = dt / (1000);
-        long min = (sec / 60) % 60;
-        long hour = sec / (60 * 60);
-        sec = sec % 60;
-        LOG.info(" time left: ca. " + hour + ":" + min + ":" + sec);
+        connected.put(b, bl);
+        values.put(b, wght);
       }
+    } catch (BufferUnderflowException e) {
+      throw new IOException("truncated radiation sample file", e);
+    }
+    if (connected.size() != buildings.size()) {
+      throw new IOException("sampled " + connected.size() + " buildings instead of " + buildings.size());
+    }
+    for (Building b : buildings) {
+      b.connectedBuilding = connected.get(b);
+      b.connectedValues = values.get(b);
     }
+  }
+
+  private void saveRays(File f) throws IOException {
+    File dir = f.getAbsoluteFile().getParentFile();
+    Files.createDirectories(dir.toPath());
+    // Write to a temporary file first so a partial file is never loaded
+    File temp = File.createTempFile(f.getName(), ".tmp", dir);
     try {
-      if (!loaded) {
-        File f = new File(fname);
-        f.createNewFile();
-        BufferedWriter bw = new BufferedWriter(new FileWriter(f));
-        bw.write(Wall.RAY_RATE + "\n");
-        for (Building b : buildings) {
-          bw.write(b.getX() + "\n");
-          bw.write(b.getY() + "\n");
-          bw.write(b.connectedBuilding.length + "\n");
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+        List<Building> sorted = getSortedBuildings();
+        out.writeInt(RAYS_MAGIC);
+        out.writeInt(RAYS_VERSION);
+        out.writeFloat(Wall.RAY_RATE);
+        out.writeInt(sorted.size());
+        for (Building b : sorted) {
+          out.writeInt(b.getID());
+          out.writeInt(b.connectedBuilding.length);
           for (int c = 0; c < b.connectedBuilding.length; c++) {
-            bw.write(b.connectedBuilding[c].getX() + "\n");
-            bw.write(b.connectedBuilding[c].getY() + "\n");
-            bw.write(b.connectedValues[c] + "\n");
+            out.writeInt(b.connectedBuilding[c].getID());
+            out.writeFloat(b.connectedValues[c]);
           }
         }
-        bw.close();
-        LOG.info("wrote radiation sample file \"" + fname + "\"");
       }
-    } catch (Exception e) {
-      LOG.error("error while writting radiation sample file \"" + fname + "\"", e);
+      Files.move(temp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp.toPath());
     }
   }
 
-  private Building getBuilding(int x, int y) {
-    for (Building b : buildings) {
-      if (b.isBuilding(x, y))
-        return b;
+  private Building getBuildingForRays(int id) throws IOException {
+    RescueObject o = getObject(id);
+    if (!(o instanceof Building)) {
+      throw new IOException("unknown building " + id);
     }
-    LOG.error("parser error");
-    throw new NullPointerException();
+    return (Building) o;
+  }
+
+  private List<Building> getSortedBuildings() {
+    List<Building> result = new ArrayList<Building>(buildings);
+    Collections.sort(result, new Comparator<Building>() {
+      @Override
+      public int compare(Building b1, Building b2) {
+        return Integer.compare(b1.getID(), b2.getID());
+      }
+    });
+    return result;
   }
 
   public float getMaxDistance() {
@@ -254,35 +429,53 @@ public class World implements WorldConstants {
     int xSamples = 1 + (maxX - minX) / SAMPLE_SIZE;
     int ySamples = 1 + (maxY - minY) / SAMPLE_SIZE;
     LOG.info("grid cell size=" + SAMPLE_SIZE + "mm, x*y=" + xSamples + "*" + ySamples + " = " + (xSamples * ySamples));
-    airTemp = new double[xSamples][ySamples];
-    for (int x = 0; x < airTemp.length; x++)
-      for (int y = 0; y < airTemp[x].length; y++)
-        airTemp[x][y] = 0;
+    airGrid = new AirGrid(xSamples, ySamples);
     CAPACITY = (int) (SAMPLE_SIZE * SAMPLE_SIZE * AIR_HEIGHT * AIR_CAPACITY) / 1000000;
     // assign buildings
     gridToBuilding = new ArrayList[xSamples][ySamples];
     for (int x = 0; x < gridToBuilding.length; x++)
       for (int y = 0; y < gridToBuilding[0].length; y++)
         gridToBuilding[x][y] = new ArrayList();
-    for (Building b : buildings) {
-      b.findCells(this);
+    // Find the cells of every building in parallel, then record them in a fixed order
+    final List<Building> sorted = getSortedBuildings();
+    final int[][][] found = new int[sorted.size()][][];
+    final AtomicInteger next = new AtomicInteger();
+    runOnThreads(new Runnable() {
+      @Override
+      public void run() {
+        for (int i = next.getAndIncrement(); i < sorted.size(); i = next.getAndIncrement()) {
+          found[i] = sorted.get(i).computeCells(World.this);
+        }
+      }
+    }, getThreads(sorted.size()));
+    for (int i = 0; i < sorted.size(); i++) {
+      sorted.get(i).setCells(this, found[i]);
     }
   }
 
+  public AirGrid getAirGrid() {
+    return airGrid;
+  }
+
+  /**
+   * Get a copy of the air temperatures indexed by [x][y].
+   *
+   * @return A copy of the air grid.
+   */
   public double[][] getAirTemp() {
-    return airTemp;
+    return airGrid.toArray();
   }
 
   public void setAirTemp(double[][] a) {
-    airTemp = a;
+    airGrid.setAll(a);
   }
 
   public void setAirCellTemp(int x, int y, double temp) {
-    airTemp[x][y] = temp;
+    airGrid.set(x, y, temp);
   }
 
   public double getAirCellTemp(int x, int y) {
-    return airTemp[x][y];
+    return airGrid.get(x, y);
   }
 
   public Collection<Building> getBuildings() {
@@ -343,9 +536,7 @@ public class World implements WorldConstants {
   }
 
   private void resetAir() {
-    for (int x = 0; x < airTemp.length; x++)
-      for (int y = 0; y < airTemp[x].length; y++)
-        airTemp[x][y] = 0;
+    airGrid.clear();
   }
 
   public void igniteGISFires() {
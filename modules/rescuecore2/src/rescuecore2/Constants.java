@@ -37,6 +37,10 @@ public final class Constants {
   public static final String KERNEL_PORT_NUMBER_KEY = "kernel.port";
   /** Default kernel port number. */
   public static final int DEFAULT_KERNEL_PORT_NUMBER = 27931;
+  /** Config key for using non-blocking IO for TCP connections between the kernel and components. */
+  public static final String CONNECTION_NIO_KEY = "connection.nio";
+  /** Config key for the directory where components cache the initial world sent by the kernel. Caching is disabled if this is not set. */
+  public static final String WORLD_CACHE_DIR_KEY = "connection.world-cache.dir";
   /** Config key for the gis port number. */
   public static final String GIS_PORT_NUMBER_KEY = "gis.port";
   /** Default gis port number. */
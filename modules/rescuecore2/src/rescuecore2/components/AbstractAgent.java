@@ -16,7 +16,9 @@ import rescuecore2.worldmodel.WorldModel;
 import rescuecore2.worldmodel.ChangeSet;
 import rescuecore2.config.Config;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 
 /**
@@ -53,8 +55,12 @@ public abstract class AbstractAgent<T extends WorldModel<? extends Entity>, E ex
         this.config = config;
         int requestID = generator.generateRequestID();
         AKConnect connect = new AKConnect(requestID, 2, getName(), getRequestedEntityURNs());
+        InitialWorldCache cache = InitialWorldCache.create(config, "agent");
+        if (cache != null) {
+            connect.setWorldHash(cache.getHash());
+        }
         CountDownLatch latch = new CountDownLatch(1);
-        AgentConnectionListener l = new AgentConnectionListener(requestID, latch);
+        AgentConnectionListener l = new AgentConnectionListener(requestID, latch, cache);
         connection.addConnectionListener(l);
         connection.sendMessage(connect);
         // Wait for a reply
@@ -124,11 +130,13 @@ public abstract class AbstractAgent<T extends WorldModel<? extends Entity>, E ex
     private class AgentConnectionListener implements ConnectionListener {
         private int requestID;
         private CountDownLatch latch;
+        private InitialWorldCache cache;
         private ComponentConnectionException failureReason;
 
-        public AgentConnectionListener(int requestID, CountDownLatch latch) {
+        public AgentConnectionListener(int requestID, CountDownLatch latch, InitialWorldCache cache) {
             this.requestID = requestID;
             this.latch = latch;
+            this.cache = cache;
             failureReason = null;
         }
 
@@ -145,7 +153,7 @@ public abstract class AbstractAgent<T extends WorldModel<? extends Entity>, E ex
         private void handleConnectOK(Connection c, KAConnectOK ok) {
             if (ok.getRequestID() == requestID) {
                 c.removeConnectionListener(this);
-                postConnect(c, ok.getAgentID(), ok.getEntities(), ok.getConfig());
+                postConnect(c, ok.getAgentID(), getInitialEntities(ok), ok.getConfig());
                 try {
                     c.sendMessage(new AKAcknowledge(requestID, ok.getAgentID()));
                 }
@@ -156,6 +164,26 @@ public abstract class AbstractAgent<T extends WorldModel<? extends Entity>, E ex
             }
         }
 
+        private Collection<Entity> getInitialEntities(KAConnectOK ok) {
+            if (cache == null) {
+                return ok.getEntities();
+            }
+            Collection<Entity> result = cache.update(ok.getWorldHash(), ok.isWorldCached(), ok.getEntities(), ok.getEntityListProto());
+            Entity agent = ok.getAgentEntity();
+            if (agent == null) {
+                return result;
+            }
+            // The shared world may have a filtered copy of our entity
+            List<Entity> withAgent = new ArrayList<Entity>(result.size() + 1);
+            for (Entity next : result) {
+                if (!next.getID().equals(agent.getID())) {
+                    withAgent.add(next);
+                }
+            }
+            withAgent.add(agent);
+            return withAgent;
+        }
+
         private void handleConnectError(Connection c, KAConnectError error) {
             if (error.getRequestID() == requestID) {
                 c.removeConnectionListener(this);
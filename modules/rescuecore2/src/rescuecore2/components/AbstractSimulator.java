@@ -73,8 +73,15 @@ public abstract class AbstractSimulator<T extends WorldModel<? extends Entity>>
     this.config = config;
     int requestID = generator.generateRequestID();
     SKConnect connect = new SKConnect(requestID, 1, getName());
+    InitialWorldCache cache = InitialWorldCache.create(config, "simulator");
+    if (cache != null) {
+      connect.setWorldHash(cache.getHash());
+    }
+    connect.setSubscribedEntityURNs(getSubscribedEntityURNs());
+    connect.setSubscribedPropertyURNs(getSubscribedPropertyURNs());
+    connect.setSubscribedCommandURNs(getSubscribedCommandURNs());
     CountDownLatch latch = new CountDownLatch(1);
-    SimulatorConnectionListener l = new SimulatorConnectionListener(requestID, latch);
+    SimulatorConnectionListener l = new SimulatorConnectionListener(requestID, latch, cache);
     connection.addConnectionListener(l);
     connection.sendMessage(connect);
     // Wait for a reply
@@ -87,6 +94,38 @@ public abstract class AbstractSimulator<T extends WorldModel<? extends Entity>>
     super.shutdown();
   }
 
+  /**
+   * Get the entity types this simulator wants updates for. Changes to other
+   * entities are not sent by the kernel, so a simulator must include every type
+   * it reads or changes. The default implementation asks for everything.
+   *
+   * @return The entity URNs to subscribe to, or null for all entities.
+   */
+  protected int[] getSubscribedEntityURNs() {
+    return null;
+  }
+
+  /**
+   * Get the property types this simulator wants updates for. The default
+   * implementation asks for everything.
+   *
+   * @return The property URNs to subscribe to, or null for all properties.
+   */
+  protected int[] getSubscribedPropertyURNs() {
+    return null;
+  }
+
+  /**
+   * Get the agent command types this simulator wants to receive. The kernel
+   * still sends a KSCommands message every timestep even if none of the
+   * commands are wanted. The default implementation asks for everything.
+   *
+   * @return The command URNs to subscribe to, or null for all commands.
+   */
+  protected int[] getSubscribedCommandURNs() {
+    return null;
+  }
+
   /**
    * Handle a KSUpdate object from the server. The default implementation just
    * updates the world model.
@@ -186,11 +225,13 @@ public abstract class AbstractSimulator<T extends WorldModel<? extends Entity>>
   private class SimulatorConnectionListener implements ConnectionListener {
     private int requestID;
     private CountDownLatch latch;
+    private InitialWorldCache cache;
     private ComponentConnectionException failureReason;
 
-    public SimulatorConnectionListener(int requestID, CountDownLatch latch) {
+    public SimulatorConnectionListener(int requestID, CountDownLatch latch, InitialWorldCache cache) {
       this.requestID = requestID;
       this.latch = latch;
+      this.cache = cache;
       failureReason = null;
     }
 
@@ -207,7 +248,11 @@ public abstract class AbstractSimulator<T extends WorldModel<? extends Entity>>
     private void handleConnectOK(Connection c, KSConnectOK ok) {
       if (ok.getRequestID() == requestID) {
         c.removeConnectionListener(this);
-        postConnect(c, ok.getSimulatorID(), ok.getEntities(), ok.getConfig());
+        Collection<Entity> entities = ok.getEntities();
+        if (cache != null) {
+          entities = cache.update(ok.getWorldHash(), ok.isWorldCached(), entities, ok.getEntityListProto());
+        }
+        postConnect(c, ok.getSimulatorID(), entities, ok.getConfig());
         try {
           c.sendMessage(new SKAcknowledge(requestID, ok.getSimulatorID()));
         } catch (ConnectionException e) {
@@ -0,0 +1,168 @@
+package rescuecore2.components;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import rescuecore2.Constants;
+import rescuecore2.config.Config;
+import rescuecore2.log.Logger;
+import rescuecore2.messages.components.SharedEntityList;
+import rescuecore2.messages.protobuf.MsgProtoBuf;
+import rescuecore2.messages.protobuf.RCRSProto.EntityListProto;
+import rescuecore2.messages.protobuf.RCRSProto.EntityProto;
+import rescuecore2.worldmodel.Entity;
+
+/**
+ * A local copy of the initial world sent by the kernel. A component that has a
+ * cache sends the hash of the cached world when it connects, and if the kernel
+ * still has the same world it leaves the world out of its reply. The cache is a
+ * single file per kind of component, so every component of the same kind on a
+ * machine can share it. Any problem reading the cache just means the world is
+ * sent again.
+ */
+public class InitialWorldCache {
+    private static final String SUFFIX = ".world";
+
+    private final File file;
+    private String hash;
+    private EntityListProto world;
+
+    /**
+     * Construct an InitialWorldCache and load any existing cached world.
+     *
+     * @param dir  The directory to keep the cache in.
+     * @param kind The kind of component, for example "agent". Components of
+     *             different kinds are sent different worlds so need separate
+     *             caches.
+     */
+    public InitialWorldCache(File dir, String kind) {
+        this.file = new File(dir, kind + SUFFIX);
+        this.hash = "";
+        this.world = null;
+        load();
+    }
+
+    /**
+     * Create the cache configured by {@link Constants#WORLD_CACHE_DIR_KEY}.
+     *
+     * @param config The component config.
+     * @param kind   The kind of component.
+     * @return A new InitialWorldCache, or null if caching is not enabled.
+     */
+    public static InitialWorldCache create(Config config, String kind) {
+        String dir = config.getValue(Constants.WORLD_CACHE_DIR_KEY, "");
+        if (dir.isEmpty()) {
+            return null;
+        }
+        return new InitialWorldCache(new File(dir), kind);
+    }
+
+    /**
+     * Get the hash of the cached world.
+     *
+     * @return The hash of the cached world, or an empty string if nothing is
+     *         cached.
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * Work out the initial world from a connect reply and update the cache if
+     * the kernel sent a new world.
+     *
+     * @param replyHash The world hash sent by the kernel, or null if the kernel
+     *                  did not send one.
+     * @param cached    Whether the kernel left the world out because it matches
+     *                  the cached world.
+     * @param entities  The entities sent by the kernel.
+     * @param encoded   The encoded entities sent by the kernel.
+     * @return The initial world.
+     */
+    public Collection<Entity> update(String replyHash, boolean cached, Collection<Entity> entities,
+                                     EntityListProto encoded) {
+        if (replyHash == null) {
+            return entities;
+        }
+        if (cached) {
+            Logger.info("Using cached initial world " + replyHash);
+            return decode(world);
+        }
+        save(replyHash, encoded);
+        return entities;
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            String storedHash = in.readUTF();
+            EntityListProto storedWorld = EntityListProto.parseFrom((InputStream)in);
+            if (!storedHash.equals(SharedEntityList.hash(storedWorld))) {
+                Logger.warn("Ignoring corrupt initial world cache " + file);
+                return;
+            }
+            hash = storedHash;
+            world = storedWorld;
+            Logger.debug("Loaded initial world cache " + file + ": " + world.getEntitiesCount() + " entities");
+        }
+        catch (IOException e) {
+            Logger.warn("Error reading initial world cache " + file, e);
+        }
+    }
+
+    private void save(String newHash, EntityListProto newWorld) {
+        File temp = null;
+        try {
+            File dir = file.getAbsoluteFile().getParentFile();
+            Files.createDirectories(dir.toPath());
+            // Write to a temporary file first so other components never see a partial cache
+            temp = File.createTempFile(file.getName(), ".tmp", dir);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeUTF(newHash);
+                newWorld.writeTo((OutputStream)out);
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            hash = newHash;
+            world = newWorld;
+            Logger.debug("Saved initial world cache " + file);
+        }
+        catch (IOException e) {
+            Logger.warn("Error writing initial world cache " + file, e);
+            if (temp != null && !temp.delete()) {
+                Logger.warn("Could not delete " + temp);
+            }
+        }
+    }
+
+    private static Collection<Entity> decode(EntityListProto proto) {
+        List<Entity> result = new ArrayList<Entity>(proto.getEntitiesCount());
+        for (EntityProto next : proto.getEntitiesList()) {
+            Entity e = MsgProtoBuf.entityProto2Entity(next);
+            if (e != null) {
+                result.add(e);
+            }
+        }
+        return result;
+    }
+}
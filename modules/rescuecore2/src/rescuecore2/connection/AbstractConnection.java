@@ -5,6 +5,7 @@ import static rescuecore2.misc.EncodingTools.readMessage;
 import static rescuecore2.misc.EncodingTools.writeMessage;
 
 import rescuecore2.messages.Message;
+import rescuecore2.messages.EncodedBroadcast;
 import rescuecore2.messages.protobuf.RCRSProto.MessageProto;
 import rescuecore2.messages.protobuf.MsgProtoBuf;
 import rescuecore2.misc.WorkerThread;
@@ -128,17 +129,7 @@ public abstract class AbstractConnection implements Connection {
         if (messages == null) {
             throw new IllegalArgumentException("Messages cannot be null");
         }
-        synchronized (stateLock) {
-            if (state == State.NOT_STARTED) {
-                throw new ConnectionException("Connection has not been started");
-            }
-            if (state == State.SHUTDOWN) {
-                throw new ConnectionException("Connection has been shut down");
-            }
-            if (!isAlive()) {
-                throw new ConnectionException("Connection is dead");
-            }
-        }
+        checkCanSend();
         try {
 //            ByteArrayOutputStream out = new ByteArrayOutputStream();
 //            for (Message next : messages) {
@@ -151,10 +142,25 @@ public abstract class AbstractConnection implements Connection {
 //                ByteLogger.log(out.toByteArray());
 //            }
 //            sendBytes(out.toByteArray());
-      	  for ( Message msg : messages ) {
-//      	    builder.addMessages(MsgProtoBuf.setMessageProto(msg));
-      	    sendMessageProto( msg.toMessageProto());
-      	  }
+            List<MessageProto> protos = new ArrayList<MessageProto>(messages.size());
+            for (Message msg : messages) {
+                protos.add(msg.toMessageProto());
+            }
+            sendMessageProtos(protos);
+        }
+        catch (IOException e) {
+            throw new ConnectionException(e);
+        }
+    }
+
+    @Override
+    public void sendEncoded(Message header, EncodedBroadcast shared) throws ConnectionException {
+        if (header == null || shared == null) {
+            throw new IllegalArgumentException("Header and shared components cannot be null");
+        }
+        checkCanSend();
+        try {
+            sendEncodedMessage(header, shared);
         }
         catch (IOException e) {
             throw new ConnectionException(e);
@@ -197,6 +203,41 @@ public abstract class AbstractConnection implements Connection {
 //    protected abstract void sendBytes(byte[] b) throws IOException;
     protected abstract void sendMessageProto(MessageProto  messageProto) throws IOException;
 
+    /**
+       Send a batch of messages to the other end of the connection. The default implementation calls {@link #sendMessageProto(MessageProto)} for each message in turn; subclasses can override this to write the whole batch at once.
+       @param messageProtos The messages to send.
+       @throws IOException If the data cannot be sent.
+    */
+    protected void sendMessageProtos(List<MessageProto> messageProtos) throws IOException {
+        for (MessageProto next : messageProtos) {
+            sendMessageProto(next);
+        }
+    }
+
+    /**
+       Send a message that shares some of its components with messages sent to other connections. The default implementation sends it as an ordinary MessageProto, which reuses the shared component protos but serializes them again; connections that write bytes should override this to write the shared bytes directly.
+       @param header The components that belong to this recipient.
+       @param shared The shared components.
+       @throws IOException If the data cannot be sent.
+    */
+    protected void sendEncodedMessage(Message header, EncodedBroadcast shared) throws IOException {
+        sendMessageProto(shared.toMessageProto(header));
+    }
+
+    private void checkCanSend() throws ConnectionException {
+        synchronized (stateLock) {
+            if (state == State.NOT_STARTED) {
+                throw new ConnectionException("Connection has not been started");
+            }
+            if (state == State.SHUTDOWN) {
+                throw new ConnectionException("Connection has been shut down");
+            }
+            if (!isAlive()) {
+                throw new ConnectionException("Connection is dead");
+            }
+        }
+    }
+
     /**
        Perform startup actions. This will only ever be called once.
     */
@@ -0,0 +1,93 @@
+package rescuecore2.connection;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+   A pool of fixed size direct ByteBuffers. Requests for buffers larger than the chunk size are served with unpooled heap buffers. This class is thread-safe.
+ */
+public class ByteBufferPool {
+    /** The default chunk size in bytes. */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    /** The default maximum number of idle buffers kept by the pool. */
+    public static final int DEFAULT_MAX_IDLE = 256;
+
+    private static final ByteBufferPool SHARED = new ByteBufferPool(DEFAULT_CHUNK_SIZE, DEFAULT_MAX_IDLE);
+
+    private final int chunkSize;
+    private final int maxIdle;
+    private final Queue<ByteBuffer> idle;
+    private final AtomicInteger idleCount;
+
+    /**
+       Construct a ByteBufferPool.
+       @param chunkSize The size of pooled buffers.
+       @param maxIdle The maximum number of idle buffers to keep.
+    */
+    public ByteBufferPool(int chunkSize, int maxIdle) {
+        this.chunkSize = chunkSize;
+        this.maxIdle = maxIdle;
+        idle = new ConcurrentLinkedQueue<ByteBuffer>();
+        idleCount = new AtomicInteger();
+    }
+
+    /**
+       Get the pool shared by all NIO connections.
+       @return The shared pool.
+    */
+    public static ByteBufferPool getShared() {
+        return SHARED;
+    }
+
+    /**
+       Get the size of pooled buffers.
+       @return The chunk size.
+    */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+       Get a cleared buffer with at least the given capacity.
+       @param size The required capacity.
+       @return A buffer. Pooled buffers have exactly the chunk size.
+    */
+    public ByteBuffer acquire(int size) {
+        if (size > chunkSize) {
+            return ByteBuffer.allocate(size);
+        }
+        ByteBuffer result = idle.poll();
+        if (result == null) {
+            return ByteBuffer.allocateDirect(chunkSize);
+        }
+        idleCount.decrementAndGet();
+        result.clear();
+        return result;
+    }
+
+    /**
+       Return a buffer to the pool. Buffers that did not come from this pool are ignored.
+       @param buffer The buffer to release. It must not be used again by the caller.
+    */
+    public void release(ByteBuffer buffer) {
+        if (!isPooled(buffer)) {
+            return;
+        }
+        if (idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+            return;
+        }
+        idle.add(buffer);
+    }
+
+    /**
+       Find out if a buffer is the kind this pool keeps.
+       @param buffer The buffer to check.
+       @return True if the buffer is a direct buffer of the chunk size.
+    */
+    public boolean isPooled(ByteBuffer buffer) {
+        return buffer.isDirect() && buffer.capacity() == chunkSize;
+    }
+}
@@ -1,5 +1,6 @@
 package rescuecore2.connection;
 
+import rescuecore2.messages.EncodedBroadcast;
 import rescuecore2.messages.Message;
 import rescuecore2.registry.Registry;
 
@@ -23,6 +24,14 @@ public interface Connection {
      */
     void sendMessages(Collection<? extends Message> messages) throws ConnectionException;
 
+    /**
+       Send a message whose bulky components have already been encoded once for several connections. The other end receives an ordinary message made of the header's components plus the shared ones.
+       @param header A message holding the components that belong to this recipient. Components with the same names as the shared components are replaced by them, so they can be left empty.
+       @param shared The shared components.
+       @throws ConnectionException If the connection has not been started up or has been shut down, or if there is an error sending the message.
+     */
+    void sendEncoded(Message header, EncodedBroadcast shared) throws ConnectionException;
+
     /**
        Add a ConnectionListener. This listener will be notified when messages arrive on this connection.
        @param l The listener to add.
@@ -3,6 +3,10 @@ package rescuecore2.connection;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.io.IOException;
 
 import java.util.Set;
@@ -17,6 +21,7 @@ import rescuecore2.log.Logger;
  */
 public class ConnectionManager {
     private Set<Reader> readers;
+    private Set<ServerSocketChannel> channels;
     private boolean shutdown;
 
     private final Object lock = new Object();
@@ -26,6 +31,7 @@ public class ConnectionManager {
     */
     public ConnectionManager() {
         readers = new HashSet<Reader>();
+        channels = new HashSet<ServerSocketChannel>();
         shutdown = false;
     }
 
@@ -37,18 +43,35 @@ public class ConnectionManager {
        @throws IOException If there is a problem listening on the port.
     */
     public void listen(int port, Registry registry, ConnectionManagerListener listener) throws IOException {
+        listen(port, registry, listener, false);
+    }
+
+    /**
+       Listen for connections on a particular port. JSON connections are accepted on the next port up.
+       @param port The port to listen on.
+       @param registry The registry to install in new connections.
+       @param listener A ConnectionManagerListener that will be informed of new connections.
+       @param nio Whether to use {@link NIOConnection} rather than {@link TCPConnection} for connections on the main port.
+       @throws IOException If there is a problem listening on the port.
+    */
+    public void listen(int port, Registry registry, ConnectionManagerListener listener, boolean nio) throws IOException {
         synchronized (lock) {
             if (shutdown) {
                 throw new IOException("Connection manager has been shut down");
             }
-            Logger.info("Listening for connections on port " + port);
-            ServerSocket socket = new ServerSocket(port);
-            socket.setSoTimeout(1000);
-            socket.setReuseAddress(true);
-            Reader r = new Reader(socket, registry, listener);
-            readers.add(r);
-            r.start();
-            
+            Logger.info("Listening for " + (nio ? "NIO " : "") + "connections on port " + port);
+            if (nio) {
+                listenNIO(port, registry, listener);
+            }
+            else {
+                ServerSocket socket = new ServerSocket(port);
+                socket.setSoTimeout(1000);
+                socket.setReuseAddress(true);
+                Reader r = new Reader(socket, registry, listener);
+                readers.add(r);
+                r.start();
+            }
+
             ServerSocket socketJson = new ServerSocket(port+1);
             socketJson.setSoTimeout(1000);
             socketJson.setReuseAddress(true);
@@ -76,6 +99,14 @@ public class ConnectionManager {
                 Logger.error("ConnectionManager interrupted while shutting down read threads", e);
             }
         }
+        for (ServerSocketChannel next : channels) {
+            try {
+                next.close();
+            }
+            catch (IOException e) {
+                Logger.error("Error closing server socket", e);
+            }
+        }
     }
 
     /**
@@ -88,6 +119,49 @@ public class ConnectionManager {
         }
     }
 
+    private void listenNIO(int port, final Registry registry, final ConnectionManagerListener callback) throws IOException {
+        final ServerSocketChannel server = ServerSocketChannel.open();
+        server.socket().setReuseAddress(true);
+        server.bind(new InetSocketAddress(port));
+        server.configureBlocking(false);
+        channels.add(server);
+        final NIOSelector selector = NIOSelector.getDefault();
+        selector.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        selector.register(server, SelectionKey.OP_ACCEPT, new NIOSelector.Handler() {
+                                @Override
+                                public void ready(SelectionKey key) throws IOException {
+                                    SocketChannel s;
+                                    while ((s = server.accept()) != null) {
+                                        NIOConnection conn = new NIOConnection(s);
+                                        if (ConnectionManager.this.isAlive()) {
+                                            conn.setRegistry(registry);
+                                            callback.newConnection(conn);
+                                            conn.startup();
+                                        }
+                                        else {
+                                            s.close();
+                                        }
+                                    }
+                                }
+
+                                @Override
+                                public void failed(Exception e) {
+                                    if (ConnectionManager.this.isAlive()) {
+                                        Logger.error("Error listening for connection", e);
+                                    }
+                                }
+                            });
+                    }
+                    catch (IOException e) {
+                        Logger.error("Error listening for connection", e);
+                    }
+                }
+            });
+    }
+
     private class Reader extends WorkerThread {
         private ServerSocket socket;
         private Registry registry;
@@ -9,6 +9,8 @@ import java.net.Socket;
 
 import com.google.protobuf.util.JsonFormat;
 
+import rescuecore2.messages.EncodedBroadcast;
+import rescuecore2.messages.Message;
 import rescuecore2.messages.protobuf.RCRSProto.MessageProto;
 
 public class JsonTCPConnection extends TCPConnection{
@@ -26,6 +28,10 @@ public class JsonTCPConnection extends TCPConnection{
 		writer.append(JsonFormat.printer().print(messageProto));
     }
 	@Override
+	protected void serializeEncodedMessage(Message header, EncodedBroadcast shared) throws IOException {
+		serializeMessageProto(shared.toMessageProto(header));
+	}
+	@Override
     protected MessageProto deserializeMessageProto() throws IOException {
     	MessageProto.Builder builder=MessageProto.newBuilder();
     	JsonFormat.parser().merge(reader, builder);
@@ -0,0 +1,116 @@
+package rescuecore2.connection;
+
+import rescuecore2.messages.protobuf.RCRSProto.MessageProto;
+import rescuecore2.misc.Pair;
+import rescuecore2.misc.WorkerThread;
+import rescuecore2.log.Logger;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import java.io.IOException;
+
+/**
+   Connection implementation for two components running in the same JVM. Messages are handed to the other end as MessageProto objects through a lock-free queue, so nothing is turned into bytes or pushed through a pipe. MessageProto objects are immutable snapshots of the messages and each end builds its own Message objects from them, so the two ends never share entities or ChangeSets.
+ */
+public class LocalConnection extends AbstractConnection {
+    private static final long DELIVERY_WAIT = TimeUnit.SECONDS.toNanos(10);
+
+    private final Queue<MessageProto> incoming;
+    private LocalConnection peer;
+    private volatile boolean peerShutdown;
+    private volatile DeliveryThread delivery;
+
+    private LocalConnection() {
+        incoming = new ConcurrentLinkedQueue<MessageProto>();
+        peerShutdown = false;
+    }
+
+    /**
+       Create a pair of connections that send messages to each other. Neither connection is started.
+       @return A pair of connections.
+    */
+    public static Pair<Connection, Connection> createConnectionPair() {
+        LocalConnection c1 = new LocalConnection();
+        LocalConnection c2 = new LocalConnection();
+        c1.peer = c2;
+        c2.peer = c1;
+        return new Pair<Connection, Connection>(c1, c2);
+    }
+
+    @Override
+    public boolean isAlive() {
+        DeliveryThread d = delivery;
+        return super.isAlive() && d != null && d.isRunning();
+    }
+
+    @Override
+    protected void startupImpl() {
+        delivery = new DeliveryThread();
+        delivery.start();
+    }
+
+    @Override
+    protected void shutdownImpl() {
+        Logger.info("Shutting down " + this);
+        try {
+            delivery.kill();
+        }
+        catch (InterruptedException e) {
+            Logger.error("LocalConnection interrupted while shutting down delivery thread", e);
+        }
+        // Like closing a stream: the other end stops once it has delivered what it already has
+        peer.peerShutdown = true;
+        peer.wakeUp();
+    }
+
+    @Override
+    protected void sendMessageProto(MessageProto messageProto) throws IOException {
+        if (peerShutdown) {
+            throw new IOException("The other end of " + this + " has shut down");
+        }
+        peer.incoming.add(messageProto);
+        peer.wakeUp();
+    }
+
+    @Override
+    protected void sendMessageProtos(List<MessageProto> messageProtos) throws IOException {
+        if (peerShutdown) {
+            throw new IOException("The other end of " + this + " has shut down");
+        }
+        peer.incoming.addAll(messageProtos);
+        peer.wakeUp();
+    }
+
+    private void wakeUp() {
+        DeliveryThread d = delivery;
+        if (d != null) {
+            LockSupport.unpark(d);
+        }
+    }
+
+    /**
+       Worker thread that turns received snapshots back into messages. This runs on its own thread so that messages are decoded with this connection's registry.
+    */
+    private class DeliveryThread extends WorkerThread {
+        @Override
+        protected boolean work() throws InterruptedException {
+            MessageProto next = incoming.poll();
+            if (next != null) {
+                messageProtoReceived(next);
+                return true;
+            }
+            if (peerShutdown) {
+                return false;
+            }
+            LockSupport.parkNanos(this, DELIVERY_WAIT);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package rescuecore2.connection;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import com.google.protobuf.CodedOutputStream;
+
+import rescuecore2.log.Logger;
+import rescuecore2.messages.EncodedBroadcast;
+import rescuecore2.messages.Message;
+import rescuecore2.messages.protobuf.RCRSProto.MessageProto;
+import rescuecore2.registry.Registry;
+
+/**
+   TCP Connection implementation that uses non-blocking IO. Reads and queued writes for every NIOConnection are serviced by a single shared {@link NIOSelector} thread, so each connection only needs its own message broadcast thread. Outgoing messages are encoded straight into pooled buffers, small messages in the same batch share a buffer, and queued buffers are sent with gathered writes. Incoming messages are parsed directly from the read buffer. The wire format is the same as {@link TCPConnection}, so either end can use either implementation.
+ */
+public class NIOConnection extends AbstractConnection {
+    private static final int FRAME_HEADER_SIZE = 4;
+    private static final int MAX_GATHER = 64;
+
+    private final SocketChannel channel;
+    private final NIOSelector selector;
+    private final ByteBufferPool pool;
+
+    // Guarded by writeLock
+    private final Object writeLock = new Object();
+    private final Deque<ByteBuffer> writeQueue;
+    private final ByteBuffer[] gather;
+    private boolean waitingForWrite;
+
+    // Only accessed by the selector thread
+    private SelectionKey key;
+    private ByteBuffer readBuffer;
+
+    private volatile boolean closed;
+
+    /**
+       Make a connection to a specific host on a given port.
+       @param address The address of the host, or null for the local host.
+       @param port The port to connect to.
+       @throws IOException If the host cannot be contacted.
+    */
+    public NIOConnection(String address, int port) throws IOException {
+        this(SocketChannel.open(new InetSocketAddress(InetAddress.getByName(address), port)));
+    }
+
+    /**
+       Create an NIOConnection from an existing connected channel.
+       @param channel The channel to attach to.
+       @throws IOException If there is a problem configuring the channel.
+    */
+    public NIOConnection(SocketChannel channel) throws IOException {
+        this.channel = channel;
+        this.selector = NIOSelector.getDefault();
+        this.pool = ByteBufferPool.getShared();
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        writeQueue = new ArrayDeque<ByteBuffer>();
+        gather = new ByteBuffer[MAX_GATHER];
+        waitingForWrite = false;
+        closed = false;
+        setName("NIOConnection: local port " + channel.socket().getLocalPort() + ", endpoint = " + channel.socket().getInetAddress() + ":" + channel.socket().getPort());
+    }
+
+    @Override
+    public boolean isAlive() {
+        return super.isAlive() && !closed;
+    }
+
+    @Override
+    protected void startupImpl() {
+        Logger.debug("Starting " + this + ". Registry: " + Registry.getCurrentRegistry());
+        readBuffer = pool.acquire(pool.getChunkSize());
+        selector.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        key = selector.register(channel, SelectionKey.OP_READ, new ChannelHandler());
+                        synchronized (writeLock) {
+                            if (waitingForWrite) {
+                                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                            }
+                        }
+                    }
+                    catch (IOException e) {
+                        Logger.error("Error registering " + NIOConnection.this, e);
+                        close();
+                    }
+                }
+            });
+    }
+
+    @Override
+    protected void shutdownImpl() {
+        Logger.info("Shutting down " + this);
+        close();
+    }
+
+    @Override
+    protected void sendMessageProto(MessageProto messageProto) throws IOException {
+        sendMessageProtos(Collections.singletonList(messageProto));
+    }
+
+    @Override
+    protected void sendMessageProtos(List<MessageProto> messageProtos) throws IOException {
+        if (closed) {
+            throw new IOException("Connection closed");
+        }
+        enqueue(encode(messageProtos));
+    }
+
+    @Override
+    protected void sendEncodedMessage(Message message, EncodedBroadcast shared) throws IOException {
+        if (closed) {
+            throw new IOException("Connection closed");
+        }
+        // Only the small header is copied; every connection writes from the same shared bytes
+        byte[] header = shared.encodeHeader(message);
+        byte[] body = shared.getBytes();
+        ByteBuffer frame = pool.acquire(FRAME_HEADER_SIZE + header.length);
+        frame.putInt(header.length + body.length);
+        frame.put(header);
+        frame.flip();
+        Deque<ByteBuffer> encoded = new ArrayDeque<ByteBuffer>(2);
+        encoded.add(frame);
+        encoded.add(ByteBuffer.wrap(body).asReadOnlyBuffer());
+        enqueue(encoded);
+    }
+
+    private void enqueue(Deque<ByteBuffer> encoded) throws IOException {
+        synchronized (writeLock) {
+            writeQueue.addAll(encoded);
+            if (!waitingForWrite) {
+                // Write straight away from this thread; only involve the selector if the socket is full
+                try {
+                    if (!flush()) {
+                        waitingForWrite = true;
+                        selector.execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    if (key != null && key.isValid()) {
+                                        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                                    }
+                                }
+                            });
+                    }
+                }
+                catch (IOException e) {
+                    close();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private Deque<ByteBuffer> encode(List<MessageProto> messageProtos) throws IOException {
+        Deque<ByteBuffer> result = new ArrayDeque<ByteBuffer>();
+        ByteBuffer current = null;
+        for (MessageProto next : messageProtos) {
+            int size = next.getSerializedSize();
+            int frame = FRAME_HEADER_SIZE + size;
+            if (current == null || current.remaining() < frame) {
+                if (current != null) {
+                    current.flip();
+                    result.add(current);
+                }
+                current = pool.acquire(frame);
+            }
+            current.putInt(size);
+            CodedOutputStream out = CodedOutputStream.newInstance(current);
+            next.writeTo(out);
+            out.flush();
+        }
+        if (current != null) {
+            current.flip();
+            result.add(current);
+        }
+        return result;
+    }
+
+    // Must be called while holding writeLock. Returns true if everything was written.
+    private boolean flush() throws IOException {
+        while (!writeQueue.isEmpty()) {
+            int count = 0;
+            for (ByteBuffer next : writeQueue) {
+                gather[count++] = next;
+                if (count == MAX_GATHER) {
+                    break;
+                }
+            }
+            long written = channel.write(gather, 0, count);
+            Arrays.fill(gather, 0, count, null);
+            while (!writeQueue.isEmpty() && !writeQueue.peekFirst().hasRemaining()) {
+                pool.release(writeQueue.pollFirst());
+            }
+            if (written == 0) {
+                // The socket buffer is full
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void close() {
+        closed = true;
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            Logger.error("Error closing " + this, e);
+        }
+        synchronized (writeLock) {
+            for (ByteBuffer next : writeQueue) {
+                pool.release(next);
+            }
+            writeQueue.clear();
+        }
+        selector.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (readBuffer != null) {
+                        pool.release(readBuffer);
+                        readBuffer = null;
+                    }
+                }
+            });
+    }
+
+    private void read() throws IOException {
+        int n = channel.read(readBuffer);
+        if (n < 0) {
+            Logger.debug(this + " closed by remote end");
+            close();
+            return;
+        }
+        readBuffer.flip();
+        Registry old = Registry.getCurrentRegistry();
+        Registry.setCurrentRegistry(getRegistry());
+        try {
+            while (readBuffer.remaining() >= FRAME_HEADER_SIZE) {
+                int start = readBuffer.position();
+                int size = readBuffer.getInt(start);
+                if (size < 0) {
+                    throw new IOException("Invalid message size: " + size);
+                }
+                int frame = FRAME_HEADER_SIZE + size;
+                if (readBuffer.remaining() < frame) {
+                    if (frame > readBuffer.capacity()) {
+                        // Grow to fit this message
+                        ByteBuffer bigger = pool.acquire(frame);
+                        bigger.put(readBuffer);
+                        pool.release(readBuffer);
+                        readBuffer = bigger;
+                        return;
+                    }
+                    break;
+                }
+                ByteBuffer message = readBuffer.duplicate();
+                message.position(start + FRAME_HEADER_SIZE);
+                message.limit(start + frame);
+                readBuffer.position(start + frame);
+                messageProtoReceived(MessageProto.parseFrom(message));
+            }
+            readBuffer.compact();
+            if (!pool.isPooled(readBuffer) && readBuffer.position() <= pool.getChunkSize()) {
+                // Back to a normal sized buffer
+                ByteBuffer normal = pool.acquire(pool.getChunkSize());
+                readBuffer.flip();
+                normal.put(readBuffer);
+                readBuffer = normal;
+            }
+        }
+        finally {
+            Registry.setCurrentRegistry(old);
+        }
+    }
+
+    private void writeReady() throws IOException {
+        synchronized (writeLock) {
+            if (flush()) {
+                waitingForWrite = false;
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    private class ChannelHandler implements NIOSelector.Handler {
+        @Override
+        public void ready(SelectionKey k) throws IOException {
+            if (k.isReadable()) {
+                read();
+            }
+            if (k.isValid() && k.isWritable()) {
+                writeReady();
+            }
+        }
+
+        @Override
+        public void failed(Exception e) {
+            if (!closed) {
+                Logger.error("Error servicing " + NIOConnection.this, e);
+            }
+            close();
+        }
+    }
+}
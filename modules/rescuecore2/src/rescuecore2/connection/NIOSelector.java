@@ -0,0 +1,143 @@
+package rescuecore2.connection;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import rescuecore2.log.Logger;
+
+/**
+   A single thread that services a Selector on behalf of many channels. All registration and interest changes are performed on the selector thread; other threads submit them with {@link #execute(Runnable)}. Handlers are called on the selector thread and must not block.
+ */
+public final class NIOSelector {
+    private static NIOSelector defaultSelector;
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks;
+    private final Thread thread;
+
+    /**
+       Something that wants to know when a registered channel is ready.
+    */
+    interface Handler {
+        /**
+           Notification that a channel is ready for the operations it is interested in.
+           @param key The selection key of the channel.
+           @throws IOException If there is a problem servicing the channel.
+        */
+        void ready(SelectionKey key) throws IOException;
+
+        /**
+           Notification that servicing the channel failed. The key has already been cancelled.
+           @param e The cause of the failure.
+        */
+        void failed(Exception e);
+    }
+
+    private NIOSelector(String name) throws IOException {
+        selector = Selector.open();
+        tasks = new ConcurrentLinkedQueue<Runnable>();
+        thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    selectLoop();
+                }
+            }, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+       Get the selector shared by all NIO connections in this JVM, starting it if necessary.
+       @return The shared selector.
+       @throws IOException If the selector cannot be opened.
+    */
+    public static synchronized NIOSelector getDefault() throws IOException {
+        if (defaultSelector == null) {
+            defaultSelector = new NIOSelector("NIO selector");
+        }
+        return defaultSelector;
+    }
+
+    /**
+       Run a task on the selector thread.
+       @param task The task to run.
+    */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+       Find out if the calling thread is the selector thread.
+       @return True if this is the selector thread.
+    */
+    public boolean isSelectorThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+       Register a channel. Must be called on the selector thread.
+       @param channel The channel to register. It must be in non-blocking mode.
+       @param ops The initial interest set.
+       @param handler The handler for ready events.
+       @return The selection key.
+       @throws IOException If the channel cannot be registered.
+    */
+    SelectionKey register(SelectableChannel channel, int ops, Handler handler) throws IOException {
+        return channel.register(selector, ops, handler);
+    }
+
+    private void selectLoop() {
+        while (true) {
+            runTasks();
+            try {
+                selector.select();
+            }
+            catch (IOException e) {
+                Logger.error("NIO selector failed", e);
+                return;
+            }
+            Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+            while (it.hasNext()) {
+                SelectionKey key = it.next();
+                it.remove();
+                Handler handler = (Handler)key.attachment();
+                try {
+                    if (key.isValid()) {
+                        handler.ready(key);
+                    }
+                }
+                catch (CancelledKeyException e) {
+                    // The channel was closed by another thread
+                    handler.failed(e);
+                }
+                // CHECKSTYLE:OFF:IllegalCatch
+                catch (IOException | RuntimeException e) {
+                    key.cancel();
+                    handler.failed(e);
+                }
+                // CHECKSTYLE:ON:IllegalCatch
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable next;
+        while ((next = tasks.poll()) != null) {
+            try {
+                next.run();
+            }
+            // CHECKSTYLE:OFF:IllegalCatch
+            catch (RuntimeException e) {
+                Logger.error("Error running NIO selector task", e);
+            }
+            // CHECKSTYLE:ON:IllegalCatch
+        }
+    }
+}
@@ -21,6 +21,8 @@ import rescuecore2.misc.EncodingTools;
 import rescuecore2.misc.Pair;
 import rescuecore2.registry.Registry;
 import rescuecore2.log.Logger;
+import rescuecore2.messages.EncodedBroadcast;
+import rescuecore2.messages.Message;
 import rescuecore2.messages.protobuf.RCRSProto.MessageProto;
 
 /**
@@ -33,7 +35,8 @@ public class StreamConnection extends AbstractConnection {
 	protected OutputStream out;
 	private ReadThread readThread;
 	private WriteThread writeThread;
-	private List<MessageProto> toWrite;
+	// MessageProto or EncodedFrame objects waiting to be written
+	private List<Object> toWrite;
 
 	protected static final boolean GZIP_ENABLE = false;
 
@@ -57,7 +60,7 @@ public class StreamConnection extends AbstractConnection {
 			this.in = in;
 			this.out = out;
 		}
-		toWrite = new LinkedList<MessageProto>();
+		toWrite = new LinkedList<Object>();
 	}
 
 	@Override
@@ -127,6 +130,23 @@ public class StreamConnection extends AbstractConnection {
 
 	}
 
+	/**
+	 * Write a message with pre-encoded shared components. The shared part of
+	 * the message is written from the bytes encoded for all recipients.
+	 * 
+	 * @param header The components that belong to this recipient.
+	 * @param shared The shared components.
+	 * @throws IOException If the write fails.
+	 */
+	protected void serializeEncodedMessage(Message header,
+			EncodedBroadcast shared) throws IOException {
+		byte[] headerBytes = shared.encodeHeader(header);
+		byte[] sharedBytes = shared.getBytes();
+		EncodingTools.writeInt32(headerBytes.length + sharedBytes.length, out);
+		out.write(headerBytes);
+		out.write(sharedBytes);
+	}
+
 	protected MessageProto deserializeMessageProto() throws IOException {
 //    	return MessageProto.parseDelimitedFrom(in);
 		int size = EncodingTools.readInt32(in);
@@ -142,6 +162,25 @@ public class StreamConnection extends AbstractConnection {
 		}
 	}
 
+	@Override
+	protected void sendEncodedMessage(Message header, EncodedBroadcast shared)
+			throws IOException {
+		synchronized (toWrite) {
+			toWrite.add(new EncodedFrame(header, shared));
+			toWrite.notifyAll();
+		}
+	}
+
+	private static class EncodedFrame {
+		private final Message header;
+		private final EncodedBroadcast shared;
+
+		EncodedFrame(Message header, EncodedBroadcast shared) {
+			this.header = header;
+			this.shared = shared;
+		}
+	}
+
 	/**
 	 * Worker thread that reads from the input stream.
 	 */
@@ -178,22 +217,26 @@ public class StreamConnection extends AbstractConnection {
 	private class WriteThread extends WorkerThread {
 		@Override
 		protected boolean work() throws InterruptedException {
-			MessageProto messageProto = null;
+			Object next = null;
 			synchronized (toWrite) {
 				if (toWrite.isEmpty()) {
 					toWrite.wait(SEND_WAIT);
 					return true;
 				} else {
-					messageProto = toWrite.remove(0);
+					next = toWrite.remove(0);
 				}
 			}
-			if (messageProto == null) {
+			if (next == null) {
 				return true;
 			}
 			try {
 //                writeInt32(bytes.length, out);
 //                out.write(bytes);
-				serializeMessageProto(messageProto);
+				if (next instanceof EncodedFrame frame) {
+					serializeEncodedMessage(frame.header, frame.shared);
+				} else {
+					serializeMessageProto((MessageProto) next);
+				}
 				out.flush();
 				return true;
 			} catch (IOException e) {
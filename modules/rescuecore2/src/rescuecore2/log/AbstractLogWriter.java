@@ -12,9 +12,11 @@ import rescuecore2.messages.protobuf.RCRSLogProto.LogProto;
  */
 public abstract class AbstractLogWriter implements LogWriter {
 	protected boolean isV2;
+	private volatile long bytesWritten;
 
 	public AbstractLogWriter(boolean isV2) {
 		this.isV2 = isV2;
+		this.bytesWritten = 0;
 	}
 
 	@Override
@@ -35,6 +37,7 @@ public abstract class AbstractLogWriter implements LogWriter {
 			writeInt32(data.length, out);
 			out.write(data);
 			write(out.toByteArray());
+			bytesWritten += out.size();
 		} catch (IOException e) {
 			throw new LogException(e);
 		}
@@ -50,11 +53,21 @@ public abstract class AbstractLogWriter implements LogWriter {
 			writeInt32(data.length, out);
 			out.write(data);
 			write(out.toByteArray());
+			bytesWritten += out.size();
 		} catch (IOException e) {
 			throw new LogException(e);
 		}
 	}
 
+	/**
+	 * Get the number of bytes written so far, before any compression.
+	 *
+	 * @return The number of bytes written.
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
 	/**
 	 * Write a set of bytes to the log.
 	 *
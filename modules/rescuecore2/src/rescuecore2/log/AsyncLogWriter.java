@@ -0,0 +1,233 @@
+package rescuecore2.log;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A LogWriter decorator that serializes and writes records on a background
+ * thread. Records are handed over through a bounded queue: callers block when
+ * the queue is full, and writing an {@link EndLogRecord} blocks until every
+ * queued record has reached the underlying writer. Records must not be
+ * modified after they have been passed to {@link #writeRecord(LogRecord)}.
+ */
+public class AsyncLogWriter implements LogWriter {
+	/** The default number of records that can be queued. */
+	public static final int DEFAULT_CAPACITY = 1000;
+
+	private static final long NO_TIME = Long.MIN_VALUE;
+
+	private final LogWriter delegate;
+	private final BlockingQueue<LogRecord> queue;
+	private final Thread writerThread;
+	private final Object lock = new Object();
+
+	// Guarded by lock
+	private long submitted;
+	private long written;
+
+	private volatile LogException error;
+	private volatile boolean closed;
+
+	// Only accessed by the writer thread
+	private long cycleTime;
+	private int cycleRecords;
+	private long cycleStartBytes;
+
+	/**
+	 * Create an AsyncLogWriter with the default queue capacity.
+	 *
+	 * @param delegate The writer that records are passed to.
+	 */
+	public AsyncLogWriter(LogWriter delegate) {
+		this(delegate, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create an AsyncLogWriter.
+	 *
+	 * @param delegate The writer that records are passed to.
+	 * @param capacity The maximum number of records waiting to be written.
+	 */
+	public AsyncLogWriter(LogWriter delegate, int capacity) {
+		this.delegate = delegate;
+		this.queue = new ArrayBlockingQueue<LogRecord>(capacity);
+		submitted = 0;
+		written = 0;
+		error = null;
+		closed = false;
+		cycleTime = NO_TIME;
+		cycleRecords = 0;
+		cycleStartBytes = 0;
+		writerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeLoop();
+			}
+		}, "Log writer");
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	@Override
+	public void writeRecord(LogRecord entry) throws LogException {
+		checkError();
+		if (closed) {
+			throw new LogException("Log writer has been closed");
+		}
+		synchronized (lock) {
+			++submitted;
+		}
+		try {
+			queue.put(entry);
+		} catch (InterruptedException e) {
+			synchronized (lock) {
+				--submitted;
+				lock.notifyAll();
+			}
+			Thread.currentThread().interrupt();
+			throw new LogException("Interrupted while queueing log record", e);
+		}
+		if (entry instanceof EndLogRecord) {
+			flush();
+		}
+	}
+
+	/**
+	 * Wait until every queued record has been passed to the underlying writer.
+	 *
+	 * @throws LogException If writing a record failed or this thread is
+	 *                      interrupted.
+	 */
+	public void flush() throws LogException {
+		synchronized (lock) {
+			while (written < submitted) {
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new LogException("Interrupted while flushing log", e);
+				}
+			}
+		}
+		checkError();
+	}
+
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		try {
+			flush();
+		} catch (LogException e) {
+			Logger.error("Error flushing log", e);
+		}
+		closed = true;
+		writerThread.interrupt();
+		try {
+			writerThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		delegate.close();
+	}
+
+	/**
+	 * Get the number of records waiting to be written.
+	 *
+	 * @return The current queue depth.
+	 */
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	/**
+	 * Get the number of uncompressed bytes the underlying writer has produced.
+	 *
+	 * @return The number of bytes written, or -1 if the underlying writer does
+	 *         not report it.
+	 */
+	public long getBytesWritten() {
+		if (delegate instanceof AbstractLogWriter) {
+			return ((AbstractLogWriter) delegate).getBytesWritten();
+		}
+		if (delegate instanceof ZipLogWriter) {
+			return ((ZipLogWriter) delegate).getBytesWritten();
+		}
+		return -1;
+	}
+
+	private void checkError() throws LogException {
+		LogException e = error;
+		if (e != null) {
+			throw new LogException("Error writing log", e);
+		}
+	}
+
+	private void writeLoop() {
+		while (true) {
+			LogRecord next;
+			try {
+				next = queue.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			write(next);
+		}
+	}
+
+	private void write(LogRecord record) {
+		long time = getTime(record);
+		if (time != cycleTime) {
+			reportCycle();
+			cycleTime = time;
+			cycleRecords = 0;
+			cycleStartBytes = getBytesWritten();
+		}
+		if (error == null) {
+			try {
+				delegate.writeRecord(record);
+			} catch (LogException e) {
+				Logger.error("Error writing log record", e);
+				error = e;
+			} catch (RuntimeException e) {
+				Logger.error("Error writing log record", e);
+				error = new LogException(e);
+			}
+		}
+		++cycleRecords;
+		if (record instanceof EndLogRecord) {
+			reportCycle();
+			cycleTime = NO_TIME;
+			cycleRecords = 0;
+		}
+		synchronized (lock) {
+			++written;
+			lock.notifyAll();
+		}
+	}
+
+	private void reportCycle() {
+		if (cycleTime == NO_TIME || cycleRecords == 0) {
+			return;
+		}
+		long bytes = getBytesWritten();
+		Logger.debug("Log timestep " + cycleTime + ": " + cycleRecords
+				+ " records, "
+				+ (bytes < 0 ? "unknown" : String.valueOf(bytes - cycleStartBytes))
+				+ " bytes, queue depth " + queue.size());
+	}
+
+	private static long getTime(LogRecord record) {
+		switch (record.getRecordType()) {
+		case PERCEPTION:
+			return ((PerceptionRecord) record).getTime();
+		case COMMANDS:
+			return ((CommandsRecord) record).getTime();
+		case UPDATES:
+			return ((UpdatesRecord) record).getTime();
+		default:
+			return NO_TIME;
+		}
+	}
+}
@@ -42,7 +42,19 @@ public class FileLogReader extends StreamLogReader {
        @throws LogException If there is a problem reading the log.
     */
     public FileLogReader(File file, Registry registry) throws IOException, LogException {
-        super(new FileInputStream(file),registry);
+        this(file, registry, new Config());
+    }
+
+    /**
+       Construct a new FileLogReader.
+       @param file The file object to read.
+       @param registry The registry to use for reading log entries.
+       @param historyConfig Settings for rebuilding world models, see {@link WorldModelHistory}.
+       @throws IOException If the file cannot be read.
+       @throws LogException If there is a problem reading the log.
+    */
+    public FileLogReader(File file, Registry registry, Config historyConfig) throws IOException, LogException {
+        super(new FileInputStream(file), registry, historyConfig);
         Logger.info("Reading file log: " + file.getAbsolutePath());
     }
 }
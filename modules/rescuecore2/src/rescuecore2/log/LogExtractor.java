@@ -107,7 +107,17 @@ public class LogExtractor {
 	}
 
 	public double getScore() {
-		return scoreFunction.score(current_model, new Timestep(current_time));
+		Timestep timestep = new Timestep(current_time);
+		// The updates let incremental score functions skip unchanged entities
+		try {
+			UpdatesRecord updates = log.getUpdates(current_time);
+			if (updates != null) {
+				timestep.setChangeSet(updates.getChangeSet());
+			}
+		} catch (LogException e) {
+			System.out.println("Error: " + e.getMessage());
+		}
+		return scoreFunction.score(current_model, timestep);
 	}
 
 	public BufferedImage paintImage() {
@@ -181,7 +191,7 @@ public class LogExtractor {
 			String outdir = args[1];
 			processJarFiles(config);
 			LogReader reader = RCRSLogFactory.getLogReader(name,
-					Registry.SYSTEM_REGISTRY);
+					Registry.SYSTEM_REGISTRY, config);
 			LogExtractor log = new LogExtractor(reader, config);
 			log.setDimension(1024, 786);
 			// viewer.setPreferredSize(new Dimension(VIEWER_SIZE, VIEWER_SIZE));
@@ -3,16 +3,22 @@ package rescuecore2.log;
 import java.io.File;
 import java.io.IOException;
 
+import rescuecore2.config.Config;
 import rescuecore2.registry.Registry;
 
 public class RCRSLogFactory {
 
 	public static LogReader getLogReader(String filename, Registry registry)
 			throws LogException, IOException {
+		return getLogReader(filename, registry, new Config());
+	}
+
+	public static LogReader getLogReader(String filename, Registry registry,
+			Config config) throws LogException, IOException {
 		if (filename.endsWith(".7z"))
-			return new ZipLogReader(filename, registry);
+			return new ZipLogReader(new File(filename), registry, config);
 		if (filename.endsWith(".xz"))
-			return new FileLogReader(filename, registry);
+			return new FileLogReader(new File(filename), registry, config);
 		if (filename.endsWith(".log"))
 			return new FileLogReaderV1(filename, registry);
 		throw new LogException("Undefined Format");
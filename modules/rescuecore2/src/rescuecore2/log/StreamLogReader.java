@@ -34,7 +34,8 @@ public class StreamLogReader extends AbstractLogReader {
     private int maxTime;
     private Map<Integer, CommandsRecord> commands;
     private Map<Integer, UpdatesRecord> updates;
-    private Map<Integer, WorldModel<? extends Entity>> worldModels;
+    private WorldModel<? extends Entity> initialConditions;
+    private WorldModelHistory history;
     private Map<Integer, Map<EntityID, PerceptionRecord>> perception;
     private Config config;
 
@@ -45,10 +46,20 @@ public class StreamLogReader extends AbstractLogReader {
        @throws LogException If there is a problem reading the log.
      */
     public StreamLogReader(InputStream in, Registry registry) throws LogException {
+        this(in, registry, new Config());
+    }
+
+    /**
+       Construct a StreamLogReader.
+       @param in The InputStream to read.
+       @param registry The registry to use for reading log entries.
+       @param historyConfig Settings for rebuilding world models, see {@link WorldModelHistory}.
+       @throws LogException If there is a problem reading the log.
+     */
+    public StreamLogReader(InputStream in, Registry registry, Config historyConfig) throws LogException {
         super(registry);
         commands = new HashMap<Integer, CommandsRecord>();
         updates = new HashMap<Integer, UpdatesRecord>();
-        worldModels = new HashMap<Integer, WorldModel<? extends Entity>>();
         perception = new HashMap<Integer, Map<EntityID, PerceptionRecord>>();
         try {
             readLog(in);
@@ -56,6 +67,10 @@ public class StreamLogReader extends AbstractLogReader {
         catch (IOException e) {
             throw new LogException(e);
         }
+        history = new WorldModelHistory(initialConditions == null ? DefaultWorldModel.create() : initialConditions, historyConfig);
+        for (Map.Entry<Integer, UpdatesRecord> next : updates.entrySet()) {
+            history.addUpdates(next.getKey(), next.getValue().getChangeSet());
+        }
     }
 
     @Override
@@ -74,7 +89,8 @@ public class StreamLogReader extends AbstractLogReader {
     @Override
     public WorldModel<? extends Entity> getWorldModel(int time) throws LogException {
         checkTime(time);
-        WorldModel<? extends Entity> result = worldModels.get(time);
+        Registry.setCurrentRegistry(registry);
+        WorldModel<? extends Entity> result = history.getWorldModel(time);
         if (result == null) {
             result = DefaultWorldModel.create();
         }
@@ -225,11 +241,11 @@ public class StreamLogReader extends AbstractLogReader {
 
     private void readInitialConditions(InputStream in) throws IOException, LogException {
         InitialConditionsRecord record = new InitialConditionsRecord(in);
-        worldModels.put(0, record.getWorldModel());
+        initialConditions = record.getWorldModel();
     }
 	private void readInitialConditions(LogProto log) throws LogException {
 		InitialConditionsRecord record =new InitialConditionsRecord(log);
-		worldModels.put(0, record.getWorldModel());
+		initialConditions = record.getWorldModel();
 	}
 
     private void readPerception(InputStream in) throws IOException, LogException {
@@ -270,36 +286,12 @@ public class StreamLogReader extends AbstractLogReader {
         UpdatesRecord record = new UpdatesRecord(in);
         int time = record.getTime();
         updates.put(time, record);
-        // Make the world model for this timestep
-        WorldModel<? extends Entity> newWorld = new DefaultWorldModel<Entity>(Entity.class);
-        WorldModel<? extends Entity> oldWorld = getWorldModel(time - 1);
-        if (oldWorld != null) {
-            Set<Entity> copy = new HashSet<Entity>();
-            for (Entity next : oldWorld) {
-                copy.add(next.copy());
-            }
-            newWorld.merge(copy);
-        }
-        newWorld.merge(record.getChangeSet());
-        worldModels.put(time, newWorld);
         maxTime = Math.max(time, maxTime);
     }
     private void readUpdates(LogProto log) throws LogException {
         UpdatesRecord record = new UpdatesRecord(log);
         int time = record.getTime();
         updates.put(time, record);
-        // Make the world model for this timestep
-        WorldModel<? extends Entity> newWorld = new DefaultWorldModel<Entity>(Entity.class);
-        WorldModel<? extends Entity> oldWorld = getWorldModel(time - 1);
-        if (oldWorld != null) {
-            Set<Entity> copy = new HashSet<Entity>();
-            for (Entity next : oldWorld) {
-                copy.add(next.copy());
-            }
-            newWorld.merge(copy);
-        }
-        newWorld.merge(record.getChangeSet());
-        worldModels.put(time, newWorld);
         maxTime = Math.max(time, maxTime);
     }
 
@@ -0,0 +1,224 @@
+package rescuecore2.log;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import rescuecore2.config.Config;
+import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.worldmodel.DefaultWorldModel;
+import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.WorldModel;
+
+/**
+ * Reconstructs the state of the world at any timestep of a log from the
+ * initial conditions and the per-timestep simulator updates. Full copies of
+ * the world are only kept for periodic key frames and for a small cache of
+ * recently requested timesteps; every other timestep is rebuilt on demand by
+ * replaying updates from the nearest earlier key frame or cached world. The
+ * number of key frames is capped: once the cap is reached every other key
+ * frame is dropped so that the remaining ones stay spread over the log.
+ * <p>
+ * World models returned by {@link #getWorldModel(int)} are shared with the
+ * cache and must not be modified. The caller is responsible for setting the
+ * current {@link rescuecore2.registry.Registry} before asking for a world
+ * model, since replaying updates may need to create entities.
+ */
+public class WorldModelHistory {
+	/** The default number of timesteps between key frames. */
+	public static final int DEFAULT_KEY_FRAME_INTERVAL = 10;
+	/** The default number of recently requested world models to keep. */
+	public static final int DEFAULT_CACHE_SIZE = 5;
+	/** The default maximum number of key frames to keep. */
+	public static final int DEFAULT_MAX_KEY_FRAMES = 50;
+
+	/** The config key for the number of timesteps between key frames. */
+	public static final String KEY_FRAME_INTERVAL_KEY = "log.history.keyframe.interval";
+	/** The config key for the maximum number of key frames to keep. */
+	public static final String MAX_KEY_FRAMES_KEY = "log.history.keyframe.max";
+	/** The config key for the number of recently requested world models to keep. */
+	public static final String CACHE_SIZE_KEY = "log.history.cache.size";
+
+	private final int keyFrameInterval;
+	private final int maxKeyFrames;
+	private final NavigableMap<Integer, WorldModel<? extends Entity>> keyFrames;
+	private final Map<Integer, ChangeSet> updates;
+	private final Map<Integer, WorldModel<? extends Entity>> cache;
+	private int maxTime;
+
+	/**
+	 * Create a WorldModelHistory with the default key frame interval and cache
+	 * size.
+	 *
+	 * @param initial The world at timestep zero.
+	 */
+	public WorldModelHistory(WorldModel<? extends Entity> initial) {
+		this(initial, DEFAULT_KEY_FRAME_INTERVAL, DEFAULT_MAX_KEY_FRAMES,
+				DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Create a WorldModelHistory with settings read from a config. Missing
+	 * keys take the default values.
+	 *
+	 * @param initial The world at timestep zero.
+	 * @param config  The config to read {@link #KEY_FRAME_INTERVAL_KEY},
+	 *                {@link #MAX_KEY_FRAMES_KEY} and {@link #CACHE_SIZE_KEY}
+	 *                from.
+	 */
+	public WorldModelHistory(WorldModel<? extends Entity> initial,
+			Config config) {
+		this(initial,
+				config.getIntValue(KEY_FRAME_INTERVAL_KEY,
+						DEFAULT_KEY_FRAME_INTERVAL),
+				config.getIntValue(MAX_KEY_FRAMES_KEY, DEFAULT_MAX_KEY_FRAMES),
+				config.getIntValue(CACHE_SIZE_KEY, DEFAULT_CACHE_SIZE));
+	}
+
+	/**
+	 * Create a WorldModelHistory.
+	 *
+	 * @param initial          The world at timestep zero.
+	 * @param keyFrameInterval The number of timesteps between key frames.
+	 * @param maxKeyFrames     The maximum number of key frames to keep, not
+	 *                         counting the initial world.
+	 * @param cacheSize        The number of recently requested world models to
+	 *                         keep.
+	 */
+	public WorldModelHistory(WorldModel<? extends Entity> initial,
+			int keyFrameInterval, int maxKeyFrames, final int cacheSize) {
+		if (keyFrameInterval < 1) {
+			throw new IllegalArgumentException(
+					"Key frame interval must be positive: " + keyFrameInterval);
+		}
+		if (maxKeyFrames < 1) {
+			throw new IllegalArgumentException(
+					"Maximum key frames must be positive: " + maxKeyFrames);
+		}
+		this.keyFrameInterval = keyFrameInterval;
+		this.maxKeyFrames = maxKeyFrames;
+		keyFrames = new TreeMap<Integer, WorldModel<? extends Entity>>();
+		keyFrames.put(0, initial);
+		updates = new HashMap<Integer, ChangeSet>();
+		cache = new LinkedHashMap<Integer, WorldModel<? extends Entity>>(16,
+				0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<Integer, WorldModel<? extends Entity>> eldest) {
+				return size() > cacheSize;
+			}
+		};
+		maxTime = 0;
+	}
+
+	/**
+	 * Record the simulator updates for a timestep. Updates must be added before
+	 * any world model at or after that timestep is requested.
+	 *
+	 * @param time    The timestep.
+	 * @param changes The changes made during that timestep.
+	 */
+	public synchronized void addUpdates(int time, ChangeSet changes) {
+		if (time < 1) {
+			throw new IllegalArgumentException(
+					"Updates must be for a positive timestep: " + time);
+		}
+		updates.put(time, changes);
+		maxTime = Math.max(maxTime, time);
+	}
+
+	/**
+	 * Get the last timestep that has updates.
+	 *
+	 * @return The last timestep.
+	 */
+	public synchronized int getMaxTimestep() {
+		return maxTime;
+	}
+
+	/**
+	 * Get the state of the world at a particular timestep.
+	 *
+	 * @param time The timestep to look up.
+	 * @return The world model at the given timestep, or null if the timestep
+	 *         is out of range.
+	 */
+	public synchronized WorldModel<? extends Entity> getWorldModel(int time) {
+		if (time < 0 || time > maxTime) {
+			return null;
+		}
+		WorldModel<? extends Entity> result = cache.get(time);
+		if (result != null) {
+			return result;
+		}
+		// Start from the latest key frame or cached world before this time
+		Map.Entry<Integer, WorldModel<? extends Entity>> start = keyFrames
+				.floorEntry(time);
+		int startTime = start.getKey();
+		WorldModel<? extends Entity> startWorld = start.getValue();
+		for (Map.Entry<Integer, WorldModel<? extends Entity>> next : cache
+				.entrySet()) {
+			if (next.getKey() > startTime && next.getKey() < time) {
+				startTime = next.getKey();
+				startWorld = next.getValue();
+			}
+		}
+		Logger.debug("Building world model for time " + time + " from time "
+				+ startTime);
+		result = copy(startWorld);
+		for (int i = startTime + 1; i <= time; ++i) {
+			ChangeSet changes = updates.get(i);
+			if (changes != null) {
+				result.merge(changes);
+			}
+			if (i % keyFrameInterval == 0 && !keyFrames.containsKey(i)) {
+				removeStaleKeyFrames();
+				keyFrames.put(i, copy(result));
+			}
+		}
+		cache.put(time, result);
+		return result;
+	}
+
+	/**
+	 * Get the number of key frames currently held, including the initial
+	 * world.
+	 *
+	 * @return The number of key frames.
+	 */
+	public synchronized int getKeyFrameCount() {
+		return keyFrames.size();
+	}
+
+	private void removeStaleKeyFrames() {
+		// The initial world is always kept and does not count towards the cap.
+		// Dropping every other key frame keeps the rest evenly spread.
+		if (keyFrames.size() - 1 < maxKeyFrames) {
+			return;
+		}
+		while (keyFrames.size() - 1 >= maxKeyFrames) {
+			boolean remove = true;
+			for (Iterator<Integer> it = keyFrames.tailMap(0, false).keySet()
+					.iterator(); it.hasNext();) {
+				it.next();
+				if (remove) {
+					it.remove();
+				}
+				remove = !remove;
+			}
+		}
+		Logger.debug("Key frames after thinning: " + keyFrames.keySet());
+	}
+
+	private static WorldModel<? extends Entity> copy(
+			WorldModel<? extends Entity> world) {
+		WorldModel<Entity> result = new DefaultWorldModel<Entity>(Entity.class);
+		for (Entity next : world) {
+			result.addEntity(next.copy());
+		}
+		return result;
+	}
+}
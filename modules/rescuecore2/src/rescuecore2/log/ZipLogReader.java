@@ -13,7 +13,6 @@ import org.apache.commons.compress.archivers.sevenz.SevenZFile;
 import rescuecore2.config.Config;
 import rescuecore2.messages.protobuf.RCRSLogProto.LogProto;
 import rescuecore2.registry.Registry;
-import rescuecore2.worldmodel.DefaultWorldModel;
 import rescuecore2.worldmodel.Entity;
 import rescuecore2.worldmodel.EntityID;
 import rescuecore2.worldmodel.WorldModel;
@@ -22,7 +21,7 @@ public class ZipLogReader extends AbstractLogReader {
 
 	private SevenZFile sevenZFile;
 	private Map<String, SevenZArchiveEntry> entries = new HashMap<>();
-	private Map<Integer, WorldModel<? extends Entity>> worldModels = new HashMap<>();
+	private WorldModelHistory history;
 	private Map<Integer, Set<EntityID>> entitiesWithUpdates = new HashMap<>();
 	private int maxCycle = 0;
 
@@ -31,6 +30,20 @@ public class ZipLogReader extends AbstractLogReader {
 	}
 
 	public ZipLogReader(File file, Registry registry) throws LogException {
+		this(file, registry, new Config());
+	}
+
+	/**
+	 * Construct a ZipLogReader.
+	 *
+	 * @param file     The log file to read.
+	 * @param registry The registry to use for reading log entries.
+	 * @param config   Settings for rebuilding world models, see
+	 *                 {@link WorldModelHistory}.
+	 * @throws LogException If there is a problem reading the log.
+	 */
+	public ZipLogReader(File file, Registry registry, Config config)
+			throws LogException {
 		super(registry);
 		try {
 			sevenZFile = new SevenZFile(file);
@@ -60,36 +73,19 @@ public class ZipLogReader extends AbstractLogReader {
 		Logger.info("Found " + maxCycle + " cycles.");
 //		System.out.println(entitiesWithUpdates);
 //		System.out.println(entries);
-		buildWorldModels();
+		buildWorldModels(config);
 	}
 
-	private void buildWorldModels() throws LogException {
-		worldModels.put(0, getInitialConditions().getWorldModel());
+	private void buildWorldModels(Config config) throws LogException {
+		Registry.setCurrentRegistry(registry);
+		history = new WorldModelHistory(
+				getInitialConditions().getWorldModel(), config);
 		for (int i = 1; i <= getMaxTimestep(); i++) {
-			buildWorldModelForTime(i);
-		}
-	}
-
-	private void buildWorldModelForTime(int time) throws LogException {
-		UpdatesRecord record = getUpdates(time);
-
-		if (time % 10 == 0)
-			System.out.println(time);
-		Logger.info("Building worldmodel of " + time + ".");
-
-		// Make the world model for this timestep
-		WorldModel<? extends Entity> newWorld = new DefaultWorldModel<Entity>(
-				Entity.class);
-		WorldModel<? extends Entity> oldWorld = getWorldModel(time - 1);
-		if (oldWorld != null) {
-			Set<Entity> copy = new HashSet<Entity>();
-			for (Entity next : oldWorld) {
-				copy.add(next.copy());
+			UpdatesRecord record = getUpdates(i);
+			if (record != null) {
+				history.addUpdates(i, record.getChangeSet());
 			}
-			newWorld.merge(copy);
 		}
-		newWorld.merge(record.getChangeSet());
-		worldModels.put(time, newWorld);
 	}
 
 	private LogProto readFromFile(String path) throws LogException {
@@ -125,8 +121,8 @@ public class ZipLogReader extends AbstractLogReader {
 	@Override
 	public WorldModel<? extends Entity> getWorldModel(int time)
 			throws LogException {
-
-		return worldModels.get(time);
+		Registry.setCurrentRegistry(registry);
+		return history.getWorldModel(time);
 	}
 
 	@Override
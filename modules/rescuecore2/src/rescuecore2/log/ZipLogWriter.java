@@ -10,22 +10,35 @@ import org.apache.commons.compress.archivers.sevenz.SevenZOutputFile;
 public class ZipLogWriter implements LogWriter {
 
 	private SevenZOutputFile sevenZOutput;
+	private volatile long bytesWritten;
 
 	public ZipLogWriter(File file) throws IOException {
 		sevenZOutput = new SevenZOutputFile(file);
+		bytesWritten = 0;
 	}
 
 	@Override
 	public void writeRecord(LogRecord record) throws LogException {
 		try {
+			byte[] data = record.toLogProto().toByteArray();
 			sevenZOutput.putArchiveEntry(getRecordArchive(record));
-			sevenZOutput.write(record.toLogProto().toByteArray());
+			sevenZOutput.write(data);
 			sevenZOutput.closeArchiveEntry();
+			bytesWritten += data.length;
 		} catch (IOException e) {
 			throw new LogException(e);
 		}
 	}
 
+	/**
+	 * Get the number of bytes written so far, before any compression.
+	 *
+	 * @return The number of bytes written.
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
 	@Override
 	public void close() {
 		try {
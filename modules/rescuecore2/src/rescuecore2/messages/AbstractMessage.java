@@ -4,9 +4,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import rescuecore2.URN;
 import rescuecore2.messages.protobuf.RCRSProto.MessageComponentProto;
@@ -20,6 +23,7 @@ import rescuecore2.messages.protobuf.RCRSProto.MessageProto;
 public abstract class AbstractMessage implements Message {
   private int urn;
   private List<MessageComponent> components;
+  private Map<Integer, MessageComponentProto> optionalComponents;
 
   /**
    * Construct a message with a given urn.
@@ -63,6 +67,39 @@ public abstract class AbstractMessage implements Message {
     components.add(component);
   }
 
+  /**
+   * Set the value of an optional component. Optional components are only sent
+   * when they have a value and may be missing from received messages, so they
+   * can be used to extend a message without breaking components that do not
+   * know about them. Optional components are only supported by the protobuf
+   * encoding.
+   *
+   * @param name  The name of the component.
+   * @param value The value of the component, or null to remove it.
+   */
+  protected void setOptionalComponent(URN name, MessageComponentProto value) {
+    if (value == null) {
+      if (optionalComponents != null) {
+        optionalComponents.remove(name.getURNId());
+      }
+      return;
+    }
+    if (optionalComponents == null) {
+      optionalComponents = new HashMap<Integer, MessageComponentProto>();
+    }
+    optionalComponents.put(name.getURNId(), value);
+  }
+
+  /**
+   * Get the value of an optional component.
+   *
+   * @param name The name of the component.
+   * @return The value of the component, or null if it is not present.
+   */
+  protected MessageComponentProto getOptionalComponent(URN name) {
+    return optionalComponents == null ? null : optionalComponents.get(name.getURNId());
+  }
+
   @Override
   public String toString() {
     StringBuilder result = new StringBuilder();
@@ -98,14 +135,28 @@ public abstract class AbstractMessage implements Message {
     for (MessageComponent next : components) {
       builder.putComponents(next.getName().getURNId(), next.toMessageComponentProto());
     }
+    if (optionalComponents != null) {
+      builder.putAllComponents(optionalComponents);
+    }
     return builder.build();
   }
 
   @Override
   public void fromMessageProto(MessageProto proto) {
     Map<Integer, MessageComponentProto> receivedcomponents = proto.getComponentsMap();
+    Set<Integer> known = new HashSet<Integer>();
     for (MessageComponent next : components) {
       next.fromMessageComponentProto(receivedcomponents.get(next.getName().getURNId()));
+      known.add(next.getName().getURNId());
+    }
+    optionalComponents = null;
+    for (Map.Entry<Integer, MessageComponentProto> next : receivedcomponents.entrySet()) {
+      if (!known.contains(next.getKey())) {
+        if (optionalComponents == null) {
+          optionalComponents = new HashMap<Integer, MessageComponentProto>();
+        }
+        optionalComponents.put(next.getKey(), next.getValue());
+      }
     }
   }
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+package rescuecore2.messages;
+
+import rescuecore2.URN;
+import rescuecore2.messages.protobuf.RCRSProto.MessageComponentProto;
+import rescuecore2.messages.protobuf.RCRSProto.MessageProto;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+   Message components that are sent unchanged to many recipients, for example the ChangeSet the kernel sends to every simulator each timestep. The components are converted to protobuf once when this object is constructed and serialized to bytes at most once, the first time a connection asks for them. Each recipient is sent its own small header message with {@link rescuecore2.connection.Connection#sendEncoded(Message, EncodedBroadcast)}; the receiver sees an ordinary message made of the header's components plus these shared ones. This class is thread-safe.
+ */
+public class EncodedBroadcast {
+    private final Map<Integer, MessageComponentProto> components;
+    private volatile byte[] bytes;
+    private volatile long encodeTime;
+
+    /**
+       Encode some of the components of a message.
+       @param template A message holding the shared components. Other components of this message are ignored.
+       @param shared The names of the shared components.
+    */
+    public EncodedBroadcast(Message template, URN... shared) {
+        long start = System.nanoTime();
+        Map<Integer, MessageComponentProto> all = template.toMessageProto().getComponentsMap();
+        Map<Integer, MessageComponentProto> result = new HashMap<Integer, MessageComponentProto>();
+        for (URN next : shared) {
+            MessageComponentProto component = all.get(next.getURNId());
+            if (component == null) {
+                throw new IllegalArgumentException("Message " + template.getURN() + " has no component " + next);
+            }
+            result.put(next.getURNId(), component);
+        }
+        components = Collections.unmodifiableMap(result);
+        encodeTime = System.nanoTime() - start;
+    }
+
+    /**
+       Wrap components that have already been serialized. This is for callers that can produce the bytes more cheaply than protobuf, for example by reusing parts of an existing encoding.
+       @param components The shared components.
+       @param bytes The serialized MessageProto holding exactly these components. The array must not be modified afterwards.
+       @param encodeTime The time spent producing the components and bytes in nanoseconds.
+    */
+    public EncodedBroadcast(Map<Integer, MessageComponentProto> components, byte[] bytes, long encodeTime) {
+        this.components = Collections.unmodifiableMap(new HashMap<Integer, MessageComponentProto>(components));
+        this.bytes = bytes;
+        this.encodeTime = encodeTime;
+    }
+
+    /**
+       Get the shared components.
+       @return An unmodifiable map from component URN to component.
+    */
+    public Map<Integer, MessageComponentProto> getComponents() {
+        return components;
+    }
+
+    /**
+       Get the serialized form of the shared components. The bytes are a valid MessageProto holding only the shared components, so they can be appended to a serialized MessageProto holding the other components. The array is shared by all callers and must not be modified.
+       @return The serialized components.
+    */
+    public byte[] getBytes() {
+        byte[] result = bytes;
+        if (result == null) {
+            synchronized (this) {
+                result = bytes;
+                if (result == null) {
+                    long start = System.nanoTime();
+                    result = MessageProto.newBuilder().putAllComponents(components).build().toByteArray();
+                    encodeTime += System.nanoTime() - start;
+                    bytes = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+       Encode the components of a header message that are not shared. Writing the result followed by {@link #getBytes()} gives the serialized MessageProto of the whole message, because protobuf map entries can be concatenated.
+       @param header A message holding the components that belong to one recipient. Any components with the same names as the shared components are left out, so they can be empty.
+       @return The serialized MessageProto without the shared components.
+    */
+    public byte[] encodeHeader(Message header) {
+        MessageProto.Builder builder = header.toMessageProto().toBuilder();
+        for (Integer next : components.keySet()) {
+            builder.removeComponents(next);
+        }
+        return builder.build().toByteArray();
+    }
+
+    /**
+       Build the whole message for one recipient as a MessageProto. This is for connections that do not write bytes; the shared component protos are immutable so they are reused rather than copied.
+       @param header A message holding the components that belong to one recipient. Any components with the same names as the shared components are replaced.
+       @return The combined MessageProto.
+    */
+    public MessageProto toMessageProto(Message header) {
+        return header.toMessageProto().toBuilder().putAllComponents(components).build();
+    }
+
+    /**
+       Find out if the shared components have been serialized yet.
+       @return True if {@link #getBytes()} has been called.
+    */
+    public boolean isSerialized() {
+        return bytes != null;
+    }
+
+    /**
+       Get the size of the serialized components.
+       @return The number of bytes, or zero if the components have not been serialized.
+    */
+    public int getByteCount() {
+        byte[] result = bytes;
+        return result == null ? 0 : result.length;
+    }
+
+    /**
+       Get the time spent encoding the shared components so far.
+       @return The encoding time in nanoseconds.
+    */
+    public long getEncodeTime() {
+        return encodeTime;
+    }
+}
@@ -24,6 +24,8 @@ import rescuecore2.worldmodel.Entity;
  */
 public class EntityListComponent extends AbstractMessageComponent {
 	private List<Entity> entities;
+	private EntityListProto encoded;
+	private EntityListProto received;
 
 	/**
 	 * Construct an EntityListComponent with no content.
@@ -63,6 +65,48 @@ public class EntityListComponent extends AbstractMessageComponent {
 	 */
 	public void setEntities(Collection<? extends Entity> entities) {
 		this.entities = new ArrayList<Entity>(entities);
+		this.encoded = null;
+		this.received = null;
+	}
+
+	/**
+	 * Set the entities that make up this message component along with an
+	 * existing encoding of them. The encoding is sent as is, so this avoids
+	 * encoding the same entities again for every message.
+	 *
+	 * @param entities The entities in this component.
+	 * @param encoded  The encoded entities.
+	 */
+	public void setEntities(Collection<? extends Entity> entities,
+			EntityListProto encoded) {
+		this.entities = new ArrayList<Entity>(entities);
+		this.encoded = encoded;
+		this.received = null;
+	}
+
+	/**
+	 * Get the encoded form of the entities in this component. For a component
+	 * that was read from a protobuf message this is the encoding that was
+	 * received, which does not reflect any later changes to the entities.
+	 *
+	 * @return The encoded entities.
+	 */
+	public EntityListProto toEntityListProto() {
+		if (received != null) {
+			return received;
+		}
+		return encode();
+	}
+
+	private EntityListProto encode() {
+		if (encoded != null) {
+			return encoded;
+		}
+		EntityListProto.Builder builder = EntityListProto.newBuilder();
+		for (Entity next : entities) {
+			builder.addEntities(next.toEntityProto());
+		}
+		return builder.build();
 	}
 
 	@Override
@@ -76,6 +120,8 @@ public class EntityListComponent extends AbstractMessageComponent {
 	@Override
 	public void read(InputStream in) throws IOException {
 		entities.clear();
+		encoded = null;
+		received = null;
 		int size = readInt32(in);
 		for (int i = 0; i < size; ++i) {
 			Entity e = readEntity(in);
@@ -93,8 +139,9 @@ public class EntityListComponent extends AbstractMessageComponent {
 	@Override
 	public void fromMessageComponentProto(MessageComponentProto proto) {
 		entities.clear();
-		for (EntityProto entityProto : proto.getEntityList()
-				.getEntitiesList()) {
+		encoded = null;
+		received = proto.getEntityList();
+		for (EntityProto entityProto : received.getEntitiesList()) {
 			Entity entity = MsgProtoBuf.entityProto2Entity(entityProto);
 			if(entity!=null)
 				entities.add(entity);
@@ -103,11 +150,7 @@ public class EntityListComponent extends AbstractMessageComponent {
 
 	@Override
 	public MessageComponentProto toMessageComponentProto() {
-		EntityListProto.Builder builder = EntityListProto.newBuilder();
-		for (Entity next : entities) {
-			builder.addEntities(next.toEntityProto());
-		}
-		return MessageComponentProto.newBuilder().setEntityList(builder)
-				.build();
+		return MessageComponentProto.newBuilder()
+				.setEntityList(encode()).build();
 	}
 }
@@ -0,0 +1,334 @@
+package rescuecore2.messages.components;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+import rescuecore2.URN;
+import rescuecore2.messages.EncodedBroadcast;
+import rescuecore2.messages.protobuf.RCRSProto.EntityListProto;
+import rescuecore2.messages.protobuf.RCRSProto.EntityProto;
+import rescuecore2.messages.protobuf.RCRSProto.MessageComponentProto;
+import rescuecore2.messages.protobuf.RCRSProto.MessageProto;
+import rescuecore2.messages.protobuf.RCRSProto.PropertyProto;
+import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.EntityID;
+
+/**
+ * A list of entities that is encoded once and then sent to many components.
+ * The entities are converted to protobuf when the list is created, so the list
+ * is a snapshot: later changes to the entities are not seen. Entities are kept
+ * in ID order and properties in URN order so that the encoding, and therefore
+ * the hash, only depends on the content of the list.
+ * <p>
+ * A per-component variant can be encoded with one entity replaced, for example
+ * to give an agent the unfiltered version of the entity it controls, without
+ * encoding the rest of the list again. The list can also be serialized once
+ * and sent to many components with
+ * {@link rescuecore2.connection.Connection#sendEncoded}; per-component
+ * variants then reuse the serialized bytes of every entity except the
+ * replaced one.
+ */
+public class SharedEntityList {
+	private static final String HASH_ALGORITHM = "SHA-256";
+	private static final Comparator<PropertyProto> PROPERTY_ORDER = new Comparator<PropertyProto>() {
+		@Override
+		public int compare(PropertyProto p1, PropertyProto p2) {
+			return Integer.compare(p1.getUrn(), p2.getUrn());
+		}
+	};
+
+	private final List<Entity> entities;
+	private final Map<EntityID, Integer> index;
+	private final List<EntityProto> protos;
+	private final EntityListProto proto;
+	private final Map<Integer, EncodedBroadcast> broadcasts;
+	private byte[] bytes;
+	private int[] offsets;
+	private String hash;
+
+	/**
+	 * Construct a SharedEntityList.
+	 *
+	 * @param entities The entities to encode.
+	 */
+	public SharedEntityList(Collection<? extends Entity> entities) {
+		List<Entity> sorted = new ArrayList<Entity>(entities);
+		Collections.sort(sorted, new Comparator<Entity>() {
+			@Override
+			public int compare(Entity e1, Entity e2) {
+				return Integer.compare(e1.getID().getValue(),
+						e2.getID().getValue());
+			}
+		});
+		this.entities = Collections.unmodifiableList(sorted);
+		index = new HashMap<EntityID, Integer>(sorted.size() * 2);
+		List<EntityProto> encoded = new ArrayList<EntityProto>(sorted.size());
+		for (Entity next : sorted) {
+			index.put(next.getID(), encoded.size());
+			encoded.add(encode(next));
+		}
+		protos = Collections.unmodifiableList(encoded);
+		proto = EntityListProto.newBuilder().addAllEntities(protos).build();
+		broadcasts = new HashMap<Integer, EncodedBroadcast>();
+	}
+
+	/**
+	 * Get the entities in this list.
+	 *
+	 * @return An unmodifiable list of entities in ID order.
+	 */
+	public List<Entity> getEntities() {
+		return entities;
+	}
+
+	/**
+	 * Get the entities in this list with one entity replaced. If the list does
+	 * not contain an entity with the same ID then the replacement is added.
+	 *
+	 * @param replacement The entity to substitute.
+	 * @return A new list of entities.
+	 */
+	public List<Entity> getEntities(Entity replacement) {
+		List<Entity> result = new ArrayList<Entity>(entities);
+		Integer i = index.get(replacement.getID());
+		if (i == null) {
+			result.add(replacement);
+		} else {
+			result.set(i, replacement);
+		}
+		return result;
+	}
+
+	/**
+	 * Get the encoded list.
+	 *
+	 * @return The encoded list.
+	 */
+	public EntityListProto toEntityListProto() {
+		return proto;
+	}
+
+	/**
+	 * Encode the list with one entity replaced. Only the replacement is encoded;
+	 * every other entity reuses the shared encoding.
+	 *
+	 * @param replacement The entity to substitute.
+	 * @return The encoded list.
+	 */
+	public EntityListProto toEntityListProto(Entity replacement) {
+		return toEntityListProto(replacement.getID(), encode(replacement));
+	}
+
+	/**
+	 * Serialize the list as a message component that can be sent to many
+	 * components. The list is only serialized once, however many times this
+	 * is called.
+	 *
+	 * @param component The name of the message component that holds the list.
+	 * @return The encoded component.
+	 */
+	public synchronized EncodedBroadcast toEncodedBroadcast(URN component) {
+		EncodedBroadcast result = broadcasts.get(component.getURNId());
+		if (result == null) {
+			long start = System.nanoTime();
+			byte[] list = getBytes();
+			result = new EncodedBroadcast(
+					Collections.singletonMap(component.getURNId(),
+							MessageComponentProto.newBuilder()
+									.setEntityList(proto).build()),
+					encodeComponent(component.getURNId(), list.length,
+							list.length, null),
+					System.nanoTime() - start);
+			broadcasts.put(component.getURNId(), result);
+		}
+		return result;
+	}
+
+	/**
+	 * Serialize the list with one entity replaced as a message component. The
+	 * bytes are spliced together from the shared serialization of the list and
+	 * the serialized replacement, so only the replacement is encoded. The
+	 * result is the same as serializing {@link #toEntityListProto(Entity)}.
+	 *
+	 * @param component   The name of the message component that holds the
+	 *                    list.
+	 * @param replacement The entity to substitute.
+	 * @return The encoded component.
+	 */
+	public EncodedBroadcast toEncodedBroadcast(URN component,
+			Entity replacement) {
+		long start = System.nanoTime();
+		EntityProto replacementProto = encode(replacement);
+		int from;
+		int to;
+		synchronized (this) {
+			getBytes();
+			Integer i = index.get(replacement.getID());
+			from = i == null ? bytes.length : offsets[i];
+			to = i == null ? bytes.length : offsets[i + 1];
+		}
+		byte[] encoded = encodeComponent(component.getURNId(), from, to,
+				replacementProto);
+		return new EncodedBroadcast(
+				Collections.singletonMap(component.getURNId(),
+						MessageComponentProto.newBuilder()
+								.setEntityList(toEntityListProto(
+										replacement.getID(), replacementProto))
+								.build()),
+				encoded, System.nanoTime() - start);
+	}
+
+	private EntityListProto toEntityListProto(EntityID id,
+			EntityProto replacementProto) {
+		Integer i = index.get(id);
+		EntityListProto.Builder builder = EntityListProto.newBuilder();
+		if (i == null) {
+			builder.addAllEntities(protos);
+			builder.addEntities(replacementProto);
+		} else {
+			builder.addAllEntities(protos.subList(0, i));
+			builder.addEntities(replacementProto);
+			builder.addAllEntities(protos.subList(i + 1, protos.size()));
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Get a hash of the encoded list. Two lists with the same hash can be
+	 * assumed to have the same content.
+	 *
+	 * @return A hex encoded hash of the list.
+	 */
+	public synchronized String getHash() {
+		if (hash == null) {
+			hash = hash(getBytes());
+		}
+		return hash;
+	}
+
+	/**
+	 * Compute the hash of an encoded entity list in the same way as
+	 * {@link #getHash()}.
+	 *
+	 * @param list The encoded list.
+	 * @return A hex encoded hash of the list.
+	 */
+	public static String hash(EntityListProto list) {
+		return hash(list.toByteArray());
+	}
+
+	private static String hash(byte[] list) {
+		try {
+			byte[] digest = MessageDigest.getInstance(HASH_ALGORITHM)
+					.digest(list);
+			StringBuilder result = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				result.append(String.format("%02x", b & 0xFF));
+			}
+			return result.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(
+					HASH_ALGORITHM + " is not available", e);
+		}
+	}
+
+	/**
+	 * Serialize the list and record where each entity starts. Callers must hold
+	 * the lock on this object.
+	 */
+	private byte[] getBytes() {
+		if (bytes == null) {
+			bytes = proto.toByteArray();
+			offsets = new int[protos.size() + 1];
+			int offset = 0;
+			for (int i = 0; i < protos.size(); ++i) {
+				offsets[i] = offset;
+				offset += CodedOutputStream.computeMessageSize(
+						EntityListProto.ENTITIES_FIELD_NUMBER, protos.get(i));
+			}
+			offsets[protos.size()] = offset;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Write a MessageProto holding one entity list component by hand. The list
+	 * is the shared bytes with the range from {@code from} to {@code to}
+	 * replaced by the replacement entity, if there is one. Map entries are
+	 * written as a key field followed by a value field.
+	 */
+	private byte[] encodeComponent(int urn, int from, int to,
+			EntityProto replacement) {
+		int listSize = from + bytes.length - to;
+		if (replacement != null) {
+			listSize += CodedOutputStream.computeMessageSize(
+					EntityListProto.ENTITIES_FIELD_NUMBER, replacement);
+		}
+		int valueSize = lengthDelimitedSize(
+				MessageComponentProto.ENTITYLIST_FIELD_NUMBER, listSize);
+		int entrySize = CodedOutputStream.computeInt32Size(1, urn)
+				+ lengthDelimitedSize(2, valueSize);
+		byte[] result = new byte[lengthDelimitedSize(
+				MessageProto.COMPONENTS_FIELD_NUMBER, entrySize)];
+		CodedOutputStream out = CodedOutputStream.newInstance(result);
+		try {
+			writeLengthDelimited(out, MessageProto.COMPONENTS_FIELD_NUMBER,
+					entrySize);
+			out.writeInt32(1, urn);
+			writeLengthDelimited(out, 2, valueSize);
+			writeLengthDelimited(out,
+					MessageComponentProto.ENTITYLIST_FIELD_NUMBER, listSize);
+			out.writeRawBytes(bytes, 0, from);
+			if (replacement != null) {
+				out.writeMessage(EntityListProto.ENTITIES_FIELD_NUMBER,
+						replacement);
+			}
+			out.writeRawBytes(bytes, to, bytes.length - to);
+		} catch (IOException e) {
+			throw new IllegalStateException("Error encoding entity list", e);
+		}
+		out.checkNoSpaceLeft();
+		return result;
+	}
+
+	private static int lengthDelimitedSize(int field, int size) {
+		return CodedOutputStream.computeTagSize(field)
+				+ CodedOutputStream.computeUInt32SizeNoTag(size) + size;
+	}
+
+	private static void writeLengthDelimited(CodedOutputStream out, int field,
+			int size) throws IOException {
+		out.writeTag(field, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+		out.writeUInt32NoTag(size);
+	}
+
+	private static EntityProto encode(Entity entity) {
+		// Entities keep their properties in a hash set, so put them in a fixed order
+		EntityProto proto = entity.toEntityProto();
+		List<PropertyProto> properties = new ArrayList<PropertyProto>(
+				proto.getPropertiesList());
+		Collections.sort(properties, PROPERTY_ORDER);
+		return proto.toBuilder().clearProperties().addAllProperties(properties)
+				.build();
+	}
+
+	/**
+	 * Get the number of entities in this list.
+	 *
+	 * @return The number of entities.
+	 */
+	public int size() {
+		return entities.size();
+	}
+}
@@ -10,6 +10,7 @@ import rescuecore2.messages.components.IntComponent;
 import rescuecore2.messages.components.IntListComponent;
 import rescuecore2.messages.components.StringComponent;
 import rescuecore2.messages.components.StringListComponent;
+import rescuecore2.messages.protobuf.RCRSProto.MessageComponentProto;
 import rescuecore2.messages.protobuf.RCRSProto.MessageProto;
 import rescuecore2.registry.Registry;
 
@@ -116,4 +117,29 @@ public class AKConnect extends AbstractMessage {
   public List<Integer> getRequestedEntityTypes() {
     return requestedIntEntityTypes.getValues();
   }
-}
\ No newline at end of file
+
+  /**
+   * Set the hash of the initial world that this agent has cached locally.
+   * Sending a hash, even an empty one, tells the kernel that this agent
+   * caches the initial world, so the kernel will send the world hash and can
+   * leave the world out of the reply if the hash matches.
+   *
+   * @param hash The hash of the cached world, an empty string if nothing is
+   *             cached, or null if this agent does not cache the world.
+   */
+  public void setWorldHash(String hash) {
+    setOptionalComponent(ControlMessageComponentURN.WorldHash,
+        hash == null ? null : MessageComponentProto.newBuilder().setStringValue(hash).build());
+  }
+
+  /**
+   * Get the hash of the initial world that this agent has cached locally.
+   *
+   * @return The hash of the cached world, an empty string if nothing is
+   *         cached, or null if this agent does not cache the world.
+   */
+  public String getWorldHash() {
+    MessageComponentProto hash = getOptionalComponent(ControlMessageComponentURN.WorldHash);
+    return hash == null ? null : hash.getStringValue();
+  }
+}
@@ -24,7 +24,13 @@ public enum ControlMessageComponentURN implements URN {
   TIMES(CONTROL_MSG_COMPONENT_URN_PREFIX | 18, "TIMES"), ID(CONTROL_MSG_COMPONENT_URN_PREFIX | 19, "ID"),
   Commands(CONTROL_MSG_COMPONENT_URN_PREFIX | 20, "Commands"),
   SimulatorConfig(CONTROL_MSG_COMPONENT_URN_PREFIX | 21, "Simulator config"),
-  Changes(CONTROL_MSG_COMPONENT_URN_PREFIX | 22, "Changes");
+  Changes(CONTROL_MSG_COMPONENT_URN_PREFIX | 22, "Changes"),
+  WorldHash(CONTROL_MSG_COMPONENT_URN_PREFIX | 23, "World hash"),
+  WorldCached(CONTROL_MSG_COMPONENT_URN_PREFIX | 24, "World cached"),
+  AgentEntity(CONTROL_MSG_COMPONENT_URN_PREFIX | 25, "Agent entity"),
+  SubscribedEntityTypes(CONTROL_MSG_COMPONENT_URN_PREFIX | 26, "Subscribed entity types"),
+  SubscribedPropertyTypes(CONTROL_MSG_COMPONENT_URN_PREFIX | 27, "Subscribed property types"),
+  SubscribedCommandTypes(CONTROL_MSG_COMPONENT_URN_PREFIX | 28, "Subscribed command types");
 
   private int urnId;
   private String urnStr;
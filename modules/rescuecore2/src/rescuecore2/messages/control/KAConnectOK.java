@@ -10,6 +10,10 @@ import rescuecore2.messages.components.ConfigComponent;
 import rescuecore2.messages.components.EntityIDComponent;
 import rescuecore2.messages.components.EntityListComponent;
 import rescuecore2.messages.components.IntComponent;
+import rescuecore2.messages.components.SharedEntityList;
+import rescuecore2.messages.protobuf.MsgProtoBuf;
+import rescuecore2.messages.protobuf.RCRSProto.EntityListProto;
+import rescuecore2.messages.protobuf.RCRSProto.MessageComponentProto;
 import rescuecore2.messages.protobuf.RCRSProto.MessageProto;
 import rescuecore2.worldmodel.Entity;
 import rescuecore2.worldmodel.EntityID;
@@ -51,6 +55,77 @@ public class KAConnectOK extends AbstractMessage {
     this.config.setConfig(config);
   }
 
+  /**
+   * A populated KAConnectOK message that sends a pre-encoded world. Agents
+   * that do not cache the initial world get the shared world with their own
+   * entity substituted. Agents that do cache the world get the shared world
+   * and its hash, or nothing if the hash matches, along with their own entity
+   * as a separate component.
+   *
+   * @param requestID  The request ID.
+   * @param agentID    The ID of the Entity that the agent will be controlling.
+   * @param agent      The full version of the controlled entity.
+   * @param world      The entities that every agent knows about.
+   * @param cachedHash The world hash sent by the agent, or null if the agent
+   *                   does not cache the world.
+   * @param config     The Config that the agent knows about.
+   */
+  public KAConnectOK(int requestID, EntityID agentID, Entity agent, SharedEntityList world, String cachedHash,
+      Config config) {
+    this();
+    this.requestID.setValue(requestID);
+    this.agentID.setValue(agentID);
+    this.config.setConfig(config);
+    if (cachedHash == null) {
+      this.world.setEntities(world.getEntities(agent), world.toEntityListProto(agent));
+      return;
+    }
+    String hash = world.getHash();
+    setCacheComponents(agent, hash, cachedHash);
+    if (!hash.equals(cachedHash)) {
+      this.world.setEntities(world.getEntities(), world.toEntityListProto());
+    }
+  }
+
+  /**
+   * A populated KAConnectOK message with no world. This is the part of the
+   * message that belongs to one agent; the world is sent alongside it after
+   * being encoded once for all agents with
+   * {@link SharedEntityList#toEncodedBroadcast}. The other components are the
+   * same as those set by
+   * {@link #KAConnectOK(int, EntityID, Entity, SharedEntityList, String, Config)}.
+   *
+   * @param requestID  The request ID.
+   * @param agentID    The ID of the Entity that the agent will be controlling.
+   * @param agent      The full version of the controlled entity.
+   * @param worldHash  The hash of the shared world. This is ignored if the
+   *                   agent does not cache the world.
+   * @param cachedHash The world hash sent by the agent, or null if the agent
+   *                   does not cache the world.
+   * @param config     The Config that the agent knows about.
+   */
+  public KAConnectOK(int requestID, EntityID agentID, Entity agent, String worldHash, String cachedHash,
+      Config config) {
+    this();
+    this.requestID.setValue(requestID);
+    this.agentID.setValue(agentID);
+    this.config.setConfig(config);
+    if (cachedHash != null) {
+      setCacheComponents(agent, worldHash, cachedHash);
+    }
+  }
+
+  private void setCacheComponents(Entity agent, String hash, String cachedHash) {
+    setOptionalComponent(ControlMessageComponentURN.WorldHash,
+        MessageComponentProto.newBuilder().setStringValue(hash).build());
+    setOptionalComponent(ControlMessageComponentURN.AgentEntity,
+        MessageComponentProto.newBuilder().setEntity(agent.toEntityProto()).build());
+    if (hash.equals(cachedHash)) {
+      setOptionalComponent(ControlMessageComponentURN.WorldCached,
+          MessageComponentProto.newBuilder().setIntValue(1).build());
+    }
+  }
+
   private KAConnectOK() {
     super(ControlMessageURN.KA_CONNECT_OK);
     requestID = new IntComponent(ControlMessageComponentURN.RequestID);
@@ -103,4 +178,48 @@ public class KAConnectOK extends AbstractMessage {
   public Config getConfig() {
     return config.getConfig();
   }
+
+  /**
+   * Get the encoded entity list as it was received.
+   *
+   * @return The encoded entities.
+   */
+  public EntityListProto getEntityListProto() {
+    return world.toEntityListProto();
+  }
+
+  /**
+   * Get the hash of the shared initial world.
+   *
+   * @return The world hash, or null if the kernel did not send one.
+   */
+  public String getWorldHash() {
+    MessageComponentProto hash = getOptionalComponent(ControlMessageComponentURN.WorldHash);
+    return hash == null ? null : hash.getStringValue();
+  }
+
+  /**
+   * Find out whether the kernel left the world out of this message because the
+   * agent already has it cached. If so then {@link #getEntities()} is empty and
+   * the agent should use its cached world.
+   *
+   * @return True if the agent should use its cached world.
+   */
+  public boolean isWorldCached() {
+    MessageComponentProto cached = getOptionalComponent(ControlMessageComponentURN.WorldCached);
+    return cached != null && cached.getIntValue() != 0;
+  }
+
+  /**
+   * Get the full version of the controlled entity. This is only sent when the
+   * kernel sends the world hash, in which case the shared world may contain a
+   * filtered version of the controlled entity or none at all.
+   *
+   * @return The controlled entity, or null if the kernel did not send it
+   *         separately.
+   */
+  public Entity getAgentEntity() {
+    MessageComponentProto agent = getOptionalComponent(ControlMessageComponentURN.AgentEntity);
+    return agent == null ? null : MsgProtoBuf.entityProto2Entity(agent.getEntity());
+  }
 }
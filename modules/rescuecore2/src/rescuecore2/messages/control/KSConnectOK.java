@@ -9,6 +9,9 @@ import rescuecore2.messages.AbstractMessage;
 import rescuecore2.messages.components.ConfigComponent;
 import rescuecore2.messages.components.EntityListComponent;
 import rescuecore2.messages.components.IntComponent;
+import rescuecore2.messages.components.SharedEntityList;
+import rescuecore2.messages.protobuf.RCRSProto.EntityListProto;
+import rescuecore2.messages.protobuf.RCRSProto.MessageComponentProto;
 import rescuecore2.messages.protobuf.RCRSProto.MessageProto;
 import rescuecore2.worldmodel.Entity;
 
@@ -48,6 +51,36 @@ public class KSConnectOK extends AbstractMessage {
     this.config.setConfig(config);
   }
 
+  /**
+   * A populated KSConnectOK message that sends a pre-encoded world. If the
+   * simulator caches the initial world then the world hash is included, and
+   * the world itself is left out if the simulator already has it.
+   *
+   * @param simulatorID The ID of the simulator that has successfully connected.
+   * @param requestID   The request ID.
+   * @param world       All Entities in the world.
+   * @param cachedHash  The world hash sent by the simulator, or null if the
+   *                    simulator does not cache the world.
+   * @param config      The Config that the simulator knows about.
+   */
+  public KSConnectOK(int simulatorID, int requestID, SharedEntityList world, String cachedHash, Config config) {
+    this();
+    this.simulatorID.setValue(simulatorID);
+    this.requestID.setValue(requestID);
+    this.config.setConfig(config);
+    if (cachedHash != null) {
+      String hash = world.getHash();
+      setOptionalComponent(ControlMessageComponentURN.WorldHash,
+          MessageComponentProto.newBuilder().setStringValue(hash).build());
+      if (hash.equals(cachedHash)) {
+        setOptionalComponent(ControlMessageComponentURN.WorldCached,
+            MessageComponentProto.newBuilder().setIntValue(1).build());
+        return;
+      }
+    }
+    this.world.setEntities(world.getEntities(), world.toEntityListProto());
+  }
+
   private KSConnectOK() {
     super(ControlMessageURN.KS_CONNECT_OK);
     simulatorID = new IntComponent(ControlMessageComponentURN.SimulatorID);
@@ -100,4 +133,35 @@ public class KSConnectOK extends AbstractMessage {
   public Config getConfig() {
     return config.getConfig();
   }
+
+  /**
+   * Get the encoded entity list as it was received.
+   *
+   * @return The encoded entities.
+   */
+  public EntityListProto getEntityListProto() {
+    return world.toEntityListProto();
+  }
+
+  /**
+   * Get the hash of the initial world.
+   *
+   * @return The world hash, or null if the kernel did not send one.
+   */
+  public String getWorldHash() {
+    MessageComponentProto hash = getOptionalComponent(ControlMessageComponentURN.WorldHash);
+    return hash == null ? null : hash.getStringValue();
+  }
+
+  /**
+   * Find out whether the kernel left the world out of this message because the
+   * simulator already has it cached. If so then {@link #getEntities()} is empty
+   * and the simulator should use its cached world.
+   *
+   * @return True if the simulator should use its cached world.
+   */
+  public boolean isWorldCached() {
+    MessageComponentProto cached = getOptionalComponent(ControlMessageComponentURN.WorldCached);
+    return cached != null && cached.getIntValue() != 0;
+  }
 }
@@ -9,6 +9,7 @@ import rescuecore2.messages.AbstractMessage;
 import rescuecore2.messages.components.ConfigComponent;
 import rescuecore2.messages.components.EntityListComponent;
 import rescuecore2.messages.components.IntComponent;
+import rescuecore2.messages.components.SharedEntityList;
 import rescuecore2.messages.protobuf.RCRSProto.MessageProto;
 import rescuecore2.worldmodel.Entity;
 
@@ -48,6 +49,22 @@ public class KVConnectOK extends AbstractMessage {
     this.config.setConfig(config);
   }
 
+  /**
+   * A populated KVConnectOK message that sends a pre-encoded world.
+   *
+   * @param viewerID  The viewer ID.
+   * @param requestID The request ID.
+   * @param world     All Entities in the world.
+   * @param config    The Config that the agent knows about.
+   */
+  public KVConnectOK(int viewerID, int requestID, SharedEntityList world, Config config) {
+    this();
+    this.viewerID.setValue(viewerID);
+    this.requestID.setValue(requestID);
+    this.world.setEntities(world.getEntities(), world.toEntityListProto());
+    this.config.setConfig(config);
+  }
+
   private KVConnectOK() {
     super(ControlMessageURN.KV_CONNECT_OK);
     viewerID = new IntComponent(ControlMessageComponentURN.ViewerID);
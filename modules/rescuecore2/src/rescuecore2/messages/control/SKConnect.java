@@ -3,9 +3,12 @@ package rescuecore2.messages.control;
 import java.io.IOException;
 import java.io.InputStream;
 
+import rescuecore2.URN;
 import rescuecore2.messages.AbstractMessage;
 import rescuecore2.messages.components.IntComponent;
 import rescuecore2.messages.components.StringComponent;
+import rescuecore2.messages.protobuf.RCRSProto.IntListProto;
+import rescuecore2.messages.protobuf.RCRSProto.MessageComponentProto;
 import rescuecore2.messages.protobuf.RCRSProto.MessageProto;
 
 /**
@@ -82,4 +85,110 @@ public class SKConnect extends AbstractMessage {
   public String getSimulatorName() {
     return simulatorName.getValue();
   }
+
+  /**
+   * Set the hash of the initial world that this simulator has cached locally.
+   * Sending a hash, even an empty one, tells the kernel that this simulator
+   * caches the initial world, so the kernel will send the world hash and can
+   * leave the world out of the reply if the hash matches.
+   *
+   * @param hash The hash of the cached world, an empty string if nothing is
+   *             cached, or null if this simulator does not cache the world.
+   */
+  public void setWorldHash(String hash) {
+    setOptionalComponent(ControlMessageComponentURN.WorldHash,
+        hash == null ? null : MessageComponentProto.newBuilder().setStringValue(hash).build());
+  }
+
+  /**
+   * Get the hash of the initial world that this simulator has cached locally.
+   *
+   * @return The hash of the cached world, an empty string if nothing is
+   *         cached, or null if this simulator does not cache the world.
+   */
+  public String getWorldHash() {
+    MessageComponentProto hash = getOptionalComponent(ControlMessageComponentURN.WorldHash);
+    return hash == null ? null : hash.getStringValue();
+  }
+
+  /**
+   * Set the entity types this simulator wants to hear about. The kernel will
+   * leave changes to other entities out of the updates it sends.
+   *
+   * @param urns The URNs of the entity types, or null for all entities.
+   */
+  public void setSubscribedEntityURNs(int[] urns) {
+    setURNList(ControlMessageComponentURN.SubscribedEntityTypes, urns);
+  }
+
+  /**
+   * Get the entity types this simulator wants to hear about.
+   *
+   * @return The URNs of the entity types, or null for all entities.
+   */
+  public int[] getSubscribedEntityURNs() {
+    return getURNList(ControlMessageComponentURN.SubscribedEntityTypes);
+  }
+
+  /**
+   * Set the property types this simulator wants to hear about. The kernel will
+   * leave changes to other properties out of the updates it sends.
+   *
+   * @param urns The URNs of the property types, or null for all properties.
+   */
+  public void setSubscribedPropertyURNs(int[] urns) {
+    setURNList(ControlMessageComponentURN.SubscribedPropertyTypes, urns);
+  }
+
+  /**
+   * Get the property types this simulator wants to hear about.
+   *
+   * @return The URNs of the property types, or null for all properties.
+   */
+  public int[] getSubscribedPropertyURNs() {
+    return getURNList(ControlMessageComponentURN.SubscribedPropertyTypes);
+  }
+
+  /**
+   * Set the agent command types this simulator wants to receive. The kernel
+   * will leave other commands out of the commands it sends.
+   *
+   * @param urns The URNs of the command types, or null for all commands.
+   */
+  public void setSubscribedCommandURNs(int[] urns) {
+    setURNList(ControlMessageComponentURN.SubscribedCommandTypes, urns);
+  }
+
+  /**
+   * Get the agent command types this simulator wants to receive.
+   *
+   * @return The URNs of the command types, or null for all commands.
+   */
+  public int[] getSubscribedCommandURNs() {
+    return getURNList(ControlMessageComponentURN.SubscribedCommandTypes);
+  }
+
+  private void setURNList(URN name, int[] urns) {
+    if (urns == null) {
+      setOptionalComponent(name, null);
+      return;
+    }
+    IntListProto.Builder list = IntListProto.newBuilder();
+    for (int next : urns) {
+      list.addValues(next);
+    }
+    setOptionalComponent(name, MessageComponentProto.newBuilder().setIntList(list).build());
+  }
+
+  private int[] getURNList(URN name) {
+    MessageComponentProto list = getOptionalComponent(name);
+    if (list == null) {
+      return null;
+    }
+    int[] result = new int[list.getIntList().getValuesCount()];
+    for (int i = 0; i < result.length; ++i) {
+      result[i] = list.getIntList().getValues(i);
+    }
+    return result;
+  }
 }
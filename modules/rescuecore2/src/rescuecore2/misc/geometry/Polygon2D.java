@@ -0,0 +1,410 @@
+package rescuecore2.misc.geometry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+   A region of the plane bounded by straight edges. A region can have several separate parts, and each part can have holes. The boundary is stored as rings of coordinates in primitive arrays, oriented so that the inside of the region is on the left of every edge: outer rings run anticlockwise and holes run clockwise. Regions are immutable; the boolean operations return new regions.
+   <p>
+   The input rings of a region must not cross themselves or each other. Every region returned by the boolean operations satisfies this.
+ */
+public final class Polygon2D {
+    /** The empty region. */
+    public static final Polygon2D EMPTY = new Polygon2D(Collections.<double[]>emptyList());
+
+    private static final int MIN_CIRCLE_SEGMENTS = 8;
+
+    private final double[][] rings;
+    private final double minX;
+    private final double minY;
+    private final double maxX;
+    private final double maxY;
+    private final double area;
+
+    Polygon2D(List<double[]> rings) {
+        this.rings = rings.toArray(new double[rings.size()][]);
+        double x1 = Double.POSITIVE_INFINITY;
+        double y1 = Double.POSITIVE_INFINITY;
+        double x2 = Double.NEGATIVE_INFINITY;
+        double y2 = Double.NEGATIVE_INFINITY;
+        double sum = 0;
+        for (double[] ring : this.rings) {
+            for (int i = 0; i < ring.length; i += 2) {
+                x1 = Math.min(x1, ring[i]);
+                y1 = Math.min(y1, ring[i + 1]);
+                x2 = Math.max(x2, ring[i]);
+                y2 = Math.max(y2, ring[i + 1]);
+            }
+            sum += signedArea(ring);
+        }
+        minX = x1;
+        minY = y1;
+        maxX = x2;
+        maxY = y2;
+        area = sum;
+    }
+
+    /**
+       Create a region bounded by a single ring.
+       @param coordinates The ring as a list of coordinates in the form x1, y1, x2, y2, ..., xn, yn. The last point is joined to the first and should not repeat it. The ring may run in either direction.
+       @return A new region, which is empty if the ring has no area.
+     */
+    public static Polygon2D fromCoordinates(double[] coordinates) {
+        double[] ring = clean(coordinates);
+        double a = signedArea(ring);
+        if (ring.length < 6 || a == 0 || Double.isNaN(a)) {
+            return EMPTY;
+        }
+        if (a < 0) {
+            ring = reverse(ring);
+        }
+        List<double[]> list = new ArrayList<double[]>(1);
+        list.add(ring);
+        return new Polygon2D(list);
+    }
+
+    /**
+       Create a region bounded by a single ring of integer coordinates, such as the apexes of a blockade or an area.
+       @param apexes The ring as a list of coordinates in the form x1, y1, x2, y2, ..., xn, yn.
+       @return A new region, which is empty if the ring has no area.
+     */
+    public static Polygon2D fromApexes(int[] apexes) {
+        double[] coordinates = new double[apexes.length];
+        for (int i = 0; i < apexes.length; ++i) {
+            coordinates[i] = apexes[i];
+        }
+        return fromCoordinates(coordinates);
+    }
+
+    /**
+       Create a polygon that approximates a circle. The vertices lie on the circle and the edges are never further than a given distance from it.
+       @param x The X coordinate of the centre.
+       @param y The Y coordinate of the centre.
+       @param radius The radius.
+       @param flatness The largest allowed distance between the circle and an edge.
+       @return A new region, which is empty if the radius is not positive.
+     */
+    public static Polygon2D circle(double x, double y, double radius, double flatness) {
+        if (!(radius > 0)) {
+            return EMPTY;
+        }
+        int n = MIN_CIRCLE_SEGMENTS;
+        if (flatness < radius) {
+            n = Math.max(n, (int)Math.ceil(Math.PI / Math.acos(1 - flatness / radius)));
+        }
+        double[] ring = new double[n * 2];
+        for (int i = 0; i < n; ++i) {
+            double angle = 2 * Math.PI * i / n;
+            ring[i * 2] = x + radius * Math.cos(angle);
+            ring[i * 2 + 1] = y + radius * Math.sin(angle);
+        }
+        return fromCoordinates(ring);
+    }
+
+    /**
+       Compute the union of a number of regions. This is faster than adding the regions one at a time.
+       @param regions The regions to join.
+       @return The union of all the regions.
+     */
+    public static Polygon2D union(Collection<Polygon2D> regions) {
+        List<Polygon2D> current = new ArrayList<Polygon2D>();
+        for (Polygon2D next : regions) {
+            if (!next.isEmpty()) {
+                current.add(next);
+            }
+        }
+        if (current.isEmpty()) {
+            return EMPTY;
+        }
+        // Join pairs so that both sides of each operation stay small
+        while (current.size() > 1) {
+            List<Polygon2D> joined = new ArrayList<Polygon2D>((current.size() + 1) / 2);
+            for (int i = 0; i < current.size(); i += 2) {
+                if (i + 1 < current.size()) {
+                    joined.add(current.get(i).union(current.get(i + 1)));
+                }
+                else {
+                    joined.add(current.get(i));
+                }
+            }
+            current = joined;
+        }
+        return current.get(0);
+    }
+
+    /**
+       Compute the intersection of this region and another.
+       @param other The other region.
+       @return A new region containing the points inside both regions.
+     */
+    public Polygon2D intersect(Polygon2D other) {
+        if (isEmpty() || other.isEmpty() || !boundsIntersect(other)) {
+            return EMPTY;
+        }
+        return new Polygon2D(PolygonClipper.clip(this, other, PolygonClipper.Operation.INTERSECTION));
+    }
+
+    /**
+       Compute the union of this region and another.
+       @param other The other region.
+       @return A new region containing the points inside either region.
+     */
+    public Polygon2D union(Polygon2D other) {
+        if (other.isEmpty()) {
+            return this;
+        }
+        if (isEmpty()) {
+            return other;
+        }
+        if (!boundsIntersect(other)) {
+            List<double[]> all = new ArrayList<double[]>(rings.length + other.rings.length);
+            Collections.addAll(all, rings);
+            Collections.addAll(all, other.rings);
+            return new Polygon2D(all);
+        }
+        return new Polygon2D(PolygonClipper.clip(this, other, PolygonClipper.Operation.UNION));
+    }
+
+    /**
+       Compute the difference between this region and another.
+       @param other The region to remove.
+       @return A new region containing the points inside this region but not the other.
+     */
+    public Polygon2D subtract(Polygon2D other) {
+        if (isEmpty() || other.isEmpty() || !boundsIntersect(other)) {
+            return this;
+        }
+        return new Polygon2D(PolygonClipper.clip(this, other, PolygonClipper.Operation.DIFFERENCE));
+    }
+
+    /**
+       Split this region into its separate parts. Each part has one outer ring, which is the first ring of the part, followed by any holes inside it.
+       @return The parts of this region, largest first.
+     */
+    public List<Polygon2D> getParts() {
+        List<double[]> outer = new ArrayList<double[]>();
+        List<double[]> holes = new ArrayList<double[]>();
+        for (double[] ring : rings) {
+            if (signedArea(ring) > 0) {
+                outer.add(ring);
+            }
+            else {
+                holes.add(ring);
+            }
+        }
+        if (outer.size() == 1 && holes.isEmpty()) {
+            return Collections.singletonList(this);
+        }
+        Collections.sort(outer, new Comparator<double[]>() {
+                @Override
+                public int compare(double[] a, double[] b) {
+                    return Double.compare(signedArea(b), signedArea(a));
+                }
+            });
+        List<List<double[]>> parts = new ArrayList<List<double[]>>(outer.size());
+        for (double[] next : outer) {
+            List<double[]> part = new ArrayList<double[]>();
+            part.add(next);
+            parts.add(part);
+        }
+        for (double[] hole : holes) {
+            // Holes belong to the smallest outer ring around them
+            double x = (hole[0] + hole[2]) / 2;
+            double y = (hole[1] + hole[3]) / 2;
+            for (int i = outer.size() - 1; i >= 0; --i) {
+                if (ringContains(outer.get(i), x, y)) {
+                    parts.get(i).add(hole);
+                    break;
+                }
+            }
+        }
+        List<Polygon2D> result = new ArrayList<Polygon2D>(parts.size());
+        for (List<double[]> part : parts) {
+            result.add(new Polygon2D(part));
+        }
+        return result;
+    }
+
+    /**
+       Find out if a point is inside this region.
+       @param x The X coordinate.
+       @param y The Y coordinate.
+       @return True if the point is inside this region.
+     */
+    public boolean contains(double x, double y) {
+        if (x < minX || x > maxX || y < minY || y > maxY) {
+            return false;
+        }
+        boolean inside = false;
+        for (double[] ring : rings) {
+            if (ringContains(ring, x, y)) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+       Find out if this region is empty.
+       @return True if this region has no rings.
+     */
+    public boolean isEmpty() {
+        return rings.length == 0;
+    }
+
+    /**
+       Get the area of this region. Holes are not counted.
+       @return The area.
+     */
+    public double getArea() {
+        return area;
+    }
+
+    /**
+       Get the number of rings.
+       @return The number of rings.
+     */
+    public int getRingCount() {
+        return rings.length;
+    }
+
+    /**
+       Get a ring in the form x1, y1, x2, y2, ..., xn, yn. The last point is joined to the first. The returned array must not be changed.
+       @param i The index of the ring.
+       @return The coordinates of the ring.
+     */
+    public double[] getRing(int i) {
+        return rings[i];
+    }
+
+    /**
+       Get the lowest X coordinate of this region.
+       @return The lowest X coordinate.
+     */
+    public double getMinX() {
+        return minX;
+    }
+
+    /**
+       Get the lowest Y coordinate of this region.
+       @return The lowest Y coordinate.
+     */
+    public double getMinY() {
+        return minY;
+    }
+
+    /**
+       Get the highest X coordinate of this region.
+       @return The highest X coordinate.
+     */
+    public double getMaxX() {
+        return maxX;
+    }
+
+    /**
+       Get the highest Y coordinate of this region.
+       @return The highest Y coordinate.
+     */
+    public double getMaxY() {
+        return maxY;
+    }
+
+    /**
+       Find out if the bounding box of this region overlaps the bounding box of another.
+       @param other The other region.
+       @return True if the bounding boxes overlap or touch.
+     */
+    public boolean boundsIntersect(Polygon2D other) {
+        return minX <= other.maxX && other.minX <= maxX && minY <= other.maxY && other.minY <= maxY;
+    }
+
+    @Override
+    public String toString() {
+        return "Polygon2D (" + rings.length + " rings, area " + area + ")";
+    }
+
+    static double signedArea(double[] ring) {
+        double sum = 0;
+        int n = ring.length;
+        for (int i = 0; i < n; i += 2) {
+            int j = (i + 2) % n;
+            sum += ring[i] * ring[j + 1] - ring[j] * ring[i + 1];
+        }
+        return sum / 2;
+    }
+
+    static boolean ringContains(double[] ring, double x, double y) {
+        boolean inside = false;
+        int n = ring.length;
+        for (int i = 0, j = n - 2; i < n; j = i, i += 2) {
+            double y1 = ring[i + 1];
+            double y2 = ring[j + 1];
+            if ((y1 > y) != (y2 > y)) {
+                double crossX = ring[i] + (y - y1) * (ring[j] - ring[i]) / (y2 - y1);
+                if (x < crossX) {
+                    inside = !inside;
+                }
+            }
+        }
+        return inside;
+    }
+
+    /**
+       Remove repeated points and spikes, where a ring goes out to a point and straight back again, from a ring.
+       @param coordinates The ring.
+       @return The cleaned ring. This may be the input array if nothing was removed.
+     */
+    static double[] clean(double[] coordinates) {
+        double[] result = new double[coordinates.length - coordinates.length % 2];
+        int n = 0;
+        for (int i = 0; i + 1 < coordinates.length; i += 2) {
+            double x = coordinates[i];
+            double y = coordinates[i + 1];
+            if (n >= 2 && result[n - 2] == x && result[n - 1] == y) {
+                continue;
+            }
+            if (n >= 4 && result[n - 4] == x && result[n - 3] == y) {
+                n -= 2;
+                continue;
+            }
+            result[n++] = x;
+            result[n++] = y;
+        }
+        // Repeat the checks where the end of the ring joins the start
+        boolean changed = true;
+        while (changed && n > 4) {
+            changed = false;
+            if (result[0] == result[n - 2] && result[1] == result[n - 1]) {
+                n -= 2;
+                changed = true;
+            }
+            else if (result[0] == result[n - 4] && result[1] == result[n - 3]) {
+                n -= 2;
+                changed = true;
+            }
+            else if (result[2] == result[n - 2] && result[3] == result[n - 1]) {
+                System.arraycopy(result, 2, result, 0, n - 2);
+                n -= 2;
+                changed = true;
+            }
+        }
+        if (n == coordinates.length) {
+            return coordinates;
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private static double[] reverse(double[] ring) {
+        double[] result = new double[ring.length];
+        int n = ring.length;
+        for (int i = 0; i < n; i += 2) {
+            result[i] = ring[n - 2 - i];
+            result[i + 1] = ring[n - 1 - i];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,559 @@
+package rescuecore2.misc.geometry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+   Boolean operations on {@link Polygon2D} regions. Every edge of both regions is split where it meets the other region, each piece is kept or dropped depending on which side of the other region it lies, and the kept pieces are joined back into rings. Vertices closer together than a small tolerance are treated as the same point so that regions that share edges, such as neighbouring roads, give clean results.
+ */
+final class PolygonClipper {
+    /** The operations supported. */
+    enum Operation {
+        /** Points inside both regions. */
+        INTERSECTION,
+        /** Points inside either region. */
+        UNION,
+        /** Points inside the first region but not the second. */
+        DIFFERENCE;
+    }
+
+    private static final double EPSILON = 0.001;
+    private static final double EPSILON_SQUARED = EPSILON * EPSILON;
+
+    private PolygonClipper() {}
+
+    /**
+       Combine two regions. The regions must not be empty.
+       @param a The first region.
+       @param b The second region.
+       @param op The operation to perform.
+       @return The rings of the result.
+     */
+    static List<double[]> clip(Polygon2D a, Polygon2D b, Operation op) {
+        double[][] ringsA = getRings(a);
+        double[][] ringsB = snap(getRings(b), ringsA, a);
+        Edges edgesA = new Edges(ringsA);
+        Edges edgesB = new Edges(ringsB);
+        split(edgesA, edgesB, a, b);
+        SubEdges piecesA = edgesA.getSubEdges();
+        SubEdges piecesB = edgesB.getSubEdges();
+
+        // Find the pieces of B that lie on the boundary of A
+        Map<EdgeKey, Integer> shared = new HashMap<EdgeKey, Integer>();
+        for (int i = 0; i < piecesB.size; ++i) {
+            shared.put(new EdgeKey(piecesB.x1[i], piecesB.y1[i], piecesB.x2[i], piecesB.y2[i]), i);
+        }
+        boolean[] sharedB = new boolean[piecesB.size];
+        SubEdges result = new SubEdges(piecesA.size + piecesB.size);
+        for (int i = 0; i < piecesA.size; ++i) {
+            Integer same = shared.get(new EdgeKey(piecesA.x1[i], piecesA.y1[i], piecesA.x2[i], piecesA.y2[i]));
+            Integer opposite = shared.get(new EdgeKey(piecesA.x2[i], piecesA.y2[i], piecesA.x1[i], piecesA.y1[i]));
+            boolean keep;
+            if (same != null) {
+                sharedB[same] = true;
+                keep = op != Operation.DIFFERENCE;
+            }
+            else if (opposite != null) {
+                sharedB[opposite] = true;
+                keep = op == Operation.DIFFERENCE;
+            }
+            else {
+                boolean inside = contains(ringsB, b, (piecesA.x1[i] + piecesA.x2[i]) / 2, (piecesA.y1[i] + piecesA.y2[i]) / 2);
+                keep = inside == (op == Operation.INTERSECTION);
+            }
+            if (keep) {
+                result.add(piecesA.x1[i], piecesA.y1[i], piecesA.x2[i], piecesA.y2[i]);
+            }
+        }
+        for (int i = 0; i < piecesB.size; ++i) {
+            if (sharedB[i]) {
+                continue;
+            }
+            boolean inside = contains(ringsA, a, (piecesB.x1[i] + piecesB.x2[i]) / 2, (piecesB.y1[i] + piecesB.y2[i]) / 2);
+            if (op == Operation.UNION && !inside) {
+                result.add(piecesB.x1[i], piecesB.y1[i], piecesB.x2[i], piecesB.y2[i]);
+            }
+            else if (op == Operation.INTERSECTION && inside) {
+                result.add(piecesB.x1[i], piecesB.y1[i], piecesB.x2[i], piecesB.y2[i]);
+            }
+            else if (op == Operation.DIFFERENCE && inside) {
+                // The inside of B becomes the outside of the result
+                result.add(piecesB.x2[i], piecesB.y2[i], piecesB.x1[i], piecesB.y1[i]);
+            }
+        }
+        return link(result);
+    }
+
+    private static double[][] getRings(Polygon2D p) {
+        double[][] rings = new double[p.getRingCount()][];
+        for (int i = 0; i < rings.length; ++i) {
+            rings[i] = p.getRing(i);
+        }
+        return rings;
+    }
+
+    /**
+       Move the vertices of some rings onto any vertex of the target rings that is within the tolerance.
+     */
+    private static double[][] snap(double[][] rings, double[][] targets, Polygon2D targetBounds) {
+        double minX = targetBounds.getMinX() - EPSILON;
+        double minY = targetBounds.getMinY() - EPSILON;
+        double maxX = targetBounds.getMaxX() + EPSILON;
+        double maxY = targetBounds.getMaxY() + EPSILON;
+        List<double[]> result = new ArrayList<double[]>(rings.length);
+        for (double[] ring : rings) {
+            double[] snapped = null;
+            for (int i = 0; i < ring.length; i += 2) {
+                double x = ring[i];
+                double y = ring[i + 1];
+                if (x < minX || x > maxX || y < minY || y > maxY) {
+                    continue;
+                }
+                for (double[] target : targets) {
+                    for (int j = 0; j < target.length; j += 2) {
+                        double dx = target[j] - x;
+                        double dy = target[j + 1] - y;
+                        if ((dx != 0 || dy != 0) && dx * dx + dy * dy <= EPSILON_SQUARED) {
+                            if (snapped == null) {
+                                snapped = ring.clone();
+                            }
+                            snapped[i] = target[j];
+                            snapped[i + 1] = target[j + 1];
+                        }
+                    }
+                }
+            }
+            if (snapped == null) {
+                result.add(ring);
+                continue;
+            }
+            snapped = Polygon2D.clean(snapped);
+            if (snapped.length >= 6) {
+                result.add(snapped);
+            }
+        }
+        return result.toArray(new double[result.size()][]);
+    }
+
+    /**
+       Find every point where an edge of A meets an edge of B and record it on both edges. Only edges that overlap the bounding box of the other region are compared.
+     */
+    private static void split(Edges a, Edges b, Polygon2D boundsA, Polygon2D boundsB) {
+        int[] candidatesA = a.overlapping(boundsB);
+        int[] candidatesB = b.overlapping(boundsA);
+        b.sortByMinX(candidatesB);
+        for (int i : candidatesA) {
+            double minX = a.minX(i) - EPSILON;
+            double maxX = a.maxX(i) + EPSILON;
+            double minY = a.minY(i) - EPSILON;
+            double maxY = a.maxY(i) + EPSILON;
+            for (int j : candidatesB) {
+                if (b.minX(j) > maxX) {
+                    break;
+                }
+                if (b.maxX(j) < minX || b.minY(j) > maxY || b.maxY(j) < minY) {
+                    continue;
+                }
+                boolean touch = false;
+                touch |= touch(a, i, b.x1[j], b.y1[j]);
+                touch |= touch(a, i, b.x2[j], b.y2[j]);
+                touch |= touch(b, j, a.x1[i], a.y1[i]);
+                touch |= touch(b, j, a.x2[i], a.y2[i]);
+                if (!touch) {
+                    cross(a, i, b, j);
+                }
+            }
+        }
+    }
+
+    /**
+       Check if a point lies on an edge and split the edge there if it does.
+       @return True if the point is within the tolerance of the edge.
+     */
+    private static boolean touch(Edges edges, int i, double x, double y) {
+        double x1 = edges.x1[i];
+        double y1 = edges.y1[i];
+        double dx = edges.x2[i] - x1;
+        double dy = edges.y2[i] - y1;
+        double t = ((x - x1) * dx + (y - y1) * dy) / (dx * dx + dy * dy);
+        if (t < 0) {
+            t = 0;
+        }
+        if (t > 1) {
+            t = 1;
+        }
+        double ex = x1 + t * dx - x;
+        double ey = y1 + t * dy - y;
+        if (ex * ex + ey * ey > EPSILON_SQUARED) {
+            return false;
+        }
+        if (!near(x, y, x1, y1) && !near(x, y, edges.x2[i], edges.y2[i])) {
+            edges.addSplit(i, t, x, y);
+        }
+        return true;
+    }
+
+    private static void cross(Edges a, int i, Edges b, int j) {
+        double dxA = a.x2[i] - a.x1[i];
+        double dyA = a.y2[i] - a.y1[i];
+        double dxB = b.x2[j] - b.x1[j];
+        double dyB = b.y2[j] - b.y1[j];
+        double d = dxA * dyB - dyA * dxB;
+        if (d == 0) {
+            return;
+        }
+        double wx = b.x1[j] - a.x1[i];
+        double wy = b.y1[j] - a.y1[i];
+        double t = (wx * dyB - wy * dxB) / d;
+        double u = (wx * dyA - wy * dxA) / d;
+        if (t > 0 && t < 1 && u > 0 && u < 1) {
+            double x = a.x1[i] + t * dxA;
+            double y = a.y1[i] + t * dyA;
+            a.addSplit(i, t, x, y);
+            b.addSplit(j, u, x, y);
+        }
+    }
+
+    private static boolean near(double x1, double y1, double x2, double y2) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        return dx * dx + dy * dy <= EPSILON_SQUARED;
+    }
+
+    private static boolean contains(double[][] rings, Polygon2D bounds, double x, double y) {
+        if (x < bounds.getMinX() || x > bounds.getMaxX() || y < bounds.getMinY() || y > bounds.getMaxY()) {
+            return false;
+        }
+        boolean inside = false;
+        for (double[] ring : rings) {
+            if (Polygon2D.ringContains(ring, x, y)) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+       Join edges into rings. Where several edges leave the same vertex the ring turns as far left as possible, so rings that touch at a vertex are kept apart.
+     */
+    private static List<double[]> link(SubEdges edges) {
+        // An edge and its reverse enclose nothing, so both are dropped
+        boolean[] used = new boolean[edges.size];
+        Map<EdgeKey, Integer> directed = new HashMap<EdgeKey, Integer>();
+        for (int i = 0; i < edges.size; ++i) {
+            Integer reverse = directed.remove(new EdgeKey(edges.x2[i], edges.y2[i], edges.x1[i], edges.y1[i]));
+            if (reverse != null) {
+                used[reverse] = true;
+                used[i] = true;
+            }
+            else {
+                directed.put(new EdgeKey(edges.x1[i], edges.y1[i], edges.x2[i], edges.y2[i]), i);
+            }
+        }
+        Map<PointKey, List<Integer>> outgoing = new HashMap<PointKey, List<Integer>>();
+        for (int i = 0; i < edges.size; ++i) {
+            if (used[i]) {
+                continue;
+            }
+            PointKey key = new PointKey(edges.x1[i], edges.y1[i]);
+            List<Integer> list = outgoing.get(key);
+            if (list == null) {
+                list = new ArrayList<Integer>(2);
+                outgoing.put(key, list);
+            }
+            list.add(i);
+        }
+        List<double[]> result = new ArrayList<double[]>();
+        double[] ring = new double[16];
+        for (int start = 0; start < edges.size; ++start) {
+            if (used[start]) {
+                continue;
+            }
+            used[start] = true;
+            int current = start;
+            int n = 0;
+            while (true) {
+                if (n + 2 > ring.length) {
+                    ring = Arrays.copyOf(ring, ring.length * 2);
+                }
+                ring[n++] = edges.x1[current];
+                ring[n++] = edges.y1[current];
+                int next = -1;
+                double bestAngle = 0;
+                double rx = edges.x1[current] - edges.x2[current];
+                double ry = edges.y1[current] - edges.y2[current];
+                List<Integer> candidates = outgoing.get(new PointKey(edges.x2[current], edges.y2[current]));
+                if (candidates == null) {
+                    candidates = Collections.emptyList();
+                }
+                for (int candidate : candidates) {
+                    if (used[candidate] && candidate != start) {
+                        continue;
+                    }
+                    double cx = edges.x2[candidate] - edges.x1[candidate];
+                    double cy = edges.y2[candidate] - edges.y1[candidate];
+                    double angle = -Math.atan2(rx * cy - ry * cx, rx * cx + ry * cy);
+                    if (angle <= 0) {
+                        angle += 2 * Math.PI;
+                    }
+                    if (next == -1 || angle < bestAngle) {
+                        next = candidate;
+                        bestAngle = angle;
+                    }
+                }
+                if (next == -1) {
+                    // Broken ring: drop it
+                    n = 0;
+                    break;
+                }
+                if (next == start) {
+                    break;
+                }
+                used[next] = true;
+                current = next;
+            }
+            if (n >= 6) {
+                double[] closed = Arrays.copyOf(ring, n);
+                if (Math.abs(Polygon2D.signedArea(closed)) > EPSILON) {
+                    result.add(closed);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+       The edges of the rings of one region, with the points where each edge must be split.
+     */
+    private static final class Edges {
+        private final double[] x1;
+        private final double[] y1;
+        private final double[] x2;
+        private final double[] y2;
+        private final int size;
+        private final double[][] splits;
+        private final int[] splitCount;
+
+        Edges(double[][] rings) {
+            int n = 0;
+            for (double[] ring : rings) {
+                n += ring.length / 2;
+            }
+            size = n;
+            x1 = new double[n];
+            y1 = new double[n];
+            x2 = new double[n];
+            y2 = new double[n];
+            splits = new double[n][];
+            splitCount = new int[n];
+            int e = 0;
+            for (double[] ring : rings) {
+                for (int i = 0; i < ring.length; i += 2) {
+                    int j = (i + 2) % ring.length;
+                    x1[e] = ring[i];
+                    y1[e] = ring[i + 1];
+                    x2[e] = ring[j];
+                    y2[e] = ring[j + 1];
+                    ++e;
+                }
+            }
+        }
+
+        double minX(int i) {
+            return Math.min(x1[i], x2[i]);
+        }
+
+        double maxX(int i) {
+            return Math.max(x1[i], x2[i]);
+        }
+
+        double minY(int i) {
+            return Math.min(y1[i], y2[i]);
+        }
+
+        double maxY(int i) {
+            return Math.max(y1[i], y2[i]);
+        }
+
+        int[] overlapping(Polygon2D bounds) {
+            int[] result = new int[size];
+            int n = 0;
+            for (int i = 0; i < size; ++i) {
+                if (maxX(i) + EPSILON < bounds.getMinX() || minX(i) - EPSILON > bounds.getMaxX()
+                    || maxY(i) + EPSILON < bounds.getMinY() || minY(i) - EPSILON > bounds.getMaxY()) {
+                    continue;
+                }
+                result[n++] = i;
+            }
+            return Arrays.copyOf(result, n);
+        }
+
+        void sortByMinX(int[] indices) {
+            for (int i = 1; i < indices.length; ++i) {
+                int next = indices[i];
+                double key = minX(next);
+                int j = i - 1;
+                while (j >= 0 && minX(indices[j]) > key) {
+                    indices[j + 1] = indices[j];
+                    --j;
+                }
+                indices[j + 1] = next;
+            }
+        }
+
+        void addSplit(int i, double t, double x, double y) {
+            double[] data = splits[i];
+            int n = splitCount[i] * 3;
+            if (data == null) {
+                data = new double[6];
+                splits[i] = data;
+            }
+            else if (n + 3 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+                splits[i] = data;
+            }
+            data[n] = t;
+            data[n + 1] = x;
+            data[n + 2] = y;
+            ++splitCount[i];
+        }
+
+        SubEdges getSubEdges() {
+            int total = size;
+            for (int i = 0; i < size; ++i) {
+                total += splitCount[i];
+            }
+            SubEdges result = new SubEdges(total);
+            for (int i = 0; i < size; ++i) {
+                int count = splitCount[i];
+                if (count == 0) {
+                    result.add(x1[i], y1[i], x2[i], y2[i]);
+                    continue;
+                }
+                double[] data = splits[i];
+                // Sort the split points along the edge
+                for (int k = 1; k < count; ++k) {
+                    double t = data[k * 3];
+                    double x = data[k * 3 + 1];
+                    double y = data[k * 3 + 2];
+                    int m = k - 1;
+                    while (m >= 0 && data[m * 3] > t) {
+                        data[m * 3 + 3] = data[m * 3];
+                        data[m * 3 + 4] = data[m * 3 + 1];
+                        data[m * 3 + 5] = data[m * 3 + 2];
+                        --m;
+                    }
+                    data[m * 3 + 3] = t;
+                    data[m * 3 + 4] = x;
+                    data[m * 3 + 5] = y;
+                }
+                double px = x1[i];
+                double py = y1[i];
+                for (int k = 0; k < count; ++k) {
+                    double x = data[k * 3 + 1];
+                    double y = data[k * 3 + 2];
+                    if ((x == px && y == py) || (x == x2[i] && y == y2[i])) {
+                        continue;
+                    }
+                    result.add(px, py, x, y);
+                    px = x;
+                    py = y;
+                }
+                result.add(px, py, x2[i], y2[i]);
+            }
+            return result;
+        }
+    }
+
+    /**
+       A growable list of edges.
+     */
+    private static final class SubEdges {
+        private double[] x1;
+        private double[] y1;
+        private double[] x2;
+        private double[] y2;
+        private int size;
+
+        SubEdges(int capacity) {
+            int n = Math.max(capacity, 1);
+            x1 = new double[n];
+            y1 = new double[n];
+            x2 = new double[n];
+            y2 = new double[n];
+        }
+
+        void add(double ax, double ay, double bx, double by) {
+            if (size == x1.length) {
+                x1 = Arrays.copyOf(x1, size * 2);
+                y1 = Arrays.copyOf(y1, size * 2);
+                x2 = Arrays.copyOf(x2, size * 2);
+                y2 = Arrays.copyOf(y2, size * 2);
+            }
+            x1[size] = ax;
+            y1[size] = ay;
+            x2[size] = bx;
+            y2[size] = by;
+            ++size;
+        }
+    }
+
+    /**
+       A point used as a map key. Points are equal only if their coordinates are exactly equal.
+     */
+    private static final class PointKey {
+        private final double x;
+        private final double y;
+
+        PointKey(double x, double y) {
+            // Adding zero turns -0.0 into 0.0
+            this.x = x + 0.0;
+            this.y = y + 0.0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof PointKey)) {
+                return false;
+            }
+            PointKey p = (PointKey)o;
+            return x == p.x && y == p.y;
+        }
+
+        @Override
+        public int hashCode() {
+            return Double.hashCode(x) * 31 + Double.hashCode(y);
+        }
+    }
+
+    /**
+       A directed edge used as a map key.
+     */
+    private static final class EdgeKey {
+        private final PointKey start;
+        private final PointKey end;
+
+        EdgeKey(double x1, double y1, double x2, double y2) {
+            start = new PointKey(x1, y1);
+            end = new PointKey(x2, y2);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof EdgeKey)) {
+                return false;
+            }
+            EdgeKey e = (EdgeKey)o;
+            return start.equals(e.start) && end.equals(e.end);
+        }
+
+        @Override
+        public int hashCode() {
+            return start.hashCode() * 31 + end.hashCode();
+        }
+    }
+}
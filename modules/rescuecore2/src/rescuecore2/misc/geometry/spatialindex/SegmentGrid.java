@@ -0,0 +1,265 @@
+package rescuecore2.misc.geometry.spatialindex;
+
+import java.util.Arrays;
+import java.util.List;
+
+import rescuecore2.misc.geometry.Line2D;
+
+/**
+   An immutable uniform grid over a fixed list of line segments. Segments are identified by their position in the list used to build the grid. The grid is intended for ray casting: a {@link Query} walks only the cells a segment passes through and collects each candidate segment once, without allocating.
+   <p>
+   A SegmentGrid can be shared between threads; each thread needs its own Query.
+*/
+public class SegmentGrid {
+    // Segments are registered in every cell within this fraction of a cell of their bounding box so that rounding in the ray walk never misses a candidate.
+    private static final double MARGIN_FRACTION = 0.001;
+
+    private final double xMin;
+    private final double yMin;
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+    private final int size;
+    // Compressed cell contents: the segments in cell c are cellItems[cellStart[c]] to cellItems[cellStart[c + 1] - 1].
+    private final int[] cellStart;
+    private final int[] cellItems;
+
+    /**
+       Construct a SegmentGrid.
+       @param lines The segments to index.
+       @param cellSize The width and height of each grid cell.
+    */
+    public SegmentGrid(List<Line2D> lines, double cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive: " + cellSize);
+        }
+        this.cellSize = cellSize;
+        this.size = lines.size();
+        double x1 = Double.POSITIVE_INFINITY;
+        double y1 = Double.POSITIVE_INFINITY;
+        double x2 = Double.NEGATIVE_INFINITY;
+        double y2 = Double.NEGATIVE_INFINITY;
+        for (Line2D next : lines) {
+            x1 = Math.min(x1, Math.min(next.getOrigin().getX(), next.getEndPoint().getX()));
+            y1 = Math.min(y1, Math.min(next.getOrigin().getY(), next.getEndPoint().getY()));
+            x2 = Math.max(x2, Math.max(next.getOrigin().getX(), next.getEndPoint().getX()));
+            y2 = Math.max(y2, Math.max(next.getOrigin().getY(), next.getEndPoint().getY()));
+        }
+        if (size == 0) {
+            x1 = 0;
+            y1 = 0;
+            x2 = 0;
+            y2 = 0;
+        }
+        double margin = cellSize * MARGIN_FRACTION;
+        xMin = x1 - margin;
+        yMin = y1 - margin;
+        columns = Math.max(1, (int)Math.ceil((x2 + margin - xMin) / cellSize));
+        rows = Math.max(1, (int)Math.ceil((y2 + margin - yMin) / cellSize));
+        cellStart = new int[columns * rows + 1];
+        // First pass counts the segments in each cell, second pass fills them in
+        for (Line2D next : lines) {
+            forEachCell(next, margin, -1, null);
+        }
+        int total = 0;
+        for (int i = 0; i < columns * rows; ++i) {
+            int count = cellStart[i];
+            cellStart[i] = total;
+            total += count;
+        }
+        cellStart[columns * rows] = total;
+        cellItems = new int[total];
+        int[] fill = new int[columns * rows];
+        for (int i = 0; i < size; ++i) {
+            forEachCell(lines.get(i), margin, i, fill);
+        }
+    }
+
+    /**
+       Get the number of segments in this grid.
+       @return The number of segments.
+    */
+    public int size() {
+        return size;
+    }
+
+    /**
+       Create a new query object for this grid.
+       @return A new Query.
+    */
+    public Query newQuery() {
+        return new Query();
+    }
+
+    private void forEachCell(Line2D line, double margin, int id, int[] fill) {
+        double lx1 = Math.min(line.getOrigin().getX(), line.getEndPoint().getX()) - margin;
+        double ly1 = Math.min(line.getOrigin().getY(), line.getEndPoint().getY()) - margin;
+        double lx2 = Math.max(line.getOrigin().getX(), line.getEndPoint().getX()) + margin;
+        double ly2 = Math.max(line.getOrigin().getY(), line.getEndPoint().getY()) + margin;
+        int c1 = column(lx1);
+        int c2 = column(lx2);
+        int r1 = row(ly1);
+        int r2 = row(ly2);
+        for (int r = r1; r <= r2; ++r) {
+            for (int c = c1; c <= c2; ++c) {
+                int cell = r * columns + c;
+                if (fill == null) {
+                    ++cellStart[cell];
+                }
+                else {
+                    cellItems[cellStart[cell] + fill[cell]++] = id;
+                }
+            }
+        }
+    }
+
+    private int column(double x) {
+        return clamp((int)Math.floor((x - xMin) / cellSize), columns);
+    }
+
+    private int row(double y) {
+        return clamp((int)Math.floor((y - yMin) / cellSize), rows);
+    }
+
+    private static int clamp(int i, int max) {
+        return Math.max(0, Math.min(max - 1, i));
+    }
+
+    /**
+       A reusable query over a SegmentGrid. After a call to {@link #cast(double, double, double, double)} the candidate segments can be read with {@link #size()} and {@link #get(int)}. Candidates are every segment registered in a cell the ray passes through; callers still need to do an exact intersection test.
+    */
+    public final class Query {
+        private final int[] stamps;
+        private final double[] range;
+        private int stamp;
+        private int[] found;
+        private int count;
+
+        private Query() {
+            stamps = new int[size];
+            range = new double[2];
+            stamp = 0;
+            found = new int[Math.max(16, Math.min(size, 1024))];
+            count = 0;
+        }
+
+        /**
+           Get the grid this query belongs to.
+           @return The grid.
+        */
+        public SegmentGrid getGrid() {
+            return SegmentGrid.this;
+        }
+
+        /**
+           Find all candidate segments that might intersect a line segment.
+           @param x1 The X coordinate of the start of the segment.
+           @param y1 The Y coordinate of the start of the segment.
+           @param x2 The X coordinate of the end of the segment.
+           @param y2 The Y coordinate of the end of the segment.
+        */
+        public void cast(double x1, double y1, double x2, double y2) {
+            count = 0;
+            if (++stamp == 0) {
+                Arrays.fill(stamps, 0);
+                stamp = 1;
+            }
+            if (size == 0) {
+                return;
+            }
+            double xMax = xMin + columns * cellSize;
+            double yMax = yMin + rows * cellSize;
+            // Clip the segment to the grid bounds (Liang-Barsky)
+            double dx = x2 - x1;
+            double dy = y2 - y1;
+            range[0] = 0;
+            range[1] = 1;
+            if (!clip(-dx, x1 - xMin) || !clip(dx, xMax - x1)
+                || !clip(-dy, y1 - yMin) || !clip(dy, yMax - y1)) {
+                return;
+            }
+            double sx = x1 + range[0] * dx;
+            double sy = y1 + range[0] * dy;
+            double ex = x1 + range[1] * dx;
+            double ey = y1 + range[1] * dy;
+            int c = column(sx);
+            int r = row(sy);
+            int endC = column(ex);
+            int endR = row(ey);
+            int stepC = dx > 0 ? 1 : -1;
+            int stepR = dy > 0 ? 1 : -1;
+            double tDeltaX = dx == 0 ? Double.POSITIVE_INFINITY : cellSize / Math.abs(dx);
+            double tDeltaY = dy == 0 ? Double.POSITIVE_INFINITY : cellSize / Math.abs(dy);
+            double tMaxX = dx == 0 ? Double.POSITIVE_INFINITY : (xMin + (c + (stepC > 0 ? 1 : 0)) * cellSize - x1) / dx;
+            double tMaxY = dy == 0 ? Double.POSITIVE_INFINITY : (yMin + (r + (stepR > 0 ? 1 : 0)) * cellSize - y1) / dy;
+            int limit = columns + rows + 2;
+            while (true) {
+                addCell(r * columns + c);
+                if ((c == endC && r == endR) || --limit == 0) {
+                    break;
+                }
+                if (tMaxX < tMaxY) {
+                    c += stepC;
+                    tMaxX += tDeltaX;
+                }
+                else {
+                    r += stepR;
+                    tMaxY += tDeltaY;
+                }
+                if (c < 0 || c >= columns || r < 0 || r >= rows) {
+                    break;
+                }
+            }
+        }
+
+        /**
+           Get the number of candidates found by the last cast.
+           @return The number of candidates.
+        */
+        public int size() {
+            return count;
+        }
+
+        /**
+           Get a candidate found by the last cast.
+           @param i The index of the candidate.
+           @return The position of the candidate segment in the list used to build the grid.
+        */
+        public int get(int i) {
+            return found[i];
+        }
+
+        private void addCell(int cell) {
+            for (int i = cellStart[cell]; i < cellStart[cell + 1]; ++i) {
+                int id = cellItems[i];
+                if (stamps[id] != stamp) {
+                    stamps[id] = stamp;
+                    if (count == found.length) {
+                        found = Arrays.copyOf(found, found.length * 2);
+                    }
+                    found[count++] = id;
+                }
+            }
+        }
+
+        private boolean clip(double p, double q) {
+            if (p == 0) {
+                return q >= 0;
+            }
+            double t = q / p;
+            if (p < 0) {
+                if (t > range[1]) {
+                    return false;
+                }
+                range[0] = Math.max(range[0], t);
+            }
+            else {
+                if (t < range[0]) {
+                    return false;
+                }
+                range[1] = Math.min(range[1], t);
+            }
+            return true;
+        }
+    }
+}
@@ -186,6 +186,22 @@ public class ScreenTransform {
         return viewBounds;
     }
 
+    /**
+       Get the number of pixels per unit of world X coordinate.
+       @return The X scale.
+    */
+    public double getPixelsPerX() {
+        return pixelsPerX;
+    }
+
+    /**
+       Get the number of pixels per unit of world Y coordinate.
+       @return The Y scale.
+    */
+    public double getPixelsPerY() {
+        return pixelsPerY;
+    }
+
     /**
        Convert a world X coordinate to a screen coordinate.
        @param x The world X coordinate.
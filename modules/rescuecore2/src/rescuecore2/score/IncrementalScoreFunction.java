@@ -0,0 +1,128 @@
+package rescuecore2.score;
+
+import rescuecore2.config.Config;
+import rescuecore2.worldmodel.WorldModel;
+import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.EntityID;
+import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.Timestep;
+
+import java.util.Map;
+import java.util.HashMap;
+
+/**
+   A score function built from a fixed number of totals that each entity adds to independently. The contribution of every entity is remembered so that each timestep only the entities in the timestep's ChangeSet need to be looked at. The whole world is scanned when there is no previous timestep to build on: on the first timestep, when the timestep has no ChangeSet, or when timesteps are skipped. Scoring the same timestep again returns the score from the first call.
+ */
+public abstract class IncrementalScoreFunction extends AbstractScoreFunction {
+    /** Config key for turning incremental scoring off. If this is false the whole world is scanned every timestep. */
+    public static final String INCREMENTAL_KEY = "score.incremental";
+
+    private final int size;
+    private Map<EntityID, double[]> contributions;
+    private double[] totals;
+    private int lastTime;
+    private boolean incremental;
+
+    /**
+       Construct an IncrementalScoreFunction.
+       @param name The name of this function.
+       @param size The number of totals each entity contributes to.
+    */
+    protected IncrementalScoreFunction(String name, int size) {
+        super(name);
+        this.size = size;
+        contributions = new HashMap<EntityID, double[]>();
+        incremental = true;
+    }
+
+    @Override
+    public void initialise(WorldModel<? extends Entity> world, Config config) {
+        incremental = config.getBooleanValue(INCREMENTAL_KEY, true);
+        contributions.clear();
+        totals = null;
+    }
+
+    @Override
+    public double score(WorldModel<? extends Entity> world, Timestep timestep) {
+        ChangeSet changes = timestep.getChangeSet();
+        if (incremental && totals != null && timestep.getTime() == lastTime) {
+            // Already scored, for example by another view of the same timestep
+            return score(totals);
+        }
+        if (!incremental || totals == null || changes == null || timestep.getTime() != lastTime + 1) {
+            rebuild(world);
+        }
+        else {
+            for (EntityID next : changes.getChangedEntities()) {
+                update(next, world.getEntity(next));
+            }
+            for (EntityID next : changes.getDeletedEntities()) {
+                update(next, null);
+            }
+        }
+        lastTime = timestep.getTime();
+        return score(totals);
+    }
+
+    /**
+       Compute the score by scanning the whole world. This does not use or change the remembered contributions, so it can be used to check the result of {@link #score(WorldModel, Timestep)}.
+       @param world The state of the world.
+       @return The score.
+    */
+    public double fullScore(WorldModel<? extends Entity> world) {
+        double[] sum = new double[size];
+        double[] contribution = new double[size];
+        for (Entity next : world) {
+            if (contribute(next, contribution)) {
+                for (int i = 0; i < size; ++i) {
+                    sum[i] += contribution[i];
+                }
+            }
+        }
+        return score(sum);
+    }
+
+    /**
+       Work out what an entity adds to each total.
+       @param e The entity.
+       @param result An array to write the contribution into, one entry per total. The entries start with undefined values.
+       @return False if the entity does not count towards the score, in which case the result is ignored.
+    */
+    protected abstract boolean contribute(Entity e, double[] result);
+
+    /**
+       Turn the totals into a score.
+       @param sum The totals over all entities. This must not be modified.
+       @return The score.
+    */
+    protected abstract double score(double[] sum);
+
+    private void rebuild(WorldModel<? extends Entity> world) {
+        contributions.clear();
+        totals = new double[size];
+        for (Entity next : world) {
+            update(next.getID(), next);
+        }
+    }
+
+    private void update(EntityID id, Entity e) {
+        double[] old = contributions.get(id);
+        double[] contribution = old == null ? new double[size] : old;
+        if (old != null) {
+            for (int i = 0; i < size; ++i) {
+                totals[i] -= old[i];
+            }
+        }
+        if (e != null && contribute(e, contribution)) {
+            for (int i = 0; i < size; ++i) {
+                totals[i] += contribution[i];
+            }
+            if (old == null) {
+                contributions.put(id, contribution);
+            }
+        }
+        else if (old != null) {
+            contributions.remove(id);
+        }
+    }
+}
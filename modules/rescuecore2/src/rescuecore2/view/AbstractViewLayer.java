@@ -47,6 +47,16 @@ public abstract class AbstractViewLayer implements ViewLayer {
         return visible;
     }
 
+    @Override
+    public boolean isStatic() {
+        return false;
+    }
+
+    @Override
+    public long getStaticSignature() {
+        return 0;
+    }
+
     /**
        Process a set of objects and recursively inspect collections and arrays.
        @param objects The objects to process.
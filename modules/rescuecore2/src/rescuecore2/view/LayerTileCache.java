@@ -0,0 +1,148 @@
+package rescuecore2.view;
+
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import rescuecore2.misc.gui.ScreenTransform;
+
+/**
+   Cached images of a run of static view layers cut into square tiles. The layers are drawn into the same tiles so that they can be copied to the screen in one go. Tiles are placed relative to the screen position of the world origin, so panning the view moves the tiles without changing what is in them and only the newly uncovered tiles need to be drawn. Changing the zoom level or the signature of any of the layers throws away all tiles.
+ */
+class LayerTileCache {
+    private static final int TILE_SIZE = 256;
+
+    private final List<ViewLayer> layers;
+    private ScreenTransform transform;
+    private double pixelsPerX;
+    private double pixelsPerY;
+    private long signature;
+    private Map<Long, BufferedImage> tiles;
+    private Collection<RenderedObject> rendered;
+    private int renderedOriginX;
+    private int renderedOriginY;
+
+    /**
+       Construct an empty LayerTileCache.
+       @param layers The layers to cache, in the order they are drawn.
+    */
+    LayerTileCache(List<ViewLayer> layers) {
+        this.layers = layers;
+        tiles = new HashMap<Long, BufferedImage>();
+    }
+
+    /**
+       Draw the layers, rendering any tiles that are not cached.
+       @param g The graphics to draw on.
+       @param t The screen transform.
+       @param width The width of the screen in pixels.
+       @param height The height of the screen in pixels.
+       @return The objects rendered by the layers, moved to where they are on screen now.
+    */
+    Collection<RenderedObject> paint(Graphics2D g, ScreenTransform t, int width, int height) {
+        long newSignature = 0;
+        for (ViewLayer next : layers) {
+            // CHECKSTYLE:OFF:MagicNumber
+            newSignature = newSignature * 31 + next.getStaticSignature();
+            // CHECKSTYLE:ON:MagicNumber
+        }
+        if (t != transform || t.getPixelsPerX() != pixelsPerX || t.getPixelsPerY() != pixelsPerY || newSignature != signature) {
+            clear();
+            transform = t;
+            pixelsPerX = t.getPixelsPerX();
+            pixelsPerY = t.getPixelsPerY();
+            signature = newSignature;
+        }
+        int originX = t.xToScreen(0);
+        int originY = t.yToScreen(0);
+        int firstColumn = Math.floorDiv(-originX, TILE_SIZE);
+        int lastColumn = Math.floorDiv(width - 1 - originX, TILE_SIZE);
+        int firstRow = Math.floorDiv(-originY, TILE_SIZE);
+        int lastRow = Math.floorDiv(height - 1 - originY, TILE_SIZE);
+        // Draw all the missing tiles in one pass over the layers
+        int minColumn = Integer.MAX_VALUE;
+        int maxColumn = Integer.MIN_VALUE;
+        int minRow = Integer.MAX_VALUE;
+        int maxRow = Integer.MIN_VALUE;
+        for (int column = firstColumn; column <= lastColumn; ++column) {
+            for (int row = firstRow; row <= lastRow; ++row) {
+                if (!tiles.containsKey(key(column, row))) {
+                    minColumn = Math.min(minColumn, column);
+                    maxColumn = Math.max(maxColumn, column);
+                    minRow = Math.min(minRow, row);
+                    maxRow = Math.max(maxRow, row);
+                }
+            }
+        }
+        if (minColumn <= maxColumn) {
+            BufferedImage image = new BufferedImage((maxColumn - minColumn + 1) * TILE_SIZE, (maxRow - minRow + 1) * TILE_SIZE, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D imageGraphics = image.createGraphics();
+            imageGraphics.setRenderingHints(g.getRenderingHints());
+            imageGraphics.translate(-(originX + minColumn * TILE_SIZE), -(originY + minRow * TILE_SIZE));
+            rendered = new ArrayList<RenderedObject>();
+            for (ViewLayer next : layers) {
+                rendered.addAll(next.render((Graphics2D)imageGraphics.create(), t, width, height));
+            }
+            renderedOriginX = originX;
+            renderedOriginY = originY;
+            imageGraphics.dispose();
+            for (int column = minColumn; column <= maxColumn; ++column) {
+                for (int row = minRow; row <= maxRow; ++row) {
+                    Long key = key(column, row);
+                    if (!tiles.containsKey(key)) {
+                        tiles.put(key, image.getSubimage((column - minColumn) * TILE_SIZE, (row - minRow) * TILE_SIZE, TILE_SIZE, TILE_SIZE));
+                    }
+                }
+            }
+        }
+        for (int column = firstColumn; column <= lastColumn; ++column) {
+            for (int row = firstRow; row <= lastRow; ++row) {
+                g.drawImage(tiles.get(key(column, row)), originX + column * TILE_SIZE, originY + row * TILE_SIZE, null);
+            }
+        }
+        // Keep a border of one tile in case the view is panned back
+        for (Iterator<Long> it = tiles.keySet().iterator(); it.hasNext();) {
+            long next = it.next();
+            int column = (int)(next >> 32);
+            int row = (int)next;
+            if (column < firstColumn - 1 || column > lastColumn + 1 || row < firstRow - 1 || row > lastRow + 1) {
+                it.remove();
+            }
+        }
+        return move(rendered, originX - renderedOriginX, originY - renderedOriginY);
+    }
+
+    /**
+       Throw away all cached tiles.
+    */
+    void clear() {
+        tiles.clear();
+        rendered = null;
+        transform = null;
+    }
+
+    private static Collection<RenderedObject> move(Collection<RenderedObject> objects, int dx, int dy) {
+        if (objects == null || (dx == 0 && dy == 0)) {
+            return objects;
+        }
+        AffineTransform translate = AffineTransform.getTranslateInstance(dx, dy);
+        Collection<RenderedObject> result = new ArrayList<RenderedObject>(objects.size());
+        for (RenderedObject next : objects) {
+            Shape shape = next.getShape();
+            result.add(new RenderedObject(next.getObject(), shape == null ? null : translate.createTransformedShape(shape)));
+        }
+        return result;
+    }
+
+    private static long key(int column, int row) {
+        return ((long)column << 32) | (row & 0xFFFFFFFFL);
+    }
+}
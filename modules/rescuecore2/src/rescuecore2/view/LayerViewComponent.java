@@ -4,6 +4,7 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.HashMap;
 import java.util.Collection;
 import java.util.Collections;
@@ -24,12 +25,17 @@ import rescuecore2.misc.gui.ScreenTransform;
 import rescuecore2.config.Config;
 
 /**
-   A ViewComponent that uses layers.
+   A ViewComponent that uses layers. Static layers are drawn into cached image tiles and only rendered again when the view is zoomed, when the layer's signature changes or when panning uncovers new tiles.
  */
 public class LayerViewComponent extends ViewComponent {
+    /** Config key for turning off the image cache for static layers. */
+    public static final String CACHE_STATIC_LAYERS_KEY = "viewer.cache-static-layers";
+
     private Config config;
     private List<ViewLayer> layers;
     private Map<ViewLayer, Action> layerActions;
+    private Map<List<ViewLayer>, LayerTileCache> caches;
+    private boolean cacheStaticLayers;
     private Object[] data;
     private Rectangle2D bounds;
 
@@ -39,6 +45,8 @@ public class LayerViewComponent extends ViewComponent {
     public LayerViewComponent() {
         layers = new ArrayList<ViewLayer>();
         layerActions = new HashMap<ViewLayer, Action>();
+        caches = new HashMap<List<ViewLayer>, LayerTileCache>();
+        cacheStaticLayers = true;
         addMouseListener(new MouseListener() {
                 @Override
                 public void mousePressed(MouseEvent e) {
@@ -67,6 +75,7 @@ public class LayerViewComponent extends ViewComponent {
     @Override
     public void initialise(Config c) {
         this.config = c;
+        cacheStaticLayers = config.getBooleanValue(CACHE_STATIC_LAYERS_KEY, true);
         for (ViewLayer next : layers) {
             next.initialise(config);
         }
@@ -95,6 +104,7 @@ public class LayerViewComponent extends ViewComponent {
         if (index != -1) {
             layers.remove(index);
             layerActions.remove(layer);
+            caches.clear();
             layer.setLayerViewComponent(null);
             computeBounds();
         }
@@ -109,6 +119,7 @@ public class LayerViewComponent extends ViewComponent {
         }
         layers.clear();
         layerActions.clear();
+        caches.clear();
         computeBounds();
     }
 
@@ -123,12 +134,24 @@ public class LayerViewComponent extends ViewComponent {
     protected Collection<RenderedObject> render(Graphics2D g, ScreenTransform transform, int width, int height) {
         Collection<RenderedObject> result = new HashSet<RenderedObject>();
         prepaint();
+        // Consecutive static layers share one set of cached tiles
+        List<ViewLayer> run = new ArrayList<ViewLayer>();
+        Set<List<ViewLayer>> used = new HashSet<List<ViewLayer>>();
         for (ViewLayer next : layers) {
-            if (next.isVisible()) {
-                Graphics2D copy = (Graphics2D)g.create();
-                result.addAll(next.render(copy, transform, width, height));
+            if (!next.isVisible()) {
+                continue;
+            }
+            if (cacheStaticLayers && next.isStatic()) {
+                run.add(next);
+                continue;
             }
+            paintStaticLayers(run, used, g, transform, width, height, result);
+            run = new ArrayList<ViewLayer>();
+            Graphics2D copy = (Graphics2D)g.create();
+            result.addAll(next.render(copy, transform, width, height));
         }
+        paintStaticLayers(run, used, g, transform, width, height, result);
+        caches.keySet().retainAll(used);
         postpaint();
         return result;
     }
@@ -153,6 +176,22 @@ public class LayerViewComponent extends ViewComponent {
     protected void postpaint() {
     }
 
+    private void paintStaticLayers(List<ViewLayer> run, Set<List<ViewLayer>> used, Graphics2D g, ScreenTransform transform, int width, int height, Collection<RenderedObject> result) {
+        if (run.isEmpty()) {
+            return;
+        }
+        LayerTileCache cache = caches.get(run);
+        if (cache == null) {
+            cache = new LayerTileCache(run);
+            caches.put(run, cache);
+        }
+        used.add(run);
+        Collection<RenderedObject> rendered = cache.paint((Graphics2D)g.create(), transform, width, height);
+        if (rendered != null) {
+            result.addAll(rendered);
+        }
+    }
+
     private void computeBounds() {
         Rectangle2D oldBounds = bounds;
         bounds = null;
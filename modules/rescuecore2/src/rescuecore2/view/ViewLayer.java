@@ -50,6 +50,18 @@ public interface ViewLayer {
      */
     Collection<RenderedObject> render(Graphics2D g, ScreenTransform transform, int width, int height);
 
+    /**
+       Find out if this layer draws the same picture until it is zoomed or until the things it draws change. The LayerViewComponent keeps an image of static layers and only calls {@link #render(Graphics2D, ScreenTransform, int, int)} again when the zoom level or {@link #getStaticSignature()} changes. Static layers must draw everything they know about, not just the things inside the view bounds, because parts of the image are reused when the view is panned.
+       @return True if this layer is static, false if it must be rendered every time the view is painted.
+    */
+    boolean isStatic();
+
+    /**
+       Get a value that changes whenever the picture drawn by a static layer changes. This is only used if {@link #isStatic()} returns true.
+       @return The signature of the things this layer draws.
+    */
+    long getStaticSignature();
+
     /**
        Set whether this layer should be rendered or not.
        @param b True if this layer should be rendered, false otherwise.
@@ -8,9 +8,10 @@ import static rescuecore2.misc.EncodingTools.writeProperty;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 import rescuecore2.messages.protobuf.MsgProtoBuf;
@@ -22,9 +23,16 @@ import rescuecore2.messages.protobuf.RCRSProto.PropertyProto;
  */
 public abstract class AbstractEntity implements Entity {
 
+  private static final EntityListener[] NO_LISTENERS = new EntityListener[0];
+
   private final EntityID id;
-  private final Set<EntityListener> listeners;
+  private final Object listenerLock = new Object();
+  // Copy-on-write so that firing an event needs neither a lock nor a copy
+  private volatile EntityListener[] listeners;
   private final Set<Property> properties;
+  // Events held back by beginPropertyBatch, or null if events are delivered
+  // straight away
+  private List<PendingChange> pending;
 
   /**
    * Construct an AbstractEntity with a set of properties.
@@ -33,7 +41,7 @@ public abstract class AbstractEntity implements Entity {
    */
   protected AbstractEntity(EntityID id) {
     this.id = id;
-    listeners = new HashSet<EntityListener>();
+    listeners = NO_LISTENERS;
     properties = new HashSet<Property>();
   }
 
@@ -48,15 +56,33 @@ public abstract class AbstractEntity implements Entity {
 
   @Override
   public void addEntityListener(EntityListener l) {
-    synchronized (listeners) {
-      listeners.add(l);
+    synchronized (listenerLock) {
+      EntityListener[] old = listeners;
+      for (EntityListener next : old) {
+        if (next.equals(l)) {
+          return;
+        }
+      }
+      EntityListener[] result = new EntityListener[old.length + 1];
+      System.arraycopy(old, 0, result, 0, old.length);
+      result[old.length] = l;
+      listeners = result;
     }
   }
 
   @Override
   public void removeEntityListener(EntityListener l) {
-    synchronized (listeners) {
-      listeners.remove(l);
+    synchronized (listenerLock) {
+      EntityListener[] old = listeners;
+      for (int i = 0; i < old.length; ++i) {
+        if (old[i].equals(l)) {
+          EntityListener[] result = old.length == 1 ? NO_LISTENERS : new EntityListener[old.length - 1];
+          System.arraycopy(old, 0, result, 0, i);
+          System.arraycopy(old, i + 1, result, i, result.length - i);
+          listeners = result;
+          return;
+        }
+      }
     }
   }
 
@@ -202,15 +228,63 @@ public abstract class AbstractEntity implements Entity {
    * @param newValue The new value.
    */
   protected void firePropertyChanged(Property p, Object oldValue, Object newValue) {
-    Collection<EntityListener> copy;
-    synchronized (listeners) {
-      copy = new HashSet<EntityListener>(listeners);
+    EntityListener[] current = listeners;
+    if (current.length == 0) {
+      return;
     }
-    for (EntityListener next : copy) {
+    if (pending != null) {
+      for (PendingChange next : pending) {
+        if (next.property == p) {
+          next.newValue = newValue;
+          return;
+        }
+      }
+      pending.add(new PendingChange(p, oldValue, newValue));
+      return;
+    }
+    for (EntityListener next : current) {
       next.propertyChanged(this, p, oldValue, newValue);
     }
   }
 
+  /**
+   * Start holding back property change events. Until
+   * {@link #endPropertyBatch()} is called events are coalesced so that each
+   * changed property produces a single event carrying the value it had before
+   * the batch started and the value it has at the end. This is used by bulk
+   * updates such as {@link AbstractWorldModel#merge(ChangeSet)} so that
+   * listeners see each entity once it has been fully updated. Batches do not
+   * nest.
+   *
+   * @return False if there are no listeners so nothing needs to be held back.
+   */
+  boolean beginPropertyBatch() {
+    if (listeners.length == 0) {
+      return false;
+    }
+    if (pending == null) {
+      pending = new ArrayList<PendingChange>(2);
+    }
+    return true;
+  }
+
+  /**
+   * Stop holding back property change events and deliver any that were held.
+   */
+  void endPropertyBatch() {
+    List<PendingChange> changes = pending;
+    pending = null;
+    if (changes == null || changes.isEmpty()) {
+      return;
+    }
+    EntityListener[] current = listeners;
+    for (PendingChange change : changes) {
+      for (EntityListener next : current) {
+        next.propertyChanged(this, change.property, change.oldValue, change.newValue);
+      }
+    }
+  }
+
   @Override
   public EntityProto toEntityProto() {
     EntityProto.Builder builder = EntityProto.newBuilder().setEntityID(id.getValue()).setUrn(getURN());
@@ -233,4 +307,16 @@ public abstract class AbstractEntity implements Entity {
       existing.takeValue(prop);
     }
   }
-}
\ No newline at end of file
+
+  private static final class PendingChange {
+    private final Property property;
+    private final Object oldValue;
+    private Object newValue;
+
+    PendingChange(Property property, Object oldValue, Object newValue) {
+      this.property = property;
+      this.oldValue = oldValue;
+      this.newValue = newValue;
+    }
+  }
+}
@@ -3,6 +3,8 @@ package rescuecore2.worldmodel;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.Collection;
+import java.util.List;
+import java.util.ArrayList;
 
 import rescuecore2.registry.Registry;
 
@@ -67,45 +69,61 @@ public abstract class AbstractWorldModel<T extends Entity> implements WorldModel
 
     @Override
     public void merge(Collection<? extends Entity> toMerge) {
-        for (Entity next : toMerge) {
-            T existing = getEntity(next.getID());
-            if (existing == null) {
-                addEntity(next);
-            }
-            else {
-                Set<Property> props = existing.getProperties();
-                for (Property prop : props) {
-                    Property other = next.getProperty(prop.getURN());
-                    if (other.isDefined()) {
-                        prop.takeValue(other);
+        List<AbstractEntity> batched = new ArrayList<AbstractEntity>();
+        try {
+            for (Entity next : toMerge) {
+                T existing = getEntity(next.getID());
+                if (existing == null) {
+                    addEntity(next);
+                }
+                else {
+                    beginBatch(existing, batched);
+                    Set<Property> props = existing.getProperties();
+                    for (Property prop : props) {
+                        Property other = next.getProperty(prop.getURN());
+                        if (other.isDefined()) {
+                            prop.takeValue(other);
+                        }
                     }
                 }
             }
         }
+        finally {
+            endBatches(batched);
+        }
     }
 
     @Override
     public void merge(ChangeSet changeSet) {
-        for (EntityID e : changeSet.getChangedEntities()) {
-            Entity existingEntity = getEntity(e);
-            boolean add = false;
-            if (existingEntity == null) {
-                // Construct a new entity
-                existingEntity = Registry.getCurrentRegistry().createEntity(changeSet.getEntityURN(e), e);
+        // Property events are held back until every changed entity has been updated
+        List<AbstractEntity> batched = new ArrayList<AbstractEntity>();
+        try {
+            for (EntityID e : changeSet.getChangedEntities()) {
+                Entity existingEntity = getEntity(e);
+                boolean add = false;
                 if (existingEntity == null) {
-                    // Bail out
-                    continue;
+                    // Construct a new entity
+                    existingEntity = Registry.getCurrentRegistry().createEntity(changeSet.getEntityURN(e), e);
+                    if (existingEntity == null) {
+                        // Bail out
+                        continue;
+                    }
+                    add = true;
+                }
+                beginBatch(existingEntity, batched);
+                for (Property p : changeSet.getChangedProperties(e)) {
+                    Property existingProperty = existingEntity.getProperty(p.getURN());
+                    existingProperty.takeValue(p);
+                }
+                if (add) {
+                    addEntity(existingEntity);
                 }
-                add = true;
-            }
-            for (Property p : changeSet.getChangedProperties(e)) {
-                Property existingProperty = existingEntity.getProperty(p.getURN());
-                existingProperty.takeValue(p);
-            }
-            if (add) {
-                addEntity(existingEntity);
             }
         }
+        finally {
+            endBatches(batched);
+        }
+        // Deletions come after the batched events so that listeners never hear about changes to entities that have already left the model
         for (EntityID next : changeSet.getDeletedEntities()) {
             removeEntity(next);
         }
@@ -153,6 +171,36 @@ public abstract class AbstractWorldModel<T extends Entity> implements WorldModel
         allowedClasses.add(clazz);
     }
 
+    private void beginBatch(Entity e, List<AbstractEntity> batched) {
+        if (e instanceof AbstractEntity) {
+            AbstractEntity a = (AbstractEntity)e;
+            if (a.beginPropertyBatch()) {
+                batched.add(a);
+            }
+        }
+    }
+
+    private void endBatches(List<AbstractEntity> batched) {
+        // Every batch must end even if a listener throws, otherwise the remaining entities would hold back their events for good
+        RuntimeException error = null;
+        for (AbstractEntity next : batched) {
+            try {
+                next.endPropertyBatch();
+            }
+            catch (RuntimeException e) {
+                if (error == null) {
+                    error = e;
+                }
+                else {
+                    error.addSuppressed(e);
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
     private Collection<WorldModelListener<? super T>> getListeners() {
         synchronized (listeners) {
             return new HashSet<WorldModelListener<? super T>>(listeners);
@@ -216,6 +216,45 @@ public class ChangeSet {
     }
   }
 
+  /**
+   * Create a ChangeSet holding only the changes to some entity and property
+   * types. The properties are shared with this ChangeSet rather than copied, so
+   * neither ChangeSet should be modified afterwards. Deleted entities are always
+   * kept because their types are not known.
+   *
+   * @param entityURNs   The entity URNs to keep, or null to keep all entities.
+   * @param propertyURNs The property URNs to keep, or null to keep all
+   *                     properties.
+   * @return A new ChangeSet, or this ChangeSet if nothing is filtered out.
+   */
+  public ChangeSet filter(Set<Integer> entityURNs, Set<Integer> propertyURNs) {
+    if (entityURNs == null && propertyURNs == null) {
+      return this;
+    }
+    ChangeSet result = new ChangeSet();
+    for (Map.Entry<EntityID, Map<Integer, Property>> next : changes.entrySet()) {
+      EntityID e = next.getKey();
+      Integer urn = this.entityURNs.get(e);
+      if (entityURNs != null && !entityURNs.contains(urn)) {
+        continue;
+      }
+      Map<Integer, Property> kept = null;
+      for (Map.Entry<Integer, Property> prop : next.getValue().entrySet()) {
+        if (propertyURNs == null || propertyURNs.contains(prop.getKey())) {
+          if (kept == null) {
+            kept = result.changes.get(e);
+          }
+          kept.put(prop.getKey(), prop.getValue());
+        }
+      }
+      if (kept != null) {
+        result.entityURNs.put(e, urn);
+      }
+    }
+    result.deleted.addAll(deleted);
+    return result;
+  }
+
   /**
    * Write this ChangeSet to a stream.
    *
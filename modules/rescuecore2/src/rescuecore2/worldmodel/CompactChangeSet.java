@@ -0,0 +1,838 @@
+package rescuecore2.worldmodel;
+
+import gnu.trove.TIntArrayList;
+import gnu.trove.TIntHashSet;
+import gnu.trove.TIntIntHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import rescuecore2.messages.protobuf.MsgProtoBuf;
+import rescuecore2.messages.protobuf.RCRSProto.ChangeSetProto;
+import rescuecore2.messages.protobuf.RCRSProto.ChangeSetProto.EntityChangeProto;
+import rescuecore2.messages.protobuf.RCRSProto.IntListProto;
+import rescuecore2.messages.protobuf.RCRSProto.PropertyProto;
+import rescuecore2.registry.Registry;
+import rescuecore2.worldmodel.properties.BooleanProperty;
+import rescuecore2.worldmodel.properties.DoubleProperty;
+import rescuecore2.worldmodel.properties.EntityRefListProperty;
+import rescuecore2.worldmodel.properties.EntityRefProperty;
+import rescuecore2.worldmodel.properties.IntArrayProperty;
+import rescuecore2.worldmodel.properties.IntProperty;
+
+/**
+ * A ChangeSet that keeps its changes in primitive arrays rather than in maps of
+ * Property objects. Entities are found through an open-addressing table keyed
+ * on the raw entity ID and each entity's changes are a chain of rows in a set
+ * of columns. Int, entity reference and boolean values are stored in an int
+ * column, list values in a shared int array and doubles in a double column, so
+ * adding a change of one of the standard property types does not copy the
+ * Property. Other property types are copied as with {@link ChangeSet}.
+ * <p>
+ * Changes are read by index rather than through collections, so iterating
+ * does not allocate:
+ *
+ * <pre>
+ * for (int i = 0; i &lt; changes.getEntityCount(); ++i) {
+ *   for (int c = changes.getFirstChange(i); c != -1; c = changes.getNextChange(c)) {
+ *     ...
+ *   }
+ * }
+ * </pre>
+ *
+ * Replaced values and the changes of deleted entities are not reclaimed, so
+ * this class is meant for short-lived sets such as a single timestep's updates.
+ */
+public class CompactChangeSet {
+  /**
+   * How the value of a change is stored.
+   */
+  public enum ValueKind {
+    /** An {@link IntProperty} value, read with {@link CompactChangeSet#getInt(int)}. */
+    INT,
+    /** An {@link EntityRefProperty} value, read with {@link CompactChangeSet#getInt(int)}. */
+    ENTITY_REF,
+    /** A {@link BooleanProperty} value, read with {@link CompactChangeSet#getBoolean(int)}. */
+    BOOLEAN,
+    /** A {@link DoubleProperty} value, read with {@link CompactChangeSet#getDouble(int)}. */
+    DOUBLE,
+    /** An {@link IntArrayProperty} value, read with the array accessors. */
+    INT_ARRAY,
+    /** An {@link EntityRefListProperty} value, read with the array accessors. */
+    ENTITY_REF_LIST,
+    /** Any other property, or an undefined property, read with {@link CompactChangeSet#getOther(int)}. */
+    OTHER;
+  }
+
+  private static final ValueKind[] KINDS = ValueKind.values();
+  private static final int INITIAL_ENTITIES = 16;
+  private static final int INITIAL_CHANGES = 64;
+  private static final int UNKNOWN_URN = -1;
+
+  // Entity columns, indexed by entity index
+  private int entityCount;
+  private int[] entityIDs;
+  private int[] entityURNs;
+  private int[] firstChange;
+  private int[] lastChange;
+  // Entity ID to entity index + 1
+  private final TIntIntHashMap entityIndex;
+
+  // Change columns, indexed by change number
+  private int changeCount;
+  private int[] changeURN;
+  private int[] changeNext;
+  private byte[] changeKind;
+  // The value for int, reference and boolean changes, otherwise an offset into
+  // the array, double or object column
+  private int[] changeValue;
+  private int[] changeLength;
+
+  private int[] arrayData;
+  private int arrayCount;
+  private double[] doubleData;
+  private int doubleCount;
+  private List<Property> objectData;
+
+  private final TIntHashSet deleted;
+  private final TIntArrayList deletedOrder;
+
+  // Property URN to ValueKind ordinal + 1, or UNKNOWN_URN, for decoding
+  // protobuf. The registry is per thread, so the answers are only kept for the
+  // registry that gave them.
+  private TIntIntHashMap protoKinds;
+  private Registry protoKindsRegistry;
+
+  /**
+   * Create an empty CompactChangeSet.
+   */
+  public CompactChangeSet() {
+    entityIDs = new int[INITIAL_ENTITIES];
+    entityURNs = new int[INITIAL_ENTITIES];
+    firstChange = new int[INITIAL_ENTITIES];
+    lastChange = new int[INITIAL_ENTITIES];
+    entityIndex = new TIntIntHashMap();
+    changeURN = new int[INITIAL_CHANGES];
+    changeNext = new int[INITIAL_CHANGES];
+    changeKind = new byte[INITIAL_CHANGES];
+    changeValue = new int[INITIAL_CHANGES];
+    changeLength = new int[INITIAL_CHANGES];
+    arrayData = new int[INITIAL_CHANGES];
+    doubleData = new double[0];
+    objectData = new ArrayList<Property>();
+    deleted = new TIntHashSet();
+    deletedOrder = new TIntArrayList();
+  }
+
+  /**
+   * Create a CompactChangeSet holding the same changes as a ChangeSet.
+   *
+   * @param other The ChangeSet to copy.
+   */
+  public CompactChangeSet(ChangeSet other) {
+    this();
+    for (EntityID next : other.getChangedEntities()) {
+      int urn = other.getEntityURN(next);
+      for (Property p : other.getChangedProperties(next)) {
+        addChange(next, urn, p);
+      }
+    }
+    for (EntityID next : other.getDeletedEntities()) {
+      entityDeleted(next.getValue());
+    }
+  }
+
+  /**
+   * Remove all changes and deletions.
+   */
+  public void clear() {
+    entityCount = 0;
+    entityIndex.clear();
+    changeCount = 0;
+    arrayCount = 0;
+    doubleCount = 0;
+    objectData.clear();
+    deleted.clear();
+    deletedOrder.clear();
+  }
+
+  /**
+   * Add a change.
+   *
+   * @param e The entity that has changed.
+   * @param p The property that has changed.
+   */
+  public void addChange(Entity e, Property p) {
+    addChange(e.getID(), e.getURN(), p);
+  }
+
+  /**
+   * Add a change. The value of the property is copied.
+   *
+   * @param e   The ID of the entity that has changed.
+   * @param urn The URN of the entity that has changed.
+   * @param p   The property that has changed.
+   */
+  public void addChange(EntityID e, int urn, Property p) {
+    int id = e.getValue();
+    if (deleted.contains(id)) {
+      return;
+    }
+    int change = findOrAddChange(id, urn, p.getURN());
+    if (!p.isDefined()) {
+      setOther(change, p);
+    }
+    else if (p instanceof IntProperty ip) {
+      setInt(change, ValueKind.INT, ip.getValue());
+    }
+    else if (p instanceof EntityRefProperty rp) {
+      setInt(change, ValueKind.ENTITY_REF, rp.getValue().getValue());
+    }
+    else if (p instanceof BooleanProperty bp) {
+      setInt(change, ValueKind.BOOLEAN, bp.getValue() ? 1 : 0);
+    }
+    else if (p instanceof DoubleProperty dp) {
+      setDouble(change, dp.getValue());
+    }
+    else if (p instanceof IntArrayProperty ap) {
+      int[] values = ap.getValue();
+      setArray(change, ValueKind.INT_ARRAY, values, values.length);
+    }
+    else if (p instanceof EntityRefListProperty lp) {
+      List<EntityID> ids = lp.getValue();
+      int offset = reserveArray(change, ValueKind.ENTITY_REF_LIST, ids.size());
+      for (EntityID next : ids) {
+        arrayData[offset++] = next.getValue();
+      }
+    }
+    else {
+      setOther(change, p);
+    }
+  }
+
+  /**
+   * Add a change to an {@link IntProperty} without creating the property.
+   *
+   * @param id          The ID of the entity that has changed.
+   * @param urn         The URN of the entity that has changed.
+   * @param propertyURN The URN of the property that has changed.
+   * @param value       The new value.
+   */
+  public void addIntChange(int id, int urn, int propertyURN, int value) {
+    if (!deleted.contains(id)) {
+      setInt(findOrAddChange(id, urn, propertyURN), ValueKind.INT, value);
+    }
+  }
+
+  /**
+   * Add a change to an {@link IntArrayProperty} without creating the property.
+   *
+   * @param id          The ID of the entity that has changed.
+   * @param urn         The URN of the entity that has changed.
+   * @param propertyURN The URN of the property that has changed.
+   * @param values      The new values. These are copied.
+   */
+  public void addIntArrayChange(int id, int urn, int propertyURN, int[] values) {
+    if (!deleted.contains(id)) {
+      setArray(findOrAddChange(id, urn, propertyURN), ValueKind.INT_ARRAY, values, values.length);
+    }
+  }
+
+  /**
+   * Register a deleted entity. Any changes to the entity are removed.
+   *
+   * @param e The ID of the entity that has been deleted.
+   */
+  public void entityDeleted(EntityID e) {
+    entityDeleted(e.getValue());
+  }
+
+  /**
+   * Register a deleted entity. Any changes to the entity are removed.
+   *
+   * @param id The ID of the entity that has been deleted.
+   */
+  public void entityDeleted(int id) {
+    if (deleted.add(id)) {
+      deletedOrder.add(id);
+    }
+    int index = entityIndex.remove(id) - 1;
+    if (index < 0) {
+      return;
+    }
+    // Move the last entity into the gap
+    int last = --entityCount;
+    if (index != last) {
+      entityIDs[index] = entityIDs[last];
+      entityURNs[index] = entityURNs[last];
+      firstChange[index] = firstChange[last];
+      lastChange[index] = lastChange[last];
+      entityIndex.put(entityIDs[index], index + 1);
+    }
+  }
+
+  /**
+   * Merge another CompactChangeSet into this one. Values in the other set
+   * replace values in this one.
+   *
+   * @param other The other CompactChangeSet.
+   */
+  public void merge(CompactChangeSet other) {
+    for (int i = 0; i < other.entityCount; ++i) {
+      int id = other.entityIDs[i];
+      if (deleted.contains(id)) {
+        continue;
+      }
+      int urn = other.entityURNs[i];
+      for (int c = other.firstChange[i]; c != -1; c = other.changeNext[c]) {
+        int change = findOrAddChange(id, urn, other.changeURN[c]);
+        ValueKind kind = KINDS[other.changeKind[c]];
+        switch (kind) {
+          case INT:
+          case ENTITY_REF:
+          case BOOLEAN:
+            setInt(change, kind, other.changeValue[c]);
+            break;
+          case DOUBLE:
+            setDouble(change, other.doubleData[other.changeValue[c]]);
+            break;
+          case INT_ARRAY:
+          case ENTITY_REF_LIST:
+            int length = other.changeLength[c];
+            int offset = reserveArray(change, kind, length);
+            System.arraycopy(other.arrayData, other.changeValue[c], arrayData, offset, length);
+            break;
+          default:
+            setOther(change, other.objectData.get(other.changeValue[c]));
+            break;
+        }
+      }
+    }
+    for (int i = 0; i < other.deletedOrder.size(); ++i) {
+      int id = other.deletedOrder.getQuick(i);
+      if (deleted.add(id)) {
+        deletedOrder.add(id);
+      }
+    }
+  }
+
+  /**
+   * Find out if there are no changes or deletions.
+   *
+   * @return True if this set is empty.
+   */
+  public boolean isEmpty() {
+    return entityCount == 0 && deletedOrder.isEmpty();
+  }
+
+  /**
+   * Get the number of changed entities.
+   *
+   * @return The number of changed entities.
+   */
+  public int getEntityCount() {
+    return entityCount;
+  }
+
+  /**
+   * Get the ID of a changed entity.
+   *
+   * @param index The index of the entity, between zero and
+   *              {@link #getEntityCount()}.
+   * @return The raw entity ID.
+   */
+  public int getEntityID(int index) {
+    return entityIDs[index];
+  }
+
+  /**
+   * Get the URN of a changed entity.
+   *
+   * @param index The index of the entity.
+   * @return The entity URN.
+   */
+  public int getEntityURN(int index) {
+    return entityURNs[index];
+  }
+
+  /**
+   * Find the index of a changed entity.
+   *
+   * @param id The raw entity ID.
+   * @return The index of the entity, or -1 if it has not changed.
+   */
+  public int findEntity(int id) {
+    return entityIndex.get(id) - 1;
+  }
+
+  /**
+   * Get the first change to an entity.
+   *
+   * @param index The index of the entity.
+   * @return The first change. Every changed entity has at least one change.
+   */
+  public int getFirstChange(int index) {
+    return firstChange[index];
+  }
+
+  /**
+   * Get the next change to the same entity.
+   *
+   * @param change The current change.
+   * @return The next change, or -1 if there are no more.
+   */
+  public int getNextChange(int change) {
+    return changeNext[change];
+  }
+
+  /**
+   * Find the change to a property of an entity.
+   *
+   * @param index       The index of the entity.
+   * @param propertyURN The property URN to look for.
+   * @return The change, or -1 if the property has not changed.
+   */
+  public int findChange(int index, int propertyURN) {
+    for (int c = firstChange[index]; c != -1; c = changeNext[c]) {
+      if (changeURN[c] == propertyURN) {
+        return c;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Get the URN of the property a change is for.
+   *
+   * @param change The change.
+   * @return The property URN.
+   */
+  public int getPropertyURN(int change) {
+    return changeURN[change];
+  }
+
+  /**
+   * Find out how the value of a change is stored.
+   *
+   * @param change The change.
+   * @return The kind of value.
+   */
+  public ValueKind getKind(int change) {
+    return KINDS[changeKind[change]];
+  }
+
+  /**
+   * Get an int, entity reference or boolean value. Booleans are 1 for true and
+   * 0 for false.
+   *
+   * @param change The change.
+   * @return The value.
+   */
+  public int getInt(int change) {
+    return changeValue[change];
+  }
+
+  /**
+   * Get a boolean value.
+   *
+   * @param change The change.
+   * @return The value.
+   */
+  public boolean getBoolean(int change) {
+    return changeValue[change] != 0;
+  }
+
+  /**
+   * Get a double value.
+   *
+   * @param change The change.
+   * @return The value.
+   */
+  public double getDouble(int change) {
+    return doubleData[changeValue[change]];
+  }
+
+  /**
+   * Get the length of an int array or entity reference list value.
+   *
+   * @param change The change.
+   * @return The number of elements.
+   */
+  public int getArrayLength(int change) {
+    return changeLength[change];
+  }
+
+  /**
+   * Get an element of an int array or entity reference list value.
+   *
+   * @param change The change.
+   * @param i      The index of the element.
+   * @return The element.
+   */
+  public int getArrayElement(int change, int i) {
+    if (i < 0 || i >= changeLength[change]) {
+      throw new IndexOutOfBoundsException(i + " out of " + changeLength[change]);
+    }
+    return arrayData[changeValue[change] + i];
+  }
+
+  /**
+   * Get the property of a change that is not stored in a column. The property
+   * is shared with this set and must not be modified.
+   *
+   * @param change The change.
+   * @return The stored property.
+   */
+  public Property getOther(int change) {
+    return objectData.get(changeValue[change]);
+  }
+
+  /**
+   * Create a Property holding the value of a change.
+   *
+   * @param change The change.
+   * @return A new Property.
+   */
+  public Property getProperty(int change) {
+    int urn = changeURN[change];
+    int value = changeValue[change];
+    switch (KINDS[changeKind[change]]) {
+      case INT:
+        return new IntProperty(urn, value);
+      case ENTITY_REF:
+        return new EntityRefProperty(urn, new EntityID(value));
+      case BOOLEAN:
+        return new BooleanProperty(urn, value != 0);
+      case DOUBLE:
+        return new DoubleProperty(urn, doubleData[value]);
+      case INT_ARRAY:
+        return new IntArrayProperty(urn, Arrays.copyOfRange(arrayData, value, value + changeLength[change]));
+      case ENTITY_REF_LIST:
+        List<EntityID> ids = new ArrayList<EntityID>(changeLength[change]);
+        for (int i = 0; i < changeLength[change]; ++i) {
+          ids.add(new EntityID(arrayData[value + i]));
+        }
+        return new EntityRefListProperty(urn, ids);
+      default:
+        return objectData.get(value).copy();
+    }
+  }
+
+  /**
+   * Get the number of deleted entities.
+   *
+   * @return The number of deleted entities.
+   */
+  public int getDeletedCount() {
+    return deletedOrder.size();
+  }
+
+  /**
+   * Get the ID of a deleted entity.
+   *
+   * @param index The index of the deletion, between zero and
+   *              {@link #getDeletedCount()}.
+   * @return The raw entity ID.
+   */
+  public int getDeletedID(int index) {
+    return deletedOrder.get(index);
+  }
+
+  /**
+   * Find out if an entity has been deleted.
+   *
+   * @param id The raw entity ID.
+   * @return True if the entity has been deleted.
+   */
+  public boolean isDeleted(int id) {
+    return deleted.contains(id);
+  }
+
+  /**
+   * Create a ChangeSet holding the same changes.
+   *
+   * @return A new ChangeSet.
+   */
+  public ChangeSet toChangeSet() {
+    ChangeSet result = new ChangeSet();
+    for (int i = 0; i < entityCount; ++i) {
+      EntityID id = new EntityID(entityIDs[i]);
+      for (int c = firstChange[i]; c != -1; c = changeNext[c]) {
+        result.addChange(id, entityURNs[i], getProperty(c));
+      }
+    }
+    // A merged set can hold changes to entities that were deleted later.
+    // Merging the deletions keeps those changes where entityDeleted would drop
+    // them.
+    ChangeSet deletions = new ChangeSet();
+    for (int i = 0; i < deletedOrder.size(); ++i) {
+      deletions.entityDeleted(new EntityID(deletedOrder.getQuick(i)));
+    }
+    result.merge(deletions);
+    return result;
+  }
+
+  /**
+   * Encode this set in the same form as {@link ChangeSet#toChangeSetProto()}.
+   *
+   * @return The encoded changes.
+   */
+  public ChangeSetProto toChangeSetProto() {
+    ChangeSetProto.Builder builder = ChangeSetProto.newBuilder();
+    for (int i = 0; i < entityCount; ++i) {
+      EntityChangeProto.Builder entityChangeBuilder = EntityChangeProto.newBuilder().setEntityID(entityIDs[i])
+          .setUrn(entityURNs[i]);
+      for (int c = firstChange[i]; c != -1; c = changeNext[c]) {
+        entityChangeBuilder.addProperties(toPropertyProto(c));
+      }
+      builder.addChanges(entityChangeBuilder);
+    }
+    for (int i = 0; i < deletedOrder.size(); ++i) {
+      builder.addDeletes(deletedOrder.getQuick(i));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Replace the contents of this set with some encoded changes. Property URNs
+   * that the current registry does not know are skipped, as in
+   * {@link ChangeSet#fromChangeSetProto(ChangeSetProto)}.
+   *
+   * @param changeSetProto The encoded changes.
+   */
+  public void fromChangeSetProto(ChangeSetProto changeSetProto) {
+    clear();
+    Registry registry = Registry.getCurrentRegistry();
+    if (protoKinds == null) {
+      protoKinds = new TIntIntHashMap();
+    }
+    if (registry != protoKindsRegistry) {
+      protoKinds.clear();
+      protoKindsRegistry = registry;
+    }
+    for (EntityChangeProto entityChange : changeSetProto.getChangesList()) {
+      int id = entityChange.getEntityID();
+      int urn = entityChange.getUrn();
+      for (PropertyProto propertyProto : entityChange.getPropertiesList()) {
+        int kindCode = getProtoKind(registry, propertyProto.getUrn());
+        if (kindCode == UNKNOWN_URN) {
+          continue;
+        }
+        ValueKind kind = KINDS[kindCode];
+        if (!propertyProto.getDefined() || kind == ValueKind.OTHER) {
+          Property p = MsgProtoBuf.propertyProto2Property(propertyProto);
+          setOther(findOrAddChange(id, urn, propertyProto.getUrn()), p);
+          continue;
+        }
+        int change = findOrAddChange(id, urn, propertyProto.getUrn());
+        switch (kind) {
+          case INT:
+          case ENTITY_REF:
+            setInt(change, kind, propertyProto.getIntValue());
+            break;
+          case BOOLEAN:
+            setInt(change, kind, propertyProto.getBoolValue() ? 1 : 0);
+            break;
+          case DOUBLE:
+            setDouble(change, propertyProto.getDoubleValue());
+            break;
+          default:
+            IntListProto list = propertyProto.getIntList();
+            int offset = reserveArray(change, kind, list.getValuesCount());
+            for (int i = 0; i < list.getValuesCount(); ++i) {
+              arrayData[offset + i] = list.getValues(i);
+            }
+            break;
+        }
+      }
+    }
+    for (int next : changeSetProto.getDeletesList()) {
+      entityDeleted(next);
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    result.append("CompactChangeSet:");
+    for (int i = 0; i < entityCount; ++i) {
+      result.append(" Entity ");
+      result.append(entityIDs[i]);
+      result.append(" (");
+      result.append(entityURNs[i]);
+      result.append(") [");
+      for (int c = firstChange[i]; c != -1; c = changeNext[c]) {
+        result.append(getProperty(c));
+        if (changeNext[c] != -1) {
+          result.append(", ");
+        }
+      }
+      result.append("]");
+    }
+    result.append(" {Deleted ");
+    for (int i = 0; i < deletedOrder.size(); ++i) {
+      result.append(deletedOrder.getQuick(i));
+      if (i < deletedOrder.size() - 1) {
+        result.append(", ");
+      }
+    }
+    result.append("}");
+    return result.toString();
+  }
+
+  private PropertyProto toPropertyProto(int change) {
+    ValueKind kind = KINDS[changeKind[change]];
+    if (kind == ValueKind.OTHER) {
+      return objectData.get(changeValue[change]).toPropertyProto();
+    }
+    PropertyProto.Builder builder = PropertyProto.newBuilder().setUrn(changeURN[change]).setDefined(true);
+    int value = changeValue[change];
+    switch (kind) {
+      case INT:
+      case ENTITY_REF:
+        builder.setIntValue(value);
+        break;
+      case BOOLEAN:
+        builder.setBoolValue(value != 0);
+        break;
+      case DOUBLE:
+        builder.setDoubleValue(doubleData[value]);
+        break;
+      default:
+        IntListProto.Builder list = IntListProto.newBuilder();
+        for (int i = 0; i < changeLength[change]; ++i) {
+          list.addValues(arrayData[value + i]);
+        }
+        builder.setIntList(list);
+        break;
+    }
+    return builder.build();
+  }
+
+  // Work out which column an encoded property belongs in from the class the
+  // registry uses for it
+  private int getProtoKind(Registry registry, int propertyURN) {
+    int result = protoKinds.get(propertyURN);
+    if (result != 0) {
+      return result == UNKNOWN_URN ? UNKNOWN_URN : result - 1;
+    }
+    Property p = registry.createProperty(propertyURN);
+    if (p == null) {
+      protoKinds.put(propertyURN, UNKNOWN_URN);
+      return UNKNOWN_URN;
+    }
+    ValueKind kind = ValueKind.OTHER;
+    if (p instanceof IntProperty) {
+      kind = ValueKind.INT;
+    }
+    else if (p instanceof EntityRefProperty) {
+      kind = ValueKind.ENTITY_REF;
+    }
+    else if (p instanceof BooleanProperty) {
+      kind = ValueKind.BOOLEAN;
+    }
+    else if (p instanceof DoubleProperty) {
+      kind = ValueKind.DOUBLE;
+    }
+    else if (p instanceof IntArrayProperty) {
+      kind = ValueKind.INT_ARRAY;
+    }
+    else if (p instanceof EntityRefListProperty) {
+      kind = ValueKind.ENTITY_REF_LIST;
+    }
+    protoKinds.put(propertyURN, kind.ordinal() + 1);
+    return kind.ordinal();
+  }
+
+  private int findOrAddChange(int id, int urn, int propertyURN) {
+    int index = entityIndex.get(id) - 1;
+    if (index < 0) {
+      index = entityCount++;
+      if (index == entityIDs.length) {
+        int size = index * 2;
+        entityIDs = Arrays.copyOf(entityIDs, size);
+        entityURNs = Arrays.copyOf(entityURNs, size);
+        firstChange = Arrays.copyOf(firstChange, size);
+        lastChange = Arrays.copyOf(lastChange, size);
+      }
+      entityIDs[index] = id;
+      firstChange[index] = -1;
+      lastChange[index] = -1;
+      entityIndex.put(id, index + 1);
+    }
+    entityURNs[index] = urn;
+    int change = findChange(index, propertyURN);
+    if (change != -1) {
+      return change;
+    }
+    change = changeCount++;
+    if (change == changeURN.length) {
+      int size = change * 2;
+      changeURN = Arrays.copyOf(changeURN, size);
+      changeNext = Arrays.copyOf(changeNext, size);
+      changeKind = Arrays.copyOf(changeKind, size);
+      changeValue = Arrays.copyOf(changeValue, size);
+      changeLength = Arrays.copyOf(changeLength, size);
+    }
+    changeURN[change] = propertyURN;
+    changeNext[change] = -1;
+    // Mark as new so that setArray does not reuse an old slice
+    changeKind[change] = (byte)ValueKind.INT.ordinal();
+    changeLength[change] = 0;
+    if (lastChange[index] == -1) {
+      firstChange[index] = change;
+    }
+    else {
+      changeNext[lastChange[index]] = change;
+    }
+    lastChange[index] = change;
+    return change;
+  }
+
+  private void setInt(int change, ValueKind kind, int value) {
+    changeKind[change] = (byte)kind.ordinal();
+    changeValue[change] = value;
+    changeLength[change] = 0;
+  }
+
+  private void setDouble(int change, double value) {
+    if (changeKind[change] != ValueKind.DOUBLE.ordinal()) {
+      if (doubleCount == doubleData.length) {
+        doubleData = Arrays.copyOf(doubleData, Math.max(INITIAL_ENTITIES, doubleCount * 2));
+      }
+      changeKind[change] = (byte)ValueKind.DOUBLE.ordinal();
+      changeValue[change] = doubleCount++;
+      changeLength[change] = 0;
+    }
+    doubleData[changeValue[change]] = value;
+  }
+
+  private void setArray(int change, ValueKind kind, int[] values, int length) {
+    int offset = reserveArray(change, kind, length);
+    System.arraycopy(values, 0, arrayData, offset, length);
+  }
+
+  // Find space for an array value, reusing the old space if the new value fits
+  private int reserveArray(int change, ValueKind kind, int length) {
+    ValueKind old = KINDS[changeKind[change]];
+    boolean reuse = (old == ValueKind.INT_ARRAY || old == ValueKind.ENTITY_REF_LIST) && changeLength[change] >= length;
+    if (!reuse) {
+      if (arrayCount + length > arrayData.length) {
+        arrayData = Arrays.copyOf(arrayData, Math.max(arrayData.length * 2, arrayCount + length));
+      }
+      changeValue[change] = arrayCount;
+      arrayCount += length;
+    }
+    changeKind[change] = (byte)kind.ordinal();
+    changeLength[change] = length;
+    return changeValue[change];
+  }
+
+  private void setOther(int change, Property p) {
+    changeKind[change] = (byte)ValueKind.OTHER.ordinal();
+    changeValue[change] = objectData.size();
+    changeLength[change] = 0;
+    objectData.add(p.copy());
+  }
+}
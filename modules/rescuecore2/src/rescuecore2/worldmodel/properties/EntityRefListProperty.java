@@ -5,9 +5,10 @@ import static rescuecore2.misc.EncodingTools.writeInt32;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.RandomAccess;
 
 import rescuecore2.URN;
 import rescuecore2.messages.protobuf.RCRSProto.IntListProto;
@@ -17,11 +18,16 @@ import rescuecore2.worldmodel.EntityID;
 import rescuecore2.worldmodel.Property;
 
 /**
- * A property that refers to a list of entity IDs.
+ * A property that refers to a list of entity IDs. The IDs are kept as an int
+ * array that is never changed once it has been set, so copies of this property
+ * share the array until one of them is given a new value. Values are returned
+ * as unmodifiable lists backed by the array.
  */
 public class EntityRefListProperty extends AbstractProperty {
+	private static final int[] EMPTY = new int[0];
 
-	private List<EntityID> ids;
+	/** The raw IDs. This may be shared with copies and must not be modified. */
+	private int[] ids;
 
 	/**
 	 * Construct an EntityRefListProperty with no defined value.
@@ -30,7 +36,7 @@ public class EntityRefListProperty extends AbstractProperty {
 	 */
 	public EntityRefListProperty(int urn) {
 		super(urn);
-		ids = new ArrayList<EntityID>();
+		ids = EMPTY;
 	}
 
 	/**
@@ -40,7 +46,7 @@ public class EntityRefListProperty extends AbstractProperty {
 	 */
 	public EntityRefListProperty(URN urn) {
 		super(urn);
-		ids = new ArrayList<EntityID>();
+		ids = EMPTY;
 	}
 
 	/**
@@ -51,7 +57,7 @@ public class EntityRefListProperty extends AbstractProperty {
 	 */
 	public EntityRefListProperty(int urn, List<EntityID> ids) {
 		super(urn, true);
-		this.ids = new ArrayList<EntityID>(ids);
+		this.ids = toArray(ids);
 	}
 
 	/**
@@ -62,7 +68,7 @@ public class EntityRefListProperty extends AbstractProperty {
 	 */
 	public EntityRefListProperty(URN urn, List<EntityID> ids) {
 		super(urn, true);
-		this.ids = new ArrayList<EntityID>(ids);
+		this.ids = toArray(ids);
 	}
 
 	/**
@@ -72,7 +78,7 @@ public class EntityRefListProperty extends AbstractProperty {
 	 */
 	public EntityRefListProperty(EntityRefListProperty other) {
 		super(other);
-		this.ids = new ArrayList<EntityID>(other.ids);
+		this.ids = other.ids;
 	}
 
 	@Override
@@ -80,7 +86,7 @@ public class EntityRefListProperty extends AbstractProperty {
 		if (!isDefined()) {
 			return null;
 		}
-		return Collections.unmodifiableList(ids);
+		return new IDList(ids);
 	}
 
 	/**
@@ -90,11 +96,7 @@ public class EntityRefListProperty extends AbstractProperty {
 	 * @param newIDs The new id list.
 	 */
 	public void setValue(List<EntityID> newIDs) {
-		List<EntityID> old = new ArrayList<EntityID>(ids);
-		ids.clear();
-		ids.addAll(newIDs);
-		setDefined();
-		fireChange(old, Collections.unmodifiableList(ids));
+		replace(toArray(newIDs), true);
 	}
 
 	/**
@@ -103,10 +105,9 @@ public class EntityRefListProperty extends AbstractProperty {
 	 * @param id The id to add.
 	 */
 	public void addValue(EntityID id) {
-		List<EntityID> old = new ArrayList<EntityID>(ids);
-		ids.add(id);
-		setDefined();
-		fireChange(old, Collections.unmodifiableList(ids));
+		int[] newIDs = Arrays.copyOf(ids, ids.length + 1);
+		newIDs[ids.length] = id.getValue();
+		replace(newIDs, true);
 	}
 
 	/**
@@ -115,22 +116,30 @@ public class EntityRefListProperty extends AbstractProperty {
 	 * @param id The id to remove.
 	 */
 	public void removeValue(EntityID id) {
-		List<EntityID> old = new ArrayList<EntityID>(ids);
-		ids.remove(id);
-
-		if (ids.isEmpty())
+		int value = id.getValue();
+		for (int i = 0; i < ids.length; ++i) {
+			if (ids[i] == value) {
+				int[] newIDs = new int[ids.length - 1];
+				System.arraycopy(ids, 0, newIDs, 0, i);
+				System.arraycopy(ids, i + 1, newIDs, i, newIDs.length - i);
+				List<EntityID> old = new IDList(ids);
+				ids = newIDs;
+				if (ids.length == 0)
+					undefine();
+				fireChange(old, new IDList(ids));
+				return;
+			}
+		}
+		if (ids.length == 0)
 			undefine();
-
-		fireChange(old, Collections.unmodifiableList(ids));
+		fireChange(new IDList(ids), new IDList(ids));
 	}
 
 	/**
 	 * Remove all entries from this list but keep it defined.
 	 */
 	public void clearValues() {
-		List<EntityID> old = new ArrayList<EntityID>(ids);
-		ids.clear();
-		fireChange(old, Collections.unmodifiableList(ids));
+		replace(EMPTY, false);
 	}
 
 	@Override
@@ -138,7 +147,8 @@ public class EntityRefListProperty extends AbstractProperty {
 		if (p instanceof EntityRefListProperty) {
 			EntityRefListProperty e = (EntityRefListProperty) p;
 			if (e.isDefined()) {
-				setValue(e.getValue());
+				// Share the other array rather than copying it
+				replace(e.ids, true);
 			} else {
 				undefine();
 			}
@@ -150,20 +160,20 @@ public class EntityRefListProperty extends AbstractProperty {
 
 	@Override
 	public void write(OutputStream out) throws IOException {
-		writeInt32(ids.size(), out);
-		for (EntityID next : ids) {
-			writeInt32(next.getValue(), out);
+		writeInt32(ids.length, out);
+		for (int next : ids) {
+			writeInt32(next, out);
 		}
 	}
 
 	@Override
 	public void read(InputStream in) throws IOException {
 		int count = readInt32(in);
-		List<EntityID> newIDs = new ArrayList<EntityID>(count);
+		int[] newIDs = new int[count];
 		for (int i = 0; i < count; ++i) {
-			newIDs.add(new EntityID(readInt32(in)));
+			newIDs[i] = readInt32(in);
 		}
-		setValue(newIDs);
+		replace(newIDs, true);
 	}
 
 	/*
@@ -186,8 +196,8 @@ public class EntityRefListProperty extends AbstractProperty {
 		PropertyProto.Builder builder = basePropertyProto();
 		if (isDefined()) {
 			IntListProto.Builder intListBuilder = IntListProto.newBuilder();
-			for (EntityID next : ids) {
-				intListBuilder.addValues(next.getValue());
+			for (int next : ids) {
+				intListBuilder.addValues(next);
 			}
 			builder.setIntList(intListBuilder);
 		}
@@ -197,11 +207,68 @@ public class EntityRefListProperty extends AbstractProperty {
 	public void fromPropertyProto(PropertyProto proto) {
 		if (!proto.getDefined())
 			return;
-		List<Integer> values = proto.getIntList().getValuesList();
-		List<EntityID> newIDs = new ArrayList<EntityID>(values.size());
-		for (Integer val : values) {
-			newIDs.add(new EntityID(val));
+		IntListProto values = proto.getIntList();
+		int[] newIDs = new int[values.getValuesCount()];
+		for (int i = 0; i < newIDs.length; ++i) {
+			newIDs[i] = values.getValues(i);
+		}
+		replace(newIDs, true);
+	}
+
+	private void replace(int[] newIDs, boolean define) {
+		List<EntityID> old = new IDList(ids);
+		ids = newIDs;
+		if (define) {
+			setDefined();
+		}
+		fireChange(old, new IDList(ids));
+	}
+
+	private static int[] toArray(List<EntityID> list) {
+		int[] result = new int[list.size()];
+		int i = 0;
+		for (EntityID next : list) {
+			result[i++] = next.getValue();
+		}
+		return result;
+	}
+
+	/**
+	 * An unmodifiable view of an ID array.
+	 */
+	private static final class IDList extends AbstractList<EntityID> implements RandomAccess {
+		private final int[] ids;
+
+		IDList(int[] ids) {
+			this.ids = ids;
+		}
+
+		@Override
+		public EntityID get(int index) {
+			return new EntityID(ids[index]);
+		}
+
+		@Override
+		public int size() {
+			return ids.length;
+		}
+
+		@Override
+		public int indexOf(Object o) {
+			if (o instanceof EntityID id) {
+				int value = id.getValue();
+				for (int i = 0; i < ids.length; ++i) {
+					if (ids[i] == value) {
+						return i;
+					}
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return indexOf(o) != -1;
 		}
-		setValue(newIDs);
 	}
 }
@@ -3,9 +3,7 @@ package rescuecore2.worldmodel.properties;
 import static rescuecore2.misc.EncodingTools.readInt32;
 import static rescuecore2.misc.EncodingTools.writeInt32;
 
-import java.util.List;
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.IOException;
@@ -17,11 +15,16 @@ import rescuecore2.messages.protobuf.RCRSProto.PropertyProto;
 import rescuecore2.worldmodel.AbstractProperty;
 
 /**
- * An integer-array property.
+ * An integer-array property. The values are kept in an array that is never
+ * changed once it has been set, so copies of this property share the array
+ * until one of them is given a new value. The arrays passed to entity
+ * listeners are these shared arrays and must not be modified.
  */
 public class IntArrayProperty extends AbstractProperty {
-	/** Implement as a list to allow for growth. */
-	private List<Integer> data;
+	private static final int[] EMPTY = new int[0];
+
+	/** The values. This may be shared with copies and must not be modified. */
+	private int[] data;
 
 	/**
 	 * Construct an IntArrayProperty with no defined value.
@@ -30,7 +33,7 @@ public class IntArrayProperty extends AbstractProperty {
 	 */
 	public IntArrayProperty(int urn) {
 		super(urn);
-		data = new ArrayList<Integer>();
+		data = EMPTY;
 	}
 
 	/**
@@ -40,7 +43,7 @@ public class IntArrayProperty extends AbstractProperty {
 	 */
 	public IntArrayProperty(URN urn) {
 		super(urn);
-		data = new ArrayList<Integer>();
+		data = EMPTY;
 	}
 
 	/**
@@ -51,10 +54,7 @@ public class IntArrayProperty extends AbstractProperty {
 	 */
 	public IntArrayProperty(int urn, int[] values) {
 		super(urn, true);
-		data = new ArrayList<Integer>(values.length);
-		for (Integer next : values) {
-			data.add(next);
-		}
+		data = values.clone();
 	}
 
 	/**
@@ -65,10 +65,7 @@ public class IntArrayProperty extends AbstractProperty {
 	 */
 	public IntArrayProperty(URN urn, int[] values) {
 		super(urn, true);
-		data = new ArrayList<Integer>(values.length);
-		for (Integer next : values) {
-			data.add(next);
-		}
+		data = values.clone();
 	}
 
 	/**
@@ -78,7 +75,7 @@ public class IntArrayProperty extends AbstractProperty {
 	 */
 	public IntArrayProperty(IntArrayProperty other) {
 		super(other);
-		this.data = new ArrayList<Integer>(other.data);
+		this.data = other.data;
 	}
 
 	@Override
@@ -86,13 +83,7 @@ public class IntArrayProperty extends AbstractProperty {
 		if (!isDefined()) {
 			return null;
 		}
-		Integer[] result = new Integer[data.size()];
-		data.toArray(result);
-		int[] out = new int[result.length];
-		for (int i = 0; i < out.length; ++i) {
-			out[i] = result[i].intValue();
-		}
-		return out;
+		return data.clone();
 	}
 
 	/**
@@ -102,13 +93,7 @@ public class IntArrayProperty extends AbstractProperty {
 	 * @param values The new values.
 	 */
 	public void setValue(int[] values) {
-		int[] old = getValue();
-		this.data = new ArrayList<Integer>(values.length);
-		for (Integer next : values) {
-			data.add(next);
-		}
-		setDefined();
-		fireChange(old, getValue());
+		replace(values.clone());
 	}
 
 	/**
@@ -117,10 +102,9 @@ public class IntArrayProperty extends AbstractProperty {
 	 * @param i The value to add.
 	 */
 	public void push(int i) {
-		int[] old = getValue();
-		setDefined();
-		data.add(i);
-		fireChange(old, getValue());
+		int[] newData = Arrays.copyOf(data, data.length + 1);
+		newData[data.length] = i;
+		replace(newData);
 	}
 
 	@Override
@@ -128,7 +112,8 @@ public class IntArrayProperty extends AbstractProperty {
 		if (p instanceof IntArrayProperty) {
 			IntArrayProperty i = (IntArrayProperty) p;
 			if (i.isDefined()) {
-				setValue(i.getValue());
+				// Share the other array rather than copying it
+				replace(i.data);
 			} else {
 				undefine();
 			}
@@ -140,9 +125,9 @@ public class IntArrayProperty extends AbstractProperty {
 
 	@Override
 	public void write(OutputStream out) throws IOException {
-		writeInt32(data.size(), out);
-		for (Integer next : data) {
-			writeInt32(next.intValue(), out);
+		writeInt32(data.length, out);
+		for (int next : data) {
+			writeInt32(next, out);
 		}
 	}
 
@@ -153,7 +138,7 @@ public class IntArrayProperty extends AbstractProperty {
 		for (int i = 0; i < size; ++i) {
 			result[i] = readInt32(in);
 		}
-		setValue(result);
+		replace(result);
 	}
 
 	@Override
@@ -162,9 +147,9 @@ public class IntArrayProperty extends AbstractProperty {
 		result.append(getURN());
 		if (isDefined()) {
 			result.append(" = {");
-			for (Iterator<Integer> it = data.iterator(); it.hasNext();) {
-				result.append(it.next());
-				if (it.hasNext()) {
+			for (int i = 0; i < data.length; ++i) {
+				result.append(data[i]);
+				if (i < data.length - 1) {
 					result.append(", ");
 				}
 			}
@@ -185,8 +170,11 @@ public class IntArrayProperty extends AbstractProperty {
 	public PropertyProto toPropertyProto() {
 		PropertyProto.Builder builder = basePropertyProto();
 		if (isDefined()) {
-			builder
-			.setIntList(IntListProto.newBuilder().addAllValues(data));
+			IntListProto.Builder list = IntListProto.newBuilder();
+			for (int next : data) {
+				list.addValues(next);
+			}
+			builder.setIntList(list);
 		}
     	return builder.build();
 	}
@@ -195,11 +183,18 @@ public class IntArrayProperty extends AbstractProperty {
 	public void fromPropertyProto(PropertyProto proto) {
 		if (!proto.getDefined())
 			return;
-		List<Integer> list = proto.getIntList().getValuesList();
-		int[] result = new int[list.size()];
-		for (int i = 0; i < list.size(); i++) {
-			result[i] = list.get(i);
+		IntListProto list = proto.getIntList();
+		int[] result = new int[list.getValuesCount()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = list.getValues(i);
 		}
-		setValue(result);
+		replace(result);
+	}
+
+	private void replace(int[] newData) {
+		int[] old = isDefined() ? data : null;
+		data = newData;
+		setDefined();
+		fireChange(old, newData);
 	}
 }
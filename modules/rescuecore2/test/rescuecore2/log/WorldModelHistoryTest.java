@@ -0,0 +1,277 @@
+package rescuecore2.log;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import rescuecore2.config.Config;
+import rescuecore2.registry.EntityFactory;
+import rescuecore2.registry.PropertyFactory;
+import rescuecore2.registry.Registry;
+import rescuecore2.worldmodel.AbstractEntity;
+import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.worldmodel.DefaultWorldModel;
+import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.EntityID;
+import rescuecore2.worldmodel.Property;
+import rescuecore2.worldmodel.WorldModel;
+import rescuecore2.worldmodel.properties.IntArrayProperty;
+import rescuecore2.worldmodel.properties.IntProperty;
+
+public class WorldModelHistoryTest {
+	private static final int TIMESTEPS = 1000;
+	private static final int ENTITY_URN = 1001;
+	private static final int VALUE_URN = 1011;
+	private static final int VALUES_URN = 1012;
+
+	@BeforeEach
+	public void setUp() {
+		Registry registry = new Registry("WorldModelHistoryTest", null);
+		registry.registerFactory(new TestEntityFactory());
+		registry.registerFactory(new TestPropertyFactory());
+		Registry.setCurrentRegistry(registry);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		Registry.setCurrentRegistry(Registry.SYSTEM_REGISTRY);
+	}
+
+	@Test
+	public void testKeyFramesAreCapped() {
+		WorldModelHistory history = new WorldModelHistory(
+				DefaultWorldModel.create(), 10, 8, 2);
+		for (int i = 1; i <= TIMESTEPS; ++i) {
+			history.addUpdates(i, new ChangeSet());
+		}
+		for (int i = 0; i <= TIMESTEPS; ++i) {
+			assertNotNull(history.getWorldModel(i));
+			// The initial world does not count towards the cap
+			assertTrue(history.getKeyFrameCount() <= 9);
+		}
+		assertNull(history.getWorldModel(TIMESTEPS + 1));
+	}
+
+	@Test
+	public void testSettingsFromConfig() {
+		Config config = new Config();
+		config.setIntValue(WorldModelHistory.KEY_FRAME_INTERVAL_KEY, 1);
+		config.setIntValue(WorldModelHistory.MAX_KEY_FRAMES_KEY, 3);
+		WorldModelHistory history = new WorldModelHistory(
+				DefaultWorldModel.create(), config);
+		for (int i = 1; i <= 10; ++i) {
+			history.addUpdates(i, new ChangeSet());
+		}
+		for (int i = 1; i <= 10; ++i) {
+			history.getWorldModel(i);
+			// Three key frames plus the initial world
+			assertTrue(history.getKeyFrameCount() <= 4);
+		}
+		// With a key frame every timestep the frames after the initial world
+		// go 1; 1,2; 1,2,3; then each time three are held the first and
+		// third are dropped before adding the next: 2,4; 2,4,5; 4,6; 4,6,7;
+		// 6,8; 6,8,9; 8,10. That leaves 8 and 10 plus the initial world.
+		assertEquals(3, history.getKeyFrameCount());
+	}
+
+	@Test
+	public void testReconstructionMatchesMergedWorld() {
+		Random random = new Random(1);
+		WorldModel<Entity> initial = DefaultWorldModel.create();
+		int nextID = 1;
+		for (; nextID <= 30; ++nextID) {
+			initial.addEntity(makeEntity(nextID, random));
+		}
+		// Apply every update eagerly and keep a copy of the world at each time
+		WorldModel<Entity> merged = copy(initial);
+		List<WorldModel<Entity>> expected = new ArrayList<WorldModel<Entity>>();
+		expected.add(copy(merged));
+		int timesteps = 200;
+		WorldModelHistory history = new WorldModelHistory(copy(initial), 3,
+				4, 2);
+		for (int time = 1; time <= timesteps; ++time) {
+			ChangeSet changes = new ChangeSet();
+			List<Entity> existing = new ArrayList<Entity>(
+					merged.getAllEntities());
+			for (int i = 0; i < 5 && !existing.isEmpty(); ++i) {
+				Entity e = existing.get(random.nextInt(existing.size()));
+				changes.addChange(e, new IntProperty(VALUE_URN,
+						random.nextInt(1000)));
+				changes.addChange(e, new IntArrayProperty(VALUES_URN,
+						new int[] { time, random.nextInt() }));
+			}
+			if (time % 2 == 0) {
+				Entity added = makeEntity(nextID++, random);
+				for (Property p : added.getProperties()) {
+					changes.addChange(added, p);
+				}
+			}
+			if (time % 3 == 0 && !existing.isEmpty()) {
+				changes.entityDeleted(existing
+						.get(random.nextInt(existing.size())).getID());
+			}
+			merged.merge(changes);
+			expected.add(copy(merged));
+			history.addUpdates(time, changes);
+		}
+
+		List<Integer> order = new ArrayList<Integer>();
+		for (int time = 0; time <= timesteps; ++time) {
+			order.add(time);
+		}
+		// In order, which thins the key frames several times, then in
+		// reverse and at random so worlds are rebuilt from the thinned frames
+		int maxKeyFrames = 0;
+		for (int time : order) {
+			assertSameWorld(expected.get(time), history.getWorldModel(time),
+					time);
+			maxKeyFrames = Math.max(maxKeyFrames, history.getKeyFrameCount());
+		}
+		assertEquals(5, maxKeyFrames);
+		Collections.reverse(order);
+		for (int time : order) {
+			assertSameWorld(expected.get(time), history.getWorldModel(time),
+					time);
+		}
+		Collections.shuffle(order, random);
+		for (int time : order) {
+			assertSameWorld(expected.get(time), history.getWorldModel(time),
+					time);
+			assertTrue(history.getKeyFrameCount() <= 5);
+		}
+	}
+
+	private static void assertSameWorld(WorldModel<Entity> expected,
+			WorldModel<? extends Entity> actual, int time) {
+		assertNotNull(actual, "Time " + time);
+		Map<EntityID, Map<Integer, Object>> actualValues = new HashMap<EntityID, Map<Integer, Object>>();
+		for (Entity next : actual) {
+			actualValues.put(next.getID(), values(next));
+		}
+		Map<EntityID, Map<Integer, Object>> expectedValues = new HashMap<EntityID, Map<Integer, Object>>();
+		for (Entity next : expected) {
+			expectedValues.put(next.getID(), values(next));
+		}
+		assertEquals(expectedValues, actualValues, "Time " + time);
+	}
+
+	private static Map<Integer, Object> values(Entity entity) {
+		Map<Integer, Object> result = new HashMap<Integer, Object>();
+		for (Property next : entity.getProperties()) {
+			result.put(next.getURN(), next.toPropertyProto());
+		}
+		return result;
+	}
+
+	private static WorldModel<Entity> copy(WorldModel<Entity> world) {
+		WorldModel<Entity> result = DefaultWorldModel.create();
+		for (Entity next : world) {
+			result.addEntity(next.copy());
+		}
+		return result;
+	}
+
+	private static Entity makeEntity(int id, Random random) {
+		TestEntity result = new TestEntity(new EntityID(id));
+		result.value.setValue(random.nextInt(1000));
+		result.values.setValue(new int[] { id });
+		return result;
+	}
+
+	private static class TestEntity extends AbstractEntity {
+		private final IntProperty value;
+		private final IntArrayProperty values;
+
+		TestEntity(EntityID id) {
+			super(id);
+			value = new IntProperty(VALUE_URN);
+			values = new IntArrayProperty(VALUES_URN);
+			registerProperties(value, values);
+		}
+
+		@Override
+		protected Entity copyImpl() {
+			return new TestEntity(getID());
+		}
+
+		@Override
+		public Property getProperty(int urn) {
+			switch (urn) {
+			case VALUE_URN:
+				return value;
+			case VALUES_URN:
+				return values;
+			default:
+				return super.getProperty(urn);
+			}
+		}
+
+		@Override
+		public int getURN() {
+			return ENTITY_URN;
+		}
+
+		@Override
+		public JSONObject toJson() {
+			return new JSONObject();
+		}
+	}
+
+	private static class TestEntityFactory implements EntityFactory {
+		@Override
+		public Entity makeEntity(int urn, EntityID id) {
+			return new TestEntity(id);
+		}
+
+		@Override
+		public int[] getKnownURNs() {
+			return new int[] { ENTITY_URN };
+		}
+
+		@Override
+		public String getURNStr(int urnId) {
+			return "test:entity:" + urnId;
+		}
+
+		@Override
+		public String getPrettyName(int urnId) {
+			return "Test entity";
+		}
+	}
+
+	private static class TestPropertyFactory implements PropertyFactory {
+		@Override
+		public Property makeProperty(int urn) {
+			return urn == VALUE_URN ? new IntProperty(urn)
+					: new IntArrayProperty(urn);
+		}
+
+		@Override
+		public int[] getKnownURNs() {
+			return new int[] { VALUE_URN, VALUES_URN };
+		}
+
+		@Override
+		public String getURNStr(int urnId) {
+			return "test:property:" + urnId;
+		}
+
+		@Override
+		public String getPrettyName(int urnId) {
+			return "Test property";
+		}
+	}
+}
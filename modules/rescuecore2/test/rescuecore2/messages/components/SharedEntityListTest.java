@@ -0,0 +1,234 @@
+package rescuecore2.messages.components;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import rescuecore2.messages.EncodedBroadcast;
+import rescuecore2.messages.control.ControlMessageComponentURN;
+import rescuecore2.messages.protobuf.MsgProtoBuf;
+import rescuecore2.messages.protobuf.RCRSProto.EntityListProto;
+import rescuecore2.messages.protobuf.RCRSProto.EntityProto;
+import rescuecore2.messages.protobuf.RCRSProto.MessageComponentProto;
+import rescuecore2.messages.protobuf.RCRSProto.MessageProto;
+import rescuecore2.registry.EntityFactory;
+import rescuecore2.registry.PropertyFactory;
+import rescuecore2.registry.Registry;
+import rescuecore2.worldmodel.AbstractEntity;
+import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.EntityID;
+import rescuecore2.worldmodel.Property;
+import rescuecore2.worldmodel.properties.IntArrayProperty;
+import rescuecore2.worldmodel.properties.IntProperty;
+
+public class SharedEntityListTest {
+	private static final int ENTITY_URN = 1001;
+	private static final int VALUE_URN = 1011;
+	private static final int VALUES_URN = 1012;
+	private static final int ENTITIES = 300;
+	private static final int COMPONENT = ControlMessageComponentURN.Entities
+			.getURNId();
+
+	private SharedEntityList list;
+
+	@BeforeEach
+	public void setUp() {
+		Registry registry = new Registry("SharedEntityListTest", null);
+		registry.registerFactory(new TestEntityFactory());
+		registry.registerFactory(new TestPropertyFactory());
+		Registry.setCurrentRegistry(registry);
+		List<Entity> entities = new ArrayList<Entity>();
+		// Odd IDs only, in reverse order, so replacements can fall between
+		// entities and the list has to be sorted
+		for (int i = ENTITIES; i > 0; --i) {
+			entities.add(makeEntity(2 * i + 1, i));
+		}
+		list = new SharedEntityList(entities);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		Registry.setCurrentRegistry(Registry.SYSTEM_REGISTRY);
+	}
+
+	@Test
+	public void testSharedBytesMatchProtobuf() throws Exception {
+		EncodedBroadcast encoded = list
+				.toEncodedBroadcast(ControlMessageComponentURN.Entities);
+		assertArrayEquals(expectedBytes(list.toEntityListProto()),
+				encoded.getBytes());
+		assertEquals(encoded.getComponents(), MessageProto
+				.parseFrom(encoded.getBytes()).getComponentsMap());
+		assertEntities(list.getEntities(), encoded.getBytes());
+	}
+
+	@Test
+	public void testReplacedBytesMatchProtobuf() throws Exception {
+		// First, middle and last entities, with a smaller and a much larger
+		// encoding than the shared one, and IDs that are not in the list
+		int[] ids = { 3, 301, 2 * ENTITIES + 1, 1, 300, 10000 };
+		int[] sizes = { 0, 1, 5000 };
+		for (int id : ids) {
+			for (int size : sizes) {
+				Entity replacement = makeEntity(id, size);
+				EncodedBroadcast encoded = list.toEncodedBroadcast(
+						ControlMessageComponentURN.Entities, replacement);
+				byte[] bytes = encoded.getBytes();
+				assertArrayEquals(
+						expectedBytes(list.toEntityListProto(replacement)),
+						bytes, "Entity " + id + " size " + size);
+				EntityListProto parsed = MessageProto.parseFrom(bytes)
+						.getComponentsOrThrow(COMPONENT).getEntityList();
+				assertArrayEquals(
+						list.toEntityListProto(replacement).toByteArray(),
+						parsed.toByteArray());
+				assertEquals(encoded.getComponents(),
+						MessageProto.parseFrom(bytes).getComponentsMap());
+				assertEntities(list.getEntities(replacement), bytes);
+			}
+		}
+	}
+
+	@Test
+	public void testHashUnchanged() {
+		assertEquals(SharedEntityList.hash(list.toEntityListProto()),
+				list.getHash());
+	}
+
+	private static byte[] expectedBytes(EntityListProto entities) {
+		return MessageProto.newBuilder()
+				.putComponents(COMPONENT, MessageComponentProto.newBuilder()
+						.setEntityList(entities).build())
+				.build().toByteArray();
+	}
+
+	private static void assertEntities(List<Entity> expected, byte[] bytes)
+			throws Exception {
+		EntityListProto parsed = MessageProto.parseFrom(bytes)
+				.getComponentsOrThrow(COMPONENT).getEntityList();
+		assertEquals(expected.size(), parsed.getEntitiesCount());
+		for (int i = 0; i < expected.size(); ++i) {
+			Entity entity = MsgProtoBuf
+					.entityProto2Entity(parsed.getEntities(i));
+			assertNotNull(entity);
+			assertEquals(expected.get(i).getID(), entity.getID());
+			assertEquals(values(expected.get(i)), values(entity));
+		}
+	}
+
+	private static Map<Integer, Object> values(Entity entity) {
+		Map<Integer, Object> result = new HashMap<Integer, Object>();
+		for (Property next : entity.getProperties()) {
+			result.put(next.getURN(), next.toPropertyProto());
+		}
+		return result;
+	}
+
+	private static Entity makeEntity(int id, int size) {
+		TestEntity result = new TestEntity(new EntityID(id));
+		result.value.setValue(id * 1000);
+		// Leave some lists undefined
+		if (size % 7 != 0) {
+			int[] values = new int[size];
+			for (int i = 0; i < size; ++i) {
+				values[i] = i * id;
+			}
+			result.values.setValue(values);
+		}
+		return result;
+	}
+
+	private static class TestEntity extends AbstractEntity {
+		private final IntProperty value;
+		private final IntArrayProperty values;
+
+		TestEntity(EntityID id) {
+			super(id);
+			value = new IntProperty(VALUE_URN);
+			values = new IntArrayProperty(VALUES_URN);
+			registerProperties(value, values);
+		}
+
+		@Override
+		protected Entity copyImpl() {
+			return new TestEntity(getID());
+		}
+
+		@Override
+		public Property getProperty(int urn) {
+			switch (urn) {
+			case VALUE_URN:
+				return value;
+			case VALUES_URN:
+				return values;
+			default:
+				return super.getProperty(urn);
+			}
+		}
+
+		@Override
+		public int getURN() {
+			return ENTITY_URN;
+		}
+
+		@Override
+		public JSONObject toJson() {
+			return new JSONObject();
+		}
+	}
+
+	private static class TestEntityFactory implements EntityFactory {
+		@Override
+		public Entity makeEntity(int urn, EntityID id) {
+			return new TestEntity(id);
+		}
+
+		@Override
+		public int[] getKnownURNs() {
+			return new int[] { ENTITY_URN };
+		}
+
+		@Override
+		public String getURNStr(int urnId) {
+			return "test:entity:" + urnId;
+		}
+
+		@Override
+		public String getPrettyName(int urnId) {
+			return "Test entity";
+		}
+	}
+
+	private static class TestPropertyFactory implements PropertyFactory {
+		@Override
+		public Property makeProperty(int urn) {
+			return urn == VALUE_URN ? new IntProperty(urn)
+					: new IntArrayProperty(urn);
+		}
+
+		@Override
+		public int[] getKnownURNs() {
+			return new int[] { VALUE_URN, VALUES_URN };
+		}
+
+		@Override
+		public String getURNStr(int urnId) {
+			return "test:property:" + urnId;
+		}
+
+		@Override
+		public String getPrettyName(int urnId) {
+			return "Test property";
+		}
+	}
+}
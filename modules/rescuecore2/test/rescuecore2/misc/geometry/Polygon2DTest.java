@@ -0,0 +1,232 @@
+package rescuecore2.misc.geometry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class Polygon2DTest {
+    private static final double DELTA = 1e-6;
+    private static final int RANDOM_TRIALS = 500;
+
+    @Test
+    public void testSharedEdge() {
+        Polygon2D a = rectangle(0, 0, 10, 10);
+        Polygon2D b = rectangle(10, 0, 20, 10);
+        Polygon2D union = a.union(b);
+        assertEquals(200, union.getArea(), DELTA);
+        assertEquals(1, union.getRingCount());
+        assertTrue(union.contains(10, 5));
+        assertEquals(0, a.intersect(b).getArea(), DELTA);
+        assertEquals(100, a.subtract(b).getArea(), DELTA);
+        assertFalse(a.subtract(b).contains(15, 5));
+    }
+
+    @Test
+    public void testTouchingVertices() {
+        Polygon2D a = rectangle(0, 0, 10, 10);
+        Polygon2D b = rectangle(10, 10, 20, 20);
+        Polygon2D union = a.union(b);
+        assertEquals(200, union.getArea(), DELTA);
+        assertTrue(union.contains(5, 5));
+        assertTrue(union.contains(15, 15));
+        assertFalse(union.contains(15, 5));
+        assertEquals(0, a.intersect(b).getArea(), DELTA);
+        assertEquals(100, a.subtract(b).getArea(), DELTA);
+    }
+
+    @Test
+    public void testCollinearOverlap() {
+        Polygon2D a = rectangle(0, 0, 10, 10);
+        // Bottom and top edges overlap along part of their length
+        Polygon2D b = rectangle(5, 0, 15, 10);
+        assertEquals(150, a.union(b).getArea(), DELTA);
+        assertEquals(1, a.union(b).getRingCount());
+        assertEquals(50, a.intersect(b).getArea(), DELTA);
+        assertEquals(50, a.subtract(b).getArea(), DELTA);
+        // Part of one edge lies along part of another
+        Polygon2D c = rectangle(2, 10, 8, 20);
+        assertEquals(160, a.union(c).getArea(), DELTA);
+        assertEquals(1, a.union(c).getRingCount());
+        assertEquals(0, a.intersect(c).getArea(), DELTA);
+        assertEquals(100, a.subtract(c).getArea(), DELTA);
+    }
+
+    @Test
+    public void testDisjointBounds() {
+        Polygon2D a = rectangle(0, 0, 10, 10);
+        Polygon2D b = rectangle(100, 100, 110, 120);
+        assertFalse(a.boundsIntersect(b));
+        assertTrue(a.intersect(b).isEmpty());
+        assertSame(a, a.subtract(b));
+        Polygon2D union = a.union(b);
+        assertEquals(300, union.getArea(), DELTA);
+        assertEquals(2, union.getParts().size());
+    }
+
+    @Test
+    public void testContainment() {
+        Polygon2D outer = rectangle(0, 0, 10, 10);
+        Polygon2D inner = rectangle(2, 2, 8, 8);
+        assertEquals(36, outer.intersect(inner).getArea(), DELTA);
+        assertEquals(100, outer.union(inner).getArea(), DELTA);
+        assertEquals(1, outer.union(inner).getRingCount());
+        assertTrue(inner.subtract(outer).isEmpty());
+        Polygon2D ring = outer.subtract(inner);
+        assertEquals(64, ring.getArea(), DELTA);
+        assertEquals(2, ring.getRingCount());
+        assertTrue(ring.contains(1, 1));
+        assertFalse(ring.contains(5, 5));
+        assertEquals(1, ring.getParts().size());
+        assertEquals(2, ring.getParts().get(0).getRingCount());
+    }
+
+    @Test
+    public void testHoles() {
+        Polygon2D ring = rectangle(0, 0, 10, 10).subtract(rectangle(2, 2, 8, 8));
+        // A strip across the hole cuts the ring into two pieces
+        Polygon2D strip = rectangle(4, -5, 6, 15);
+        Polygon2D pieces = ring.intersect(strip);
+        assertEquals(8, pieces.getArea(), DELTA);
+        assertEquals(2, pieces.getParts().size());
+        assertEquals(56, ring.subtract(strip).getArea(), DELTA);
+        assertEquals(96, ring.union(strip).getArea(), DELTA);
+        // Filling the hole leaves a single ring
+        Polygon2D filled = ring.union(rectangle(2, 2, 8, 8));
+        assertEquals(100, filled.getArea(), DELTA);
+        assertEquals(1, filled.getRingCount());
+        // An island inside the hole
+        Polygon2D island = ring.union(rectangle(3, 3, 7, 7));
+        assertEquals(80, island.getArea(), DELTA);
+        assertEquals(3, island.getRingCount());
+        assertEquals(2, island.getParts().size());
+        assertTrue(island.contains(5, 5));
+        assertFalse(island.contains(2.5, 2.5));
+        // Something that only touches the hole's edge from inside
+        Polygon2D touching = ring.union(rectangle(2, 2, 5, 8));
+        assertEquals(82, touching.getArea(), DELTA);
+        assertEquals(2, touching.getRingCount());
+    }
+
+    @Test
+    public void testMatchesArea() {
+        Random random = new Random(42);
+        for (int i = 0; i < RANDOM_TRIALS; ++i) {
+            double[] first = randomPolygon(random);
+            double[] second = randomPolygon(random);
+            Polygon2D a = Polygon2D.fromCoordinates(first);
+            Polygon2D b = Polygon2D.fromCoordinates(second);
+            Area expectedIntersection = toArea(first);
+            expectedIntersection.intersect(toArea(second));
+            Area expectedUnion = toArea(first);
+            expectedUnion.add(toArea(second));
+            Area expectedDifference = toArea(first);
+            expectedDifference.subtract(toArea(second));
+            String message = "Trial " + i;
+            assertEquals(area(expectedIntersection), a.intersect(b).getArea(), 1e-3, message);
+            assertEquals(area(expectedUnion), a.union(b).getArea(), 1e-3, message);
+            assertEquals(area(expectedDifference), a.subtract(b).getArea(), 1e-3, message);
+            for (int j = 0; j < 20; ++j) {
+                double x = random.nextDouble() * 120 - 10;
+                double y = random.nextDouble() * 120 - 10;
+                assertEquals(expectedUnion.contains(x, y), a.union(b).contains(x, y), message);
+            }
+        }
+    }
+
+    @Test
+    public void testChainedOperationsMatchArea() {
+        // Results with holes and several parts are fed back in
+        Random random = new Random(7);
+        for (int i = 0; i < RANDOM_TRIALS / 10; ++i) {
+            Polygon2D region = Polygon2D.EMPTY;
+            Area expected = new Area();
+            for (int j = 0; j < 12; ++j) {
+                double[] next = randomPolygon(random);
+                Polygon2D p = Polygon2D.fromCoordinates(next);
+                if (j % 3 == 2) {
+                    region = region.subtract(p);
+                    expected.subtract(toArea(next));
+                }
+                else {
+                    region = region.union(p);
+                    expected.add(toArea(next));
+                }
+                assertEquals(area(expected), region.getArea(), 1e-3, "Trial " + i + " step " + j);
+            }
+            for (int j = 0; j < 50; ++j) {
+                double x = random.nextDouble() * 120 - 10;
+                double y = random.nextDouble() * 120 - 10;
+                assertEquals(expected.contains(x, y), region.contains(x, y), "Trial " + i);
+            }
+        }
+    }
+
+    private static Polygon2D rectangle(double x1, double y1, double x2, double y2) {
+        return Polygon2D.fromCoordinates(new double[] {x1, y1, x2, y1, x2, y2, x1, y2});
+    }
+
+    // A star-shaped polygon with integer vertices, so edges are often collinear or share points
+    private static double[] randomPolygon(Random random) {
+        int n = 3 + random.nextInt(6);
+        double cx = 30 + random.nextInt(40);
+        double cy = 30 + random.nextInt(40);
+        double[] result = new double[n * 2];
+        for (int i = 0; i < n; ++i) {
+            double angle = 2 * Math.PI * (i + random.nextDouble() * 0.8) / n;
+            double radius = 5 + random.nextInt(30);
+            result[i * 2] = Math.round(cx + radius * Math.cos(angle));
+            result[i * 2 + 1] = Math.round(cy + radius * Math.sin(angle));
+        }
+        return result;
+    }
+
+    private static Area toArea(double[] coordinates) {
+        Path2D.Double path = new Path2D.Double();
+        path.moveTo(coordinates[0], coordinates[1]);
+        for (int i = 2; i < coordinates.length; i += 2) {
+            path.lineTo(coordinates[i], coordinates[i + 1]);
+        }
+        path.closePath();
+        return new Area(path);
+    }
+
+    private static double area(Area area) {
+        double sum = 0;
+        double[] d = new double[6];
+        double startX = 0;
+        double startY = 0;
+        double lastX = 0;
+        double lastY = 0;
+        for (PathIterator it = area.getPathIterator(null); !it.isDone(); it.next()) {
+            switch (it.currentSegment(d)) {
+            case PathIterator.SEG_MOVETO:
+                startX = d[0];
+                startY = d[1];
+                lastX = d[0];
+                lastY = d[1];
+                break;
+            case PathIterator.SEG_LINETO:
+                sum += lastX * d[1] - d[0] * lastY;
+                lastX = d[0];
+                lastY = d[1];
+                break;
+            case PathIterator.SEG_CLOSE:
+                sum += lastX * startY - startX * lastY;
+                lastX = startX;
+                lastY = startY;
+                break;
+            default:
+                throw new IllegalStateException("Unexpected curve in a polygon area");
+            }
+        }
+        return Math.abs(sum / 2);
+    }
+}
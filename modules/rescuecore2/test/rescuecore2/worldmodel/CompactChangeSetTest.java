@@ -0,0 +1,251 @@
+package rescuecore2.worldmodel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import rescuecore2.misc.geometry.Point2D;
+import rescuecore2.registry.PropertyFactory;
+import rescuecore2.registry.Registry;
+import rescuecore2.worldmodel.properties.BooleanProperty;
+import rescuecore2.worldmodel.properties.DoubleProperty;
+import rescuecore2.worldmodel.properties.EntityRefListProperty;
+import rescuecore2.worldmodel.properties.EntityRefProperty;
+import rescuecore2.worldmodel.properties.IntArrayProperty;
+import rescuecore2.worldmodel.properties.IntProperty;
+import rescuecore2.worldmodel.properties.Point2DProperty;
+
+public class CompactChangeSetTest {
+
+  private static final int ENTITY = 1;
+  private static final int INT = 11;
+  private static final int REF = 12;
+  private static final int BOOL = 13;
+  private static final int DOUBLE = 14;
+  private static final int ARRAY = 15;
+  private static final int REF_LIST = 16;
+  private static final int POINT = 17;
+
+  private Registry registry;
+
+
+  @BeforeEach
+  public void setUp() {
+    registry = new Registry("CompactChangeSetTest", null);
+    registry.registerFactory(new TestPropertyFactory(false));
+    Registry.setCurrentRegistry(registry);
+  }
+
+
+  @AfterEach
+  public void tearDown() {
+    Registry.setCurrentRegistry(Registry.SYSTEM_REGISTRY);
+  }
+
+
+  @Test
+  public void testBuild() {
+    ChangeSet expected = new ChangeSet();
+    CompactChangeSet actual = new CompactChangeSet();
+    for (int id = 1; id <= 3; ++id) {
+      for (Property p : properties(id)) {
+        expected.addChange(new EntityID(id), ENTITY, p);
+        actual.addChange(new EntityID(id), ENTITY, p);
+      }
+    }
+    // Replace some values
+    for (Property p : properties(10)) {
+      expected.addChange(new EntityID(2), ENTITY, p);
+      actual.addChange(new EntityID(2), ENTITY, p);
+    }
+    expected.addChange(new EntityID(3), ENTITY, new IntProperty(INT));
+    actual.addChange(new EntityID(3), ENTITY, new IntProperty(INT));
+    expected.entityDeleted(new EntityID(1));
+    actual.entityDeleted(new EntityID(1));
+
+    assertEquivalent(expected, actual);
+    assertEquivalent(expected, new CompactChangeSet(expected));
+  }
+
+
+  @Test
+  public void testMerge() {
+    ChangeSet expected = new ChangeSet();
+    ChangeSet other = new ChangeSet();
+    for (Property p : properties(1)) {
+      expected.addChange(new EntityID(1), ENTITY, p);
+      expected.addChange(new EntityID(2), ENTITY, p);
+    }
+    for (Property p : properties(5)) {
+      other.addChange(new EntityID(2), ENTITY, p);
+      other.addChange(new EntityID(3), ENTITY, p);
+    }
+    other.addChange(new EntityID(4), ENTITY, new IntProperty(INT, 4));
+    other.entityDeleted(new EntityID(1));
+    CompactChangeSet actual = new CompactChangeSet(expected);
+    actual.merge(new CompactChangeSet(other));
+    expected.merge(other);
+
+    assertEquivalent(expected, actual);
+  }
+
+
+  @Test
+  public void testDeleteThenAdd() {
+    ChangeSet expected = new ChangeSet();
+    CompactChangeSet actual = new CompactChangeSet();
+    for (Property p : properties(1)) {
+      expected.addChange(new EntityID(1), ENTITY, p);
+      actual.addChange(new EntityID(1), ENTITY, p);
+    }
+    expected.entityDeleted(new EntityID(1));
+    actual.entityDeleted(new EntityID(1));
+    // Changes to a deleted entity are ignored
+    for (Property p : properties(2)) {
+      expected.addChange(new EntityID(1), ENTITY, p);
+      actual.addChange(new EntityID(1), ENTITY, p);
+    }
+    expected.addChange(new EntityID(2), ENTITY, new IntProperty(INT, 2));
+    actual.addChange(new EntityID(2), ENTITY, new IntProperty(INT, 2));
+    actual.addIntChange(1, ENTITY, INT, 3);
+    actual.addIntArrayChange(1, ENTITY, ARRAY, new int[] {3});
+
+    assertEquivalent(expected, actual);
+  }
+
+
+  @Test
+  public void testProtoRoundTrip() {
+    ChangeSet expected = new ChangeSet();
+    for (int id = 1; id <= 3; ++id) {
+      for (Property p : properties(id)) {
+        expected.addChange(new EntityID(id), ENTITY, p);
+      }
+    }
+    expected.addChange(new EntityID(4), ENTITY, new DoubleProperty(DOUBLE));
+    expected.entityDeleted(new EntityID(5));
+
+    CompactChangeSet decoded = new CompactChangeSet();
+    decoded.fromChangeSetProto(expected.toChangeSetProto());
+    assertEquivalent(expected, decoded);
+
+    ChangeSet roundTrip = new ChangeSet();
+    roundTrip.fromChangeSetProto(decoded.toChangeSetProto());
+    assertEquivalent(roundTrip, decoded);
+    assertEquivalent(expected, new CompactChangeSet(roundTrip));
+  }
+
+
+  @Test
+  public void testDecodeFollowsCurrentRegistry() {
+    ChangeSet changes = new ChangeSet();
+    changes.addChange(new EntityID(1), ENTITY, new DoubleProperty(INT, 2.5));
+    CompactChangeSet decoded = new CompactChangeSet();
+    decoded.fromChangeSetProto(changes.toChangeSetProto());
+    assertEquals(CompactChangeSet.ValueKind.INT, decoded.getKind(decoded.getFirstChange(0)));
+
+    // The same URN is a double in another registry
+    Registry other = new Registry("Other", null);
+    other.registerFactory(new TestPropertyFactory(true));
+    Registry.setCurrentRegistry(other);
+    decoded.fromChangeSetProto(changes.toChangeSetProto());
+    int change = decoded.getFirstChange(0);
+    assertEquals(CompactChangeSet.ValueKind.DOUBLE, decoded.getKind(change));
+    assertEquals(2.5, decoded.getDouble(change));
+  }
+
+
+  private static Property[] properties(int seed) {
+    return new Property[] {new IntProperty(INT, seed), new EntityRefProperty(REF, new EntityID(seed + 100)),
+        new BooleanProperty(BOOL, seed % 2 == 0), new DoubleProperty(DOUBLE, seed / 4.0),
+        new IntArrayProperty(ARRAY, new int[] {seed, seed + 1, seed + 2}),
+        new EntityRefListProperty(REF_LIST, Arrays.asList(new EntityID(seed), new EntityID(seed * 2))),
+        new Point2DProperty(POINT, new Point2D(seed, -seed))};
+  }
+
+
+  private static void assertEquivalent(ChangeSet expected, CompactChangeSet compact) {
+    ChangeSet actual = compact.toChangeSet();
+    assertEquals(expected.getChangedEntities(), actual.getChangedEntities());
+    assertEquals(expected.getDeletedEntities(), actual.getDeletedEntities());
+    for (EntityID next : expected.getChangedEntities()) {
+      assertEquals(expected.getEntityURN(next), actual.getEntityURN(next));
+      Map<Integer, Object> expectedValues = values(expected, next);
+      assertEquals(expectedValues, values(actual, next));
+      int index = compact.findEntity(next.getValue());
+      for (Integer urn : expectedValues.keySet()) {
+        int change = compact.findChange(index, urn);
+        assertNotNull(compact.getProperty(change));
+        assertEquals(expectedValues.get(urn), compact.getProperty(change).toPropertyProto());
+      }
+    }
+  }
+
+
+  private static Map<Integer, Object> values(ChangeSet changes, EntityID id) {
+    Map<Integer, Object> result = new HashMap<Integer, Object>();
+    for (Property next : changes.getChangedProperties(id)) {
+      result.put(next.getURN(), next.toPropertyProto());
+    }
+    return result;
+  }
+
+
+  private static class TestPropertyFactory implements PropertyFactory {
+
+    private final boolean doubles;
+
+
+    TestPropertyFactory(boolean doubles) {
+      this.doubles = doubles;
+    }
+
+
+    @Override
+    public Property makeProperty(int urn) {
+      switch (urn) {
+        case INT:
+          return doubles ? new DoubleProperty(urn) : new IntProperty(urn);
+        case REF:
+          return new EntityRefProperty(urn);
+        case BOOL:
+          return new BooleanProperty(urn);
+        case DOUBLE:
+          return new DoubleProperty(urn);
+        case ARRAY:
+          return new IntArrayProperty(urn);
+        case REF_LIST:
+          return new EntityRefListProperty(urn);
+        case POINT:
+          return new Point2DProperty(urn);
+        default:
+          throw new IllegalArgumentException("Unrecognised property URN: " + urn);
+      }
+    }
+
+
+    @Override
+    public int[] getKnownURNs() {
+      return new int[] {INT, REF, BOOL, DOUBLE, ARRAY, REF_LIST, POINT};
+    }
+
+
+    @Override
+    public String getURNStr(int urnId) {
+      return "test:property:" + urnId;
+    }
+
+
+    @Override
+    public String getPrettyName(int urnId) {
+      return "Property " + urnId;
+    }
+  }
+}
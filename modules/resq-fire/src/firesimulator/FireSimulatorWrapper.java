@@ -91,6 +91,14 @@ public class FireSimulatorWrapper extends StandardSimulator implements GUICompon
 	
     }
 
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        if (sim != null) {
+            sim.shutdown();
+        }
+    }
+
     @Override
     protected void handleUpdate(KSUpdate u) {
         super.handleUpdate(u);
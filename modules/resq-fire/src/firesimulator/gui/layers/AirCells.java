@@ -1,6 +1,7 @@
 package firesimulator.gui.layers;
 
 import firesimulator.gui.*;
+import firesimulator.world.AirGrid;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.geom.Rectangle2D;
@@ -14,23 +15,23 @@ public class AirCells extends GUILayer {
 
 	@Override
 	public void paint(PaintEvent paintEvent) {
-		double cells[][] = paintEvent.getWorld().getAirTemp();
+		AirGrid cells = paintEvent.getWorld().getAirGrid();
 		int a = paintEvent.getWorld().SAMPLE_SIZE;
 		int mx = paintEvent.getWorld().getMinX();
 		int my = paintEvent.getWorld().getMinY();
 		Color lightYellow = new Color(255, 255, 0, 15);
 		paintEvent.getGraphics2D().setStroke(new BasicStroke(1));
 		paintEvent.getGraphics2D().setColor(lightYellow);
-		for(int x = 0; x <= cells.length; x++) {
-			paintEvent.getTransform().drawTransformedLine(paintEvent.getGraphics2D(), x * a + mx, my, x * a + mx, (cells[0].length) * a + my);
+		for(int x = 0; x <= cells.getWidth(); x++) {
+			paintEvent.getTransform().drawTransformedLine(paintEvent.getGraphics2D(), x * a + mx, my, x * a + mx, (cells.getHeight()) * a + my);
 		}
-		for(int y = 0; y <= cells[0].length; y++) {
-			paintEvent.getTransform().drawTransformedLine(paintEvent.getGraphics2D(), mx, y * a + my, (cells.length) * a + mx, y * a + my);
+		for(int y = 0; y <= cells.getHeight(); y++) {
+			paintEvent.getTransform().drawTransformedLine(paintEvent.getGraphics2D(), mx, y * a + my, (cells.getWidth()) * a + mx, y * a + my);
 		}
-		for(int x = 0; x < cells.length; x++) {
-			for(int y = 0; y < cells[0].length; y++) {
-				if(cells[x][y] > 0) {
-					paintEvent.getGraphics2D().setColor(new Color(255, 0, 0, Math.min(255, (int) (cells[x][y] / 1500 * 255))));
+		for(int x = 0; x < cells.getWidth(); x++) {
+			for(int y = 0; y < cells.getHeight(); y++) {
+				if(cells.get(x, y) > 0) {
+					paintEvent.getGraphics2D().setColor(new Color(255, 0, 0, Math.min(255, (int) (cells.get(x, y) / 1500 * 255))));
 					Rectangle2D rect = paintEvent.getTransform().getTransformedRectangle(x * a + mx, y * a + my, a, a);
 					paintEvent.getGraphics2D().fill(rect);
 				}
@@ -38,7 +39,7 @@ public class AirCells extends GUILayer {
 		}
 		int x = (paintEvent.getMouseX() - mx) / a;
 		int y = (paintEvent.getMouseY() - my) / a;
-		if(x >= 0 && x < cells.length && y >= 0 && y < cells[0].length) {
+		if(x >= 0 && x < cells.getWidth() && y >= 0 && y < cells.getHeight()) {
 			Rectangle2D rect = paintEvent.getTransform().getTransformedRectangle(x * a + mx, y * a + my, a, a);
 			paintEvent.getGraphics2D().setColor(Color.YELLOW);
 			paintEvent.getGraphics2D().draw(rect);
@@ -50,11 +51,11 @@ public class AirCells extends GUILayer {
 		int a = paintEvent.getWorld().SAMPLE_SIZE;
 		int mx = paintEvent.getWorld().getMinX();
 		int my = paintEvent.getWorld().getMinY();
-		double cells[][] = paintEvent.getWorld().getAirTemp();
+		AirGrid cells = paintEvent.getWorld().getAirGrid();
 		int x = (paintEvent.getMouseX() - mx) / a;
 		int y = (paintEvent.getMouseY() - my) / a;
-		if(x >= 0 && x < cells.length && y >= 0 && y < cells[0].length) {
-			return "Selected Air Cell Temperature: " + cells[x][y];
+		if(x >= 0 && x < cells.getWidth() && y >= 0 && y < cells.getHeight()) {
+			return "Selected Air Cell Temperature: " + cells.get(x, y);
 		}
 		return null;
     }
@@ -290,7 +290,7 @@ public class SampleLogViewer extends JPanel {
 			String name = args[0];
 			processJarFiles(config);
 			LogReader reader = RCRSLogFactory.getLogReader(name,
-					Registry.SYSTEM_REGISTRY);
+					Registry.SYSTEM_REGISTRY, config);
 			SampleLogViewer viewer = new SampleLogViewer(reader, config);
 			viewer.setPreferredSize(new Dimension(VIEWER_SIZE, VIEWER_SIZE));
 			JFrame frame = new JFrame("Log viewer: " + name);
@@ -19,11 +19,25 @@ import rescuecore2.worldmodel.EntityID;
 import rescuecore2.worldmodel.Property;
 
 /**
- * A property that defines a list of Edges.
+ * A property that defines a list of Edges. The edges are kept packed in an int
+ * array, five values per edge, that is never changed once it has been set, so
+ * copies of this property share the array until one of them is given a new
+ * value. The Edge objects are only created when the value is asked for, and
+ * are then shared by the copies too.
  */
 public class EdgeListProperty extends AbstractProperty {
-
-  private List<Edge> edges;
+  private static final int[] EMPTY = new int[0];
+  private static final int FIELDS = 5;
+  private static final int START_X = 0;
+  private static final int START_Y = 1;
+  private static final int END_X = 2;
+  private static final int END_Y = 3;
+  private static final int NEIGHBOUR = 4;
+
+  /** Start x, start y, end x, end y and neighbour (or 0) of each edge. This may be shared with copies and must not be modified. */
+  private int[] data;
+  /** The edges in data, or null if they have not been created yet. */
+  private volatile List<Edge> edges;
 
   /**
    * Construct a new EdgeListProperty with no defined value.
@@ -32,7 +46,7 @@ public class EdgeListProperty extends AbstractProperty {
    */
   public EdgeListProperty(int urn) {
     super(urn);
-    edges = new ArrayList<Edge>();
+    data = EMPTY;
   }
 
   /**
@@ -42,7 +56,7 @@ public class EdgeListProperty extends AbstractProperty {
    */
   public EdgeListProperty(URN urn) {
     super(urn);
-    edges = new ArrayList<Edge>();
+    data = EMPTY;
   }
 
   /**
@@ -53,7 +67,8 @@ public class EdgeListProperty extends AbstractProperty {
    */
   public EdgeListProperty(int urn, List<Edge> edges) {
     super(urn, true);
-    this.edges = new ArrayList<Edge>(edges);
+    this.data = pack(edges);
+    this.edges = Collections.unmodifiableList(new ArrayList<Edge>(edges));
   }
 
   /**
@@ -64,7 +79,8 @@ public class EdgeListProperty extends AbstractProperty {
    */
   public EdgeListProperty(URN urn, List<Edge> edges) {
     super(urn, true);
-    this.edges = new ArrayList<Edge>(edges);
+    this.data = pack(edges);
+    this.edges = Collections.unmodifiableList(new ArrayList<Edge>(edges));
   }
 
   /**
@@ -74,7 +90,8 @@ public class EdgeListProperty extends AbstractProperty {
    */
   public EdgeListProperty(EdgeListProperty other) {
     super(other);
-    this.edges = new ArrayList<Edge>(other.edges);
+    this.data = other.data;
+    this.edges = other.edges;
   }
 
   @Override
@@ -82,7 +99,12 @@ public class EdgeListProperty extends AbstractProperty {
     if (!isDefined()) {
       return null;
     }
-    return Collections.unmodifiableList(edges);
+    List<Edge> result = edges;
+    if (result == null) {
+      result = Collections.unmodifiableList(unpack(data));
+      edges = result;
+    }
+    return result;
   }
 
   /**
@@ -91,8 +113,8 @@ public class EdgeListProperty extends AbstractProperty {
    * @param newEdges The new edge list.
    */
   public void setEdges(List<Edge> newEdges) {
-    edges.clear();
-    edges.addAll(newEdges);
+    data = pack(newEdges);
+    edges = Collections.unmodifiableList(new ArrayList<Edge>(newEdges));
     setDefined();
   }
 
@@ -102,15 +124,17 @@ public class EdgeListProperty extends AbstractProperty {
    * @param edge The edge to add.
    */
   public void addEdge(Edge edge) {
-    edges.add(edge);
-    setDefined();
+    List<Edge> newEdges = new ArrayList<Edge>(unpackedEdges());
+    newEdges.add(edge);
+    setEdges(newEdges);
   }
 
   /**
    * Remove all edges from this list but keep it defined.
    */
   public void clearEdges() {
-    edges.clear();
+    data = EMPTY;
+    edges = Collections.emptyList();
   }
 
   @Override
@@ -118,7 +142,10 @@ public class EdgeListProperty extends AbstractProperty {
     if (p instanceof EdgeListProperty) {
       EdgeListProperty e = (EdgeListProperty) p;
       if (e.isDefined()) {
-        setEdges(e.getValue());
+        // Share the other property's edges rather than copying them
+        data = e.data;
+        edges = e.edges;
+        setDefined();
       } else {
         undefine();
       }
@@ -129,36 +156,21 @@ public class EdgeListProperty extends AbstractProperty {
 
   @Override
   public void write(OutputStream out) throws IOException {
-    writeInt32(edges.size(), out);
-    for (Edge next : edges) {
-      writeInt32(next.getStartX(), out);
-      writeInt32(next.getStartY(), out);
-      writeInt32(next.getEndX(), out);
-      writeInt32(next.getEndY(), out);
-      if (next.isPassable()) {
-        writeInt32(next.getNeighbour().getValue(), out);
-      } else {
-        writeInt32(0, out);
-      }
+    writeInt32(data.length / FIELDS, out);
+    for (int next : data) {
+      writeInt32(next, out);
     }
   }
 
   @Override
   public void read(InputStream in) throws IOException {
     int count = readInt32(in);
-    edges.clear();
-    for (int i = 0; i < count; ++i) {
-      int startX = readInt32(in);
-      int startY = readInt32(in);
-      int endX = readInt32(in);
-      int endY = readInt32(in);
-      EntityID neighbour = null;
-      int id = readInt32(in);
-      if (id != 0) {
-        neighbour = new EntityID(id);
-      }
-      edges.add(new Edge(startX, startY, endX, endY, neighbour));
+    int[] newData = new int[count * FIELDS];
+    for (int i = 0; i < newData.length; ++i) {
+      newData[i] = readInt32(in);
     }
+    data = newData;
+    edges = null;
     setDefined();
   }
 
@@ -172,13 +184,9 @@ public class EdgeListProperty extends AbstractProperty {
     PropertyProto.Builder builder = basePropertyProto();
     if (isDefined()) {
       EdgeListProto.Builder edgeListbuilder = EdgeListProto.newBuilder();
-      for (Edge next : edges) {
-        int neighbour = 0;
-        if (next.isPassable()) {
-          neighbour = next.getNeighbour().getValue();
-        }
-        edgeListbuilder.addEdges(EdgeProto.newBuilder().setStartX(next.getStartX()).setStartY(next.getStartY())
-            .setEndX(next.getEndX()).setEndY(next.getEndY()).setNeighbour(neighbour));
+      for (int i = 0; i < data.length; i += FIELDS) {
+        edgeListbuilder.addEdges(EdgeProto.newBuilder().setStartX(data[i + START_X]).setStartY(data[i + START_Y])
+            .setEndX(data[i + END_X]).setEndY(data[i + END_Y]).setNeighbour(data[i + NEIGHBOUR]));
       }
       builder.setEdgeList(edgeListbuilder);
     }
@@ -189,21 +197,49 @@ public class EdgeListProperty extends AbstractProperty {
   public void fromPropertyProto(PropertyProto proto) {
     if (!proto.getDefined())
       return;
-    edges.clear();
-    List<EdgeProto> edgesProto = proto.getEdgeList().getEdgesList();
-    for (EdgeProto edgeProto : edgesProto) {
-      int startX = edgeProto.getStartX();
-      int startY = edgeProto.getStartY();
-      int endX = edgeProto.getEndX();
-      int endY = edgeProto.getEndY();
-      EntityID neighbour = null;
-      int id = edgeProto.getNeighbour();
-      if (id != 0) {
-        neighbour = new EntityID(id);
-      }
-      edges.add(new Edge(startX, startY, endX, endY, neighbour));
-
+    EdgeListProto edgeList = proto.getEdgeList();
+    int[] newData = new int[edgeList.getEdgesCount() * FIELDS];
+    for (int i = 0; i < edgeList.getEdgesCount(); ++i) {
+      EdgeProto edgeProto = edgeList.getEdges(i);
+      int offset = i * FIELDS;
+      newData[offset + START_X] = edgeProto.getStartX();
+      newData[offset + START_Y] = edgeProto.getStartY();
+      newData[offset + END_X] = edgeProto.getEndX();
+      newData[offset + END_Y] = edgeProto.getEndY();
+      newData[offset + NEIGHBOUR] = edgeProto.getNeighbour();
     }
+    data = newData;
+    edges = null;
     setDefined();
   }
-}
\ No newline at end of file
+
+  // The edges whether or not the property is defined
+  private List<Edge> unpackedEdges() {
+    List<Edge> result = edges;
+    return result == null ? unpack(data) : result;
+  }
+
+  private static int[] pack(List<Edge> edges) {
+    int[] result = new int[edges.size() * FIELDS];
+    int offset = 0;
+    for (Edge next : edges) {
+      result[offset + START_X] = next.getStartX();
+      result[offset + START_Y] = next.getStartY();
+      result[offset + END_X] = next.getEndX();
+      result[offset + END_Y] = next.getEndY();
+      result[offset + NEIGHBOUR] = next.isPassable() ? next.getNeighbour().getValue() : 0;
+      offset += FIELDS;
+    }
+    return result;
+  }
+
+  private static List<Edge> unpack(int[] data) {
+    List<Edge> result = new ArrayList<Edge>(data.length / FIELDS);
+    for (int i = 0; i < data.length; i += FIELDS) {
+      int id = data[i + NEIGHBOUR];
+      EntityID neighbour = id == 0 ? null : new EntityID(id);
+      result.add(new Edge(data[i + START_X], data[i + START_Y], data[i + END_X], data[i + END_Y], neighbour));
+    }
+    return result;
+  }
+}
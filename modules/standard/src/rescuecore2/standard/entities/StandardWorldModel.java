@@ -4,10 +4,14 @@ import com.infomatiq.jsi.Rectangle;
 import com.infomatiq.jsi.SpatialIndex;
 import com.infomatiq.jsi.rtree.RTree;
 import java.awt.geom.Rectangle2D;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
@@ -19,6 +23,7 @@ import rescuecore2.worldmodel.Entity;
 import rescuecore2.worldmodel.EntityID;
 import rescuecore2.worldmodel.WorldModel;
 import rescuecore2.worldmodel.WorldModelListener;
+import gnu.trove.TIntObjectHashMap;
 import gnu.trove.TIntProcedure;
 
 /**
@@ -30,8 +35,9 @@ public class StandardWorldModel extends DefaultWorldModel<StandardEntity> {
 
   private Map<StandardEntityURN, Collection<StandardEntity>> storedTypes;
   private Set<StandardEntity> unindexedEntities;
-  private Map<Human, Rectangle> humanRectangles;
-  private Map<Robot, Rectangle> robotRectangles;
+  private Map<StandardEntity, Rectangle> humanRectangles;
+  private Map<StandardEntity, Rectangle> robotRectangles;
+  private TIntObjectHashMap<StandardEntity> entitiesByID;
 
   private boolean indexed;
   private int minX;
@@ -47,8 +53,9 @@ public class StandardWorldModel extends DefaultWorldModel<StandardEntity> {
     storedTypes = new EnumMap<StandardEntityURN, Collection<StandardEntity>>(
         StandardEntityURN.class);
     unindexedEntities = new HashSet<StandardEntity>();
-    humanRectangles = new HashMap<Human, Rectangle>();
-    robotRectangles = new HashMap<Robot, Rectangle>();
+    humanRectangles = new HashMap<StandardEntity, Rectangle>();
+    robotRectangles = new HashMap<StandardEntity, Rectangle>();
+    entitiesByID = new TIntObjectHashMap<StandardEntity>();
     addWorldModelListener(new AddRemoveListener());
     indexed = false;
   }
@@ -57,28 +64,22 @@ public class StandardWorldModel extends DefaultWorldModel<StandardEntity> {
   @Override
   public void merge(ChangeSet changeSet) {
     super.merge(changeSet);
-    // Update human rectangles
-    for (Map.Entry<Human, Rectangle> next : humanRectangles.entrySet()) {
-      Human h = next.getKey();
-      Rectangle r = next.getValue();
-      index.delete(r, h.getID().getValue());
-      r = makeRectangle(h);
-      if (r != null) {
-        index.add(r, h.getID().getValue());
-        next.setValue(r);
-      }
+    if (!indexed) {
+      return;
     }
-    // Update robot rectangles
-    for (Map.Entry<Robot, Rectangle> next : robotRectangles.entrySet()) {
-      Robot r = next.getKey();
-      Rectangle rect = next.getValue();
-      index.delete(rect, r.getID().getValue());
-      rect = makeRectangle(r);
-      if (rect != null) {
-        index.add(rect, r.getID().getValue());
-        next.setValue(rect);
+    // Only move the rectangles of humans and robots whose location has changed
+    Set<EntityID> moved = new HashSet<EntityID>();
+    for (EntityID id : changeSet.getChangedEntities()) {
+      if (isLocationChanged(changeSet, id)) {
+        moved.add(id);
+        updateRectangle(getEntity(id));
       }
     }
+    // Anything carried by an entity that moved (e.g. a civilian in an
+    // ambulance) may take its location from the carrier, so move it too
+    if (!moved.isEmpty()) {
+      updateCarried(moved);
+    }
   }
 
 
@@ -115,6 +116,7 @@ public class StandardWorldModel extends DefaultWorldModel<StandardEntity> {
     index = new RTree();
     index.init(new Properties());
     humanRectangles.clear();
+    robotRectangles.clear();
     unindexedEntities.clear();
     minX = Integer.MAX_VALUE;
     maxX = Integer.MIN_VALUE;
@@ -130,10 +132,10 @@ public class StandardWorldModel extends DefaultWorldModel<StandardEntity> {
         minY = Math.min(minY, (int) r.minY);
         maxY = Math.max(maxY, (int) r.maxY);
         if (next instanceof Human) {
-          humanRectangles.put((Human) next, r);
+          humanRectangles.put(next, r);
         }
         if (next instanceof Robot) {
-          robotRectangles.put((Robot) next, r);
+          robotRectangles.put(next, r);
         }
       }
     }
@@ -219,12 +221,11 @@ public class StandardWorldModel extends DefaultWorldModel<StandardEntity> {
       index();
     }
     final Collection<StandardEntity> result = new HashSet<StandardEntity>();
-    Rectangle r = new Rectangle(x1, y1, x2, y2);
-    index.intersects(r, new TIntProcedure() {
+    getObjectIDsInRectangle(x1, y1, x2, y2, new TIntProcedure() {
 
       @Override
       public boolean execute(int id) {
-        StandardEntity e = getEntity(new EntityID(id));
+        StandardEntity e = entitiesByID.get(id);
         if (e != null) {
           result.add(e);
         }
@@ -235,6 +236,63 @@ public class StandardWorldModel extends DefaultWorldModel<StandardEntity> {
   }
 
 
+  /**
+   * Visit the IDs of objects inside a given rectangle. This avoids creating a
+   * result collection and EntityID objects; use {@link #getEntity(int)} to
+   * look up entities if needed.
+   *
+   * @param x1
+   *   The x coordinate of the top left corner.
+   * @param y1
+   *   The y coordinate of the top left corner.
+   * @param x2
+   *   The x coordinate of the bottom right corner.
+   * @param y2
+   *   The y coordinate of the bottom right corner.
+   * @param procedure
+   *   The procedure to call with each ID. Returning false stops the search.
+   */
+  public void getObjectIDsInRectangle(int x1, int y1, int x2, int y2,
+      TIntProcedure procedure) {
+    if (!indexed) {
+      index();
+    }
+    index.intersects(new Rectangle(x1, y1, x2, y2), procedure);
+  }
+
+
+  /**
+   * Visit the IDs of objects within a certain range of a location.
+   *
+   * @param x
+   *   The x coordinate of the location.
+   * @param y
+   *   The y coordinate of the location.
+   * @param range
+   *   The range to look up.
+   * @param procedure
+   *   The procedure to call with each ID. Returning false stops the search.
+   */
+  public void getObjectIDsInRange(int x, int y, int range,
+      TIntProcedure procedure) {
+    getObjectIDsInRectangle(x - range, y - range, x + range, y + range,
+        procedure);
+  }
+
+
+  /**
+   * Look up an entity by the integer value of its ID.
+   *
+   * @param id
+   *   The ID value to look up.
+   *
+   * @return The entity with the given ID, or null if there is no such entity.
+   */
+  public StandardEntity getEntity(int id) {
+    return entitiesByID.get(id);
+  }
+
+
   /**
    * Get all entities of a particular type.
    *
@@ -441,6 +499,96 @@ public class StandardWorldModel extends DefaultWorldModel<StandardEntity> {
   }
 
 
+  private boolean isLocationChanged(ChangeSet changeSet, EntityID id) {
+    return changeSet.getChangedProperty(id, StandardPropertyURN.X.getURNId()) != null
+        || changeSet.getChangedProperty(id, StandardPropertyURN.Y.getURNId()) != null
+        || changeSet.getChangedProperty(id, StandardPropertyURN.POSITION.getURNId()) != null;
+  }
+
+
+  private void updateRectangle(StandardEntity e) {
+    if (e instanceof Human) {
+      updateRectangle(e, humanRectangles);
+    }
+    if (e instanceof Robot) {
+      updateRectangle(e, robotRectangles);
+    }
+  }
+
+
+  private void updateCarried(Set<EntityID> moved) {
+    // Find what every human and robot is carried by in a single pass, then
+    // follow the carriers outwards from the entities that moved
+    Map<EntityID, List<StandardEntity>> carried =
+        new HashMap<EntityID, List<StandardEntity>>();
+    findCarried(humanRectangles, carried);
+    findCarried(robotRectangles, carried);
+    if (carried.isEmpty()) {
+      return;
+    }
+    Deque<EntityID> open = new ArrayDeque<EntityID>(moved);
+    while (!open.isEmpty()) {
+      List<StandardEntity> next = carried.remove(open.poll());
+      if (next == null) {
+        continue;
+      }
+      for (StandardEntity e : next) {
+        if (moved.add(e.getID())) {
+          updateRectangle(e);
+          open.add(e.getID());
+        }
+      }
+    }
+  }
+
+
+  private void findCarried(Map<StandardEntity, Rectangle> rectangles,
+      Map<EntityID, List<StandardEntity>> carried) {
+    for (StandardEntity next : rectangles.keySet()) {
+      EntityID position = getPositionID(next);
+      if (position == null) {
+        continue;
+      }
+      // Most entities are on an area, which never moves
+      StandardEntity carrier = getEntity(position);
+      if (carrier instanceof Human || carrier instanceof Robot) {
+        List<StandardEntity> list = carried.get(position);
+        if (list == null) {
+          list = new ArrayList<StandardEntity>();
+          carried.put(position, list);
+        }
+        list.add(next);
+      }
+    }
+  }
+
+
+  private EntityID getPositionID(StandardEntity e) {
+    if (e instanceof Human && ((Human) e).isPositionDefined()) {
+      return ((Human) e).getPosition();
+    }
+    if (e instanceof Robot && ((Robot) e).isPositionDefined()) {
+      return ((Robot) e).getPosition();
+    }
+    return null;
+  }
+
+
+  private void updateRectangle(StandardEntity e,
+      Map<StandardEntity, Rectangle> rectangles) {
+    Rectangle old = rectangles.get(e);
+    if (old == null) {
+      return;
+    }
+    index.delete(old, e.getID().getValue());
+    Rectangle r = makeRectangle(e);
+    if (r != null) {
+      index.add(r, e.getID().getValue());
+      rectangles.put(e, r);
+    }
+  }
+
+
   private int distance(Pair<Integer, Integer> a, Pair<Integer, Integer> b) {
     return distance(a.first(), a.second(), b.first(), b.second());
   }
@@ -464,6 +612,7 @@ public class StandardWorldModel extends DefaultWorldModel<StandardEntity> {
         bucket.add(e);
       }
       unindexedEntities.add(e);
+      entitiesByID.put(e.getID().getValue(), e);
     }
 
 
@@ -476,6 +625,14 @@ public class StandardWorldModel extends DefaultWorldModel<StandardEntity> {
         bucket.remove(e);
       }
       unindexedEntities.remove(e);
+      entitiesByID.remove(e.getID().getValue());
+      Rectangle r = humanRectangles.remove(e);
+      if (r == null) {
+        r = robotRectangles.remove(e);
+      }
+      if (r != null) {
+        index.delete(r, e.getID().getValue());
+      }
     }
   }
 }
@@ -1,12 +1,11 @@
 package rescuecore2.standard.kernel;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Map;
 
 import kernel.Perception;
@@ -26,6 +25,7 @@ import rescuecore2.view.ViewComponent;
 import rescuecore2.view.ViewListener;
 import rescuecore2.misc.Pair;
 import rescuecore2.misc.collections.LazyMap;
+import rescuecore2.misc.geometry.spatialindex.SegmentGrid;
 import rescuecore2.misc.gui.ScreenTransform;
 import rescuecore2.misc.geometry.Point2D;
 import rescuecore2.misc.geometry.Line2D;
@@ -54,22 +54,32 @@ public class LineOfSightPerception implements Perception, GUIComponent {
     private static final int DEFAULT_HP_PRECISION = 1000;
     private static final int DEFAULT_DAMAGE_PRECISION = 100;
     private static final int DEFAULT_RAY_COUNT = 720;
+    private static final int DEFAULT_GRID_SIZE = 5000;
 
     private static final String VIEW_DISTANCE_KEY = "perception.los.max-distance";
     private static final String RAY_COUNT_KEY = "perception.los.ray-count";
     private static final String HP_PRECISION_KEY = "perception.los.precision.hp";
     private static final String DAMAGE_PRECISION_KEY = "perception.los.precision.damage";
-
-    private static final IntersectionSorter INTERSECTION_SORTER = new IntersectionSorter();
+    private static final String GRID_SIZE_KEY = "perception.los.grid-size";
 
     private int viewDistance;
     private int hpPrecision;
     private int damagePrecision;
     private int rayCount;
+    private int gridSize;
 
     private StandardWorldModel world;
     private Config config;
 
+    // Area edges never change so they are indexed once. Blockade lines are re-indexed every timestep.
+    private List<LineInfo> staticLines;
+    private Map<EntityID, Integer> staticIndices;
+    private SegmentGrid staticGrid;
+    private List<LineInfo> blockadeLines;
+    private Map<EntityID, Integer> blockadeIndices;
+    private SegmentGrid blockadeGrid;
+    private final ThreadLocal<CastBuffer> castBuffers = new ThreadLocal<CastBuffer>();
+
     private LOSView view;
 
     /**
@@ -86,6 +96,9 @@ public class LineOfSightPerception implements Perception, GUIComponent {
         hpPrecision = config.getIntValue(HP_PRECISION_KEY, DEFAULT_HP_PRECISION);
         damagePrecision = config.getIntValue(DAMAGE_PRECISION_KEY, DEFAULT_DAMAGE_PRECISION);
         rayCount = config.getIntValue(RAY_COUNT_KEY, DEFAULT_RAY_COUNT);
+        gridSize = config.getIntValue(GRID_SIZE_KEY, DEFAULT_GRID_SIZE);
+        buildStaticIndex();
+        buildBlockadeIndex();
         view = null;
     }
 
@@ -110,6 +123,10 @@ public class LineOfSightPerception implements Perception, GUIComponent {
 
     @Override
     public void setTime(int timestep) {
+        // Build any lazy world model indexes now: getVisibleEntities may be called concurrently
+        world.getBounds();
+        world.getEntitiesOfType(StandardEntityURN.REFUGE);
+        buildBlockadeIndex();
         if (view != null) {
             view.clear();
             view.refresh();
@@ -325,10 +342,18 @@ public class LineOfSightPerception implements Perception, GUIComponent {
         return value;
     }
 
-    private Collection<StandardEntity> findVisible(StandardEntity agentEntity, Point2D location, Collection<StandardEntity> nearby) {
+    /**
+       Find the entities an agent can see. This is package-private so that tests can check it against other ways of casting rays.
+       @param agentEntity The agent.
+       @param location The agent's location.
+       @param nearby The entities within the view distance of the agent, as returned by the world model's range query.
+       @return The visible entities, including the agent.
+    */
+    Collection<StandardEntity> findVisible(StandardEntity agentEntity, Point2D location, Collection<StandardEntity> nearby) {
         Logger.debug("Finding visible entities from " + location);
         Logger.debug(nearby.size() + " nearby entities");
-        Collection<LineInfo> lines = getAllLines(nearby);
+        CastBuffer buffer = getCastBuffer();
+        buffer.rank(nearby);
         // Cast rays
         // CHECKSTYLE:OFF:MagicNumber
         double dAngle = Math.PI * 2 / rayCount;
@@ -337,20 +362,22 @@ public class LineOfSightPerception implements Perception, GUIComponent {
         for (int i = 0; i < rayCount; ++i) {
             double angle = i * dAngle;
             Vector2D vector = new Vector2D(Math.sin(angle), Math.cos(angle)).scale(viewDistance);
-            Ray ray = new Ray(new Line2D(location, vector), lines);
-            for (LineInfo hit : ray.getLinesHit()) {
-                StandardEntity e = hit.getEntity();
-                result.add(e);
+            Line2D ray = new Line2D(location, vector);
+            double length = cast(ray, buffer);
+            for (int j = 0; j < buffer.hitCount; ++j) {
+                if (buffer.isVisible(j)) {
+                    result.add(buffer.hitLines[j].getEntity());
+                }
             }
             if (view != null) {
-                view.addRay(agentEntity, ray);
+                view.addRay(agentEntity, new Ray(ray, length));
             }
         }
         // Now look for humans
         for (StandardEntity next : nearby) {
             if (next instanceof Human) {
                 Human h = (Human)next;
-                if (canSee(agentEntity, location, h, lines)) {
+                if (canSee(agentEntity, location, h, buffer)) {
                     result.add(h);
                 }
             }
@@ -359,7 +386,7 @@ public class LineOfSightPerception implements Perception, GUIComponent {
         for (StandardEntity next : nearby) {
             if (next instanceof Robot) {
                 Robot r = (Robot) next;
-                if (canSeeRobots(agentEntity, location, r, lines)) {
+                if (canSeeRobots(agentEntity, location, r, buffer)) {
                     result.add(r);
                 }
             }
@@ -370,15 +397,16 @@ public class LineOfSightPerception implements Perception, GUIComponent {
         return result;
     }
 
-    private boolean canSee(StandardEntity agent, Point2D location, Human h, Collection<LineInfo> lines) {
+    private boolean canSee(StandardEntity agent, Point2D location, Human h, CastBuffer buffer) {
         if (h.isXDefined() && h.isYDefined()) {
             int x = h.getX();
             int y = h.getY();
             Point2D humanLocation = new Point2D(x, y);
-            Ray ray = new Ray(new Line2D(location, humanLocation), lines);
-            if (ray.getVisibleLength() >= 1) {
+            Line2D ray = new Line2D(location, humanLocation);
+            double length = cast(ray, buffer);
+            if (length >= 1) {
                 if (view != null) {
-                    view.addRay(agent, ray);
+                    view.addRay(agent, new Ray(ray, length));
                 }
                 return true;
             }
@@ -389,21 +417,22 @@ public class LineOfSightPerception implements Perception, GUIComponent {
             }
             Entity e = world.getEntity(h.getPosition());
             if (e instanceof AmbulanceTeam) {
-                return canSee(agent, location, (Human)e, lines);
+                return canSee(agent, location, (Human)e, buffer);
             }
         }
         return false;
     }
 
-    private boolean canSeeRobots(StandardEntity agent, Point2D location, Robot r, Collection<LineInfo> lines) {
+    private boolean canSeeRobots(StandardEntity agent, Point2D location, Robot r, CastBuffer buffer) {
         if (r.isXDefined() && r.isYDefined()) {
             int x = r.getX();
             int y = r.getY();
             Point2D humanLocation = new Point2D(x, y);
-            Ray ray = new Ray(new Line2D(location, humanLocation), lines);
-            if (ray.getVisibleLength() >= 1) {
+            Line2D ray = new Line2D(location, humanLocation);
+            double length = cast(ray, buffer);
+            if (length >= 1) {
                 if (view != null) {
-                    view.addRay(agent, ray);
+                    view.addRay(agent, new Ray(ray, length));
                 }
                 return true;
             }
@@ -414,38 +443,117 @@ public class LineOfSightPerception implements Perception, GUIComponent {
             }
             Entity e = world.getEntity(r.getPosition());
             if (e instanceof AmbulanceTeam) {
-                return canSee(agent, location, (Human)e, lines);
+                return canSee(agent, location, (Human)e, buffer);
             }
         }
         return false;
     }
 
-    private Collection<LineInfo> getAllLines(Collection<StandardEntity> entities) {
-        Collection<LineInfo> result = new LinkedList<LineInfo>();
-        for (StandardEntity next : entities) {
+    /**
+       Cast a ray against the edges of all nearby entities. On return the buffer holds every line the ray crosses and which of those are visible.
+       @return The visible length of the ray.
+    */
+    private double cast(Line2D ray, CastBuffer buffer) {
+        buffer.hitCount = 0;
+        collectHits(ray, buffer.getQuery(staticGrid), staticLines, buffer);
+        collectHits(ray, buffer.getQuery(blockadeGrid), blockadeLines, buffer);
+        // Find the first blocking line. Lines are ordered by distance along the ray, with ties broken by their order in the nearby collection.
+        int first = -1;
+        for (int i = 0; i < buffer.hitCount; ++i) {
+            if (buffer.hitLines[i].isBlocking() && (first == -1 || buffer.isBefore(i, first))) {
+                first = i;
+            }
+        }
+        buffer.firstBlocking = first;
+        return first == -1 ? 1 : buffer.hitDistances[first];
+    }
+
+    private void collectHits(Line2D ray, SegmentGrid.Query query, List<LineInfo> lines, CastBuffer buffer) {
+        Point2D origin = ray.getOrigin();
+        Point2D end = ray.getEndPoint();
+        query.cast(origin.getX(), origin.getY(), end.getX(), end.getY());
+        for (int i = 0; i < query.size(); ++i) {
+            LineInfo other = lines.get(query.get(i));
+            int rank = buffer.getRank(other.getEntityIndex());
+            if (rank == -1) {
+                // Only lines of nearby entities can block the view
+                continue;
+            }
+            double d1 = ray.getIntersection(other.getLine());
+            double d2 = other.getLine().getIntersection(ray);
+            if (d2 >= 0 && d2 <= 1 && d1 > 0 && d1 <= 1) {
+                buffer.addHit(other, d1, rank);
+            }
+        }
+    }
+
+    private void buildStaticIndex() {
+        staticLines = new ArrayList<LineInfo>();
+        staticIndices = new HashMap<EntityID, Integer>();
+        for (StandardEntity next : world) {
             if (next instanceof Building) {
+                int index = staticIndices.size();
+                staticIndices.put(next.getID(), index);
+                int order = 0;
                 for (Edge edge : ((Building)next).getEdges()) {
-                    Line2D line = edge.getLine();
-                    result.add(new LineInfo(line, next, !edge.isPassable()));
+                    staticLines.add(new LineInfo(edge.getLine(), next, !edge.isPassable(), index, order++));
                 }
             }
-            if (next instanceof Road) {
+            else if (next instanceof Road) {
+                int index = staticIndices.size();
+                staticIndices.put(next.getID(), index);
+                int order = 0;
                 for (Edge edge : ((Road)next).getEdges()) {
-                    Line2D line = edge.getLine();
-                    result.add(new LineInfo(line, next, false));
+                    staticLines.add(new LineInfo(edge.getLine(), next, false, index, order++));
                 }
             }
-            else if (next instanceof Blockade) {
-                int[] apexes = ((Blockade)next).getApexes();
-                List<Point2D> points = GeometryTools2D.vertexArrayToPoints(apexes);
-                List<Line2D> lines = GeometryTools2D.pointsToLines(points, true);
-                for (Line2D line : lines) {
-                    result.add(new LineInfo(line, next, false));
-                }
-            }
-            else {
+        }
+        staticGrid = new SegmentGrid(getLines(staticLines), gridSize);
+        Logger.debug("Indexed " + staticLines.size() + " static lines for line of sight");
+    }
+
+    private void buildBlockadeIndex() {
+        List<LineInfo> lines = new ArrayList<LineInfo>();
+        Map<EntityID, Integer> indices = new HashMap<EntityID, Integer>();
+        for (StandardEntity next : world.getEntitiesOfType(StandardEntityURN.BLOCKADE)) {
+            Blockade b = (Blockade)next;
+            if (!b.isApexesDefined()) {
                 continue;
             }
+            int index = staticIndices.size() + indices.size();
+            indices.put(b.getID(), index);
+            int order = 0;
+            List<Point2D> points = GeometryTools2D.vertexArrayToPoints(b.getApexes());
+            for (Line2D line : GeometryTools2D.pointsToLines(points, true)) {
+                lines.add(new LineInfo(line, b, false, index, order++));
+            }
+        }
+        blockadeLines = lines;
+        blockadeIndices = indices;
+        blockadeGrid = new SegmentGrid(getLines(lines), gridSize);
+    }
+
+    private static List<Line2D> getLines(List<LineInfo> infos) {
+        List<Line2D> result = new ArrayList<Line2D>(infos.size());
+        for (LineInfo next : infos) {
+            result.add(next.getLine());
+        }
+        return result;
+    }
+
+    private int getEntityIndex(EntityID id) {
+        Integer index = staticIndices.get(id);
+        if (index == null) {
+            index = blockadeIndices.get(id);
+        }
+        return index == null ? -1 : index;
+    }
+
+    private CastBuffer getCastBuffer() {
+        CastBuffer result = castBuffers.get();
+        if (result == null) {
+            result = new CastBuffer();
+            castBuffers.set(result);
         }
         return result;
     }
@@ -455,31 +563,10 @@ public class LineOfSightPerception implements Perception, GUIComponent {
         private Line2D ray;
         /** The visible length of the ray. */
         private double length;
-        /** List of lines hit in order. */
-        private List<LineInfo> hit;
 
-        public Ray(Line2D ray, Collection<LineInfo> otherLines) {
+        public Ray(Line2D ray, double length) {
             this.ray = ray;
-            List<Pair<LineInfo, Double>> intersections = new ArrayList<Pair<LineInfo, Double>>();
-            // Find intersections with other lines
-            for (LineInfo other : otherLines) {
-                double d1 = ray.getIntersection(other.getLine());
-                double d2 = other.getLine().getIntersection(ray);
-                if (d2 >= 0 && d2 <= 1 && d1 > 0 && d1 <= 1) {
-                    intersections.add(new Pair<LineInfo, Double>(other, d1));
-                }
-            }
-            Collections.sort(intersections, INTERSECTION_SORTER);
-            hit = new ArrayList<LineInfo>();
-            length = 1;
-            for (Pair<LineInfo, Double> next : intersections) {
-                LineInfo l = next.first();
-                hit.add(l);
-                if (l.isBlocking()) {
-                    length = next.second();
-                    break;
-                }
-            }
+            this.length = length;
         }
 
         public Line2D getRay() {
@@ -489,21 +576,21 @@ public class LineOfSightPerception implements Perception, GUIComponent {
         public double getVisibleLength() {
             return length;
         }
-
-        public List<LineInfo> getLinesHit() {
-            return Collections.unmodifiableList(hit);
-        }
     }
 
     private static class LineInfo {
         private Line2D line;
         private StandardEntity entity;
         private boolean blocking;
+        private int entityIndex;
+        private int order;
 
-        public LineInfo(Line2D line, StandardEntity entity, boolean blocking) {
+        public LineInfo(Line2D line, StandardEntity entity, boolean blocking, int entityIndex, int order) {
             this.line = line;
             this.entity = entity;
             this.blocking = blocking;
+            this.entityIndex = entityIndex;
+            this.order = order;
         }
 
         public Line2D getLine() {
@@ -517,20 +604,112 @@ public class LineOfSightPerception implements Perception, GUIComponent {
         public boolean isBlocking() {
             return blocking;
         }
+
+        public int getEntityIndex() {
+            return entityIndex;
+        }
+
+        public int getOrder() {
+            return order;
+        }
     }
 
-    private static class IntersectionSorter implements Comparator<Pair<LineInfo, Double>>, java.io.Serializable {
-        @Override
-        public int compare(Pair<LineInfo, Double> a, Pair<LineInfo, Double> b) {
-            double d1 = a.second();
-            double d2 = b.second();
-            if (d1 < d2) {
-                return -1;
+    /**
+       Per-thread scratch space for casting rays. Each entity near the agent is given a rank according to its position in the nearby collection so that lines at the same distance are ordered the same way as a stable sort of all nearby lines.
+    */
+    private class CastBuffer {
+        private static final int INITIAL_HITS = 64;
+
+        private SegmentGrid.Query staticQuery;
+        private SegmentGrid.Query blockadeQuery;
+        private int[] ranks;
+        private int[] rankStamps;
+        private int stamp;
+
+        private LineInfo[] hitLines;
+        private double[] hitDistances;
+        private int[] hitRanks;
+        private int hitCount;
+        private int firstBlocking;
+
+        CastBuffer() {
+            ranks = new int[0];
+            rankStamps = new int[0];
+            stamp = 0;
+            hitLines = new LineInfo[INITIAL_HITS];
+            hitDistances = new double[INITIAL_HITS];
+            hitRanks = new int[INITIAL_HITS];
+            hitCount = 0;
+            firstBlocking = -1;
+        }
+
+        SegmentGrid.Query getQuery(SegmentGrid grid) {
+            if (staticQuery != null && staticQuery.getGrid() == grid) {
+                return staticQuery;
+            }
+            if (blockadeQuery != null && blockadeQuery.getGrid() == grid) {
+                return blockadeQuery;
+            }
+            SegmentGrid.Query result = grid.newQuery();
+            if (grid == staticGrid) {
+                staticQuery = result;
+            }
+            else {
+                blockadeQuery = result;
+            }
+            return result;
+        }
+
+        void rank(Collection<StandardEntity> nearby) {
+            int size = staticIndices.size() + blockadeIndices.size();
+            if (ranks.length < size) {
+                ranks = new int[size];
+                rankStamps = new int[size];
+                stamp = 0;
             }
-            if (d1 > d2) {
-                return 1;
+            if (++stamp == 0) {
+                Arrays.fill(rankStamps, 0);
+                stamp = 1;
             }
-            return 0;
+            int rank = 0;
+            for (StandardEntity next : nearby) {
+                int index = getEntityIndex(next.getID());
+                if (index != -1) {
+                    ranks[index] = rank;
+                    rankStamps[index] = stamp;
+                }
+                ++rank;
+            }
+        }
+
+        int getRank(int entityIndex) {
+            return rankStamps[entityIndex] == stamp ? ranks[entityIndex] : -1;
+        }
+
+        void addHit(LineInfo line, double distance, int rank) {
+            if (hitCount == hitLines.length) {
+                hitLines = Arrays.copyOf(hitLines, hitCount * 2);
+                hitDistances = Arrays.copyOf(hitDistances, hitCount * 2);
+                hitRanks = Arrays.copyOf(hitRanks, hitCount * 2);
+            }
+            hitLines[hitCount] = line;
+            hitDistances[hitCount] = distance;
+            hitRanks[hitCount] = rank;
+            ++hitCount;
+        }
+
+        boolean isBefore(int a, int b) {
+            if (hitDistances[a] != hitDistances[b]) {
+                return hitDistances[a] < hitDistances[b];
+            }
+            if (hitRanks[a] != hitRanks[b]) {
+                return hitRanks[a] < hitRanks[b];
+            }
+            return hitLines[a].getOrder() < hitLines[b].getOrder();
+        }
+
+        boolean isVisible(int hit) {
+            return firstBlocking == -1 || hit == firstBlocking || isBefore(hit, firstBlocking);
         }
     }
 
@@ -10,6 +10,7 @@ import kernel.ComponentManager;
 import kernel.KernelException;
 
 import rescuecore2.config.Config;
+import rescuecore2.messages.components.SharedEntityList;
 import rescuecore2.standard.entities.*;
 import rescuecore2.worldmodel.WorldModel;
 import rescuecore2.worldmodel.Entity;
@@ -81,6 +82,8 @@ public class StandardAgentRegistrar implements AgentRegistrar {
         for (Entity e : world) {
             maybeAddInitialEntity(e, initialEntities);
         }
+        // Every agent gets the same filtered world plus its own entity, so encode the filtered world once
+        SharedEntityList shared = new SharedEntityList(initialEntities);
         for (Entity e : world) {
         	   if (e instanceof FireBrigade
                        || e instanceof FireStation
@@ -91,22 +94,16 @@ public class StandardAgentRegistrar implements AgentRegistrar {
                        || e instanceof RescueRobot
                        || e instanceof Drone
                        ) {
-                   Set<Entity> s = new HashSet<Entity>(initialEntities);
-                   s.remove(e);
-                   s.add(e);
-                   manager.registerAgentControlledEntity(e, s, agentConfig);
+                   manager.registerAgentControlledEntity(e, shared, agentConfig);
                }
                if(e instanceof Civilian){
                	Config civilianConfig = new Config(agentConfig);
-               	Set<Entity> s = new HashSet<Entity>(initialEntities);
-                   s.remove(e);
-                   s.add(e);
                    String configSeed = config.getValue(Constants.RANDOM_SEED_KEY, "");
                    if(!configSeed.equals("")){
                    	int seed = Integer.parseInt(configSeed)+e.getID().getValue();
                    	civilianConfig.setValue(Constants.RANDOM_SEED_KEY,  seed+"");
                    }
-                   manager.registerAgentControlledEntity(e, s, civilianConfig);
+                   manager.registerAgentControlledEntity(e, shared, civilianConfig);
                }
 
         }
@@ -6,39 +6,95 @@ import rescuecore2.log.Logger;
 
 import rescuecore2.standard.messages.*;
 
+import rescuecore2.worldmodel.EntityID;
+
 import kernel.CommandCollector;
+import kernel.AgentCommandListener;
 import kernel.AgentProxy;
+import kernel.LatencyHistogram;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Set;
-import java.util.HashSet;
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
-   A CommandCollector that will wait until a non-communication command has been received from each agent.
+   A CommandCollector that will wait until a non-communication command has been received from each agent, or until a timeout has passed. The timeout is the agent think time unless {@link #TIMEOUT_KEY} says otherwise; a timeout of zero or less waits for every agent however long it takes. Trigger commands are noticed as soon as they arrive so the kernel can move on immediately once the last agent has acted.
 */
 public class StandardCommandCollector implements CommandCollector {
-    private static final long WAIT_TIME = 100;
+    private static final int DEFAULT_TIME = 1000;
+    private static final String TIME_KEY = "kernel.agents.think-time";
+    private static final long LOG_INTERVAL = 1000;
+
+    /** Config key for the longest time in milliseconds to wait for trigger commands. Zero or less means wait indefinitely. Defaults to the agent think time. */
+    public static final String TIMEOUT_KEY = "kernel.standard-collector.timeout";
+
+    private long time;
+    private final Map<EntityID, LatencyHistogram> latencies;
+
+    /**
+       Construct a StandardCommandCollector.
+    */
+    public StandardCommandCollector() {
+        latencies = new ConcurrentHashMap<EntityID, LatencyHistogram>();
+    }
 
     @Override
     public void initialise(Config config) {
+        time = config.getIntValue(TIMEOUT_KEY, config.getIntValue(TIME_KEY, DEFAULT_TIME));
     }
 
     @Override
-    public Collection<Command> getAgentCommands(Collection<AgentProxy> agents, int timestep) throws InterruptedException {
-        Set<AgentProxy> waiting = new HashSet<AgentProxy>(agents);
-        while (!waiting.isEmpty()) {
+    public Collection<Command> getAgentCommands(Collection<AgentProxy> agents, final int timestep) throws InterruptedException {
+        final long start = System.currentTimeMillis();
+        final Set<AgentProxy> waiting = Collections.newSetFromMap(new ConcurrentHashMap<AgentProxy, Boolean>());
+        waiting.addAll(agents);
+        final CountDownLatch latch = new CountDownLatch(waiting.size());
+        final LatencyHistogram cycle = new LatencyHistogram();
+        AgentCommandListener listener = new AgentCommandListener() {
+                @Override
+                public void commandReceived(AgentProxy agent, Command c) {
+                    if (c.getTime() == timestep && isTriggerCommand(c)) {
+                        triggered(agent, waiting, latch, start, cycle);
+                    }
+                }
+            };
+        for (AgentProxy next : agents) {
+            next.addCommandListener(listener);
+        }
+        try {
+            // Catch any trigger commands that arrived before the listener was added
             for (AgentProxy next : agents) {
-                Collection<Command> commands = next.getAgentCommands(timestep);
-                for (Command c : commands) {
+                for (Command c : next.getAgentCommands(timestep)) {
                     if (isTriggerCommand(c)) {
-                        Logger.debug(next + " sent a trigger command");
-                        waiting.remove(next);
+                        triggered(next, waiting, latch, start, cycle);
                     }
                 }
             }
-            Logger.info(this + " waiting for commands from " + waiting.size() + " agents");
-            Thread.sleep(WAIT_TIME);
+            long end = time > 0 ? start + time : Long.MAX_VALUE;
+            long now = System.currentTimeMillis();
+            while (now < end && !latch.await(Math.min(end - now, LOG_INTERVAL), TimeUnit.MILLISECONDS)) {
+                Logger.info(this + " waiting for commands from " + waiting.size() + " agents");
+                now = System.currentTimeMillis();
+            }
+        }
+        finally {
+            for (AgentProxy next : agents) {
+                next.removeCommandListener(listener);
+            }
+        }
+        if (waiting.isEmpty()) {
+            Logger.debug(this + " received trigger commands from all agents after " + (System.currentTimeMillis() - start) + "ms");
+        }
+        else {
+            Logger.debug(this + " timed out waiting for " + waiting.size() + " agents");
+        }
+        if (!agents.isEmpty()) {
+            Logger.info("Timestep " + timestep + ": " + (agents.size() - waiting.size()) + " of " + agents.size() + " agents acted, latency " + cycle);
         }
         Collection<Command> result = new ArrayList<Command>();
         for (AgentProxy next : agents) {
@@ -48,11 +104,45 @@ public class StandardCommandCollector implements CommandCollector {
         return result;
     }
 
+    /**
+       Get the response latency histogram for an agent. Latencies are measured from the start of command collection to the arrival of the first trigger command from that agent.
+       @param id The ID of the agent's controlled entity.
+       @return The latency histogram, or null if no trigger command has been received from that agent.
+    */
+    public LatencyHistogram getLatencyHistogram(EntityID id) {
+        return latencies.get(id);
+    }
+
+    /**
+       Get the response latency histograms for all agents.
+       @return An unmodifiable map from controlled entity ID to latency histogram.
+    */
+    public Map<EntityID, LatencyHistogram> getLatencyHistograms() {
+        return Collections.unmodifiableMap(latencies);
+    }
+
     @Override
     public String toString() {
         return "Standard command collector";
     }
 
+    private void triggered(AgentProxy agent, Set<AgentProxy> waiting, CountDownLatch latch, long start, LatencyHistogram cycle) {
+        if (waiting.remove(agent)) {
+            long latency = System.currentTimeMillis() - start;
+            cycle.record(latency);
+            EntityID id = agent.getControlledEntity().getID();
+            LatencyHistogram histogram = latencies.get(id);
+            if (histogram == null) {
+                latencies.putIfAbsent(id, new LatencyHistogram());
+                histogram = latencies.get(id);
+            }
+            histogram.record(latency);
+            Logger.debug(agent + " sent a trigger command after " + latency + "ms");
+            Logger.debug(agent + " latency: " + histogram);
+            latch.countDown();
+        }
+    }
+
     private boolean isTriggerCommand(Command c) {
         return ((c instanceof AKMove)
                 || (c instanceof AKRest)
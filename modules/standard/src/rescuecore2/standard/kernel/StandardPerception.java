@@ -63,20 +63,20 @@ public class StandardPerception implements Perception, GUIComponent {
   private static final int PRECISION_MAJOR_TICK = 1000;
   private static final int PRECISION_MINOR_TICK = 100;
 
-  private int viewDistance;
-  private int farFireDistance;
-  private boolean useFarFires;
-  private int hpPrecision;
-  private int damagePrecision;
+  // Tunable parameters may be changed via the GUI while agent perception is
+  // being computed. Each is read and written independently so volatile is
+  // enough and no lock is needed.
+  private volatile int viewDistance;
+  private volatile int farFireDistance;
+  private volatile boolean useFarFires;
+  private volatile int hpPrecision;
+  private volatile int damagePrecision;
   private StandardWorldModel world;
   private int time;
   private Set<Building> unburntBuildings;
   private Map<Building, Integer> ignitionTimes;
   private Config config;
 
-  // Lock object for updating via the GUI.
-  private final Object lock = new Object();
-
   /**
    * Create a StandardPerception object.
    */
@@ -143,97 +143,98 @@ public class StandardPerception implements Perception, GUIComponent {
     time = timestep;
     // Look for scripting elements in the config file
     checkForScript();
+    // Build any lazy world model indexes now: getVisibleEntities may be called concurrently
+    world.getBounds();
+    world.getEntitiesOfType(StandardEntityURN.REFUGE);
   }
 
   @Override
   public ChangeSet getVisibleEntities(AgentProxy agent) {
-    synchronized (lock) {
-      StandardEntity agentEntity = (StandardEntity) agent.getControlledEntity();
-      ChangeSet result = new ChangeSet();
-      // Look for roads/nodes/buildings/humans within range
-      Pair<Integer, Integer> location = agentEntity.getLocation(world);
-      if (location != null) {
-        int x = location.first().intValue();
-        int y = location.second().intValue();
-        Collection<StandardEntity> nearby = world.getObjectsInRange(x, y, viewDistance);
-        // Copy entities and set property values
-        for (StandardEntity next : nearby) {
-          StandardEntityURN urn = next.getStandardURN();
-          switch (urn) {
-            case ROAD:
-            case HYDRANT:
-              addRoadProperties((Road) next, result);
-              break;
-
-            case REFUGE:
-              if (agentEntity instanceof Human)
-                if (((Human) agentEntity).getPosition(world) == next) {
-                  addRefugeProperties((Refuge) next, result);
-                }
-              addBuildingProperties((Building) next, result);
-              break;
-            case BUILDING:
-            case GAS_STATION:
-            case FIRE_STATION:
-            case AMBULANCE_CENTRE:
-            case POLICE_OFFICE:
-              addBuildingProperties((Building) next, result);
-              break;
-            case CIVILIAN:
-            case FIRE_BRIGADE:
-            case AMBULANCE_TEAM:
-            case POLICE_FORCE:
-              // Always send all properties of the agent-controlled object
-              if (next == agentEntity) {
-                addSelfProperties((Human) next, result);
-              } else {
-                addHumanProperties((Human) next, result);
+    StandardEntity agentEntity = (StandardEntity) agent.getControlledEntity();
+    ChangeSet result = new ChangeSet();
+    // Look for roads/nodes/buildings/humans within range
+    Pair<Integer, Integer> location = agentEntity.getLocation(world);
+    if (location != null) {
+      int x = location.first().intValue();
+      int y = location.second().intValue();
+      Collection<StandardEntity> nearby = world.getObjectsInRange(x, y, viewDistance);
+      // Copy entities and set property values
+      for (StandardEntity next : nearby) {
+        StandardEntityURN urn = next.getStandardURN();
+        switch (urn) {
+          case ROAD:
+          case HYDRANT:
+            addRoadProperties((Road) next, result);
+            break;
+
+          case REFUGE:
+            if (agentEntity instanceof Human)
+              if (((Human) agentEntity).getPosition(world) == next) {
+                addRefugeProperties((Refuge) next, result);
               }
-              break;
-            case DRONE:
+            addBuildingProperties((Building) next, result);
+            break;
+          case BUILDING:
+          case GAS_STATION:
+          case FIRE_STATION:
+          case AMBULANCE_CENTRE:
+          case POLICE_OFFICE:
+            addBuildingProperties((Building) next, result);
+            break;
+          case CIVILIAN:
+          case FIRE_BRIGADE:
+          case AMBULANCE_TEAM:
+          case POLICE_FORCE:
+            // Always send all properties of the agent-controlled object
+            if (next == agentEntity) {
+              addSelfProperties((Human) next, result);
+            } else {
+              addHumanProperties((Human) next, result);
+            }
+            break;
+          case DRONE:
 //              if (next == agentEntity) {
 //                addSelfRProperties((Drone) next, result);
 //              } else {
 //                addRobotProperties((Drone) next, result);
 //              }
-            case RESCUE_ROBOT:
-              if (next == agentEntity) {
-                addSelfProperties((Human) next, result);
-              } else {
-                addHumanProperties((Human) next, result);
-              }
-              break;
-            case BLOCKADE:
-              addBlockadeProperties((Blockade) next, result);
-              break;
-            default:
-              // Ignore other types
-              break;
-          }
-        }
-        // Now look for far fires
-        if (useFarFires) {
-          for (Map.Entry<Building, Integer> next : ignitionTimes.entrySet()) {
-            Building b = next.getKey();
-            int ignitionTime = next.getValue();
-            int timeDelta = time - ignitionTime;
-            int visibleRange = timeDelta * farFireDistance;
-            int range = world.getDistance(agentEntity, b);
-            if (range <= visibleRange) {
-              addFarBuildingProperties(b, result);
+          case RESCUE_ROBOT:
+            if (next == agentEntity) {
+              addSelfProperties((Human) next, result);
+            } else {
+              addHumanProperties((Human) next, result);
             }
+            break;
+          case BLOCKADE:
+            addBlockadeProperties((Blockade) next, result);
+            break;
+          default:
+            // Ignore other types
+            break;
+        }
+      }
+      // Now look for far fires
+      if (useFarFires) {
+        for (Map.Entry<Building, Integer> next : ignitionTimes.entrySet()) {
+          Building b = next.getKey();
+          int ignitionTime = next.getValue();
+          int timeDelta = time - ignitionTime;
+          int visibleRange = timeDelta * farFireDistance;
+          int range = world.getDistance(agentEntity, b);
+          if (range <= visibleRange) {
+            addFarBuildingProperties(b, result);
           }
         }
+      }
 
-        if (agentEntity instanceof AmbulanceCentre) {
-          Collection<StandardEntity> refuges = world.getEntitiesOfType(StandardEntityURN.REFUGE);
-          for (StandardEntity next : refuges) {
-            addRefugeProperties((Refuge) next, result);
-          }
+      if (agentEntity instanceof AmbulanceCentre) {
+        Collection<StandardEntity> refuges = world.getEntitiesOfType(StandardEntityURN.REFUGE);
+        for (StandardEntity next : refuges) {
+          addRefugeProperties((Refuge) next, result);
         }
       }
-      return result;
     }
+    return result;
   }
 
   private void addRoadProperties(Road road, ChangeSet result) {
@@ -352,33 +353,25 @@ public class StandardPerception implements Perception, GUIComponent {
   }
 
   private void updateViewDistance(int value) {
-    synchronized (lock) {
-      viewDistance = value;
-    }
+    viewDistance = value;
   }
 
   private void updateHPPrecision(int value) {
-    synchronized (lock) {
-      if (value == 0) {
-        value = 1;
-      }
-      hpPrecision = value;
+    if (value == 0) {
+      value = 1;
     }
+    hpPrecision = value;
   }
 
   private void updateDamagePrecision(int value) {
-    synchronized (lock) {
-      if (value == 0) {
-        value = 1;
-      }
-      damagePrecision = value;
+    if (value == 0) {
+      value = 1;
     }
+    damagePrecision = value;
   }
 
   private void updateUseFarFires(boolean value) {
-    synchronized (lock) {
-      useFarFires = value;
-    }
+    useFarFires = value;
   }
 
   private void checkForScript() {
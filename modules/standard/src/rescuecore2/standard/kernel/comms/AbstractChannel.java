@@ -1,6 +1,7 @@
 package rescuecore2.standard.kernel.comms;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.HashSet;
 import java.util.ArrayList;
@@ -74,8 +75,11 @@ public abstract class AbstractChannel implements Channel {
 
     @Override
     public Collection<AKSpeak> getMessagesForAgent(Entity agent) {
-        Collection<AKSpeak> c = messagesForAgents.get(agent);
-        return new ArrayList<AKSpeak>(c);
+        // Look up without the LazyMap so that agents with no messages do not get an entry
+        if (!messagesForAgents.containsKey(agent)) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableCollection(messagesForAgents.get(agent));
     }
 
     @Override
@@ -1,10 +1,15 @@
 package rescuecore2.standard.kernel.comms;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import rescuecore2.config.Config;
 import rescuecore2.worldmodel.Entity;
 import rescuecore2.worldmodel.EntityID;
+import rescuecore2.misc.Pair;
 import rescuecore2.misc.collections.LazyMap;
 import rescuecore2.log.Logger;
 
@@ -15,7 +20,7 @@ import rescuecore2.standard.entities.StandardEntityURN;
 import rescuecore2.standard.entities.Human;
 
 /**
-   A voice channel.
+   A voice channel. Listeners are sorted into a grid of cells one voice range wide the first time someone speaks in a timestep, so each message only needs to be checked against the listeners in the cells around the speaker.
 */
 public class VoiceChannel extends AbstractChannel {
     // Config option suffixes
@@ -28,6 +33,8 @@ public class VoiceChannel extends AbstractChannel {
     private int maxMessages;
     private Map<EntityID, Integer> uttered;
     private StandardWorldModel world;
+    private Map<Long, List<Listener>> grid;
+    private List<Listener> unlocated;
 
     /**
        Create a VoiceChannel.
@@ -53,6 +60,9 @@ public class VoiceChannel extends AbstractChannel {
     public void timestep() {
         super.timestep();
         uttered.clear();
+        // Agents move between timesteps
+        grid = null;
+        unlocated = null;
     }
 
     @Override
@@ -76,16 +86,94 @@ public class VoiceChannel extends AbstractChannel {
         uttered.put(agentID, count + 1);
         // Find out who can hear it
         StandardEntity sender = world.getEntity(agentID);
-        for (StandardEntity target : world.getEntitiesOfType(StandardEntityURN.FIRE_BRIGADE, StandardEntityURN.AMBULANCE_TEAM, StandardEntityURN.POLICE_FORCE, StandardEntityURN.CIVILIAN)) {
-            if (world.getDistance(sender, target) <= range) {
-                Logger.debug(target + " can hear voice message from " + sender);
-                addMessageForAgent(target, speak);
+        if (grid == null) {
+            buildGrid();
+        }
+        Pair<Integer, Integer> location = sender.getLocation(world);
+        if (location == null) {
+            // The distance to a speaker with no location is -1, which is always in range
+            for (List<Listener> cell : grid.values()) {
+                for (Listener next : cell) {
+                    hear(next.entity, sender, speak);
+                }
+            }
+        }
+        else {
+            int x = location.first();
+            int y = location.second();
+            long cellX = cell(x);
+            long cellY = cell(y);
+            for (long i = cellX - 1; i <= cellX + 1; ++i) {
+                for (long j = cellY - 1; j <= cellY + 1; ++j) {
+                    List<Listener> cell = grid.get(key(i, j));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (Listener next : cell) {
+                        // Same rounding as StandardWorldModel.getDistance
+                        if ((int)Math.hypot(next.x - x, next.y - y) <= range) {
+                            hear(next.entity, sender, speak);
+                        }
+                    }
+                }
             }
         }
+        // Listeners with no location are always in range
+        for (Listener next : unlocated) {
+            hear(next.entity, sender, speak);
+        }
     }
 
     @Override
     public String toString() {
         return "Voice channel " + channelID + " (range = " + range + ", max " + maxMessages + " messages of size " + maxSize + ")";
     }
+
+    private void hear(StandardEntity target, StandardEntity sender, AKSpeak speak) {
+        Logger.debug(target + " can hear voice message from " + sender);
+        addMessageForAgent(target, speak);
+    }
+
+    private void buildGrid() {
+        grid = new HashMap<Long, List<Listener>>();
+        unlocated = new ArrayList<Listener>();
+        Collection<StandardEntity> listeners = world.getEntitiesOfType(StandardEntityURN.FIRE_BRIGADE, StandardEntityURN.AMBULANCE_TEAM, StandardEntityURN.POLICE_FORCE, StandardEntityURN.CIVILIAN);
+        for (StandardEntity next : listeners) {
+            Pair<Integer, Integer> location = next.getLocation(world);
+            if (location == null) {
+                unlocated.add(new Listener(next, 0, 0));
+                continue;
+            }
+            int x = location.first();
+            int y = location.second();
+            long key = key(cell(x), cell(y));
+            List<Listener> cell = grid.get(key);
+            if (cell == null) {
+                cell = new ArrayList<Listener>();
+                grid.put(key, cell);
+            }
+            cell.add(new Listener(next, x, y));
+        }
+    }
+
+    private long cell(int coordinate) {
+        // Distances are rounded down so anything up to range + 1 away can be heard
+        return Math.floorDiv(coordinate, Math.max(range, 0) + 1L);
+    }
+
+    private static long key(long cellX, long cellY) {
+        return (cellX << 32) ^ (cellY & 0xFFFFFFFFL);
+    }
+
+    private static final class Listener {
+        private final StandardEntity entity;
+        private final int x;
+        private final int y;
+
+        Listener(StandardEntity entity, int x, int y) {
+            this.entity = entity;
+            this.x = x;
+            this.y = y;
+        }
+    }
 }
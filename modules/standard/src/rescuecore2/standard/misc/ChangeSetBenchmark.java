@@ -0,0 +1,285 @@
+package rescuecore2.standard.misc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import rescuecore2.messages.protobuf.RCRSProto.ChangeSetProto;
+import rescuecore2.registry.Registry;
+import rescuecore2.standard.entities.StandardEntityURN;
+import rescuecore2.standard.entities.StandardPropertyFactory;
+import rescuecore2.standard.entities.StandardPropertyURN;
+import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.worldmodel.CompactChangeSet;
+import rescuecore2.worldmodel.EntityID;
+import rescuecore2.worldmodel.Property;
+import rescuecore2.worldmodel.properties.EntityRefListProperty;
+import rescuecore2.worldmodel.properties.EntityRefProperty;
+import rescuecore2.worldmodel.properties.IntArrayProperty;
+import rescuecore2.worldmodel.properties.IntProperty;
+
+/**
+   Timing test comparing ChangeSet with CompactChangeSet. For each update size this builds a timestep's worth of changes to civilians, roads and buildings and measures building a set, merging the updates of several simulators, reading every value and a protobuf round trip. Each case is run for some warmup rounds before the measured rounds.
+*/
+public final class ChangeSetBenchmark {
+    private static final int[] DEFAULT_SIZES = {1000, 10000, 50000};
+    private static final int DEFAULT_WARMUP = 10;
+    private static final int DEFAULT_ROUNDS = 20;
+    private static final int SIMULATORS = 4;
+    private static final int WORLD_SIZE = 2000000;
+    private static final long SEED = 42;
+
+    // Keeps results alive so the JIT cannot drop the work
+    private static long sink;
+
+    private ChangeSetBenchmark() {}
+
+    /**
+       Run the timing test.
+       @param args Command line arguments: [-w warmup rounds] [-r rounds] [sizes...]
+    */
+    public static void main(String[] args) {
+        int warmup = DEFAULT_WARMUP;
+        int rounds = DEFAULT_ROUNDS;
+        List<Integer> sizes = new ArrayList<Integer>();
+        // CHECKSTYLE:OFF:ModifiedControlVariable
+        for (int i = 0; i < args.length; ++i) {
+            if ("-w".equalsIgnoreCase(args[i])) {
+                warmup = Integer.parseInt(args[++i]);
+            }
+            else if ("-r".equalsIgnoreCase(args[i])) {
+                rounds = Integer.parseInt(args[++i]);
+            }
+            else {
+                sizes.add(Integer.parseInt(args[i]));
+            }
+        }
+        // CHECKSTYLE:ON:ModifiedControlVariable
+        if (sizes.isEmpty()) {
+            for (int next : DEFAULT_SIZES) {
+                sizes.add(next);
+            }
+        }
+        Registry registry = new Registry();
+        registry.registerFactory(StandardPropertyFactory.INSTANCE);
+        Registry.setCurrentRegistry(registry);
+        for (int size : sizes) {
+            run(size, warmup, rounds);
+        }
+        if (sink == 0) {
+            System.out.println();
+        }
+    }
+
+    private static void run(int size, int warmup, int rounds) {
+        List<Change> changes = makeChanges(size, new Random(SEED));
+        final List<List<Change>> parts = new ArrayList<List<Change>>();
+        for (int i = 0; i < SIMULATORS; ++i) {
+            parts.add(new ArrayList<Change>());
+        }
+        for (int i = 0; i < changes.size(); ++i) {
+            parts.get(i % SIMULATORS).add(changes.get(i));
+        }
+        final List<Change> all = changes;
+        final ChangeSet built = buildChangeSet(all);
+        final CompactChangeSet compactBuilt = buildCompact(all);
+        final List<ChangeSet> updates = new ArrayList<ChangeSet>();
+        final List<CompactChangeSet> compactUpdates = new ArrayList<CompactChangeSet>();
+        for (List<Change> next : parts) {
+            updates.add(buildChangeSet(next));
+            compactUpdates.add(buildCompact(next));
+        }
+        final ChangeSetProto proto = built.toChangeSetProto();
+
+        System.out.println(size + " entities, " + changes.size() + " property changes:");
+        report("build", warmup, rounds, new Case() {
+                @Override
+                public long run() {
+                    return buildChangeSet(all).getChangedEntities().size();
+                }
+            }, new Case() {
+                @Override
+                public long run() {
+                    return buildCompact(all).getEntityCount();
+                }
+            });
+        report("merge", warmup, rounds, new Case() {
+                @Override
+                public long run() {
+                    ChangeSet result = new ChangeSet();
+                    for (ChangeSet next : updates) {
+                        result.merge(next);
+                    }
+                    return result.getChangedEntities().size();
+                }
+            }, new Case() {
+                @Override
+                public long run() {
+                    CompactChangeSet result = new CompactChangeSet();
+                    for (CompactChangeSet next : compactUpdates) {
+                        result.merge(next);
+                    }
+                    return result.getEntityCount();
+                }
+            });
+        report("iterate", warmup, rounds, new Case() {
+                @Override
+                public long run() {
+                    long total = 0;
+                    for (EntityID id : built.getChangedEntities()) {
+                        for (Property p : built.getChangedProperties(id)) {
+                            if (p instanceof IntProperty ip) {
+                                total += ip.getValue();
+                            }
+                            else if (p instanceof EntityRefProperty rp) {
+                                total += rp.getValue().getValue();
+                            }
+                            else if (p instanceof IntArrayProperty ap) {
+                                for (int next : ap.getValue()) {
+                                    total += next;
+                                }
+                            }
+                            else if (p instanceof EntityRefListProperty lp) {
+                                for (EntityID next : lp.getValue()) {
+                                    total += next.getValue();
+                                }
+                            }
+                        }
+                    }
+                    return total;
+                }
+            }, new Case() {
+                @Override
+                public long run() {
+                    long total = 0;
+                    for (int i = 0; i < compactBuilt.getEntityCount(); ++i) {
+                        for (int c = compactBuilt.getFirstChange(i); c != -1; c = compactBuilt.getNextChange(c)) {
+                            switch (compactBuilt.getKind(c)) {
+                            case INT:
+                            case ENTITY_REF:
+                                total += compactBuilt.getInt(c);
+                                break;
+                            case INT_ARRAY:
+                            case ENTITY_REF_LIST:
+                                for (int j = 0; j < compactBuilt.getArrayLength(c); ++j) {
+                                    total += compactBuilt.getArrayElement(c, j);
+                                }
+                                break;
+                            default:
+                                break;
+                            }
+                        }
+                    }
+                    return total;
+                }
+            });
+        report("protobuf round trip", warmup, rounds, new Case() {
+                @Override
+                public long run() {
+                    ChangeSet result = new ChangeSet();
+                    result.fromChangeSetProto(built.toChangeSetProto());
+                    return result.getChangedEntities().size() + proto.getChangesCount();
+                }
+            }, new Case() {
+                @Override
+                public long run() {
+                    CompactChangeSet result = new CompactChangeSet();
+                    result.fromChangeSetProto(compactBuilt.toChangeSetProto());
+                    return result.getEntityCount() + proto.getChangesCount();
+                }
+            });
+    }
+
+    private static void report(String name, int warmup, int rounds, Case changeSet, Case compact) {
+        double oldTime = time(changeSet, warmup, rounds);
+        double newTime = time(compact, warmup, rounds);
+        // CHECKSTYLE:OFF:MagicNumber
+        System.out.println(String.format("  %-20s ChangeSet %8.3fms  CompactChangeSet %8.3fms  (%.1fx)", name + ":", oldTime, newTime, oldTime / newTime));
+        // CHECKSTYLE:ON:MagicNumber
+    }
+
+    private static double time(Case c, int warmup, int rounds) {
+        for (int i = 0; i < warmup; ++i) {
+            sink += c.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; ++i) {
+            sink += c.run();
+        }
+        // CHECKSTYLE:OFF:MagicNumber
+        return (System.nanoTime() - start) / 1000000.0 / rounds;
+        // CHECKSTYLE:ON:MagicNumber
+    }
+
+    private static ChangeSet buildChangeSet(List<Change> changes) {
+        ChangeSet result = new ChangeSet();
+        for (Change next : changes) {
+            result.addChange(next.id, next.urn, next.property);
+        }
+        return result;
+    }
+
+    private static CompactChangeSet buildCompact(List<Change> changes) {
+        CompactChangeSet result = new CompactChangeSet();
+        for (Change next : changes) {
+            result.addChange(next.id, next.urn, next.property);
+        }
+        return result;
+    }
+
+    // A mix of civilians, roads and buildings roughly like a busy timestep
+    private static List<Change> makeChanges(int size, Random random) {
+        List<Change> result = new ArrayList<Change>();
+        int civilian = StandardEntityURN.CIVILIAN.getURNId();
+        int road = StandardEntityURN.ROAD.getURNId();
+        int building = StandardEntityURN.BUILDING.getURNId();
+        for (int i = 0; i < size; ++i) {
+            EntityID id = new EntityID(i + 1);
+            // CHECKSTYLE:OFF:MagicNumber
+            switch (i % 3) {
+            case 0:
+                result.add(new Change(id, civilian, new IntProperty(StandardPropertyURN.X, random.nextInt(WORLD_SIZE))));
+                result.add(new Change(id, civilian, new IntProperty(StandardPropertyURN.Y, random.nextInt(WORLD_SIZE))));
+                result.add(new Change(id, civilian, new IntProperty(StandardPropertyURN.HP, random.nextInt(10000))));
+                result.add(new Change(id, civilian, new IntProperty(StandardPropertyURN.DAMAGE, random.nextInt(100))));
+                result.add(new Change(id, civilian, new EntityRefProperty(StandardPropertyURN.POSITION, new EntityID(random.nextInt(size) + 1))));
+                int[] history = new int[random.nextInt(8) * 2];
+                for (int j = 0; j < history.length; ++j) {
+                    history[j] = random.nextInt(WORLD_SIZE);
+                }
+                result.add(new Change(id, civilian, new IntArrayProperty(StandardPropertyURN.POSITION_HISTORY, history)));
+                break;
+            case 1:
+                List<EntityID> blockades = new ArrayList<EntityID>();
+                for (int j = random.nextInt(4); j > 0; --j) {
+                    blockades.add(new EntityID(size + random.nextInt(size) + 1));
+                }
+                result.add(new Change(id, road, new EntityRefListProperty(StandardPropertyURN.BLOCKADES, blockades)));
+                break;
+            default:
+                result.add(new Change(id, building, new IntProperty(StandardPropertyURN.FIERYNESS, random.nextInt(9))));
+                result.add(new Change(id, building, new IntProperty(StandardPropertyURN.TEMPERATURE, random.nextInt(1000))));
+                result.add(new Change(id, building, new IntProperty(StandardPropertyURN.BROKENNESS, random.nextInt(100))));
+                break;
+            }
+            // CHECKSTYLE:ON:MagicNumber
+        }
+        return result;
+    }
+
+    private interface Case {
+        long run();
+    }
+
+    private static final class Change {
+        private final EntityID id;
+        private final int urn;
+        private final Property property;
+
+        Change(EntityID id, int urn, Property property) {
+            this.id = id;
+            this.urn = urn;
+            this.property = property;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package rescuecore2.standard.misc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import gnu.trove.TIntProcedure;
+
+import rescuecore2.standard.entities.Civilian;
+import rescuecore2.standard.entities.StandardWorldModel;
+import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.worldmodel.EntityID;
+import rescuecore2.worldmodel.properties.IntProperty;
+
+/**
+   Timing test for the spatial index in StandardWorldModel. For each world size this measures the cost of merging a ChangeSet in which every human changes but only a few move, and the cost of range queries through the collection and ID visitor APIs.
+*/
+public final class WorldModelIndexBenchmark {
+    private static final int[] DEFAULT_SIZES = {1000, 10000, 100000};
+    private static final int DEFAULT_ROUNDS = 20;
+    private static final int DEFAULT_QUERIES = 10000;
+    private static final int WORLD_SIZE = 2000000;
+    private static final int QUERY_RANGE = 30000;
+    private static final int MOVE_DISTANCE = 5000;
+    private static final double MOVING_FRACTION = 0.05;
+    private static final long SEED = 42;
+
+    private WorldModelIndexBenchmark() {}
+
+    /**
+       Run the timing test.
+       @param args Command line arguments: [-r rounds] [-q queries] [sizes...]
+    */
+    public static void main(String[] args) {
+        int rounds = DEFAULT_ROUNDS;
+        int queries = DEFAULT_QUERIES;
+        List<Integer> sizes = new ArrayList<Integer>();
+        // CHECKSTYLE:OFF:ModifiedControlVariable
+        for (int i = 0; i < args.length; ++i) {
+            if ("-r".equalsIgnoreCase(args[i])) {
+                rounds = Integer.parseInt(args[++i]);
+            }
+            else if ("-q".equalsIgnoreCase(args[i])) {
+                queries = Integer.parseInt(args[++i]);
+            }
+            else {
+                sizes.add(Integer.parseInt(args[i]));
+            }
+        }
+        // CHECKSTYLE:ON:ModifiedControlVariable
+        if (sizes.isEmpty()) {
+            for (int next : DEFAULT_SIZES) {
+                sizes.add(next);
+            }
+        }
+        for (int size : sizes) {
+            run(size, rounds, queries);
+        }
+    }
+
+    private static void run(int size, int rounds, int queries) {
+        Random random = new Random(SEED);
+        StandardWorldModel world = new StandardWorldModel();
+        List<Civilian> humans = new ArrayList<Civilian>(size);
+        for (int i = 0; i < size; ++i) {
+            Civilian c = new Civilian(new EntityID(i + 1));
+            c.setX(random.nextInt(WORLD_SIZE));
+            c.setY(random.nextInt(WORLD_SIZE));
+            c.setHP(10000);
+            humans.add(c);
+        }
+        world.addEntities(humans);
+        world.index();
+
+        long mergeTime = 0;
+        for (int round = 0; round < rounds; ++round) {
+            ChangeSet changes = new ChangeSet();
+            for (Civilian next : humans) {
+                IntProperty hp = next.getHPProperty().copy();
+                hp.setValue(hp.getValue() - 1);
+                changes.addChange(next, hp);
+                if (random.nextDouble() < MOVING_FRACTION) {
+                    IntProperty x = next.getXProperty().copy();
+                    IntProperty y = next.getYProperty().copy();
+                    x.setValue(clamp(x.getValue() + random.nextInt(MOVE_DISTANCE * 2) - MOVE_DISTANCE));
+                    y.setValue(clamp(y.getValue() + random.nextInt(MOVE_DISTANCE * 2) - MOVE_DISTANCE));
+                    changes.addChange(next, x);
+                    changes.addChange(next, y);
+                }
+            }
+            long start = System.nanoTime();
+            world.merge(changes);
+            mergeTime += System.nanoTime() - start;
+        }
+
+        int[] centres = new int[queries * 2];
+        for (int i = 0; i < centres.length; ++i) {
+            centres[i] = random.nextInt(WORLD_SIZE);
+        }
+        long found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; ++i) {
+            found += world.getObjectsInRange(centres[i * 2], centres[i * 2 + 1], QUERY_RANGE).size();
+        }
+        long collectionTime = System.nanoTime() - start;
+        final long[] visited = new long[1];
+        TIntProcedure counter = new TIntProcedure() {
+                @Override
+                public boolean execute(int id) {
+                    ++visited[0];
+                    return true;
+                }
+            };
+        start = System.nanoTime();
+        for (int i = 0; i < queries; ++i) {
+            world.getObjectIDsInRange(centres[i * 2], centres[i * 2 + 1], QUERY_RANGE, counter);
+        }
+        long visitorTime = System.nanoTime() - start;
+
+        System.out.println(size + " humans:");
+        System.out.println("  merge:              " + average(mergeTime, rounds) + "ms per ChangeSet");
+        System.out.println("  getObjectsInRange:  " + average(collectionTime, queries) + "ms per query (" + found + " results)");
+        System.out.println("  getObjectIDsInRange: " + average(visitorTime, queries) + "ms per query (" + visited[0] + " results)");
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(WORLD_SIZE, value));
+    }
+
+    private static double average(long nanos, int count) {
+        // CHECKSTYLE:OFF:MagicNumber
+        return nanos / 1000000.0 / count;
+        // CHECKSTYLE:ON:MagicNumber
+    }
+}
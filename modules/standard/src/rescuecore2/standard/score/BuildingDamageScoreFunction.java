@@ -1,10 +1,9 @@
 package rescuecore2.standard.score;
 
-import rescuecore2.score.AbstractScoreFunction;
+import rescuecore2.score.IncrementalScoreFunction;
 import rescuecore2.config.Config;
 import rescuecore2.worldmodel.WorldModel;
 import rescuecore2.worldmodel.Entity;
-import rescuecore2.Timestep;
 
 import java.util.Map;
 import java.util.EnumMap;
@@ -15,7 +14,7 @@ import rescuecore2.standard.entities.StandardEntityConstants;
 /**
    Score function that measures the amount of damage done to buildings by fire.
  */
-public class BuildingDamageScoreFunction extends AbstractScoreFunction {
+public class BuildingDamageScoreFunction extends IncrementalScoreFunction {
     private static final String HEATING_FACTOR = "score.standard.building-fire.heating";
     private static final String BURNING_FACTOR = "score.standard.building-fire.burning";
     private static final String INFERNO_FACTOR = "score.standard.building-fire.inferno";
@@ -33,11 +32,12 @@ public class BuildingDamageScoreFunction extends AbstractScoreFunction {
        Construct a BuildingDamageScoreFunction.
     */
     public BuildingDamageScoreFunction() {
-        super("Building damage");
+        super("Building damage", 2);
     }
 
     @Override
     public void initialise(WorldModel<? extends Entity> world, Config config) {
+        super.initialise(world, config);
         factors = new EnumMap<StandardEntityConstants.Fieryness, Double>(StandardEntityConstants.Fieryness.class);
         factors.put(StandardEntityConstants.Fieryness.UNBURNT, 1.0);
         factors.put(StandardEntityConstants.Fieryness.HEATING, config.getFloatValue(HEATING_FACTOR));
@@ -52,34 +52,36 @@ public class BuildingDamageScoreFunction extends AbstractScoreFunction {
     }
 
     @Override
-    public double score(WorldModel<? extends Entity> world, Timestep timestep) {
-        double sum = 0;
-        double max = 0;
-        for (Entity next : world) {
-            if (next instanceof Building) {
-                Building b = (Building)next;
-                if (!b.isTotalAreaDefined()) {
-                    continue;
-                }
-                int importance = b.isImportanceDefined() ? b.getImportance() : 1;
-                double area = b.getTotalArea() * importance;
-                StandardEntityConstants.Fieryness fire = b.getFierynessEnum();
-                double factor;
-                if (fire == null) {
-                    factor = 1;
-                }
-                else {
-                    factor = factors.get(fire);
-                }
-                sum += area * factor;
-                max += area;
-            }
+    protected boolean contribute(Entity e, double[] result) {
+        if (!(e instanceof Building)) {
+            return false;
         }
+        Building b = (Building)e;
+        if (!b.isTotalAreaDefined()) {
+            return false;
+        }
+        int importance = b.isImportanceDefined() ? b.getImportance() : 1;
+        double area = b.getTotalArea() * importance;
+        StandardEntityConstants.Fieryness fire = b.getFierynessEnum();
+        double factor;
+        if (fire == null) {
+            factor = 1;
+        }
+        else {
+            factor = factors.get(fire);
+        }
+        result[0] = area * factor;
+        result[1] = area;
+        return true;
+    }
+
+    @Override
+    protected double score(double[] sum) {
         if (absolute) {
-            return sum;
+            return sum[0];
         }
         else {
-            return sum / max;
+            return sum[0] / sum[1];
         }
     }
 }
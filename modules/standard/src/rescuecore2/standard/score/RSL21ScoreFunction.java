@@ -3,6 +3,7 @@ package rescuecore2.standard.score;
 import rescuecore2.Timestep;
 import rescuecore2.config.Config;
 import rescuecore2.score.CompositeScoreFunction;
+import rescuecore2.score.IncrementalScoreFunction;
 import rescuecore2.standard.entities.Civilian;
 import rescuecore2.worldmodel.Entity;
 import rescuecore2.worldmodel.WorldModel;
@@ -11,33 +12,52 @@ public class RSL21ScoreFunction extends CompositeScoreFunction {
 
   private static final double MAX = 10000;
 
+  private final Totals totals;
+
   public RSL21ScoreFunction() {
     super("RSL21 Score");
+    totals = new Totals();
   }
 
 
   @Override
-  public void initialise(WorldModel<? extends Entity> world, Config config) {}
+  public void initialise(WorldModel<? extends Entity> world, Config config) {
+    totals.initialise(world, config);
+  }
 
 
   @Override
   public double score(WorldModel<? extends Entity> world, Timestep timestep) {
-    double civilians = 0;
-    double hp = 0;
-    double max = 0;
-    for (Entity next : world) {
-      if (next instanceof Civilian) {
-        Civilian c = (Civilian) next;
-        if (c.isHPDefined()) {
-          hp += c.getHP();
-          if (c.getHP() > 0) {
-            ++civilians;
-          }
-        }
-        max += MAX;
+    return totals.score(world, timestep);
+  }
+
+
+  /**
+   * Keeps the civilian totals up to date from each timestep's changes.
+   */
+  private static class Totals extends IncrementalScoreFunction {
+
+    Totals() {
+      super("RSL21 Score", 3);
+    }
+
+
+    @Override
+    protected boolean contribute(Entity e, double[] result) {
+      if (!(e instanceof Civilian)) {
+        return false;
       }
+      Civilian c = (Civilian) e;
+      result[0] = c.isHPDefined() && c.getHP() > 0 ? 1 : 0;
+      result[1] = c.isHPDefined() ? c.getHP() : 0;
+      result[2] = MAX;
+      return true;
     }
 
-    return civilians * Math.exp(-5 * (1 - (hp / max)));
+
+    @Override
+    protected double score(double[] sum) {
+      return sum[0] * Math.exp(-5 * (1 - (sum[1] / sum[2])));
+    }
   }
-}
\ No newline at end of file
+}
@@ -35,6 +35,19 @@ public class AreaIconLayer extends StandardEntityViewLayer<Area> {
         return "Area icons";
     }
 
+    @Override
+    public boolean isStatic() {
+        return true;
+    }
+
+    @Override
+    protected long signature(Area area) {
+        long result = super.signature(area);
+        result = result * 31 + area.getStandardURN().ordinal();
+        result = result * 31 + area.getX();
+        return result * 31 + area.getY();
+    }
+
     @Override
     public Shape render(Area b, Graphics2D g, ScreenTransform t) {
         ImageIcon icon = null;
@@ -4,6 +4,7 @@ import java.awt.Graphics2D;
 import java.awt.Shape;
 import java.awt.Polygon;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Iterator;
 
@@ -49,6 +50,11 @@ public abstract class AreaLayer<E extends Area> extends StandardEntityViewLayer<
         return shape;
     }
 
+    @Override
+    protected long signature(E area) {
+        return super.signature(area) * 31 + Arrays.hashCode(area.getApexList());
+    }
+
     /**
        Paint an individual edge.
        @param e The edge to paint.
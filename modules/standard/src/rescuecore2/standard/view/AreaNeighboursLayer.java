@@ -33,6 +33,23 @@ public class AreaNeighboursLayer extends StandardEntityViewLayer<Area> {
         return "Neighbours";
     }
 
+    @Override
+    public boolean isStatic() {
+        return true;
+    }
+
+    @Override
+    protected long signature(Area area) {
+        long result = super.signature(area);
+        result = result * 31 + area.getX();
+        result = result * 31 + area.getY();
+        for (Edge edge : area.getEdges()) {
+            EntityID neighbour = edge.getNeighbour();
+            result = result * 31 + (neighbour == null ? 0 : neighbour.getValue());
+        }
+        return result;
+    }
+
     @Override
     public Shape render(Area area, Graphics2D g, ScreenTransform t) {
         g.setColor(NEIGHBOUR_COLOUR);
@@ -42,6 +42,20 @@ public class BuildingLayer extends AreaLayer<Building> {
         return "Building shapes";
     }
 
+    @Override
+    public boolean isStatic() {
+        // Buildings are only drawn again when a fire or collapse changes one of them
+        return true;
+    }
+
+    @Override
+    protected long signature(Building b) {
+        long result = super.signature(b);
+        result = result * 31 + (b.isFierynessDefined() ? b.getFieryness() : -1);
+        result = result * 31 + (b.isBrokennessDefined() ? b.getBrokenness() : -1);
+        return result;
+    }
+
     @Override
     protected void paintEdge(Edge e, Graphics2D g, ScreenTransform t) {
         g.setColor(OUTLINE_COLOUR);
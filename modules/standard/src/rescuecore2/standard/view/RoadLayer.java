@@ -32,6 +32,11 @@ public class RoadLayer extends AreaLayer<Road> {
         return "Roads";
     }
 
+    @Override
+    public boolean isStatic() {
+        return true;
+    }
+
     @Override
     protected void paintShape(Road r, Polygon shape, Graphics2D g) {
         g.setColor(ROAD_SHAPE_COLOUR);
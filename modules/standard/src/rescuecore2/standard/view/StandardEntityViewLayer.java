@@ -26,6 +26,7 @@ public abstract class StandardEntityViewLayer<T extends StandardEntity> extends
     protected List<T> entities;
 
     private Class<T> clazz;
+    private volatile long signature;
 
     /**
        Construct a new StandardViewLayer.
@@ -43,6 +44,14 @@ public abstract class StandardEntityViewLayer<T extends StandardEntity> extends
             preView();
             Rectangle2D result = super.view(objects);
             postView();
+            if (isStatic()) {
+                // Summed so that the order the entities are seen in does not matter
+                long sum = entities.size();
+                for (T next : entities) {
+                    sum += mix(signature(next));
+                }
+                signature = sum;
+            }
             return result;
         }
     }
@@ -81,6 +90,20 @@ public abstract class StandardEntityViewLayer<T extends StandardEntity> extends
      */
     public abstract Shape render(T entity, Graphics2D graphics, ScreenTransform transform);
 
+    @Override
+    public long getStaticSignature() {
+        return signature;
+    }
+
+    /**
+       Compute a hash of everything about an entity that changes how a static layer draws it. The default implementation uses the entity ID.
+       @param entity The entity.
+       @return A hash of the drawn state of the entity.
+    */
+    protected long signature(T entity) {
+        return entity.getID().getValue();
+    }
+
     /**
        Perform any pre-processing required before {@link #view} has been called.
     */
@@ -92,4 +115,11 @@ public abstract class StandardEntityViewLayer<T extends StandardEntity> extends
     */
     protected void postView() {
     }
+
+    private static long mix(long h) {
+        // CHECKSTYLE:OFF:MagicNumber
+        long result = h * 0x9E3779B97F4A7C15L;
+        return result ^ (result >>> 29);
+        // CHECKSTYLE:ON:MagicNumber
+    }
 }
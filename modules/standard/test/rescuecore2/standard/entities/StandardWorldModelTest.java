@@ -0,0 +1,190 @@
+package rescuecore2.standard.entities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.EntityID;
+import rescuecore2.worldmodel.EntityListener;
+import rescuecore2.worldmodel.Property;
+import rescuecore2.worldmodel.WorldModel;
+import rescuecore2.worldmodel.WorldModelListener;
+import rescuecore2.worldmodel.properties.IntProperty;
+
+public class StandardWorldModelTest {
+
+  private static final int RANGE = 10;
+
+
+  @Test
+  public void testMovedHumanIsReindexed() {
+    StandardWorldModel world = new StandardWorldModel();
+    AmbulanceTeam ambulance = new AmbulanceTeam(new EntityID(1));
+    ambulance.setX(1000);
+    ambulance.setY(1000);
+    world.addEntity(ambulance);
+    world.index();
+
+    world.merge(move(ambulance, 5000, 6000));
+
+    assertTrue(world.getObjectsInRange(5000, 6000, RANGE).contains(ambulance));
+    assertFalse(world.getObjectsInRange(1000, 1000, RANGE).contains(ambulance));
+  }
+
+
+  @Test
+  public void testLoadedCivilianMovesWithAmbulance() {
+    StandardWorldModel world = new StandardWorldModel();
+    AmbulanceTeam ambulance = new AmbulanceTeam(new EntityID(1));
+    ambulance.setX(1000);
+    ambulance.setY(1000);
+    Civilian civilian = new Civilian(new EntityID(2));
+    civilian.setPosition(ambulance.getID());
+    world.addEntity(ambulance);
+    world.addEntity(civilian);
+    world.index();
+    assertTrue(world.getObjectsInRange(1000, 1000, RANGE).contains(civilian));
+
+    // Only the ambulance's location is in the change set
+    world.merge(move(ambulance, 5000, 6000));
+
+    assertTrue(world.getObjectsInRange(5000, 6000, RANGE).contains(civilian));
+    assertFalse(world.getObjectsInRange(1000, 1000, RANGE).contains(civilian));
+    assertTrue(world.getObjectsInRectangle(4990, 5990, 5010, 6010).contains(civilian));
+  }
+
+
+  @Test
+  public void testNestedCarriedEntitiesMove() {
+    StandardWorldModel world = new StandardWorldModel();
+    AmbulanceTeam outer = new AmbulanceTeam(new EntityID(1));
+    outer.setX(1000);
+    outer.setY(1000);
+    // Carried by the outer ambulance, with no location of its own
+    AmbulanceTeam inner = new AmbulanceTeam(new EntityID(2));
+    inner.setPosition(outer.getID());
+    Civilian civilian = new Civilian(new EntityID(3));
+    civilian.setPosition(inner.getID());
+    AmbulanceTeam other = new AmbulanceTeam(new EntityID(4));
+    other.setX(1000);
+    other.setY(1000);
+    Civilian waiting = new Civilian(new EntityID(5));
+    waiting.setPosition(other.getID());
+    // Added in an order where the civilian comes before its carrier
+    world.addEntity(civilian);
+    world.addEntity(waiting);
+    world.addEntity(inner);
+    world.addEntity(outer);
+    world.addEntity(other);
+    world.index();
+
+    world.merge(move(outer, 5000, 6000));
+
+    Collection<StandardEntity> moved = world.getObjectsInRange(5000, 6000, RANGE);
+    assertTrue(moved.contains(inner));
+    assertTrue(moved.contains(civilian));
+    assertFalse(moved.contains(waiting));
+    Collection<StandardEntity> stayed = world.getObjectsInRange(1000, 1000, RANGE);
+    assertFalse(stayed.contains(civilian));
+    assertTrue(stayed.contains(waiting));
+  }
+
+
+  @Test
+  public void testListenerFailureEndsAllBatches() {
+    StandardWorldModel world = new StandardWorldModel();
+    final AmbulanceTeam bad = new AmbulanceTeam(new EntityID(1));
+    AmbulanceTeam good = new AmbulanceTeam(new EntityID(2));
+    final List<Entity> events = new ArrayList<Entity>();
+    EntityListener listener = new EntityListener() {
+      @Override
+      public void propertyChanged(Entity e, Property p, Object oldValue, Object newValue) {
+        if (e == bad) {
+          throw new IllegalStateException("Listener failed");
+        }
+        events.add(e);
+      }
+    };
+    bad.addEntityListener(listener);
+    good.addEntityListener(listener);
+    world.addEntity(bad);
+    world.addEntity(good);
+
+    ChangeSet changes = move(bad, 10, 10);
+    changes.merge(move(good, 20, 20));
+    try {
+      world.merge(changes);
+      fail("Expected the listener to fail");
+    } catch (IllegalStateException e) {
+      // Expected
+    }
+    // The other entity's batch still ended
+    assertEquals(2, events.size());
+
+    // Neither entity holds back later events
+    good.setX(30);
+    assertEquals(3, events.size());
+    try {
+      bad.setX(40);
+      fail("Expected the listener to fail");
+    } catch (IllegalStateException e) {
+      // Expected
+    }
+  }
+
+
+  @Test
+  public void testPropertyEventsComeBeforeDeletions() {
+    final StandardWorldModel world = new StandardWorldModel();
+    AmbulanceTeam kept = new AmbulanceTeam(new EntityID(1));
+    AmbulanceTeam deleted = new AmbulanceTeam(new EntityID(2));
+    final List<String> events = new ArrayList<String>();
+    EntityListener listener = new EntityListener() {
+      @Override
+      public void propertyChanged(Entity e, Property p, Object oldValue, Object newValue) {
+        assertTrue(world.getEntity(e.getID()) != null, e + " is not in the world");
+        events.add("changed " + e.getID());
+      }
+    };
+    kept.addEntityListener(listener);
+    deleted.addEntityListener(listener);
+    world.addEntity(kept);
+    world.addEntity(deleted);
+    world.addWorldModelListener(new WorldModelListener<StandardEntity>() {
+      @Override
+      public void entityAdded(WorldModel<? extends StandardEntity> model, StandardEntity e) {
+      }
+
+
+      @Override
+      public void entityRemoved(WorldModel<? extends StandardEntity> model, StandardEntity e) {
+        events.add("removed " + e.getID());
+      }
+    });
+
+    ChangeSet changes = move(kept, 10, 10);
+    changes.merge(move(deleted, 20, 20));
+    changes.entityDeleted(deleted.getID());
+    world.merge(changes);
+
+    assertEquals(3, events.size());
+    assertEquals("changed 1", events.get(0));
+    assertEquals("changed 1", events.get(1));
+    assertEquals("removed 2", events.get(2));
+  }
+
+
+  private ChangeSet move(Human human, int x, int y) {
+    ChangeSet result = new ChangeSet();
+    result.addChange(human, new IntProperty(StandardPropertyURN.X, x));
+    result.addChange(human, new IntProperty(StandardPropertyURN.Y, y));
+    return result;
+  }
+}
@@ -0,0 +1,332 @@
+package rescuecore2.standard.kernel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import rescuecore2.config.Config;
+import rescuecore2.misc.Pair;
+import rescuecore2.misc.geometry.GeometryTools2D;
+import rescuecore2.misc.geometry.Line2D;
+import rescuecore2.misc.geometry.Point2D;
+import rescuecore2.misc.geometry.Vector2D;
+import rescuecore2.standard.entities.AmbulanceTeam;
+import rescuecore2.standard.entities.Blockade;
+import rescuecore2.standard.entities.Building;
+import rescuecore2.standard.entities.Civilian;
+import rescuecore2.standard.entities.Edge;
+import rescuecore2.standard.entities.FireBrigade;
+import rescuecore2.standard.entities.Human;
+import rescuecore2.standard.entities.Road;
+import rescuecore2.standard.entities.StandardEntity;
+import rescuecore2.standard.entities.StandardWorldModel;
+import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.EntityID;
+
+public class LineOfSightPerceptionTest {
+
+  private static final int CELLS = 15;
+  private static final int CELL_SIZE = 10000;
+  private static final int RAY_COUNT = 720;
+  private static final int AGENTS = 25;
+
+
+  @Test
+  public void testMatchesSortedCasting() {
+    Random random = new Random(3);
+    StandardWorldModel world = new StandardWorldModel();
+    List<Human> agents = buildMap(world, random);
+    world.index();
+
+    int[] viewDistances = {30000, 70000};
+    int[] gridSizes = {5000, 1700};
+    for (int viewDistance : viewDistances) {
+      for (int gridSize : gridSizes) {
+        Config config = new Config();
+        config.setIntValue("perception.los.max-distance", viewDistance);
+        config.setIntValue("perception.los.ray-count", RAY_COUNT);
+        config.setIntValue("perception.los.grid-size", gridSize);
+        LineOfSightPerception perception = new LineOfSightPerception();
+        perception.initialise(config, world);
+        perception.setTime(1);
+        SortedCasting expected = new SortedCasting(world, viewDistance);
+        for (Human agent : agents) {
+          Pair<Integer, Integer> location = agent.getLocation(world);
+          Point2D point = new Point2D(location.first(), location.second());
+          Collection<StandardEntity> nearby = world.getObjectsInRange(location.first(), location.second(), viewDistance);
+          Set<StandardEntity> visible = new HashSet<StandardEntity>(perception.findVisible(agent, point, nearby));
+          assertEquals(expected.findVisible(agent, point, nearby), visible,
+              agent + " with view distance " + viewDistance + " and grid size " + gridSize);
+          // The agent should see more than just its own area
+          assertTrue(visible.size() > 2);
+        }
+      }
+    }
+  }
+
+
+  /**
+   * Build a grid of streets with blocks of buildings in between. Some buildings
+   * fill their block so their walls lie exactly on a road edge, which gives
+   * lines at the same distance along a ray.
+   */
+  private static List<Human> buildMap(StandardWorldModel world, Random random) {
+    int nextID = 1;
+    EntityID[][] ids = new EntityID[CELLS][CELLS];
+    for (int i = 0; i < CELLS; ++i) {
+      for (int j = 0; j < CELLS; ++j) {
+        ids[i][j] = new EntityID(nextID++);
+      }
+    }
+    List<Road> roads = new ArrayList<Road>();
+    List<Building> buildings = new ArrayList<Building>();
+    for (int i = 0; i < CELLS; ++i) {
+      for (int j = 0; j < CELLS; ++j) {
+        int x1 = i * CELL_SIZE;
+        int y1 = j * CELL_SIZE;
+        int x2 = x1 + CELL_SIZE;
+        int y2 = y1 + CELL_SIZE;
+        if (isRoad(i, j)) {
+          Road road = new Road(ids[i][j]);
+          List<Edge> edges = new ArrayList<Edge>();
+          edges.add(new Edge(x1, y1, x2, y1, roadNeighbour(ids, i, j - 1)));
+          edges.add(new Edge(x2, y1, x2, y2, roadNeighbour(ids, i + 1, j)));
+          edges.add(new Edge(x2, y2, x1, y2, roadNeighbour(ids, i, j + 1)));
+          edges.add(new Edge(x1, y2, x1, y1, roadNeighbour(ids, i - 1, j)));
+          road.setEdges(edges);
+          road.setX((x1 + x2) / 2);
+          road.setY((y1 + y2) / 2);
+          road.setBlockades(new ArrayList<EntityID>());
+          roads.add(road);
+          world.addEntity(road);
+        }
+        else {
+          Building building = new Building(ids[i][j]);
+          int inset = random.nextInt(3) == 0 ? 0 : 500 + random.nextInt(2000);
+          int[] corners = {x1 + inset, y1 + inset, x2 - inset, y1 + inset, x2 - inset, y2 - inset, x1 + inset, y2 - inset};
+          if (inset > 0) {
+            // Move the corners a little so that walls are not all axis aligned
+            for (int k = 0; k < corners.length; ++k) {
+              corners[k] += random.nextInt(401) - 200;
+            }
+          }
+          List<Edge> edges = new ArrayList<Edge>();
+          int door = random.nextInt(5);
+          for (int k = 0; k < 4; ++k) {
+            int next = (k + 1) % 4;
+            EntityID neighbour = k == door ? ids[i][j] : null;
+            edges.add(new Edge(corners[k * 2], corners[k * 2 + 1], corners[next * 2], corners[next * 2 + 1], neighbour));
+          }
+          building.setEdges(edges);
+          building.setX((x1 + x2) / 2);
+          building.setY((y1 + y2) / 2);
+          buildings.add(building);
+          world.addEntity(building);
+        }
+      }
+    }
+    // Blockades on some of the roads
+    for (Road road : roads) {
+      if (random.nextInt(3) != 0) {
+        continue;
+      }
+      Blockade blockade = new Blockade(new EntityID(nextID++));
+      int cx = road.getX() + random.nextInt(6001) - 3000;
+      int cy = road.getY() + random.nextInt(6001) - 3000;
+      int size = 300 + random.nextInt(1500);
+      int[] apexes = {cx - size, cy - random.nextInt(size), cx + random.nextInt(size), cy - size, cx + size, cy + random.nextInt(size),
+          cx - random.nextInt(size), cy + size};
+      blockade.setApexes(apexes);
+      blockade.setX(cx);
+      blockade.setY(cy);
+      blockade.setPosition(road.getID());
+      blockade.setRepairCost(10);
+      List<EntityID> blockades = new ArrayList<EntityID>(road.getBlockades());
+      blockades.add(blockade.getID());
+      road.setBlockades(blockades);
+      world.addEntity(blockade);
+    }
+    // Civilians on roads and inside buildings
+    for (int k = 0; k < 60; ++k) {
+      Civilian civilian = new Civilian(new EntityID(nextID++));
+      if (k % 2 == 0) {
+        place(civilian, roads.get(random.nextInt(roads.size())), random);
+      }
+      else {
+        Building building = buildings.get(random.nextInt(buildings.size()));
+        civilian.setX(building.getX() + random.nextInt(2001) - 1000);
+        civilian.setY(building.getY() + random.nextInt(2001) - 1000);
+        civilian.setPosition(building.getID());
+      }
+      world.addEntity(civilian);
+    }
+    List<Human> agents = new ArrayList<Human>();
+    // An ambulance carrying a civilian that has no coordinates of its own
+    AmbulanceTeam ambulance = new AmbulanceTeam(new EntityID(nextID++));
+    place(ambulance, roads.get(random.nextInt(roads.size())), random);
+    world.addEntity(ambulance);
+    agents.add(ambulance);
+    Civilian loaded = new Civilian(new EntityID(nextID++));
+    loaded.setPosition(ambulance.getID());
+    world.addEntity(loaded);
+    for (int k = 0; k < AGENTS; ++k) {
+      FireBrigade fire = new FireBrigade(new EntityID(nextID++));
+      place(fire, roads.get(random.nextInt(roads.size())), random);
+      world.addEntity(fire);
+      agents.add(fire);
+    }
+    return agents;
+  }
+
+
+  private static boolean isRoad(int i, int j) {
+    return i % 3 == 0 || j % 3 == 0;
+  }
+
+
+  private static EntityID roadNeighbour(EntityID[][] ids, int i, int j) {
+    if (i < 0 || j < 0 || i >= CELLS || j >= CELLS || !isRoad(i, j)) {
+      return null;
+    }
+    return ids[i][j];
+  }
+
+
+  private static void place(Human human, Road road, Random random) {
+    human.setX(road.getX() + random.nextInt(CELL_SIZE - 1) - CELL_SIZE / 2 + 1);
+    human.setY(road.getY() + random.nextInt(CELL_SIZE - 1) - CELL_SIZE / 2 + 1);
+    human.setPosition(road.getID());
+  }
+
+
+  /**
+   * The casting used before the segment grid: every line of every nearby
+   * entity is tested against each ray and the hits are sorted by distance.
+   */
+  private static class SortedCasting {
+
+    private final StandardWorldModel world;
+    private final int viewDistance;
+
+
+    SortedCasting(StandardWorldModel world, int viewDistance) {
+      this.world = world;
+      this.viewDistance = viewDistance;
+    }
+
+
+    Set<StandardEntity> findVisible(StandardEntity agent, Point2D location, Collection<StandardEntity> nearby) {
+      Collection<LineInfo> lines = getAllLines(nearby);
+      double dAngle = Math.PI * 2 / RAY_COUNT;
+      Set<StandardEntity> result = new HashSet<StandardEntity>();
+      for (int i = 0; i < RAY_COUNT; ++i) {
+        double angle = i * dAngle;
+        Vector2D vector = new Vector2D(Math.sin(angle), Math.cos(angle)).scale(viewDistance);
+        for (LineInfo hit : cast(new Line2D(location, vector), lines).first()) {
+          result.add(hit.entity);
+        }
+      }
+      for (StandardEntity next : nearby) {
+        if (next instanceof Human && canSee(agent, location, (Human) next, lines)) {
+          result.add(next);
+        }
+      }
+      result.add(agent);
+      return result;
+    }
+
+
+    private boolean canSee(StandardEntity agent, Point2D location, Human h, Collection<LineInfo> lines) {
+      if (h.isXDefined() && h.isYDefined()) {
+        Line2D ray = new Line2D(location, new Point2D(h.getX(), h.getY()));
+        return cast(ray, lines).second() >= 1;
+      }
+      else if (h.isPositionDefined()) {
+        if (h.getPosition().equals(agent.getID())) {
+          return true;
+        }
+        Entity e = world.getEntity(h.getPosition());
+        if (e instanceof AmbulanceTeam) {
+          return canSee(agent, location, (Human) e, lines);
+        }
+      }
+      return false;
+    }
+
+
+    private static Collection<LineInfo> getAllLines(Collection<StandardEntity> entities) {
+      Collection<LineInfo> result = new LinkedList<LineInfo>();
+      for (StandardEntity next : entities) {
+        if (next instanceof Building) {
+          for (Edge edge : ((Building) next).getEdges()) {
+            result.add(new LineInfo(edge.getLine(), next, !edge.isPassable()));
+          }
+        }
+        if (next instanceof Road) {
+          for (Edge edge : ((Road) next).getEdges()) {
+            result.add(new LineInfo(edge.getLine(), next, false));
+          }
+        }
+        else if (next instanceof Blockade) {
+          List<Point2D> points = GeometryTools2D.vertexArrayToPoints(((Blockade) next).getApexes());
+          for (Line2D line : GeometryTools2D.pointsToLines(points, true)) {
+            result.add(new LineInfo(line, next, false));
+          }
+        }
+      }
+      return result;
+    }
+
+
+    private static Pair<List<LineInfo>, Double> cast(Line2D ray, Collection<LineInfo> lines) {
+      List<Pair<LineInfo, Double>> intersections = new ArrayList<Pair<LineInfo, Double>>();
+      for (LineInfo other : lines) {
+        double d1 = ray.getIntersection(other.line);
+        double d2 = other.line.getIntersection(ray);
+        if (d2 >= 0 && d2 <= 1 && d1 > 0 && d1 <= 1) {
+          intersections.add(new Pair<LineInfo, Double>(other, d1));
+        }
+      }
+      Collections.sort(intersections, new Comparator<Pair<LineInfo, Double>>() {
+        @Override
+        public int compare(Pair<LineInfo, Double> a, Pair<LineInfo, Double> b) {
+          return Double.compare(a.second(), b.second());
+        }
+      });
+      List<LineInfo> hit = new ArrayList<LineInfo>();
+      double length = 1;
+      for (Pair<LineInfo, Double> next : intersections) {
+        hit.add(next.first());
+        if (next.first().blocking) {
+          length = next.second();
+          break;
+        }
+      }
+      return new Pair<List<LineInfo>, Double>(hit, length);
+    }
+  }
+
+
+  private static class LineInfo {
+
+    private final Line2D line;
+    private final StandardEntity entity;
+    private final boolean blocking;
+
+
+    LineInfo(Line2D line, StandardEntity entity, boolean blocking) {
+      this.line = line;
+      this.entity = entity;
+      this.blocking = blocking;
+    }
+  }
+}
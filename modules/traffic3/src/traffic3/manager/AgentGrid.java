@@ -0,0 +1,177 @@
+package traffic3.manager;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import traffic3.objects.TrafficAgent;
+
+/**
+ * A uniform grid of cells holding the agents inside each cell. The agents are
+ * sorted by cell into one array, so rebuilding the grid fills a few arrays
+ * that are reused from one rebuild to the next, and finding the agents near a
+ * point only looks at the cells that overlap a square around the point. The
+ * grid must be rebuilt after agents move; it can then be searched from several
+ * threads at once.
+ */
+class AgentGrid {
+
+  // Limit on the number of cells when agents are spread over a large area
+  private static final int MAX_CELLS_PER_AGENT = 4;
+
+  private TrafficAgent[] agents;
+  private TrafficAgent[] sorted;
+  private int[] agentCell;
+  private int[] cellStart;
+  private int[] cellFill;
+  private int count;
+  private double minX;
+  private double minY;
+  private double cellSize;
+  private int columns;
+  private int rows;
+
+
+  /**
+   * Construct an empty AgentGrid.
+   */
+  AgentGrid() {
+    agents = new TrafficAgent[0];
+    sorted = agents;
+    agentCell = new int[0];
+    cellStart = new int[1];
+    cellFill = new int[0];
+    columns = 0;
+    rows = 0;
+  }
+
+
+  /**
+   * Rebuild the grid from the current agent positions. Agents that are not in
+   * an area are left out.
+   *
+   * @param all
+   *   The agents to put in the grid.
+   * @param minCellSize
+   *   The smallest cell size to use. Searches are fastest when this is the
+   *   distance that will usually be searched.
+   */
+  void rebuild(Collection<TrafficAgent> all, double minCellSize) {
+    if (agents.length < all.size()) {
+      agents = new TrafficAgent[all.size()];
+      sorted = new TrafficAgent[all.size()];
+      agentCell = new int[all.size()];
+    }
+    count = 0;
+    double maxX = Double.NEGATIVE_INFINITY;
+    double maxY = Double.NEGATIVE_INFINITY;
+    minX = Double.POSITIVE_INFINITY;
+    minY = Double.POSITIVE_INFINITY;
+    for (TrafficAgent next : all) {
+      if (next.getArea() == null) {
+        continue;
+      }
+      agents[count++] = next;
+      minX = Math.min(minX, next.getX());
+      minY = Math.min(minY, next.getY());
+      maxX = Math.max(maxX, next.getX());
+      maxY = Math.max(maxY, next.getY());
+    }
+    Arrays.fill(agents, count, agents.length, null);
+    if (count == 0) {
+      columns = 0;
+      rows = 0;
+      return;
+    }
+    cellSize = Math.max(minCellSize, 1);
+    long limit = (long) MAX_CELLS_PER_AGENT * count + 1;
+    while (true) {
+      columns = (int) Math.min(Integer.MAX_VALUE, (maxX - minX) / cellSize + 1);
+      rows = (int) Math.min(Integer.MAX_VALUE, (maxY - minY) / cellSize + 1);
+      if ((long) columns * rows <= limit) {
+        break;
+      }
+      cellSize *= 2;
+    }
+    int cells = columns * rows;
+    if (cellStart.length < cells + 1) {
+      cellStart = new int[cells + 1];
+      cellFill = new int[cells];
+    }
+    Arrays.fill(cellStart, 0, cells + 1, 0);
+    for (int i = 0; i < count; ++i) {
+      int cell = getRow(agents[i].getY()) * columns + getColumn(agents[i].getX());
+      agentCell[i] = cell;
+      ++cellStart[cell + 1];
+    }
+    for (int cell = 0; cell < cells; ++cell) {
+      cellStart[cell + 1] += cellStart[cell];
+    }
+    System.arraycopy(cellStart, 0, cellFill, 0, cells);
+    // Agents keep their relative order within a cell
+    for (int i = 0; i < count; ++i) {
+      sorted[cellFill[agentCell[i]]++] = agents[i];
+    }
+    Arrays.fill(sorted, count, sorted.length, null);
+  }
+
+
+  /**
+   * Find the agents within a square around a point. Agents are checked at
+   * their current positions, so the result is only complete if no agent has
+   * moved since the grid was rebuilt.
+   *
+   * @param x
+   *   The X coordinate of the centre of the square.
+   * @param y
+   *   The Y coordinate of the centre of the square.
+   * @param range
+   *   Half the side of the square.
+   * @param result
+   *   An array to fill with the agents found.
+   *
+   * @return The number of agents found. If this is larger than the length of
+   * the result array then only the first agents have been stored.
+   */
+  int find(double x, double y, double range, TrafficAgent[] result) {
+    if (count == 0) {
+      return 0;
+    }
+    int fromColumn = getColumn(x - range);
+    int toColumn = getColumn(x + range);
+    int fromRow = getRow(y - range);
+    int toRow = getRow(y + range);
+    int found = 0;
+    for (int row = fromRow; row <= toRow; ++row) {
+      int rowStart = row * columns;
+      for (int i = cellStart[rowStart + fromColumn]; i < cellStart[rowStart + toColumn + 1]; ++i) {
+        TrafficAgent next = sorted[i];
+        if (Math.abs(next.getX() - x) > range || Math.abs(next.getY() - y) > range) {
+          continue;
+        }
+        if (found < result.length) {
+          result[found] = next;
+        }
+        ++found;
+      }
+    }
+    return found;
+  }
+
+
+  private int getColumn(double x) {
+    return clamp((x - minX) / cellSize, columns);
+  }
+
+
+  private int getRow(double y) {
+    return clamp((y - minY) / cellSize, rows);
+  }
+
+
+  private static int clamp(double cell, int cells) {
+    if (!(cell > 0)) {
+      return 0;
+    }
+    return (int) Math.min(cell, cells - 1);
+  }
+}
@@ -24,6 +24,7 @@ import gnu.trove.TIntProcedure;
 import traffic3.objects.TrafficAgent;
 import traffic3.objects.TrafficArea;
 import traffic3.objects.TrafficBlockade;
+import traffic3.simulator.TrafficConstants;
 
 /**
  * The traffic manager maintains information about traffic simulator objects.
@@ -38,6 +39,7 @@ public class TrafficManager {
   private Map<TrafficArea, Collection<TrafficArea>> areaNeighbours;
 
   private SpatialIndex index;
+  private AgentGrid agentGrid;
 
   /**
    * Construct a new TrafficManager.
@@ -57,6 +59,7 @@ public class TrafficManager {
     };
     index = new RTree();
     index.init(new Properties());
+    agentGrid = new AgentGrid();
   }
 
 
@@ -124,6 +127,51 @@ public class TrafficManager {
   }
 
 
+  /**
+   * Get the agents in the same area or a neighbouring area as an agent that
+   * are no more than a given distance away along each axis. This uses the
+   * agent positions from the last call to {@link #updateAgentIndex()} to decide
+   * where to look, and does not create any objects, so it can be called for
+   * every agent on every microstep and from several threads at once.
+   *
+   * @param agent
+   *   The agent to look up.
+   * @param range
+   *   The largest X or Y distance to the agents to find.
+   * @param result
+   *   An array to fill with the agents found, except the input agent.
+   *
+   * @return The number of agents found. If this is larger than the length of
+   * the result array then the array was too small: the call should be repeated
+   * with an array at least this long.
+   */
+  public int getNearbyAgents(TrafficAgent agent, double range, TrafficAgent[] result) {
+    TrafficArea area = agent.getArea();
+    Collection<TrafficArea> neighbours = getNeighbours(area);
+    int found = agentGrid.find(agent.getX(), agent.getY(), range, result);
+    if (found > result.length) {
+      return found;
+    }
+    int count = 0;
+    for (int i = 0; i < found; ++i) {
+      TrafficAgent next = result[i];
+      if (next != agent && (next.getArea() == area || neighbours.contains(next.getArea()))) {
+        result[count++] = next;
+      }
+    }
+    return count;
+  }
+
+
+  /**
+   * Update the index used by {@link #getNearbyAgents(TrafficAgent, double, TrafficAgent[])}
+   * after agents have moved.
+   */
+  public void updateAgentIndex() {
+    agentGrid.rebuild(agents.values(), TrafficConstants.getAgentDistanceCutoff());
+  }
+
+
   /**
    * Remove all objects from this manager.
    */
@@ -136,6 +184,7 @@ public class TrafficManager {
     blockadeByID.clear();
     index = new RTree();
     index.init(new Properties());
+    agentGrid = new AgentGrid();
   }
 
 
@@ -0,0 +1,251 @@
+package traffic3.objects;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import rescuecore2.misc.geometry.GeometryTools2D;
+import rescuecore2.misc.geometry.Line2D;
+import rescuecore2.misc.geometry.Point2D;
+
+/**
+ * The graph used to plan paths around blockades inside an area. There is one
+ * node for each open line of the area. Two nodes are connected if the segment
+ * between the midpoints of their open lines, in either direction, crosses no
+ * blocking line and no other open line. Every edge has a weight of one.
+ * <p>
+ * A graph can be built from the graph that was valid before the blockades
+ * changed. For each pair of open lines that exist in both, the line that blocked
+ * them before is kept as a witness: if it still exists the pair is still
+ * blocked, and a pair that was connected only needs testing against the lines
+ * that are new.
+ */
+public class NavigationGraph {
+	private static final int[] NONE = new int[0];
+
+	private final List<Line2D> openLines;
+	private final Point2D[] midPoints;
+	private final LineKey[] openKeys;
+	private final Set<LineKey> allKeys;
+	private final Map<LineKey, Integer> index;
+	// For each pair i < j, the line that blocks it or null if the pair is connected
+	private final Line2D[] witnesses;
+	private final int[][] neighbours;
+
+	/**
+	 * Construct a NavigationGraph.
+	 *
+	 * @param openLines
+	 *            The open lines of the area.
+	 * @param blockingLines
+	 *            All lines that block movement in the area.
+	 * @param previous
+	 *            The graph before the blockades changed, or null.
+	 */
+	public NavigationGraph(List<Line2D> openLines, List<Line2D> blockingLines, NavigationGraph previous) {
+		int n = openLines.size();
+		this.openLines = new ArrayList<Line2D>(openLines);
+		midPoints = new Point2D[n];
+		openKeys = new LineKey[n];
+		allKeys = new HashSet<LineKey>();
+		index = new HashMap<LineKey, Integer>();
+		for (int i = 0; i < n; i++) {
+			Line2D line = openLines.get(i);
+			midPoints[i] = new Point2D((line.getOrigin().getX() + line.getEndPoint().getX()) / 2,
+					(line.getOrigin().getY() + line.getEndPoint().getY()) / 2);
+			openKeys[i] = new LineKey(line);
+			allKeys.add(openKeys[i]);
+			index.put(openKeys[i], i);
+		}
+		for (Line2D line : blockingLines) {
+			allKeys.add(new LineKey(line));
+		}
+		List<Line2D> addedBlocking = new ArrayList<Line2D>();
+		List<Line2D> addedOpen = new ArrayList<Line2D>();
+		if (previous != null) {
+			for (Line2D line : blockingLines) {
+				if (!previous.allKeys.contains(new LineKey(line))) {
+					addedBlocking.add(line);
+				}
+			}
+			for (int i = 0; i < n; i++) {
+				if (!previous.allKeys.contains(openKeys[i])) {
+					addedOpen.add(openLines.get(i));
+				}
+			}
+		}
+		witnesses = new Line2D[n * (n - 1) / 2];
+		int[] degree = new int[n];
+		for (int i = 0; i < n; i++) {
+			Integer oldI = previous == null ? null : previous.index.get(openKeys[i]);
+			for (int j = i + 1; j < n; j++) {
+				Integer oldJ = oldI == null ? null : previous.index.get(openKeys[j]);
+				Line2D witness;
+				if (oldJ == null) {
+					witness = findBlock(i, j, blockingLines, this.openLines);
+				} else {
+					Line2D old = previous.getWitness(oldI, oldJ);
+					if (old == null) {
+						// Removing lines cannot block a connected pair
+						witness = findBlock(i, j, addedBlocking, addedOpen);
+					} else if (allKeys.contains(new LineKey(old))) {
+						witness = old;
+					} else {
+						witness = findBlock(i, j, blockingLines, this.openLines);
+					}
+				}
+				witnesses[pair(i, j)] = witness;
+				if (witness == null) {
+					degree[i]++;
+					degree[j]++;
+				}
+			}
+		}
+		neighbours = new int[n][];
+		for (int i = 0; i < n; i++) {
+			neighbours[i] = degree[i] == 0 ? NONE : new int[degree[i]];
+		}
+		Arrays.fill(degree, 0);
+		for (int i = 0; i < n; i++) {
+			for (int j = i + 1; j < n; j++) {
+				if (witnesses[pair(i, j)] == null) {
+					neighbours[i][degree[i]++] = j;
+					neighbours[j][degree[j]++] = i;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the number of nodes.
+	 *
+	 * @return The number of nodes.
+	 */
+	public int size() {
+		return neighbours.length;
+	}
+
+	/**
+	 * Get the open line for a node.
+	 *
+	 * @param node
+	 *            The node.
+	 * @return The open line.
+	 */
+	public Line2D getOpenLine(int node) {
+		return openLines.get(node);
+	}
+
+	/**
+	 * Get the position of a node, the midpoint of its open line.
+	 *
+	 * @param node
+	 *            The node.
+	 * @return The position of the node.
+	 */
+	public Point2D getPoint(int node) {
+		return midPoints[node];
+	}
+
+	/**
+	 * Get the nodes connected to a node, in increasing order. The returned array
+	 * must not be changed.
+	 *
+	 * @param node
+	 *            The node.
+	 * @return The neighbouring nodes.
+	 */
+	public int[] getNeighbours(int node) {
+		return neighbours[node];
+	}
+
+	/**
+	 * Get the weight of the edge to a neighbour.
+	 *
+	 * @param node
+	 *            The node.
+	 * @param i
+	 *            The position of the neighbour in {@link #getNeighbours(int)}.
+	 * @return The edge weight.
+	 */
+	public int getWeight(int node, int i) {
+		return 1;
+	}
+
+	private Line2D getWitness(int i, int j) {
+		if (i == j) {
+			return null;
+		}
+		return witnesses[i < j ? pair(i, j) : pair(j, i)];
+	}
+
+	private int pair(int i, int j) {
+		// Index of (i, j) with i < j in the upper triangle, row by row
+		int n = midPoints.length;
+		return i * (2 * n - i - 1) / 2 + (j - i - 1);
+	}
+
+	private Line2D findBlock(int i, int j, List<Line2D> blocking, List<Line2D> open) {
+		// The intersection test can depend on the direction of the segment when
+		// lines touch, so a pair is only connected if it is clear both ways
+		Line2D block = findBlock(new Line2D(midPoints[i], midPoints[j]), i, j, blocking, open);
+		if (block == null) {
+			block = findBlock(new Line2D(midPoints[j], midPoints[i]), i, j, blocking, open);
+		}
+		return block;
+	}
+
+	private Line2D findBlock(Line2D segment, int i, int j, List<Line2D> blocking, List<Line2D> open) {
+		for (Line2D line : blocking) {
+			if (GeometryTools2D.getSegmentIntersectionPoint(segment, line) != null) {
+				return line;
+			}
+		}
+		for (Line2D line : open) {
+			// The segment always touches the two open lines it joins
+			if (line == openLines.get(i) || line == openLines.get(j)) {
+				continue;
+			}
+			if (GeometryTools2D.getSegmentIntersectionPoint(segment, line) != null) {
+				return line;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Value key for a line, so that lines can be matched between graphs.
+	 */
+	private static final class LineKey {
+		private final double x1;
+		private final double y1;
+		private final double x2;
+		private final double y2;
+
+		LineKey(Line2D line) {
+			x1 = line.getOrigin().getX();
+			y1 = line.getOrigin().getY();
+			x2 = line.getEndPoint().getX();
+			y2 = line.getEndPoint().getY();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof LineKey)) {
+				return false;
+			}
+			LineKey k = (LineKey) o;
+			return x1 == k.x1 && y1 == k.y1 && x2 == k.x2 && y2 == k.y2;
+		}
+
+		@Override
+		public int hashCode() {
+			return Double.hashCode(x1) * 31 * 31 * 31 + Double.hashCode(y1) * 31 * 31 + Double.hashCode(x2) * 31
+					+ Double.hashCode(y2);
+		}
+	}
+}
@@ -1,7 +1,6 @@
 package traffic3.objects;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -26,128 +25,20 @@ import traffic3.simulator.TrafficConstants;
  */
 public class TrafficAgent {
 
-	/**
-	 * This class is used to compute and cache wall related information.
-	 *
-	 * @author goebelbe
-	 *
-	 */
-	private static class WallInfo {
-		private Line2D wall;
-		private TrafficArea area;
-		private double distance;
-		private Point2D closest;
-		private Point2D origin;
-		private Line2D line;
-		private Vector2D vector;
-		private boolean isBlockade;
-
-		/**
-		 * Create a new WallInfo object from a Line2D in a TrafficArea.
-		 *
-		 * @param wall
-		 *            The wall to cache.
-		 * @param area
-		 *            The area this wall belongs to.
-		 */
-		public WallInfo(Line2D wall, TrafficArea area) {
-			this.wall = wall;
-			this.area = area;
-			this.distance = -1;
-			this.closest = null;
-			this.origin = null;
-		}
-
-		/**
-		 * Get the shortest distance from the agent's position. The distance may
-		 * not be accurate if the wall can't affect the agent in this microstep.
-		 *
-		 * @return The distance to the agent.
-		 */
-		public double getDistance() {
-			return this.distance;
-		}
-
-		/**
-		 * Recompute the distance to the agent and the closest point on the
-		 * line.
-		 *
-		 * @param from
-		 *            The position of the agent.
-		 */
-		public void computeClostestPoint(Point2D from) {
-			if (from.equals(origin) && distance >= 0 && closest != null) {
-				return;
-			}
-			origin = from;
-			closest = GeometryTools2D.getClosestPointOnSegment(wall, origin);
-			line = new Line2D(origin, closest);
-			vector = line.getDirection();
-			distance = vector.getLength();
-		}
-
-		/**
-		 * Get the clostest point to the agent on the wall.
-		 *
-		 * @return The closest point.
-		 */
-		public Point2D getClosestPoint() {
-			return closest;
-		}
-
-		/**
-		 * Decrease the distance from the wall by an amount.
-		 *
-		 * @param d
-		 *            The amount by which to decrease the distance.
-		 */
-		public void decreaseDistance(double d) {
-			distance -= d;
-		}
-
-		/**
-		 * Get the wall this WallInfo represents.
-		 *
-		 * @return The wall.
-		 */
-		public Line2D getWall() {
-			return wall;
-		}
-
-		/**
-		 * Get the line from the agent to the closest point on the wall.
-		 *
-		 * @return Line2D to wall.
-		 */
-		public Line2D getLine() {
-			return line;
-		}
-
-		/**
-		 * Get the vector from the agent to the closest point on the wall.
-		 *
-		 * @return Vector2D to wall.
-		 */
-		public Vector2D getVector() {
-			return vector;
-		}
-
-		/**
-		 * Get the are the wall lies in.
-		 *
-		 * @return The area of this wall.
-		 */
-		public TrafficArea getArea() {
-			return area;
-		}
-	}
-
 	private static final int D = 2;
 
 	private static final int DEFAULT_POSITION_HISTORY_FREQUENCY = 60;
 
 	private static final double NEARBY_THRESHOLD_SQUARED = 1000000;
 
+	private static final int INITIAL_NEARBY_AGENTS = 16;
+
+	// Where the closest point on a wall lies
+	private static final int CLOSEST_UNKNOWN = 0;
+	private static final int CLOSEST_INSIDE = 1;
+	private static final int CLOSEST_ORIGIN = 2;
+	private static final int CLOSEST_END = 3;
+
 	// Force towards destination
 	private final double[] destinationForce = new double[D];
 
@@ -166,8 +57,25 @@ public class TrafficAgent {
 	// Force
 	private final double[] force = new double[D];
 
-	// List of blocking lines near the agent.
-	private List<WallInfo> blockingLines;
+	// Blocking lines near the agent.
+	private WallCandidates walls;
+	private int wallCount;
+
+	// For each wall: the shortest distance from the agent, which may not be
+	// accurate if the wall can't affect the agent in this microstep, the
+	// position the distance was computed from and the closest point on the wall
+	private double[] wallDistance;
+	private double[] wallOriginX;
+	private double[] wallOriginY;
+	private double[] wallClosestX;
+	private double[] wallClosestY;
+	private int[] wallClosest;
+
+	// Wall indices sorted by distance
+	private int[] wallOrder;
+
+	// Reused buffer for the agents near this one
+	private TrafficAgent[] nearbyAgents;
 
 	private double radius;
 	private double velocityLimit;
@@ -198,6 +106,12 @@ public class TrafficAgent {
 	private boolean colocated;
 	private boolean verbose;
 
+	// State carried between the phases of a two-phase microstep
+	private boolean nudgePending;
+	private boolean movePending;
+	private double pendingX;
+	private double pendingY;
+
 	private TrafficArea startPosition;
 
 	/**
@@ -223,7 +137,14 @@ public class TrafficAgent {
 		historyCount = 0;
 		positionHistoryFrequency = DEFAULT_POSITION_HISTORY_FREQUENCY;
 		mobile = true;
-		blockingLines = new ArrayList<WallInfo>();
+		wallDistance = new double[0];
+		wallOriginX = new double[0];
+		wallOriginY = new double[0];
+		wallClosestX = new double[0];
+		wallClosestY = new double[0];
+		wallClosest = new int[0];
+		wallOrder = new int[0];
+		nearbyAgents = new TrafficAgent[INITIAL_NEARBY_AGENTS];
 	}
 
 	/**
@@ -543,8 +464,69 @@ public class TrafficAgent {
 		if (mobile) {
 			updateWalls(dt);
 			updateGoals();
-			computeForces(dt);
-			updatePosition(dt);
+			computeForces(dt, false);
+			updatePosition(dt, false);
+		}
+	}
+
+	/**
+	 * Execute the first phase of a two-phase microstep: work out the forces
+	 * acting on this agent. This reads the positions of other agents but only
+	 * changes the state of this agent, so it can be called for many agents at
+	 * once as long as no agent moves at the same time. Every agent sees the
+	 * positions from the end of the previous microstep.
+	 *
+	 * @param dt
+	 *            The amount of time to simulate in ms.
+	 */
+	public void computeStep(double dt) {
+		nudgePending = false;
+		movePending = false;
+		if (mobile) {
+			updateWalls(dt);
+			updateGoals();
+			computeForces(dt, true);
+		}
+	}
+
+	/**
+	 * Execute the second phase of a two-phase microstep: move this agent. This
+	 * only changes the state of this agent, so it can be called for many agents
+	 * at once. Anything that touches shared state, such as moving into a
+	 * different area or drawing a random nudge for a co-located agent, is left
+	 * for {@link #finishStep(double)}.
+	 *
+	 * @param dt
+	 *            The amount of time to simulate in ms.
+	 * @return True if the microstep is complete, false if
+	 *         {@link #finishStep(double)} must be called.
+	 */
+	public boolean moveStep(double dt) {
+		if (!mobile || nudgePending) {
+			return !nudgePending;
+		}
+		return updatePosition(dt, true);
+	}
+
+	/**
+	 * Complete a two-phase microstep for an agent whose
+	 * {@link #moveStep(double)} returned false. This must not be called
+	 * concurrently for different agents, and should be called for agents in a
+	 * fixed order so that results are repeatable.
+	 *
+	 * @param dt
+	 *            The amount of time to simulate in ms.
+	 */
+	public void finishStep(double dt) {
+		if (nudgePending) {
+			nudgePending = false;
+			computeColocatedForce(agentsForce);
+			sumForces();
+			updatePosition(dt, false);
+		}
+		if (movePending) {
+			movePending = false;
+			setLocation(pendingX, pendingY);
 		}
 	}
 
@@ -676,14 +658,24 @@ public class TrafficAgent {
 		}
 	}
 
-	private void computeForces(double dt) {
+	private void computeForces(double dt, boolean deferNudge) {
 		colocated = false;
 		computeAgentsForce(agentsForce);
-		if (!colocated) {
+		if (colocated) {
+			if (deferNudge) {
+				// The nudge is random, so draw it later in a fixed order
+				nudgePending = true;
+				return;
+			}
+			computeColocatedForce(agentsForce);
+		} else {
 			computeDestinationForce(destinationForce);
 			computeWallsForce(wallsForce, dt);
 		}
+		sumForces();
+	}
 
+	private void sumForces() {
 		force[0] = destinationForce[0] + agentsForce[0] + wallsForce[0];
 		force[1] = destinationForce[1] + agentsForce[1] + wallsForce[1];
 
@@ -694,7 +686,8 @@ public class TrafficAgent {
 		}
 	}
 
-	private void updatePosition(double dt) {
+	// Returns false if the agent moved into a different area and deferAreaChange is set
+	private boolean updatePosition(double dt, boolean deferAreaChange) {
 		double newVX = velocity[0] + dt * force[0];
 		double newVY = velocity[1] + dt * force[1];
 		double v = Math.hypot(newVX, newVY);
@@ -722,29 +715,41 @@ public class TrafficAgent {
 		if (crossedWall(location[0], location[1], x, y)) {
 			velocity[0] = 0;
 			velocity[1] = 0;
-			return;
+			return true;
 		}
 		velocity[0] = newVX;
 		velocity[1] = newVY;
 		if (newVX != 0 || newVY != 0) {
 			double dist = v * dt;
-			for (WallInfo wall : blockingLines) {
-				wall.decreaseDistance(dist);
+			for (int i = 0; i < wallCount; i++) {
+				wallDistance[i] -= dist;
+			}
+			if (deferAreaChange && (currentArea == null || !currentArea.contains(x, y))) {
+				// Changing area updates the agent lists of both areas
+				pendingX = x;
+				pendingY = y;
+				movePending = true;
+				return false;
 			}
 			setLocation(x, y);
 		}
+		return true;
 	}
 
-	private boolean hasLos(WallInfo target, List<WallInfo> blocking) {
-		Line2D line = target.getLine();
+	private boolean hasLos(int target) {
+		Line2D line = null;
+		double targetX = wallClosestX[target];
+		double targetY = wallClosestY[target];
+		double lineX = targetX - wallOriginX[target];
+		double lineY = targetY - wallOriginY[target];
 
-		for (WallInfo wall : blocking) {
+		for (int i = 0; i < wallCount; i++) {
+			int wall = wallOrder[i];
 			if (wall == target) {
 				break;
 			}
 
-			Line2D next = wall.getWall();
-			if (target.getClosestPoint().equals(next.getOrigin()) || target.getClosestPoint().equals(next.getEndPoint())) {
+			if ((targetX == walls.getX1(wall) && targetY == walls.getY1(wall)) || (targetX == walls.getX2(wall) && targetY == walls.getY2(wall))) {
 				continue;
 			}
 
@@ -759,12 +764,15 @@ public class TrafficAgent {
 			// be
 			// acute (because they intersect at the closest point), so we never
 			// prune real intersections here.
-			double dotp = line.getDirection().dot(wall.getVector());
-			if (dotp < wall.getDistance() * wall.getDistance()) {
+			double dotp = lineX * (wallClosestX[wall] - wallOriginX[wall]) + lineY * (wallClosestY[wall] - wallOriginY[wall]);
+			if (dotp < wallDistance[wall] * wallDistance[wall]) {
 				continue;
 			}
 
-			if (GeometryTools2D.getSegmentIntersectionPoint(line, next) != null) {
+			if (line == null) {
+				line = new Line2D(new Point2D(wallOriginX[target], wallOriginY[target]), new Point2D(targetX, targetY));
+			}
+			if (GeometryTools2D.getSegmentIntersectionPoint(line, walls.getLine(wall)) != null) {
 				return false;
 			}
 		}
@@ -775,12 +783,13 @@ public class TrafficAgent {
 		Line2D line = new Line2D(source, target);
 		double dist = line.getDirection().getLength();
 
-		for (WallInfo wall : blockingLines) {
-			if (wall.getDistance() > dist || wall.getArea() != area) {
+		for (int i = 0; i < wallCount; i++) {
+			int wall = wallOrder[i];
+			if (wallDistance[wall] > dist || walls.getArea(wall) != area) {
 				break;
 			}
 
-			Line2D next = wall.getWall();
+			Line2D next = walls.getLine(wall);
 			if (GeometryTools2D.getSegmentIntersectionPoint(line, next) != null) {
 				return false;
 			}
@@ -817,11 +826,12 @@ public class TrafficAgent {
 	private boolean crossedWall(double oldX, double oldY, double newX, double newY) {
 		Line2D moved = new Line2D(oldX, oldY, newX - oldX, newY - oldY);
 		double dist = moved.getDirection().getLength();
-		for (WallInfo wall : blockingLines) {
-			if (wall.getDistance() >= dist) {
+		for (int i = 0; i < wallCount; i++) {
+			int wall = wallOrder[i];
+			if (wallDistance[wall] >= dist) {
 				break;
 			}
-			Line2D test = wall.getWall();
+			Line2D test = walls.getLine(wall);
 			if (GeometryTools2D.getSegmentIntersectionPoint(moved, test) != null) {
 				// if (crossedLine(oldX, oldY, newX, newY, test)) {
 				/*
@@ -840,51 +850,83 @@ public class TrafficAgent {
 	}
 
 	private void findBlockingLines() {
-		blockingLines.clear();
+		wallCount = 0;
 		if (currentArea != null) {
-			for (Line2D line : currentArea.getAllBlockingLines()) {
-				blockingLines.add(new WallInfo(line, currentArea));
+			walls = currentArea.getWallCandidates(manager.getNeighbours(currentArea));
+			wallCount = walls.size();
+			if (wallDistance.length < wallCount) {
+				wallDistance = new double[wallCount];
+				wallOriginX = new double[wallCount];
+				wallOriginY = new double[wallCount];
+				wallClosestX = new double[wallCount];
+				wallClosestY = new double[wallCount];
+				wallClosest = new int[wallCount];
+				wallOrder = new int[wallCount];
 			}
-			for (TrafficArea neighbour : manager.getNeighbours(currentArea)) {
-				for (Line2D line : neighbour.getAllBlockingLines()) {
-					blockingLines.add(new WallInfo(line, neighbour));
-				}
+			for (int i = 0; i < wallCount; i++) {
+				wallDistance[i] = -1;
+				wallClosest[i] = CLOSEST_UNKNOWN;
+				wallOrder[i] = i;
 			}
 		}
 	}
 
 	private void updateWalls(double dt) {
-		Point2D position = new Point2D(location[0], location[1]);
+		double x = location[0];
+		double y = location[1];
 		double crossingCutoff = dt * this.velocityLimit;
 		double forceCutoff = TrafficConstants.getWallDistanceCutoff();
 		double cutoff = Math.max(forceCutoff, crossingCutoff);
-		// double dist;
 
-		for (WallInfo wall : blockingLines) {
-			if (wall.getDistance() > cutoff) {
+		for (int i = 0; i < wallCount; i++) {
+			if (wallDistance[i] > cutoff) {
 				continue;
 			}
-			wall.computeClostestPoint(position);
+			computeClosestPoint(i, x, y);
 		}
 
 		// Hand coded, in-sito insertion sort is much faster than
-		// Collection.sort() for lists of this size.
-		for (int i = 1; i < blockingLines.size(); i++) {
-			WallInfo info = blockingLines.get(i);
-			for (int j = i; j >= 0; j--) {
-				if (j == 0) {
-					blockingLines.remove(i);
-					blockingLines.add(0, info);
-				} else if (blockingLines.get(j - 1).getDistance() < info.getDistance()) {
-					if (j == i) {
-						break;
-					}
-					blockingLines.remove(i);
-					blockingLines.add(j, info);
-					break;
-				}
+		// Arrays.sort() for arrays of this size, and they are nearly sorted
+		// from the previous microstep.
+		for (int i = 1; i < wallCount; i++) {
+			int wall = wallOrder[i];
+			double distance = wallDistance[wall];
+			int j = i;
+			while (j > 0 && !(wallDistance[wallOrder[j - 1]] < distance)) {
+				wallOrder[j] = wallOrder[j - 1];
+				j--;
 			}
+			wallOrder[j] = wall;
+		}
+	}
+
+	// Recompute the distance to a wall and the closest point on it
+	private void computeClosestPoint(int wall, double x, double y) {
+		if (wallClosest[wall] != CLOSEST_UNKNOWN && wallOriginX[wall] == x && wallOriginY[wall] == y && wallDistance[wall] >= 0) {
+			return;
 		}
+		wallOriginX[wall] = x;
+		wallOriginY[wall] = y;
+		double x1 = walls.getX1(wall);
+		double y1 = walls.getY1(wall);
+		double dx = walls.getDX(wall);
+		double dy = walls.getDY(wall);
+		// The same arithmetic as GeometryTools2D.getClosestPointOnSegment
+		double u = (((x - x1) * dx) + ((y - y1) * dy)) / walls.getLengthSquared(wall);
+		if (u <= 0) {
+			wallClosest[wall] = CLOSEST_ORIGIN;
+			wallClosestX[wall] = x1;
+			wallClosestY[wall] = y1;
+		} else if (u >= 1) {
+			wallClosest[wall] = CLOSEST_END;
+			wallClosestX[wall] = walls.getX2(wall);
+			wallClosestY[wall] = walls.getY2(wall);
+		} else {
+			wallClosest[wall] = CLOSEST_INSIDE;
+			wallClosestX[wall] = x1 + u * dx;
+			wallClosestY[wall] = y1 + u * dy;
+		}
+		wallDistance[wall] = Math.hypot(wallClosestX[wall] - x, wallClosestY[wall] - y);
 	}
 
 	private void computeDestinationForce(double[] result) {
@@ -949,30 +991,26 @@ public class TrafficAgent {
 		double k = TrafficConstants.getAgentForceCoefficientK();
 		double forceLimit = TrafficConstants.getAgentForceLimit();
 
-		Collection<TrafficAgent> nearby = manager.getNearbyAgents(this);
-		for (TrafficAgent agent : nearby) {
+		int count = manager.getNearbyAgents(this, cutoff, nearbyAgents);
+		if (count > nearbyAgents.length) {
+			nearbyAgents = new TrafficAgent[Math.max(count, nearbyAgents.length * 2)];
+			count = manager.getNearbyAgents(this, cutoff, nearbyAgents);
+		}
+		for (int i = 0; i < count; i++) {
+			TrafficAgent agent = nearbyAgents[i];
 			if (!agent.isMobile()) {
 				continue;
 			}
 			double dx = agent.getX() - location[0];
 			double dy = agent.getY() - location[1];
 
-			if (Math.abs(dx) > cutoff) {
-				continue;
-			}
-			if (Math.abs(dy) > cutoff) {
-				continue;
-			}
-
 			double totalRadius = radius + agent.getRadius();
 			double distanceSquared = dx * dx + dy * dy;
 
 			if (distanceSquared == 0) {
-				xSum = TrafficConstants.getColocatedAgentNudge();
-				ySum = TrafficConstants.getColocatedAgentNudge();
 				colocated = true;
 				Logger.debug(this + " is co-located with " + agent);
-				break;
+				return;
 			}
 			double distance = Math.sqrt(distanceSquared);
 			double dxN = dx / distance;
@@ -1011,6 +1049,20 @@ public class TrafficAgent {
 	}
 
 
+	private void computeColocatedForce(double[] result) {
+		double xSum = TrafficConstants.getColocatedAgentNudge();
+		double ySum = TrafficConstants.getColocatedAgentNudge();
+		double forceLimit = TrafficConstants.getAgentForceLimit();
+		double forceSum = Math.hypot(xSum, ySum);
+		if (forceSum > forceLimit) {
+			forceSum /= forceLimit;
+			xSum /= forceSum;
+			ySum /= forceSum;
+		}
+		result[0] = xSum;
+		result[1] = ySum;
+	}
+
 	private void computeWallsForce(double[] result, double dt) {
 		double xSum = 0;
 		double ySum = 0;
@@ -1020,29 +1072,27 @@ public class TrafficAgent {
 			double cutoff = TrafficConstants.getWallDistanceCutoff();
 			// double a = TrafficConstants.getWallForceCoefficientA();
 			double b = TrafficConstants.getWallForceCoefficientB();
-			Point2D position = new Point2D(location[0], location[1]);
 			if (verbose) {
 				Logger.debug("Computing wall forces for " + this);
-				Logger.debug("Position: " + position);
+				Logger.debug("Position: " + location[0] + ", " + location[1]);
 			}
 
-			for (WallInfo wall : blockingLines) {
+			for (int i = 0; i < wallCount; i++) {
+				int wall = wallOrder[i];
 				// check if the current wall is a blockade
 
-				if (wall.getDistance() > cutoff) {
+				if (wallDistance[wall] > cutoff) {
 					break;
 				}
-				Line2D line = wall.getWall();
-				dist = wall.getDistance();
-				Point2D closest = wall.getClosestPoint();
+				dist = wallDistance[wall];
 
 				if (verbose) {
-					Logger.debug("Next wall: " + line);
+					Logger.debug("Next wall: " + walls.getLine(wall));
 				}
 				// Point2D closest =
 				// GeometryTools2D.getClosestPointOnSegment(line, position);
 				if (verbose) {
-					Logger.debug("Closest point: " + closest);
+					Logger.debug("Closest point: " + wallClosestX[wall] + ", " + wallClosestY[wall]);
 				}
 				// dist = GeometryTools2D.getDistance(closest, position);
 				// if (dist > cutoff) {
@@ -1052,7 +1102,7 @@ public class TrafficAgent {
 				// }
 				// continue;
 				// }
-				if (!hasLos(wall, blockingLines)) {
+				if (!hasLos(wall)) {
 					// No line-of-sight to closest point
 					if (verbose) {
 						Logger.debug("No line of sight");
@@ -1060,10 +1110,7 @@ public class TrafficAgent {
 					continue;
 				}
 
-				boolean endPoint = false;
-				if (closest == line.getOrigin() || closest == line.getEndPoint()) {
-					endPoint = true;
-				}
+				boolean endPoint = wallClosest[wall] == CLOSEST_ORIGIN || wallClosest[wall] == CLOSEST_END;
 				// Two forces apply:
 				// If the agent is moving towards this wall then apply a force
 				// to bring the agent to a stop. This force applies when the
@@ -1076,13 +1123,14 @@ public class TrafficAgent {
 				double currentFY = destinationForce[1] + agentsForce[1];
 				double expectedVX = currentVX + dt * currentFX;
 				double expectedVY = currentVY + dt * currentFY;
-				Vector2D expectedVelocity = new Vector2D(expectedVX, expectedVY);
-				Vector2D wallForceVector = wall.getVector().scale(-1.0 / dist);
+				double scale = -1.0 / dist;
+				double wallForceX = (wallClosestX[wall] - wallOriginX[wall]) * scale;
+				double wallForceY = (wallClosestY[wall] - wallOriginY[wall]) * scale;
 				double radii = dist / r;
 				// Compute the stopping force
-				// Magnitude is the multiple of wallForceVector required to
-				// bring the agent to a stop.
-				double magnitude = -expectedVelocity.dot(wallForceVector);
+				// Magnitude is the multiple of the wall force vector required
+				// to bring the agent to a stop.
+				double magnitude = -(expectedVX * wallForceX + expectedVY * wallForceY);
 				if (magnitude < 0 || radii >= 1) {
 					magnitude = 0;
 					// Agent is moving away or far enough away - no stopping
@@ -1098,14 +1146,16 @@ public class TrafficAgent {
 						magnitude /= 2;
 					}
 				}
-				Vector2D stopForce = wallForceVector.scale(magnitude / dt);
+				double stopScale = magnitude / dt;
+				double stopForceX = wallForceX * stopScale;
+				double stopForceY = wallForceY * stopScale;
 				// Compute the repulsion force
 				// Decreases exponentially with distance in terms of agent
 				// radii.
 				// double factor = a * Math.min(1, Math.exp(-(radii - 1) * b));
 				// Vector2D repulsionForce = wallForceVector.scale(factor / dt);
-				xSum += stopForce.getX();
-				ySum += stopForce.getY();
+				xSum += stopForceX;
+				ySum += stopForceY;
 				// xSum += repulsionForce.getX();
 				// ySum += repulsionForce.getY();
 				if (verbose) {
@@ -1113,10 +1163,10 @@ public class TrafficAgent {
 					Logger.debug("Distance to wall : " + radii + " radii");
 					Logger.debug("Current velocity : " + currentVX + ", " + currentVY);
 					Logger.debug("Current force    : " + currentFX + ", " + currentFY);
-					Logger.debug("Expected velocity: " + expectedVelocity);
-					Logger.debug("Wall force       : " + wallForceVector);
+					Logger.debug("Expected velocity: " + expectedVX + ", " + expectedVY);
+					Logger.debug("Wall force       : " + wallForceX + ", " + wallForceY);
 					Logger.debug("Magnitude        : " + magnitude);
-					Logger.debug("Stop force       : " + stopForce);
+					Logger.debug("Stop force       : " + stopForceX + ", " + stopForceY);
 					// Logger.debug("Factor           : " + factor + " (e^" +
 					// (-(dist / r) * b) + ")");
 					// Logger.debug("Repulsion force  : " + repulsionForce);
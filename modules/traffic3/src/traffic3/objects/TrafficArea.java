@@ -43,7 +43,10 @@ public class TrafficArea {
 	private Rectangle bounds;
 	private Vector2D baseVector;
 	private ArrayList<Line2D> openLines;
-	private int[][] graph;
+	private NavigationGraph graph;
+	private NavigationGraph previousGraph;
+	private WallCandidates walls;
+	private int blockadeVersion;
 
 	/**
 	 * Construct a TrafficArea.
@@ -218,7 +221,36 @@ public class TrafficArea {
 		blockadeLines = null;
 		allBlockingLines = null;
 		openLines = null;
-		graph=null;
+		++blockadeVersion;
+		if (graph != null) {
+			previousGraph = graph;
+		}
+		graph = null;
+	}
+
+	/**
+	 * Get the walls that can affect an agent in this area. The walls are built
+	 * when first needed and kept until the blockades in this area or one of its
+	 * neighbours change. This must not be called concurrently.
+	 *
+	 * @param neighbours
+	 *            The neighbours of this area.
+	 * @return The wall candidates.
+	 */
+	WallCandidates getWallCandidates(Collection<TrafficArea> neighbours) {
+		if (walls == null || !walls.isValid(this, neighbours)) {
+			walls = new WallCandidates(this, neighbours);
+		}
+		return walls;
+	}
+
+	/**
+	 * Get a number that changes whenever the blockades in this area change.
+	 *
+	 * @return The blockade version.
+	 */
+	int getBlockadeVersion() {
+		return blockadeVersion;
 	}
 
 	/**
@@ -263,31 +295,17 @@ public class TrafficArea {
 		return minIndex;
 	}
 
-	public int[][] getGraph() {
+	/**
+	 * Get the graph used to plan paths around the blockades in this area. The
+	 * graph is built when first needed and kept until the blockades change; it
+	 * is then repaired from the previous graph.
+	 *
+	 * @return The navigation graph.
+	 */
+	public NavigationGraph getGraph() {
 		if (graph == null) {
-			List<Line2D> oLines = getOpenLines();
-			graph = new int[oLines.size()][oLines.size()];
-			for (int i = 0; i < graph.length; i++) {
-				FOR: for (int j = 0; j < graph.length; j++) {
-					Line2D line = new Line2D(getMidPoint(oLines.get(i).getOrigin(), oLines.get(i).getEndPoint()), getMidPoint(oLines.get(j).getOrigin(), oLines.get(j)
-							.getEndPoint()));
-					for (Line2D is : getAllBlockingLines()) {
-						if (GeometryTools2D.getSegmentIntersectionPoint(line, is) != null) {
-							graph[i][j] = 100000;
-							continue FOR;
-						}
-					}
-					for (int k = 0; k < oLines.size(); k++) {
-						if(k==i||k==j)
-							continue;
-						if (GeometryTools2D.getSegmentIntersectionPoint(line, oLines.get(k)) != null) {
-							graph[i][j] = Integer.MAX_VALUE;
-							continue FOR;
-						}
-					}
-					graph[i][j] = 1;
-				}
-			}
+			graph = new NavigationGraph(getOpenLines(), getAllBlockingLines(), previousGraph);
+			previousGraph = null;
 		}
 		return graph;
 	}
@@ -0,0 +1,215 @@
+package traffic3.objects;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import rescuecore2.misc.geometry.Line2D;
+
+/**
+ * The walls that can affect an agent in an area: the blocking lines of the area
+ * followed by the blocking lines of each neighbouring area. The coordinates of
+ * each wall are kept in primitive arrays so that agents can find the closest
+ * point on every wall without creating objects. A set of candidates is shared
+ * by all agents in the area and never changes; the area builds a new one when
+ * the blockades in it or one of its neighbours change.
+ */
+final class WallCandidates {
+	private final TrafficArea[] sources;
+	private final int[] versions;
+	private final Line2D[] lines;
+	private final TrafficArea[] areas;
+	private final double[] x1;
+	private final double[] y1;
+	private final double[] x2;
+	private final double[] y2;
+	private final double[] dx;
+	private final double[] dy;
+	private final double[] lengthSquared;
+
+	/**
+	 * Construct a WallCandidates.
+	 *
+	 * @param area
+	 *            The area.
+	 * @param neighbours
+	 *            The neighbours of the area.
+	 */
+	WallCandidates(TrafficArea area, Collection<TrafficArea> neighbours) {
+		sources = new TrafficArea[neighbours.size() + 1];
+		versions = new int[sources.length];
+		sources[0] = area;
+		int s = 1;
+		for (TrafficArea next : neighbours) {
+			sources[s++] = next;
+		}
+		List<Line2D> all = new ArrayList<Line2D>();
+		List<TrafficArea> owners = new ArrayList<TrafficArea>();
+		for (int i = 0; i < sources.length; i++) {
+			versions[i] = sources[i].getBlockadeVersion();
+			for (Line2D line : sources[i].getAllBlockingLines()) {
+				all.add(line);
+				owners.add(sources[i]);
+			}
+		}
+		int n = all.size();
+		lines = all.toArray(new Line2D[n]);
+		areas = owners.toArray(new TrafficArea[n]);
+		x1 = new double[n];
+		y1 = new double[n];
+		x2 = new double[n];
+		y2 = new double[n];
+		dx = new double[n];
+		dy = new double[n];
+		lengthSquared = new double[n];
+		for (int i = 0; i < n; i++) {
+			Line2D line = lines[i];
+			x1[i] = line.getOrigin().getX();
+			y1[i] = line.getOrigin().getY();
+			x2[i] = line.getEndPoint().getX();
+			y2[i] = line.getEndPoint().getY();
+			dx[i] = line.getDirection().getX();
+			dy[i] = line.getDirection().getY();
+			double length = line.getDirection().getLength();
+			lengthSquared[i] = length * length;
+		}
+	}
+
+	/**
+	 * Find out if these candidates are still correct for an area.
+	 *
+	 * @param area
+	 *            The area.
+	 * @param neighbours
+	 *            The neighbours of the area.
+	 * @return True if no blockades have changed since these candidates were
+	 *         built.
+	 */
+	boolean isValid(TrafficArea area, Collection<TrafficArea> neighbours) {
+		if (sources[0] != area || sources.length != neighbours.size() + 1) {
+			return false;
+		}
+		int s = 1;
+		for (TrafficArea next : neighbours) {
+			if (sources[s++] != next) {
+				return false;
+			}
+		}
+		for (int i = 0; i < sources.length; i++) {
+			if (versions[i] != sources[i].getBlockadeVersion()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Get the number of walls.
+	 *
+	 * @return The number of walls.
+	 */
+	int size() {
+		return lines.length;
+	}
+
+	/**
+	 * Get a wall.
+	 *
+	 * @param i
+	 *            The index of the wall.
+	 * @return The wall.
+	 */
+	Line2D getLine(int i) {
+		return lines[i];
+	}
+
+	/**
+	 * Get the area a wall belongs to.
+	 *
+	 * @param i
+	 *            The index of the wall.
+	 * @return The area of the wall.
+	 */
+	TrafficArea getArea(int i) {
+		return areas[i];
+	}
+
+	/**
+	 * Get the X coordinate of the start of a wall.
+	 *
+	 * @param i
+	 *            The index of the wall.
+	 * @return The X coordinate.
+	 */
+	double getX1(int i) {
+		return x1[i];
+	}
+
+	/**
+	 * Get the Y coordinate of the start of a wall.
+	 *
+	 * @param i
+	 *            The index of the wall.
+	 * @return The Y coordinate.
+	 */
+	double getY1(int i) {
+		return y1[i];
+	}
+
+	/**
+	 * Get the X coordinate of the end of a wall.
+	 *
+	 * @param i
+	 *            The index of the wall.
+	 * @return The X coordinate.
+	 */
+	double getX2(int i) {
+		return x2[i];
+	}
+
+	/**
+	 * Get the Y coordinate of the end of a wall.
+	 *
+	 * @param i
+	 *            The index of the wall.
+	 * @return The Y coordinate.
+	 */
+	double getY2(int i) {
+		return y2[i];
+	}
+
+	/**
+	 * Get the X component of the direction of a wall.
+	 *
+	 * @param i
+	 *            The index of the wall.
+	 * @return The X direction.
+	 */
+	double getDX(int i) {
+		return dx[i];
+	}
+
+	/**
+	 * Get the Y component of the direction of a wall.
+	 *
+	 * @param i
+	 *            The index of the wall.
+	 * @return The Y direction.
+	 */
+	double getDY(int i) {
+		return dy[i];
+	}
+
+	/**
+	 * Get the squared length of a wall, computed the same way as
+	 * {@link rescuecore2.misc.geometry.GeometryTools2D#getClosestPointOnSegment}
+	 * does.
+	 *
+	 * @param i
+	 *            The index of the wall.
+	 * @return The squared length.
+	 */
+	double getLengthSquared(int i) {
+		return lengthSquared[i];
+	}
+}
@@ -1,9 +1,9 @@
 package traffic3.simulator;
 
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
-import java.util.PriorityQueue;
+import java.util.Arrays;
+
+import traffic3.objects.NavigationGraph;
 
 /**
  * Run gets a Graph Object and Runs The Dijkstra From single and Multiple sources .. with methods getPathArray() & getCost You can Get the Results of The Dijkstra !!!!!!!!!IMPORTANT!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! you Can use the Dijkstra object multiple Times without initializing it ... But the First time or when the Graph is changed(number of nodes are changed) you shoould call setGraphSize()
@@ -13,6 +13,9 @@ public class Dijkstra {
 	private int parent[];
 	private long minCost[];
 	private int mark[];
+	private int heap[];
+	private int heapIndex[];
+	private int heapSize;
 	private int numberOfVertex, marker = 1;
 
 	public Dijkstra(int n) { // number of Graph Nodes
@@ -30,13 +33,16 @@ public class Dijkstra {
 		parent = new int[n + 1];
 		mark = new int[n + 1];
 		minCost = new long[n + 1];
+		heap = new int[n + 1];
+		heapIndex = new int[n + 1];
 		this.numberOfVertex = n;
 	}
 
 	/**
-	 * Run multi Src Dijkstra
+	 * Run single source Dijkstra over a navigation graph using an indexed binary
+	 * heap. Nodes with equal cost are taken in index order.
 	 */
-	public void Run(int[][]graph1, int src) throws Exception {
+	public void Run(NavigationGraph graph, int src) throws Exception {
 		marker++;
 		for (int i = 0; i < numberOfVertex; ++i) {
 			minCost[i] = Long.MAX_VALUE/2;
@@ -44,33 +50,29 @@ public class Dijkstra {
 		for(int i=0;i<parent.length;i++){
 			parent[i] = -1;
 		}
-		PriorityQueue<Integer> PQ = new PriorityQueue<Integer>(100, new Cmp());
-			parent[src] = -1;
-			minCost[src] = 0;
-			PQ.add(src);
-		while (PQ.size() != 0) {
-			int node = (PQ.poll());
-			if (mark[node] == marker)
-				continue;
-			else
-				mark[node] = marker;
-			for (int i = 0; i < graph1.length; i++) {
-				if(graph1[node][i]>100000)
-					continue;
-				if(node==i)
-					continue;
-
-				int childIndex = i;
+		heapSize = 0;
+		Arrays.fill(heapIndex, -1);
+		minCost[src] = 0;
+		push(src);
+		while (heapSize != 0) {
+			int node = pop();
+			mark[node] = marker;
+			int[] neighbours = graph.getNeighbours(node);
+			for (int i = 0; i < neighbours.length; i++) {
+				int childIndex = neighbours[i];
 				if (mark[childIndex] == marker)
 					continue;
-				int w = graph1[node][i];
+				int w = graph.getWeight(node, i);
 				if (w <= 0 || minCost[node] + w<0)
 					throw new Exception("Negetive Cost");
 
 				if (minCost[childIndex] > minCost[node] + w) {
 					minCost[childIndex] = minCost[node] + w;
 					parent[childIndex] = node;
-					PQ.add(childIndex);
+					if (heapIndex[childIndex] == -1)
+						push(childIndex);
+					else
+						up(heapIndex[childIndex]);
 				}
 			}
 		}
@@ -101,15 +103,56 @@ public class Dijkstra {
 		return minCost[desVertex];
 	}
 
-	private class Cmp implements Comparator<Integer> {
-		@Override
-		public int compare(Integer a, Integer b) {
-			if (minCost[a] > minCost[b])
-				return 1;
-			else if (minCost[a] == minCost[b])
-				return 0;
-			else
-				return -1;
+	private void push(int node) {
+		heap[heapSize] = node;
+		heapIndex[node] = heapSize;
+		up(heapSize++);
+	}
+
+	private int pop() {
+		int result = heap[0];
+		heapIndex[result] = -1;
+		if (--heapSize > 0) {
+			heap[0] = heap[heapSize];
+			heapIndex[heap[0]] = 0;
+			down(0);
+		}
+		return result;
+	}
+
+	private void up(int i) {
+		int node = heap[i];
+		while (i > 0) {
+			int p = (i - 1) / 2;
+			if (!less(node, heap[p]))
+				break;
+			heap[i] = heap[p];
+			heapIndex[heap[i]] = i;
+			i = p;
 		}
+		heap[i] = node;
+		heapIndex[node] = i;
+	}
+
+	private void down(int i) {
+		int node = heap[i];
+		while (true) {
+			int c = 2 * i + 1;
+			if (c >= heapSize)
+				break;
+			if (c + 1 < heapSize && less(heap[c + 1], heap[c]))
+				c++;
+			if (!less(heap[c], node))
+				break;
+			heap[i] = heap[c];
+			heapIndex[heap[i]] = i;
+			i = c;
+		}
+		heap[i] = node;
+		heapIndex[node] = i;
+	}
+
+	private boolean less(int a, int b) {
+		return minCost[a] < minCost[b] || (minCost[a] == minCost[b] && a < b);
 	}
 }
@@ -0,0 +1,147 @@
+package traffic3.simulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import traffic3.manager.TrafficManager;
+import traffic3.objects.TrafficAgent;
+
+/**
+ * Runs microsteps for a set of traffic agents in two phases. First the forces
+ * on every agent are computed from the positions at the end of the previous
+ * microstep, using an index of those positions that is rebuilt once per
+ * microstep, then every agent moves. Both phases can be split across several
+ * threads; anything that touches shared state is finished on the calling
+ * thread in agent order, so the result does not depend on the number of
+ * threads.
+ */
+class MicrostepRunner {
+  private final TrafficManager manager;
+  private final int threads;
+  private final ExecutorService executor;
+  private TrafficAgent[] agents;
+  private boolean[] finished;
+  private List<Callable<Object>> computeTasks;
+  private List<Callable<Object>> moveTasks;
+  private double dt;
+
+  /**
+   * Construct a MicrostepRunner.
+   *
+   * @param manager The traffic manager.
+   * @param threads The number of threads to use. Values less than one mean one
+   *                thread per available processor.
+   */
+  MicrostepRunner(TrafficManager manager, int threads) {
+    this.manager = manager;
+    if (threads < 1) {
+      threads = Runtime.getRuntime().availableProcessors();
+    }
+    this.threads = threads;
+    this.executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+  }
+
+  /**
+   * Get the number of threads used by this runner.
+   *
+   * @return The number of threads.
+   */
+  int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Set the agents to step. The order of the agents fixes the order in which
+   * shared state is updated.
+   *
+   * @param all The agents.
+   */
+  void setAgents(List<TrafficAgent> all) {
+    agents = all.toArray(new TrafficAgent[all.size()]);
+    finished = new boolean[agents.length];
+    computeTasks = new ArrayList<Callable<Object>>();
+    moveTasks = new ArrayList<Callable<Object>>();
+    if (executor == null) {
+      return;
+    }
+    int chunk = (agents.length + threads - 1) / threads;
+    for (int start = 0; start < agents.length; start += chunk) {
+      final int from = start;
+      final int to = Math.min(agents.length, start + chunk);
+      computeTasks.add(new Callable<Object>() {
+        @Override
+        public Object call() {
+          for (int i = from; i < to; ++i) {
+            agents[i].computeStep(dt);
+          }
+          return null;
+        }
+      });
+      moveTasks.add(new Callable<Object>() {
+        @Override
+        public Object call() {
+          for (int i = from; i < to; ++i) {
+            finished[i] = agents[i].moveStep(dt);
+          }
+          return null;
+        }
+      });
+    }
+  }
+
+  /**
+   * Run one microstep for every agent.
+   *
+   * @param stepTime The amount of time to simulate in ms.
+   */
+  void microstep(double stepTime) {
+    dt = stepTime;
+    manager.updateAgentIndex();
+    if (executor == null) {
+      for (TrafficAgent next : agents) {
+        next.computeStep(dt);
+      }
+      for (int i = 0; i < agents.length; ++i) {
+        finished[i] = agents[i].moveStep(dt);
+      }
+    } else {
+      run(computeTasks);
+      run(moveTasks);
+    }
+    for (int i = 0; i < agents.length; ++i) {
+      if (!finished[i]) {
+        agents[i].finishStep(dt);
+      }
+    }
+  }
+
+  /**
+   * Stop any worker threads.
+   */
+  void shutdown() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  private void run(List<Callable<Object>> tasks) {
+    try {
+      for (Future<Object> next : executor.invokeAll(tasks)) {
+        next.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while running microstep", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+}
@@ -0,0 +1,166 @@
+package traffic3.simulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import rescuecore2.config.Config;
+import rescuecore2.misc.geometry.Point2D;
+import rescuecore2.standard.entities.Edge;
+import rescuecore2.standard.entities.FireBrigade;
+import rescuecore2.standard.entities.Road;
+import rescuecore2.standard.entities.StandardEntity;
+import rescuecore2.standard.entities.StandardWorldModel;
+import rescuecore2.worldmodel.EntityID;
+
+import traffic3.manager.TrafficManager;
+import traffic3.objects.TrafficAgent;
+import traffic3.objects.TrafficArea;
+
+/**
+   Timing test for the traffic simulator microstep engine. This builds a square grid of roads, puts agents at random points with random destinations, and times whole timesteps with different numbers of threads. Final positions are compared with the first run to check that the result does not depend on the number of threads.
+*/
+public final class TrafficBenchmark {
+    private static final int DEFAULT_GRID = 40;
+    private static final int DEFAULT_AGENTS = 2000;
+    private static final int DEFAULT_TIMESTEPS = 3;
+    private static final int CELL_SIZE = 20000;
+    private static final double RADIUS = 500;
+    private static final double VELOCITY = 0.7;
+    private static final double STEP_TIME_MS = 100;
+    private static final int MICROSTEPS = 600;
+    private static final String SEED = "2a";
+
+    private TrafficBenchmark() {}
+
+    /**
+       Run the timing test.
+       @param args Command line arguments: [-g grid size] [-a agents] [-t timesteps] [thread counts...]
+    */
+    public static void main(String[] args) {
+        int grid = DEFAULT_GRID;
+        int agents = DEFAULT_AGENTS;
+        int timesteps = DEFAULT_TIMESTEPS;
+        List<Integer> threads = new ArrayList<Integer>();
+        // CHECKSTYLE:OFF:ModifiedControlVariable
+        for (int i = 0; i < args.length; ++i) {
+            if ("-g".equalsIgnoreCase(args[i])) {
+                grid = Integer.parseInt(args[++i]);
+            }
+            else if ("-a".equalsIgnoreCase(args[i])) {
+                agents = Integer.parseInt(args[++i]);
+            }
+            else if ("-t".equalsIgnoreCase(args[i])) {
+                timesteps = Integer.parseInt(args[++i]);
+            }
+            else {
+                threads.add(Integer.parseInt(args[i]));
+            }
+        }
+        // CHECKSTYLE:ON:ModifiedControlVariable
+        if (threads.isEmpty()) {
+            threads.add(1);
+            threads.add(Runtime.getRuntime().availableProcessors());
+        }
+        System.out.println(grid + "x" + grid + " roads, " + agents + " agents, " + timesteps + " timesteps");
+        double[] reference = null;
+        for (int next : threads) {
+            double[] result = run(grid, agents, timesteps, next);
+            if (reference == null) {
+                reference = result;
+            }
+            else {
+                System.out.println("  same result as " + threads.get(0) + " thread(s): " + Arrays.equals(reference, result));
+            }
+        }
+    }
+
+    private static double[] run(int grid, int count, int timesteps, int threads) {
+        Config config = new Config();
+        config.setValue("random.seed", SEED);
+        TrafficConstants.init(config);
+        StandardWorldModel world = new StandardWorldModel();
+        for (int r = 0; r < grid; ++r) {
+            for (int c = 0; c < grid; ++c) {
+                world.addEntity(createRoad(grid, r, c));
+            }
+        }
+        world.index();
+        TrafficManager manager = new TrafficManager();
+        for (StandardEntity next : world) {
+            manager.register(new TrafficArea((Road)next));
+        }
+        manager.cacheInformation(world);
+        Random random = new Random(1);
+        List<TrafficAgent> agents = new ArrayList<TrafficAgent>();
+        int size = grid * CELL_SIZE;
+        for (int i = 0; i < count; ++i) {
+            FireBrigade h = new FireBrigade(new EntityID(grid * grid + i + 1));
+            h.setX(random.nextInt(size));
+            h.setY(random.nextInt(size));
+            TrafficAgent agent = new TrafficAgent(h, manager, RADIUS, VELOCITY);
+            agent.setLocation(h.getX(), h.getY());
+            manager.register(agent);
+            agents.add(agent);
+        }
+        MicrostepRunner runner = new MicrostepRunner(manager, threads);
+        long total = 0;
+        for (int t = 0; t < timesteps; ++t) {
+            for (TrafficAgent next : agents) {
+                Point2D goal = new Point2D(random.nextInt(size), random.nextInt(size));
+                TrafficArea area = manager.findArea(goal.getX(), goal.getY());
+                List<PathElement> path = new ArrayList<PathElement>();
+                path.add(new PathElement(area.getArea().getID(), null, goal));
+                next.setPath1(path);
+                next.clearPositionHistory();
+                next.setMobile(true);
+                next.beginTimestep();
+            }
+            long start = System.nanoTime();
+            runner.setAgents(agents);
+            for (int i = 0; i < MICROSTEPS; ++i) {
+                runner.microstep(STEP_TIME_MS);
+            }
+            total += System.nanoTime() - start;
+            for (TrafficAgent next : agents) {
+                next.endTimestep();
+            }
+        }
+        runner.shutdown();
+        // CHECKSTYLE:OFF:MagicNumber
+        System.out.println(threads + " thread(s): " + (total / 1000000.0 / timesteps) + "ms per timestep");
+        // CHECKSTYLE:ON:MagicNumber
+        double[] result = new double[count * 2];
+        for (int i = 0; i < count; ++i) {
+            result[i * 2] = agents.get(i).getX();
+            result[i * 2 + 1] = agents.get(i).getY();
+        }
+        return result;
+    }
+
+    private static Road createRoad(int grid, int r, int c) {
+        Road road = new Road(new EntityID(r * grid + c + 1));
+        int x1 = c * CELL_SIZE;
+        int y1 = r * CELL_SIZE;
+        int x2 = x1 + CELL_SIZE;
+        int y2 = y1 + CELL_SIZE;
+        List<Edge> edges = new ArrayList<Edge>();
+        edges.add(new Edge(x1, y1, x2, y1, neighbour(grid, r - 1, c)));
+        edges.add(new Edge(x2, y1, x2, y2, neighbour(grid, r, c + 1)));
+        edges.add(new Edge(x2, y2, x1, y2, neighbour(grid, r + 1, c)));
+        edges.add(new Edge(x1, y2, x1, y1, neighbour(grid, r, c - 1)));
+        road.setEdges(edges);
+        road.setX((x1 + x2) / 2);
+        road.setY((y1 + y2) / 2);
+        road.setBlockades(new ArrayList<EntityID>());
+        return road;
+    }
+
+    private static EntityID neighbour(int grid, int r, int c) {
+        if (r < 0 || c < 0 || r >= grid || c >= grid) {
+            return null;
+        }
+        return new EntityID(r * grid + c + 1);
+    }
+}
@@ -1,6 +1,7 @@
 package traffic3.simulator;
 
 import java.awt.Color;
+import java.awt.GraphicsEnvironment;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
@@ -36,6 +37,7 @@ import rescuecore2.worldmodel.properties.IntProperty;
 
 import traffic3.manager.TrafficManager;
 import traffic3.objects.TrafficAgent;
+import traffic3.objects.NavigationGraph;
 import traffic3.objects.TrafficArea;
 import traffic3.objects.TrafficBlockade;
 
@@ -54,10 +56,17 @@ public class TrafficSimulator extends StandardSimulator implements GUIComponent
   private static final double CIVILIAN_VELOCITY_MEAN = 0.2;
   private static final double CIVILIAN_VELOCITY_SD = 0.002;
 
+  private static final String THREADS_KEY = "traffic3.threads";
+  private static final String DEBUG_PATHS_KEY = "traffic3.debug.paths";
+  private static final int DEFAULT_THREADS = 1;
+
   private TrafficSimulatorGUI gui;
 
   private TrafficManager manager;
 
+  private MicrostepRunner runner;
+  private ShapeDebugFrame debugFrame;
+
   /**
    * Construct a new TrafficSimulator.
    */
@@ -117,6 +126,22 @@ public class TrafficSimulator extends StandardSimulator implements GUIComponent
     });
     gui.initialise();
     manager.cacheInformation(model);
+    if (runner != null) {
+      runner.shutdown();
+    }
+    runner = new MicrostepRunner(manager, config.getIntValue(THREADS_KEY, DEFAULT_THREADS));
+    Logger.info("Microstep threads: " + runner.getThreads());
+    if (config.getBooleanValue(DEBUG_PATHS_KEY, false) && !GraphicsEnvironment.isHeadless()) {
+      debugFrame = new ShapeDebugFrame();
+    }
+  }
+
+  @Override
+  public void shutdown() {
+    super.shutdown();
+    if (runner != null) {
+      runner.shutdown();
+    }
   }
 
   @Override
@@ -459,33 +484,17 @@ public class TrafficSimulator extends StandardSimulator implements GUIComponent
     Point2D edgePoint = getBestPoint(nextEdge, nextArea);
     Point2D centrePoint = new Point2D(lastArea.getX(), lastArea.getY());
 
-    List<ShapeDebugFrame.ShapeInfo> resultGraph = new ArrayList<ShapeDebugFrame.ShapeInfo>();
-
-    resultGraph.add(
-        new Line2DShapeInfo(new Line2D(startpoint, centrePoint), "path start to center", Color.black, false, true));
-    resultGraph.add(new Line2DShapeInfo(new Line2D(centrePoint, getMidPoint(nextEdge.getStart(), nextEdge.getEnd())),
-        "path center to end", Color.white, false, true));
-
     TrafficArea trafficArea = manager.getTrafficArea(lastArea);
-    int[][] graph = manager.getTrafficArea(lastArea).getGraph();
-    List<Line2D> oLines = manager.getTrafficArea(lastArea).getOpenLines();
-    List<Line2D> graphline = new ArrayList<>();
-    resultGraph.add(new Line2DShapeInfo(oLines, "openLines", Color.green, false, false));
-    for (int i = 0; i < graph.length; i++) {
-      for (int j = 0; j < graph.length; j++) {
-        if (graph[i][j] > 10000)
-          continue;
-        Line2D line = new Line2D(getMidPoint(oLines.get(i).getOrigin(), oLines.get(i).getEndPoint()),
-            getMidPoint(oLines.get(j).getOrigin(), oLines.get(j).getEndPoint()));
-        graphline.add(line);
-      }
+    NavigationGraph graph = trafficArea.getGraph();
+    if (debugFrame != null) {
+      showGraph(lastArea, graph, startpoint, centrePoint, nextEdge);
     }
 
     int src = trafficArea.getNearestLineIndex(start);
     int end = trafficArea.getNearestLineIndex(edgePoint);
 
     if (src != end && src != -1 && end != -1) {
-      Dijkstra dijkstra = new Dijkstra(graph.length);
+      Dijkstra dijkstra = new Dijkstra(graph.size());
       try {
         dijkstra.Run(graph, src);
       } catch (Exception e) {
@@ -497,8 +506,7 @@ public class TrafficSimulator extends StandardSimulator implements GUIComponent
           if (path.size() > 2) {
             List<Point2D> points = new ArrayList<Point2D>();
             for (Integer integer : path) {
-              Point2D point = getMidPoint(oLines.get(integer).getOrigin(), oLines.get(integer).getEndPoint());
-              points.add(point);
+              points.add(graph.getPoint(integer));
             }
 
             ArrayList<PathElement> result = new ArrayList<PathElement>();
@@ -520,6 +528,25 @@ public class TrafficSimulator extends StandardSimulator implements GUIComponent
     return originalPaths;
   }
 
+  private void showGraph(Area area, NavigationGraph graph, Point2D startpoint, Point2D centrePoint, Edge nextEdge) {
+    List<ShapeDebugFrame.ShapeInfo> resultGraph = new ArrayList<ShapeDebugFrame.ShapeInfo>();
+    resultGraph.add(
+        new Line2DShapeInfo(new Line2D(startpoint, centrePoint), "path start to center", Color.black, false, true));
+    resultGraph.add(new Line2DShapeInfo(new Line2D(centrePoint, getMidPoint(nextEdge.getStart(), nextEdge.getEnd())),
+        "path center to end", Color.white, false, true));
+    List<Line2D> oLines = new ArrayList<Line2D>();
+    List<Line2D> graphline = new ArrayList<Line2D>();
+    for (int i = 0; i < graph.size(); i++) {
+      oLines.add(graph.getOpenLine(i));
+      for (int j : graph.getNeighbours(i)) {
+        graphline.add(new Line2D(graph.getPoint(i), graph.getPoint(j)));
+      }
+    }
+    resultGraph.add(new Line2DShapeInfo(oLines, "openLines", Color.green, false, false));
+    resultGraph.add(new Line2DShapeInfo(graphline, "graph", Color.orange, false, false));
+    debugFrame.show("Path planning in " + area, resultGraph);
+  }
+
   private boolean isOriginalPathOk(Collection<? extends PathElement> originalPaths) {
     if (originalPaths.isEmpty()) {
       Logger.warn("originalPaths is null");
@@ -766,8 +793,14 @@ public class TrafficSimulator extends StandardSimulator implements GUIComponent
     }
     long pre = System.currentTimeMillis();
     Logger.debug("Running " + MICROSTEPS + " microsteps");
+    runner.setAgents(new ArrayList<TrafficAgent>(manager.getAgents()));
+    // Repainting is only worth doing if someone can see it
+    boolean refresh = !GraphicsEnvironment.isHeadless() && gui.isShowing();
     for (int i = 0; i < MICROSTEPS; i++) {
-      microstep();
+      runner.microstep(STEP_TIME_MS);
+      if (refresh) {
+        gui.refresh();
+      }
     }
 
     long post = System.currentTimeMillis();
@@ -784,11 +817,4 @@ public class TrafficSimulator extends StandardSimulator implements GUIComponent
     }
     Logger.debug("Total time: " + (end - start) + "ms");
   }
-
-  private void microstep() {
-    for (TrafficAgent agent : manager.getAgents()) {
-      agent.step(STEP_TIME_MS);
-    }
-    gui.refresh();
-  }
 }
\ No newline at end of file